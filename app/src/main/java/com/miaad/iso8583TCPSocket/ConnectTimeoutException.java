@@ -0,0 +1,22 @@
+package com.miaad.iso8583TCPSocket;
+
+import java.net.SocketTimeoutException;
+
+/**
+ * Thrown when a TCP connect does not complete within the connect timeout
+ */
+public class ConnectTimeoutException extends SocketTimeoutException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long timeoutMs;
+
+    public ConnectTimeoutException(long timeoutMs) {
+        super("Connect timed out after " + timeoutMs + "ms");
+        this.timeoutMs = timeoutMs;
+    }
+
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+}
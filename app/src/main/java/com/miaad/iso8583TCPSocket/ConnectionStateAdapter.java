@@ -0,0 +1,136 @@
+package com.miaad.iso8583TCPSocket;
+
+/**
+ * {@link ConnectionStateListener} with empty implementations of every callback.
+ * Extend it to handle only the events you care about.
+ */
+public abstract class ConnectionStateAdapter implements ConnectionStateListener {
+
+    @Override
+    public void onStateChanged(ConnectionState oldState, ConnectionState newState, String details) {
+    }
+
+    @Override
+    public void onConnectionAttemptStarted(String host, int port, int attempt, int maxAttempts) {
+    }
+
+    @Override
+    public void onHostResolutionStarted(String hostname) {
+    }
+
+    @Override
+    public void onHostResolutionCompleted(String hostname, String resolvedIp, long timeMs) {
+    }
+
+    @Override
+    public void onTcpConnectionStarted(String host, int port) {
+    }
+
+    @Override
+    public void onTcpConnectionCompleted(String localAddress, String remoteAddress, long timeMs) {
+    }
+
+    @Override
+    public void onTlsHandshakeStarted() {
+    }
+
+    @Override
+    public void onTlsHandshakeCompleted(String protocol, String cipherSuite, long timeMs) {
+    }
+
+    @Override
+    public void onSendStarted(int dataLength, String messageType) {
+    }
+
+    @Override
+    public void onFrameCreated(String frameType, int headerSize, int dataSize) {
+    }
+
+    @Override
+    public void onDataTransmissionStarted(int totalBytes) {
+    }
+
+    @Override
+    public void onDataTransmissionProgress(int bytesSent, int totalBytes, int percentComplete) {
+    }
+
+    @Override
+    public void onDataTransmissionCompleted(int totalBytes, long timeMs) {
+    }
+
+    @Override
+    public void onResponseWaitStarted(int timeoutMs) {
+    }
+
+    @Override
+    public void onResponseHeaderReadStarted(int expectedHeaderSize) {
+    }
+
+    @Override
+    public void onResponseHeaderReceived(byte[] headerBytes, int parsedLength, long timeMs) {
+    }
+
+    @Override
+    public void onResponseDataReadStarted(int expectedDataSize) {
+    }
+
+    @Override
+    public void onResponseDataReadProgress(int bytesRead, int totalBytes, int percentComplete) {
+    }
+
+    @Override
+    public void onResponseDataReceived(byte[] dataBytes, int totalBytes, long timeMs) {
+    }
+
+    @Override
+    public void onResponseProcessingStarted(int responseSize) {
+    }
+
+    @Override
+    public void onResponseProcessingCompleted(long processingTimeMs, long totalTransactionTimeMs) {
+    }
+
+    @Override
+    public void onDisconnectionStarted(String reason) {
+    }
+
+    @Override
+    public void onSocketClosing() {
+    }
+
+    @Override
+    public void onSocketClosed(long timeMs) {
+    }
+
+    @Override
+    public void onError(Exception error, ConnectionState currentState, String details) {
+    }
+
+    @Override
+    public void onCancelled(ConnectionState currentState, String reason) {
+    }
+
+    @Override
+    public void onTimeout(String timeoutType, int timeoutMs, ConnectionState currentState) {
+    }
+
+    @Override
+    public void onRetryDelayStarted(int attempt, long delayMs, String reason) {
+    }
+
+    @Override
+    public void onRetryDelayEnded(int attempt) {
+    }
+
+    @Override
+    public void onRetryExhausted(int totalAttempts, Exception lastError) {
+    }
+
+    @Override
+    public void onLog(String level, String message, String details) {
+    }
+
+    @Override
+    public void onMetric(String metricName, long value, String unit) {
+    }
+}
@@ -1,5 +1,7 @@
 package com.miaad.iso8583TCPSocket;
 
+import com.miaad.iso8583TCPSocket.resilience.CircuitState;
+
 /**
  * Comprehensive listener for all connection state changes and events
  */
@@ -231,4 +233,22 @@ public interface ConnectionStateListener {
      * @param unit Unit of measurement
      */
     void onMetric(String metricName, long value, String unit);
+
+    /**
+     * Called when this client observes a state change of its endpoint's shared circuit breaker
+     * @param endpoint Endpoint as "host:port"
+     * @param oldState Previous state
+     * @param newState New state
+     */
+    default void onCircuitStateChanged(String endpoint, CircuitState oldState, CircuitState newState) {
+    }
+
+    /**
+     * Called after a keep-alive echo on an idle connection
+     * @param success True if the response was valid
+     * @param responseTimeMs Echo round trip
+     * @param details "Echo OK" or why the echo failed
+     */
+    default void onKeepAliveEcho(boolean success, long responseTimeMs, String details) {
+    }
 }
@@ -1,5 +1,7 @@
 package com.miaad.iso8583TCPSocket;
 
+import com.miaad.iso8583TCPSocket.resilience.CircuitState;
+
 /**
  * Comprehensive connection status information
  */
@@ -32,6 +34,7 @@ public class ConnectionStatus {
     private final long connectionDuration;
     private final int reconnectAttempts;
     private final String statusDescription;
+    private final CircuitState circuitState;
 
     public ConnectionStatus(Builder builder) {
         this.isConnected = builder.isConnected;
@@ -62,6 +65,7 @@ public class ConnectionStatus {
         this.connectionDuration = builder.connectionDuration;
         this.reconnectAttempts = builder.reconnectAttempts;
         this.statusDescription = builder.statusDescription;
+        this.circuitState = builder.circuitState;
     }
 
     // Connection state checks
@@ -112,9 +116,13 @@ public class ConnectionStatus {
     // Overall status
     public String getStatusDescription() { return statusDescription; }
     
+    // Endpoint circuit breaker (null if not configured)
+    public CircuitState getCircuitState() { return circuitState; }
+    public boolean isCircuitOpen() { return circuitState == CircuitState.OPEN; }
+    
     // Utility methods
     public boolean canConnect() {
-        return !isConnected && !isConnecting && !isOperationInProgress;
+        return !isConnected && !isConnecting && !isOperationInProgress && circuitState != CircuitState.OPEN;
     }
     
     public boolean canSend() {
@@ -159,6 +167,9 @@ public class ConnectionStatus {
         }
         sb.append("Duration: ").append(connectionDuration).append("ms\n");
         sb.append("Attempts: ").append(reconnectAttempts).append("\n");
+        if (circuitState != null) {
+            sb.append("Circuit: ").append(circuitState).append("\n");
+        }
         sb.append("Description: ").append(statusDescription).append("\n");
         return sb.toString();
     }
@@ -192,6 +203,7 @@ public class ConnectionStatus {
         private long connectionDuration = 0;
         private int reconnectAttempts = 0;
         private String statusDescription = "";
+        private CircuitState circuitState = null;
 
         public Builder connected(boolean connected) { this.isConnected = connected; return this; }
         public Builder closed(boolean closed) { this.isClosed = closed; return this; }
@@ -221,6 +233,7 @@ public class ConnectionStatus {
         public Builder connectionDuration(long duration) { this.connectionDuration = duration; return this; }
         public Builder reconnectAttempts(int attempts) { this.reconnectAttempts = attempts; return this; }
         public Builder statusDescription(String description) { this.statusDescription = description; return this; }
+        public Builder circuitState(CircuitState state) { this.circuitState = state; return this; }
 
         public ConnectionStatus build() {
             return new ConnectionStatus(this);
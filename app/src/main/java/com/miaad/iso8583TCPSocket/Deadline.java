@@ -0,0 +1,126 @@
+package com.miaad.iso8583TCPSocket;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Absolute point in time by which a whole transaction must finish: waiting for the
+ * connection, connect retries, the write and the read. Each phase gets the time that
+ * is left instead of its configured timeout, whichever is shorter.
+ * <p>
+ * Based on {@link System#nanoTime()}, so it is immune to wall clock changes.
+ */
+public final class Deadline {
+
+    private static final Deadline NONE = new Deadline(0, false);
+
+    private final long deadlineNanos;
+    private final boolean bounded;
+
+    private Deadline(long deadlineNanos, boolean bounded) {
+        this.deadlineNanos = deadlineNanos;
+        this.bounded = bounded;
+    }
+
+    /**
+     * Deadline the given time from now
+     */
+    public static Deadline after(long duration, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(duration), true);
+    }
+
+    /**
+     * Deadline at a wall clock time, e.g. derived from a payment SLA
+     */
+    public static Deadline atEpochMillis(long epochMillis) {
+        return after(epochMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * No deadline; every phase uses its configured timeout
+     */
+    public static Deadline none() {
+        return NONE;
+    }
+
+    public boolean isBounded() {
+        return bounded;
+    }
+
+    public boolean isExpired() {
+        return bounded && deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Time left in nanoseconds, negative once expired, or Long.MAX_VALUE without a deadline
+     */
+    public long remainingNanos() {
+        return bounded ? deadlineNanos - System.nanoTime() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Time left in milliseconds, rounded up, so a socket timeout taken from it is never 0 (infinite)
+     */
+    public long remainingMillis() {
+        if (!bounded) {
+            return Long.MAX_VALUE;
+        }
+        long nanos = remainingNanos();
+        return nanos <= 0 ? 0 : (nanos + 999_999) / 1_000_000;
+    }
+
+    /**
+     * Timeout for a phase: the configured one, or the time left if that is shorter
+     * @param timeoutMs Configured timeout; 0 or less means none, as for sockets
+     * @throws DeadlineExceededException if no time is left
+     */
+    public int timeoutMillis(int timeoutMs, String phase) throws DeadlineExceededException {
+        if (!bounded) {
+            return timeoutMs;
+        }
+        long remaining = remainingMillis();
+        if (remaining <= 0) {
+            throw new DeadlineExceededException(phase);
+        }
+        if (timeoutMs > 0 && timeoutMs <= remaining) {
+            return timeoutMs;
+        }
+        return (int) Math.min(remaining, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @throws DeadlineExceededException if no time is left before starting a phase
+     */
+    public void check(String phase) throws DeadlineExceededException {
+        if (isExpired()) {
+            throw new DeadlineExceededException(phase);
+        }
+    }
+
+    /**
+     * Exception for a phase that failed because the deadline passed
+     * @param cause The timeout or failure the phase ended with
+     */
+    public DeadlineExceededException exceeded(String phase, Exception cause) {
+        DeadlineExceededException e = new DeadlineExceededException(phase);
+        e.initCause(cause);
+        return e;
+    }
+
+    /**
+     * The earlier of two deadlines
+     */
+    public Deadline min(Deadline other) {
+        if (!other.bounded) {
+            return this;
+        }
+        if (!bounded) {
+            return other;
+        }
+        return other.deadlineNanos - deadlineNanos < 0 ? other : this;
+    }
+
+    @Override
+    public String toString() {
+        return bounded ? "Deadline[" + TimeUnit.NANOSECONDS.toMillis(remainingNanos()) + "ms]" : "Deadline[none]";
+    }
+}
@@ -0,0 +1,26 @@
+package com.miaad.iso8583TCPSocket;
+
+import java.net.SocketTimeoutException;
+
+/**
+ * Thrown when a transaction's {@link Deadline} passes. It is a timeout for statistics
+ * and limiters, but is never retried, since no time is left for another attempt.
+ */
+public class DeadlineExceededException extends SocketTimeoutException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String phase;
+
+    public DeadlineExceededException(String phase) {
+        super("Deadline exceeded during " + phase);
+        this.phase = phase;
+    }
+
+    /**
+     * Phase that was running or about to start when the deadline passed
+     */
+    public String getPhase() {
+        return phase;
+    }
+}
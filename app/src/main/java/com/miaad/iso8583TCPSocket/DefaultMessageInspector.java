@@ -0,0 +1,168 @@
+package com.miaad.iso8583TCPSocket;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link MessageInspector} for ISO-8583:1987 messages with an ASCII MTI and ASCII
+ * field encoding. The primary/secondary bitmap may be binary (default) or hex ASCII.
+ * Only fields 2-42 can be located; everything the library needs lives in that range.
+ */
+public class DefaultMessageInspector implements MessageInspector {
+
+    /** Shared instance: no message header, binary bitmap */
+    public static final DefaultMessageInspector INSTANCE = new DefaultMessageInspector();
+
+    private static final int LLVAR = -2;
+    private static final int LLLVAR = -3;
+    private static final int MAX_FIELD = 42;
+
+    // ISO-8583:1987 ASCII lengths for fields 0..42 (index = field number)
+    private static final int[] FIELD_LENGTHS = {
+        0, 0, LLVAR, 6, 12, 12, 12, 10, 8, 8,        // 0-9
+        8, 6, 6, 4, 4, 4, 4, 4, 4, 3,                 // 10-19
+        3, 3, 3, 3, 3, 2, 2, 1, 9, 9,                 // 20-29
+        9, 9, LLVAR, LLVAR, LLVAR, LLVAR, LLLVAR, 12, 6, 2, // 30-39
+        3, 8, 15                                      // 40-42
+    };
+
+    private final int headerLength;
+    private final boolean asciiBitmap;
+
+    public DefaultMessageInspector() {
+        this(0, false);
+    }
+
+    /**
+     * @param headerLength Bytes preceding the MTI (e.g. 5 for a TPDU header)
+     * @param asciiBitmap True if bitmaps are sent as 16 hex characters instead of 8 bytes
+     */
+    public DefaultMessageInspector(int headerLength, boolean asciiBitmap) {
+        this.headerLength = headerLength;
+        this.asciiBitmap = asciiBitmap;
+    }
+
+    @Override
+    public int getMti(byte[] message) {
+        if (message == null || message.length < headerLength + 4) {
+            return -1;
+        }
+        return parseDigits(message, headerLength, 4);
+    }
+
+    @Override
+    public byte[] withMti(byte[] message, int mti) {
+        if (getMti(message) < 0 || mti < 0 || mti > 9999) {
+            return null;
+        }
+        byte[] copy = message.clone();
+        for (int i = headerLength + 3; i >= headerLength; i--) {
+            copy[i] = (byte) ('0' + mti % 10);
+            mti /= 10;
+        }
+        return copy;
+    }
+
+    @Override
+    public int getStan(byte[] message) {
+        long location = locate(message, 11);
+        if (location < 0) {
+            return -1;
+        }
+        return parseDigits(message, (int) (location >>> 32), (int) location);
+    }
+
+    @Override
+    public int getResponseCode(byte[] message) {
+        long location = locate(message, 39);
+        if (location < 0 || (int) location != 2) {
+            return -1;
+        }
+        int offset = (int) (location >>> 32);
+        return IsoCodes.packResponseCode(message[offset], message[offset + 1]);
+    }
+
+    /**
+     * Get the raw value of a field between 2 and 42
+     * @return Field value as an ASCII string, or null if absent
+     */
+    public String getField(byte[] message, int field) {
+        long location = locate(message, field);
+        if (location < 0) {
+            return null;
+        }
+        return new String(message, (int) (location >>> 32), (int) location, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Find a field in the message
+     * @return (offset << 32 | length) of the field value, or -1 if absent
+     */
+    private long locate(byte[] message, int field) {
+        if (message == null || field < 2 || field > MAX_FIELD) {
+            return -1;
+        }
+        int bitmapStart = headerLength + 4;
+        int bitmapBytes = asciiBitmap ? 16 : 8;
+        if (message.length < bitmapStart + bitmapBytes) {
+            return -1;
+        }
+        if (!isBitSet(message, bitmapStart, field)) {
+            return -1;
+        }
+
+        int offset = bitmapStart + bitmapBytes;
+        if (isBitSet(message, bitmapStart, 1)) {
+            offset += bitmapBytes; // secondary bitmap
+        }
+
+        for (int f = 2; f <= field; f++) {
+            if (!isBitSet(message, bitmapStart, f)) {
+                continue;
+            }
+            int length = FIELD_LENGTHS[f];
+            if (length < 0) {
+                int prefix = -length;
+                if (offset + prefix > message.length) return -1;
+                length = parseDigits(message, offset, prefix);
+                if (length < 0) return -1;
+                offset += prefix;
+            }
+            if (offset + length > message.length) {
+                return -1;
+            }
+            if (f == field) {
+                return ((long) offset << 32) | length;
+            }
+            offset += length;
+        }
+        return -1;
+    }
+
+    private boolean isBitSet(byte[] message, int bitmapStart, int field) {
+        int bit = field - 1;
+        if (asciiBitmap) {
+            int nibble = hexValue(message[bitmapStart + bit / 4]);
+            return nibble >= 0 && (nibble & (0x8 >>> (bit % 4))) != 0;
+        }
+        return (message[bitmapStart + bit / 8] & (0x80 >>> (bit % 8))) != 0;
+    }
+
+    private static int hexValue(byte b) {
+        if (b >= '0' && b <= '9') return b - '0';
+        if (b >= 'A' && b <= 'F') return b - 'A' + 10;
+        if (b >= 'a' && b <= 'f') return b - 'a' + 10;
+        return -1;
+    }
+
+    private static int parseDigits(byte[] data, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int d = data[i] - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,14 @@
+package com.miaad.iso8583TCPSocket;
+
+/**
+ * Builds the network management request sent on idle connections,
+ * typically an 0800 echo test (field 70 = 301)
+ */
+public interface EchoMessageFactory {
+
+    /**
+     * @param stan Trace number for field 11, unique per client
+     * @return Raw message (without length header)
+     */
+    byte[] createEcho(int stan);
+}
@@ -0,0 +1,212 @@
+package com.miaad.iso8583TCPSocket;
+
+import com.miaad.iso8583TCPSocket.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands a client's connection to one exchange at a time, serving waiters by priority
+ * lane (see {@link PriorityLanesConfig}).
+ * <p>
+ * Ownership is a single flag taken by CAS, so an uncontended exchange costs no more
+ * than a lock. Waiters go on lock-free per-lane queues and park; whoever frees the
+ * connection, or enqueues while it is free, takes the flag on behalf of the next
+ * waiter and unparks it. Only the flag holder picks waiters, so the round-robin
+ * state needs no lock of its own.
+ */
+final class ExchangeQueue {
+
+    private static final int WAITING = 0;
+    private static final int GRANTED = 1;
+    private static final int EXPIRED = 2;
+
+    private final Lane[] lanes;
+    private final long agingNanos;
+    private final AtomicBoolean busy = new AtomicBoolean();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    ExchangeQueue(PriorityLanesConfig config) {
+        RequestPriority[] priorities = RequestPriority.values();
+        this.lanes = new Lane[priorities.length];
+        for (int i = 0; i < priorities.length; i++) {
+            lanes[i] = new Lane(priorities[i], config.getWeight(priorities[i]));
+        }
+        this.agingNanos = TimeUnit.MILLISECONDS.toNanos(config.getAgingMs());
+    }
+
+    /**
+     * Wait for the connection. Interrupts do not abort the wait; the flag is restored.
+     */
+    void acquire(RequestPriority priority) {
+        acquire(priority, Deadline.none());
+    }
+
+    /**
+     * Wait for the connection until the deadline. Interrupts do not abort the wait; the flag is restored.
+     * @return false if the deadline passed first
+     */
+    boolean acquire(RequestPriority priority, Deadline deadline) {
+        Lane lane = lanes[priority.ordinal()];
+        if (waiting.get() <= 0 && busy.compareAndSet(false, true)) {
+            lane.record(0);
+            return true;
+        }
+        if (deadline.isExpired()) {
+            lane.expired.incrementAndGet();
+            return false;
+        }
+        Waiter waiter = new Waiter(Thread.currentThread(), System.nanoTime());
+        lane.queued.incrementAndGet();
+        lane.depth.incrementAndGet();
+        lane.waiters.add(waiter);
+        waiting.incrementAndGet();
+        dispatch(); // the connection may have been freed before the waiter was visible
+
+        boolean interrupted = false;
+        boolean granted = true;
+        while (waiter.state.get() != GRANTED) {
+            long remaining = deadline.remainingNanos();
+            if (remaining <= 0 && waiter.state.compareAndSet(WAITING, EXPIRED)) {
+                // Whoever unlinks the waiter uncounts it; a dispatcher that already did skips it
+                if (lane.waiters.remove(waiter)) {
+                    lane.depth.decrementAndGet();
+                    waiting.decrementAndGet();
+                }
+                lane.expired.incrementAndGet();
+                granted = false;
+                break;
+            }
+            if (deadline.isBounded()) {
+                LockSupport.parkNanos(this, remaining);
+            } else {
+                LockSupport.park(this);
+            }
+            if (Thread.interrupted()) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (granted) {
+            lane.record(System.nanoTime() - waiter.enqueuedNanos);
+        }
+        return granted;
+    }
+
+    /**
+     * Take the connection only if it is free and nobody is waiting for it
+     */
+    boolean tryAcquire() {
+        return waiting.get() <= 0 && busy.compareAndSet(false, true);
+    }
+
+    void release() {
+        busy.set(false);
+        dispatch();
+    }
+
+    List<LaneStats> getStats() {
+        List<LaneStats> stats = new ArrayList<>(lanes.length);
+        for (Lane lane : lanes) {
+            LatencyHistogram.Snapshot waits = lane.waits.snapshot();
+            stats.add(new LaneStats(lane.priority, Math.max(0, lane.depth.get()), lane.served.get(),
+                lane.queued.get(), lane.expired.get(), waits.getPercentileMs(50), waits.getPercentileMs(99), waits.getMaxMs()));
+        }
+        return stats;
+    }
+
+    /**
+     * If the connection is free and someone waits, give it to the next waiter
+     */
+    private void dispatch() {
+        while (waiting.get() > 0 && busy.compareAndSet(false, true)) {
+            Waiter next;
+            while ((next = pollNext()) != null) {
+                if (next.state.compareAndSet(WAITING, GRANTED)) {
+                    LockSupport.unpark(next.thread);
+                    return;
+                }
+                // Its deadline passed just before it was picked
+            }
+            busy.set(false);
+        }
+    }
+
+    /**
+     * Pick the next waiter; called only while holding the flag
+     */
+    private Waiter pollNext() {
+        long now = System.nanoTime();
+        Lane chosen = null;
+        double totalWeight = 0;
+        // Smooth weighted round robin over the lanes that have waiters
+        for (Lane lane : lanes) {
+            Waiter head = lane.waiters.peek();
+            if (head == null) {
+                lane.credit = 0;
+                continue;
+            }
+            double weight = lane.weight;
+            if (agingNanos > 0) {
+                weight *= 1 + (double) (now - head.enqueuedNanos) / agingNanos;
+            }
+            lane.credit += weight;
+            totalWeight += weight;
+            if (chosen == null || lane.credit > chosen.credit) {
+                chosen = lane;
+            }
+        }
+        if (chosen == null) {
+            return null;
+        }
+        chosen.credit -= totalWeight;
+        Waiter waiter = chosen.waiters.poll();
+        if (waiter != null) {
+            chosen.depth.decrementAndGet();
+            waiting.decrementAndGet();
+        }
+        return waiter;
+    }
+
+    private static final class Waiter {
+        final Thread thread;
+        final long enqueuedNanos;
+        final AtomicInteger state = new AtomicInteger(WAITING);
+
+        Waiter(Thread thread, long enqueuedNanos) {
+            this.thread = thread;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    private static final class Lane {
+        final RequestPriority priority;
+        final int weight;
+        final ConcurrentLinkedQueue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+        final AtomicInteger depth = new AtomicInteger();
+        final AtomicLong served = new AtomicLong();
+        final AtomicLong queued = new AtomicLong();
+        final AtomicLong expired = new AtomicLong();
+        final LatencyHistogram waits = new LatencyHistogram();
+        // Round-robin credit, touched only by the flag holder
+        double credit;
+
+        Lane(RequestPriority priority, int weight) {
+            this.priority = priority;
+            this.weight = weight;
+        }
+
+        void record(long waitNanos) {
+            served.incrementAndGet();
+            waits.recordNanos(waitNanos);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.miaad.iso8583TCPSocket;
+
+import java.net.SocketTimeoutException;
+
+/**
+ * Thrown when no byte of the response arrives within the first-byte timeout after
+ * the request was sent
+ */
+public class FirstByteTimeoutException extends SocketTimeoutException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long timeoutMs;
+
+    public FirstByteTimeoutException(long timeoutMs) {
+        super("No response within " + timeoutMs + "ms");
+        this.timeoutMs = timeoutMs;
+    }
+
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+}
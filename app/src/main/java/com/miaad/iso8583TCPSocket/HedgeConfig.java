@@ -0,0 +1,137 @@
+package com.miaad.iso8583TCPSocket;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Configuration for hedged requests.
+ * <p>
+ * When a hedged request has had no response for the configured percentile of recent
+ * latency, the same request is sent again on a second connection (which the endpoint
+ * group may place on another endpoint). The first response wins and the other
+ * connection is dropped, so its late response cannot be read by a later transaction.
+ * Hedges draw from a budget so they add at most a small fraction of extra load.
+ * <p>
+ * The hedge is the original message, same MTI and STAN, not a repeat, so the host
+ * may act on both copies. Only network management messages (08xx) are hedged unless
+ * {@link Builder#mtis(String...)} names others; name only requests the host can
+ * safely receive twice, never authorizations, financial requests or reversals.
+ */
+public class HedgeConfig {
+    private final double percentile;
+    private final long minDelayMs;
+    private final int minSamples;
+    private final long windowMs;
+    private final double budgetRatio;
+    private final double minHedgesPerSecond;
+    private final Set<Integer> messageTypes;
+
+    private HedgeConfig(Builder builder) {
+        this.percentile = builder.percentile;
+        this.minDelayMs = builder.minDelayMs;
+        this.minSamples = builder.minSamples;
+        this.windowMs = builder.windowMs;
+        this.budgetRatio = builder.budgetRatio;
+        this.minHedgesPerSecond = builder.minHedgesPerSecond;
+        this.messageTypes = new HashSet<>(builder.messageTypes);
+    }
+
+    public double getPercentile() { return percentile; }
+    public long getMinDelayMs() { return minDelayMs; }
+    public int getMinSamples() { return minSamples; }
+    public long getWindowMs() { return windowMs; }
+    public double getBudgetRatio() { return budgetRatio; }
+    public double getMinHedgesPerSecond() { return minHedgesPerSecond; }
+
+    /**
+     * Check if a message type may be hedged. Empty means none.
+     */
+    public boolean isHedged(int mti) {
+        return mti >= 0 && messageTypes.contains(mti / 10);
+    }
+
+    public static class Builder {
+        private double percentile = 95;
+        private long minDelayMs = 10;
+        private int minSamples = 20;
+        private long windowMs = 10000;
+        private double budgetRatio = 0.05;
+        private double minHedgesPerSecond = 1;
+        private final Set<Integer> messageTypes = new HashSet<>();
+
+        public Builder() {
+            messageTypes.add(IsoCodes.parseMti("0800") / 10);
+        }
+
+        /**
+         * Send the hedge once the request has taken longer than this percentile of
+         * recent response times (default 95)
+         */
+        public Builder percentile(double percentile) {
+            this.percentile = percentile;
+            return this;
+        }
+
+        /**
+         * Never hedge sooner than this, however fast recent responses were (default 10ms)
+         */
+        public Builder minDelay(long ms) {
+            this.minDelayMs = ms;
+            return this;
+        }
+
+        /**
+         * Responses needed before the percentile is trusted; no hedging until then (default 20)
+         */
+        public Builder minSamples(int minSamples) {
+            this.minSamples = minSamples;
+            return this;
+        }
+
+        /**
+         * Age of the latency samples the percentile is taken from (default 10000ms)
+         */
+        public Builder window(long ms) {
+            this.windowMs = ms;
+            return this;
+        }
+
+        /**
+         * Hedges allowed per hedgeable request (default 0.05 = at most 5% extra load)
+         */
+        public Builder budgetRatio(double budgetRatio) {
+            this.budgetRatio = budgetRatio;
+            return this;
+        }
+
+        /**
+         * Hedges always allowed per second, so quiet traffic can be hedged too (default 1)
+         */
+        public Builder minHedgesPerSecond(double minHedgesPerSecond) {
+            this.minHedgesPerSecond = minHedgesPerSecond;
+            return this;
+        }
+
+        /**
+         * Hedge these request MTIs instead (origin digit is ignored, so "0100" also
+         * covers "0101"). The host receives both copies with the same MTI and STAN, so
+         * name only requests it can safely process twice. No MTIs turns hedging off.
+         * Default is "0800".
+         */
+        public Builder mtis(String... mtis) {
+            this.messageTypes.clear();
+            for (String mti : mtis) {
+                int value = IsoCodes.parseMti(mti);
+                if (value < 0) {
+                    throw new IllegalArgumentException("Invalid MTI: " + mti);
+                }
+                this.messageTypes.add(value / 10);
+            }
+            return this;
+        }
+
+        public HedgeConfig build() {
+            return new HedgeConfig(this);
+        }
+    }
+}
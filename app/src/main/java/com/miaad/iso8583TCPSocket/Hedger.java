@@ -0,0 +1,227 @@
+package com.miaad.iso8583TCPSocket;
+
+import com.miaad.iso8583TCPSocket.engine.ConnectionEngine;
+import com.miaad.iso8583TCPSocket.engine.DaemonExecutors;
+import com.miaad.iso8583TCPSocket.metrics.LatencyHistogram;
+import com.miaad.iso8583TCPSocket.resilience.RetryBudget;
+import com.miaad.iso8583TCPSocket.resilience.RetryBudgetConfig;
+import com.miaad.iso8583TCPSocket.timer.HashedWheelTimer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hedged requests of one client. The request goes out on the client's connection
+ * from the caller thread as usual; if it is still unanswered after the hedge delay,
+ * the shared timer sends a copy on a spare connection from a pool thread. Whichever
+ * answers first wins and the other connection is closed, so its late response is
+ * never read as the reply to a later request. Hedges draw from a {@link RetryBudget}.
+ */
+final class Hedger {
+
+    private static final int PENDING = 0;
+    private static final int PRIMARY = 1;
+    private static final int HEDGE = 2;
+
+    private static final Executor EXECUTOR = DaemonExecutors.cached("iso-hedge");
+
+    private final HedgeConfig config;
+    private final ConnectionEngine spare;
+    private final Runnable dropPrimary;
+    private final LatencyHistogram histogram;
+    private final RetryBudget budget;
+    // One hedge at a time uses the spare connection
+    private final AtomicInteger spareBusy = new AtomicInteger();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong won = new AtomicLong();
+    private volatile long delayMs = -1;
+    private volatile long nextUpdateNanos = System.nanoTime();
+    private LatencyHistogram.Snapshot windowStart;
+    private LatencyHistogram.Snapshot previousWindowStart;
+    private long windowStartNanos;
+
+    /**
+     * @param spare Initialized engine for the second connection
+     * @param dropPrimary Closes the client's connection when a hedge wins
+     */
+    Hedger(HedgeConfig config, ConnectionEngine spare, Runnable dropPrimary, LatencyHistogram histogram,
+           String name) {
+        this.config = config;
+        this.spare = spare;
+        this.dropPrimary = dropPrimary;
+        this.histogram = histogram;
+        this.budget = new RetryBudget("hedge " + name, new RetryBudgetConfig.Builder()
+            .retryRatio(config.getBudgetRatio())
+            .minRetriesPerSecond(config.getMinHedgesPerSecond())
+            .maxBalance(Math.max(1, config.getMinHedgesPerSecond() * 10))
+            .build());
+    }
+
+    /**
+     * Arm a hedge for a request the caller is about to send
+     * @param deadline The caller's; the hedge's connect and exchange get the time left
+     */
+    Race start(byte[] message, Deadline deadline) {
+        budget.deposit();
+        Race race = new Race(message, deadline);
+        long delay = delayMs();
+        if (delay >= 0) {
+            race.timeout = HashedWheelTimer.shared().schedule(race, delay, TimeUnit.MILLISECONDS);
+        }
+        return race;
+    }
+
+    void close() {
+        spare.close();
+    }
+
+    long getSent() {
+        return sent.get();
+    }
+
+    long getWon() {
+        return won.get();
+    }
+
+    /**
+     * Current hedge delay, or -1 while there are too few samples to hedge
+     */
+    long delayMs() {
+        long now = System.nanoTime();
+        if (now - nextUpdateNanos >= 0) {
+            updateDelay(now);
+        }
+        return delayMs;
+    }
+
+    /**
+     * Take the percentile over the samples of the last one to two windows, at most once a second
+     */
+    private synchronized void updateDelay(long now) {
+        if (now - nextUpdateNanos < 0) {
+            return;
+        }
+        nextUpdateNanos = now + TimeUnit.SECONDS.toNanos(1);
+        LatencyHistogram.Snapshot current = histogram.snapshot();
+        if (windowStart == null || now - windowStartNanos >= TimeUnit.MILLISECONDS.toNanos(config.getWindowMs())) {
+            previousWindowStart = windowStart;
+            windowStart = current;
+            windowStartNanos = now;
+        }
+        LatencyHistogram.Snapshot recent = current.delta(previousWindowStart);
+        if (recent.getCount() < config.getMinSamples()) {
+            delayMs = -1;
+        } else {
+            delayMs = Math.max(config.getMinDelayMs(), (long) Math.ceil(recent.getPercentileMs(config.getPercentile())));
+        }
+    }
+
+    /**
+     * One request racing its hedge
+     */
+    final class Race implements Runnable {
+        private final byte[] message;
+        private final Deadline deadline;
+        private final AtomicInteger winner = new AtomicInteger(PENDING);
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile boolean started;
+        private volatile IsoResponse hedgeResponse;
+        private volatile HashedWheelTimer.Timeout timeout;
+
+        private Race(byte[] message, Deadline deadline) {
+            this.message = message;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Hedge delay elapsed (timer thread)
+         */
+        @Override
+        public void run() {
+            if (winner.get() != PENDING || deadline.isExpired() || !budget.tryWithdraw()) {
+                return;
+            }
+            EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    hedge();
+                }
+            });
+        }
+
+        private void hedge() {
+            if (!spareBusy.compareAndSet(0, 1)) {
+                return; // the spare connection is still busy with another hedge
+            }
+            started = true;
+            try {
+                if (winner.get() != PENDING) {
+                    return;
+                }
+                sent.incrementAndGet();
+                if (spare.isPeerClosed()) {
+                    spare.close();
+                }
+                if (!spare.isConnected()) {
+                    spare.connect(deadline);
+                }
+                IsoResponse response = spare.sendAndReceive(message, deadline);
+                hedgeResponse = response;
+                if (winner.compareAndSet(PENDING, HEDGE)) {
+                    won.incrementAndGet();
+                    dropPrimary.run(); // aborts the caller's read
+                }
+            } catch (Exception e) {
+                // The hedge failed or was cut off by a primary response
+            } finally {
+                spareBusy.set(0);
+                finished.countDown();
+            }
+        }
+
+        /**
+         * The caller got its response
+         * @return null if it won, otherwise the earlier hedge response to use instead
+         */
+        IsoResponse primaryAnswered() {
+            cancelTimer();
+            if (winner.compareAndSet(PENDING, PRIMARY)) {
+                if (started) {
+                    spare.close(); // abandon the hedge; its response must not be read later
+                }
+                return null;
+            }
+            return hedgeResponse;
+        }
+
+        /**
+         * The caller's request failed; wait for a hedge already in flight
+         * @return Hedge response, or null if there is none
+         */
+        IsoResponse primaryFailed(long timeoutMs) {
+            cancelTimer();
+            if (winner.get() == HEDGE) {
+                return hedgeResponse;
+            }
+            if (!started && winner.compareAndSet(PENDING, PRIMARY)) {
+                return null; // no hedge was sent; the failure stands
+            }
+            try {
+                finished.await(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return winner.get() == HEDGE ? hedgeResponse : null;
+        }
+
+        private void cancelTimer() {
+            HashedWheelTimer.Timeout t = timeout;
+            if (t != null) {
+                t.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.miaad.iso8583TCPSocket;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Counting limiter whose limit can be changed at runtime.
+ * When unlimited, acquiring is a single atomic increment.
+ */
+class InFlightLimiter {
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private volatile int limit;
+
+    InFlightLimiter(int limit) {
+        this.limit = Math.max(0, limit);
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    void setLimit(int newLimit) {
+        lock.lock();
+        try {
+            limit = Math.max(0, newLimit);
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take a permit, waiting up to {@code timeoutMs} for one to become free
+     * @throws IOException if no permit became free in time
+     */
+    void acquire(long timeoutMs) throws IOException {
+        if (tryAcquire()) {
+            return;
+        }
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        lock.lock();
+        try {
+            while (!tryAcquire()) {
+                if (remaining <= 0) {
+                    throw new IOException("Max in-flight limit of " + limit + " reached");
+                }
+                remaining = released.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for an in-flight slot", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release() {
+        inFlight.decrementAndGet();
+        if (limit > 0) {
+            lock.lock();
+            try {
+                released.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            int max = limit;
+            if (max > 0 && current >= max) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.miaad.iso8583TCPSocket;
+
+import java.net.SocketTimeoutException;
+
+/**
+ * Thrown when a response stalls part way, with no byte arriving within the
+ * inter-byte timeout of the previous one
+ */
+public class InterByteTimeoutException extends SocketTimeoutException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long timeoutMs;
+
+    public InterByteTimeoutException(long timeoutMs) {
+        super("Response stalled for " + timeoutMs + "ms");
+        this.timeoutMs = timeoutMs;
+    }
+
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+}
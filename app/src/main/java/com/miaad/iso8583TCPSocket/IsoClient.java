@@ -3,20 +3,62 @@ package com.miaad.iso8583TCPSocket;
 import com.miaad.iso8583TCPSocket.engine.ConnectionEngine;
 import com.miaad.iso8583TCPSocket.engine.BlockingEngine;
 import com.miaad.iso8583TCPSocket.engine.NonBlockingEngine;
+import com.miaad.iso8583TCPSocket.engine.RetryWait;
+import com.miaad.iso8583TCPSocket.endpoint.EndpointHealth;
+import com.miaad.iso8583TCPSocket.metrics.LatencyHistogram;
+import com.miaad.iso8583TCPSocket.metrics.TransactionStats;
+import com.miaad.iso8583TCPSocket.resilience.CircuitBreaker;
+import com.miaad.iso8583TCPSocket.resilience.CircuitBreakerRegistry;
+import com.miaad.iso8583TCPSocket.resilience.ConcurrencyLimiter;
+import com.miaad.iso8583TCPSocket.resilience.ConcurrencyLimiterRegistry;
+import com.miaad.iso8583TCPSocket.resilience.RateLimiter;
+import com.miaad.iso8583TCPSocket.resilience.RateLimiterRegistry;
+import com.miaad.iso8583TCPSocket.resilience.RetryBudget;
+import com.miaad.iso8583TCPSocket.resilience.RetryBudgetRegistry;
 
 import java.io.IOException;
+import java.net.SocketTimeoutException;
 import java.nio.ByteOrder;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Simple ISO-8583 TCP Client
  * Supports both blocking and non-blocking modes via configurable engines
+ * Safe to share between threads: exchanges take turns on the connection, or run at once
+ * on a full-duplex connection
  */
 public class IsoClient {
+    private final IsoConfig config;
     private final ConnectionEngine engine;
     private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    // Bumped by cancel() and close() so a transaction retry loop knows to stop
+    private final AtomicInteger cancelGeneration = new AtomicInteger();
+    private volatile RetryWait pendingRetry;
+    private final MessageInspector messageInspector;
+    private final TransactionStats transactionStats;
+    private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+    private final RuntimeSettings runtimeSettings;
+    private final CircuitBreaker circuitBreaker;
+    private final RetryBudget retryBudget;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final RateLimiter rateLimiter;
     private RetryCallback retryCallback;
     private ConnectionStateListener stateListener;
+    // Serializes exchanges on the connection by priority lane, so a keep-alive echo never interleaves with a transaction
+    private final ExchangeQueue exchangeQueue;
+    private final PriorityClassifier priorityClassifier;
+    private volatile long lastActivityNanos = System.nanoTime();
+    private final KeepAliveTask keepAliveTask;
+    private final Hedger hedger;
+    // Set when a hedge closed the connection under a read; the next exchange reconnects
+    private volatile boolean connectionDropped;
+    // Full-duplex: exchanges share the connection at once and skip the queue
+    private final boolean pipelined;
+    // Pipelined exchanges under way; holding the queue does not mean the connection is free
+    private final AtomicInteger pipelinedInFlight = new AtomicInteger();
     
     /**
      * Create ISO-8583 client with 2-byte length header (default)
@@ -33,52 +75,467 @@ public class IsoClient {
             throw new IllegalArgumentException("Length header size must be 2 or 4 bytes.");
         }
         
+        this.config = config;
+
         // Create appropriate engine based on connection mode
+        this.engine = createEngine(config, lengthHeaderSize, byteOrder);
+        
+        // Initialize engine
+        this.runtimeSettings = new RuntimeSettings(config);
+        this.engine.setRuntimeSettings(runtimeSettings);
+        this.engine.initialize(config, null); // StateListener will be set later
+        this.engine.setCancelled(cancelled);
+
+        this.messageInspector = config.getMessageInspector();
+        this.transactionStats = config.getTransactionStats() != null
+            ? config.getTransactionStats() : new TransactionStats();
+        this.circuitBreaker = config.getCircuitBreakerConfig() != null
+            ? CircuitBreakerRegistry.get(config.getHost(), config.getPort(), config.getCircuitBreakerConfig()) : null;
+        this.retryBudget = config.getRetryBudgetConfig() != null
+            ? RetryBudgetRegistry.get(config.getHost(), config.getPort(), config.getRetryBudgetConfig()) : null;
+        this.concurrencyLimiter = config.getConcurrencyLimitConfig() != null
+            ? ConcurrencyLimiterRegistry.get(config.getHost(), config.getPort(), config.getConcurrencyLimitConfig()) : null;
+        this.rateLimiter = config.getRateLimitConfig() != null
+            ? RateLimiterRegistry.get(config.getHost(), config.getPort(), config.getRateLimitConfig()) : null;
+        this.exchangeQueue = new ExchangeQueue(config.getPriorityLanesConfig());
+        this.priorityClassifier = config.getPriorityLanesConfig().getClassifier();
+
+        if (config.getHedgeConfig() != null) {
+            ConnectionEngine spare = createEngine(config, lengthHeaderSize, byteOrder);
+            spare.setRuntimeSettings(runtimeSettings);
+            spare.initialize(config, null);
+            spare.setCancelled(cancelled);
+            this.hedger = new Hedger(config.getHedgeConfig(), spare, new Runnable() {
+                @Override
+                public void run() {
+                    dropConnection();
+                }
+            }, latencyHistogram, config.getHost() + ":" + config.getPort());
+        } else {
+            this.hedger = null;
+        }
+        this.pipelined = config.isFullDuplex() && config.getConnectionMode() == ConnectionMode.BLOCKING
+            && !config.isAutoCloseAfterResponse() && hedger == null;
+
+        if (config.getKeepAliveEchoConfig() != null && !config.isAutoCloseAfterResponse()) {
+            this.keepAliveTask = new KeepAliveTask(this, config.getKeepAliveEchoConfig());
+            this.keepAliveTask.start();
+        } else {
+            this.keepAliveTask = null;
+        }
+    }
+
+    private static ConnectionEngine createEngine(IsoConfig config, int lengthHeaderSize, ByteOrder byteOrder) {
         switch (config.getConnectionMode()) {
             case BLOCKING:
-                this.engine = new BlockingEngine(lengthHeaderSize, byteOrder);
-                break;
+                return new BlockingEngine(lengthHeaderSize, byteOrder);
             case NON_BLOCKING:
-                this.engine = new NonBlockingEngine(lengthHeaderSize, byteOrder);
-                break;
+                return new NonBlockingEngine(lengthHeaderSize, byteOrder);
             default:
                 throw new IllegalArgumentException("Unsupported connection mode: " + config.getConnectionMode());
         }
-        
-        // Initialize engine
-        this.engine.initialize(config, null); // StateListener will be set later
-        this.engine.setCancelled(cancelled);
     }
 
     /**
      * Connect to ISO server
      */
     public void connect() throws IOException {
-        engine.connect();
+        connect(Deadline.none());
     }
 
     /**
-     * Send ISO message and receive response
+     * Connect to ISO server, giving up once the deadline passes: the connect timeout
+     * is cut to the time left and no retry starts whose backoff would outlast it
+     * @throws DeadlineExceededException if the deadline passes first
+     */
+    public void connect(Deadline deadline) throws IOException {
+        connectionDropped = false;
+        engine.connect(deadline);
+        lastActivityNanos = System.nanoTime();
+        if (keepAliveTask != null) {
+            keepAliveTask.start(); // again after a close()
+        }
+    }
+
+    /**
+     * Send ISO message and receive response.
+     * Idempotent requests are retried as repeats when {@link RetryConfig.Builder#transactionRetries(int)} is set.
      */
     public IsoResponse sendAndReceive(byte[] message) throws IOException {
-        return engine.sendAndReceive(message);
+        return sendAndReceive(message, Deadline.none());
+    }
+
+    /**
+     * Send ISO message and receive response, all within one deadline. Waiting for a
+     * rate limit token, an in-flight slot and the connection, reconnecting (DNS, connect
+     * and its retries), the write, the read and transaction retries each get the time
+     * left instead of their configured timeouts, and no retry starts once its backoff
+     * would outlast the deadline. A lookup through the system resolver and a blocking
+     * mode write cannot be interrupted, so the deadline is checked before them.
+     * @throws DeadlineExceededException if the deadline passes first
+     */
+    public IsoResponse sendAndReceive(byte[] message, Deadline deadline) throws IOException {
+        int mti = messageInspector.getMti(message);
+        if (rateLimiter != null) {
+            rateLimiter.acquire(message, deadline); // before any slot is held, so a smoothed wait blocks nobody else
+        }
+        InFlightLimiter limiter = runtimeSettings.getInFlightLimiter();
+        limiter.acquire(Math.min(runtimeSettings.getReadTimeoutMs(), deadline.remainingMillis()));
+        if (retryBudget != null) {
+            retryBudget.deposit();
+        }
+        try {
+            if (concurrencyLimiter != null) {
+                return sendLimited(message, mti, deadline);
+            }
+            return send(message, mti, deadline);
+        } finally {
+            limiter.release();
+        }
+    }
+
+    private IsoResponse send(byte[] message, int mti, Deadline deadline) throws IOException {
+        RetryConfig retryConfig = config.getRetryConfig();
+        if (retryConfig.getTransactionRetries() > 0 && retryConfig.isIdempotent(mti)) {
+            return exchangeWithRetry(message, mti, retryConfig, deadline);
+        }
+        return exchange(message, mti, deadline);
+    }
+
+    /**
+     * Send under the endpoint's adaptive concurrency limit, feeding the response time back into it
+     */
+    private IsoResponse sendLimited(byte[] message, int mti, Deadline deadline) throws IOException {
+        int inFlightAtStart = concurrencyLimiter.acquire(deadline);
+        long startNanos = System.nanoTime();
+        IsoResponse response;
+        try {
+            response = send(message, mti, deadline);
+        } catch (SocketTimeoutException e) {
+            concurrencyLimiter.onDropped();
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            concurrencyLimiter.onIgnore();
+            throw e;
+        }
+        concurrencyLimiter.onSuccess(System.nanoTime() - startNanos, inFlightAtStart);
+        return response;
+    }
+
+    private IsoResponse exchange(byte[] message, int mti, Deadline deadline) throws IOException {
+        if (hedger != null && config.getHedgeConfig().isHedged(mti)) {
+            return exchangeHedged(message, mti, deadline);
+        }
+        if (pipelined) {
+            return exchangePipelined(message, mti, deadline);
+        }
+        IsoResponse response;
+        long startNanos = System.nanoTime();
+        awaitConnection(message, mti, deadline);
+        try {
+            reconnectIfDropped(deadline);
+            response = engine.sendAndReceive(message, deadline);
+        } catch (IOException | RuntimeException e) {
+            recordFailure(mti, message, e);
+            throw e;
+        } finally {
+            lastActivityNanos = System.nanoTime();
+            exchangeQueue.release();
+        }
+        recordResponse(mti, message, response, startNanos);
+        return response;
+    }
+
+    /**
+     * Exchange with a hedge armed on the spare connection; the first response wins
+     */
+    private IsoResponse exchangeHedged(byte[] message, int mti, Deadline deadline) throws IOException {
+        long startNanos = System.nanoTime();
+        awaitConnection(message, mti, deadline);
+        Hedger.Race race = hedger.start(message, deadline);
+        IsoResponse response;
+        try {
+            reconnectIfDropped(deadline);
+            response = engine.sendAndReceive(message, deadline);
+            IsoResponse earlier = race.primaryAnswered();
+            if (earlier != null) {
+                response = earlier;
+            }
+        } catch (IOException | RuntimeException e) {
+            // Also the path when a winning hedge closed this connection under the read
+            response = race.primaryFailed(Math.min(runtimeSettings.getReadTimeoutMs(), deadline.remainingMillis()));
+            if (response == null) {
+                recordFailure(mti, message, e);
+                throw e;
+            }
+        } finally {
+            lastActivityNanos = System.nanoTime();
+            exchangeQueue.release();
+        }
+        recordResponse(mti, message, response, startNanos);
+        return response;
+    }
+
+    /**
+     * Exchange on a full-duplex connection alongside other threads. Nothing waits for the
+     * connection: the engine queues the write and matches the response by MTI and STAN.
+     */
+    private IsoResponse exchangePipelined(byte[] message, int mti, Deadline deadline) throws IOException {
+        IsoResponse response;
+        long startNanos = System.nanoTime();
+        pipelinedInFlight.incrementAndGet();
+        lastActivityNanos = startNanos; // a long exchange must not make the connection look idle
+        try {
+            if (connectionDropped || engine.isPeerClosed()) {
+                // Connects are serialized in the engine; threads behind the first find it replaced
+                engine.connect(deadline);
+                connectionDropped = false;
+            }
+            response = engine.sendAndReceive(message, deadline);
+        } catch (IOException | RuntimeException e) {
+            recordFailure(mti, message, e);
+            throw e;
+        } finally {
+            lastActivityNanos = System.nanoTime();
+            pipelinedInFlight.decrementAndGet();
+        }
+        recordResponse(mti, message, response, startNanos);
+        return response;
+    }
+
+    /**
+     * Wait in the request's priority lane until the connection is free
+     */
+    private void awaitConnection(byte[] message, int mti, Deadline deadline) throws IOException {
+        if (!exchangeQueue.acquire(priorityClassifier.classify(message, mti), deadline)) {
+            DeadlineExceededException e = new DeadlineExceededException("connection wait");
+            recordFailure(mti, message, e);
+            throw e;
+        }
+    }
+
+    private void reconnectIfDropped(Deadline deadline) throws IOException {
+        if (connectionDropped || engine.isPeerClosed()) {
+            // The server dropped the idle connection or a hedge replaced it; reconnect now rather than time out on it
+            connectionDropped = false;
+            engine.close();
+            engine.connect(deadline);
+        }
+    }
+
+    /**
+     * Close the connection under a read that a hedge already answered
+     */
+    private void dropConnection() {
+        if (!config.isAutoCloseAfterResponse()) {
+            connectionDropped = true;
+        }
+        engine.close();
+    }
+
+    private void recordResponse(int mti, byte[] message, IsoResponse response, long startNanos) {
+        latencyHistogram.recordNanos(System.nanoTime() - startNanos);
+        byte[] data = response.getData();
+        transactionStats.recordResponse(mti, messageInspector.getResponseCode(data), message.length, data.length);
+    }
+
+    private void recordFailure(int mti, byte[] message, Exception e) {
+        if (e instanceof SocketTimeoutException) {
+            transactionStats.recordTimeout(mti, message.length);
+        } else {
+            transactionStats.recordError(mti, message.length);
+        }
+    }
+
+    private IsoResponse exchangeWithRetry(byte[] message, int mti, RetryConfig retryConfig, Deadline deadline)
+            throws IOException {
+        int maxAttempts = retryConfig.getTransactionRetries() + 1;
+        int generation = cancelGeneration.get();
+        long startNanos = System.nanoTime();
+        if (retryConfig.getTransactionDeadlineMs() > 0) {
+            deadline = deadline.min(Deadline.after(retryConfig.getTransactionDeadlineMs(), TimeUnit.MILLISECONDS));
+        }
+        RetryCallback callback = retryCallback;
+        byte[] request = message;
+        int requestMti = mti;
+        long previousDelay = 0;
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                if (attempt > 1 && cancelGeneration.get() != generation) {
+                    // Cancelled after the backoff ended; the engine would start the repeat uncancelled
+                    throw new OperationCancelledException("transaction retry");
+                }
+                IsoResponse response = exchange(request, requestMti, deadline);
+                if (callback != null) {
+                    callback.onSuccess("send", attempt, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+                }
+                return response;
+            } catch (IOException e) {
+                long delay = retryConfig.nextDelay(attempt, previousDelay);
+                boolean willRetry = attempt < maxAttempts
+                    && retryConfig.shouldRetryTransaction(e)
+                    && cancelGeneration.get() == generation
+                    && delay < deadline.remainingMillis()
+                    && (retryBudget == null || retryBudget.tryWithdraw());
+                if (callback != null) {
+                    callback.onAttemptFailed("send", attempt, maxAttempts, e, willRetry);
+                }
+                if (!willRetry) {
+                    if (callback != null) {
+                        callback.onAllAttemptsFailed("send", attempt, e);
+                    }
+                    if (cancelGeneration.get() != generation && !(e instanceof OperationCancelledException)) {
+                        // Cancelled before the attempt's engine operation had started, so it failed plainly
+                        OperationCancelledException cancelled = new OperationCancelledException("transaction retry");
+                        cancelled.initCause(e);
+                        throw cancelled;
+                    }
+                    throw e;
+                }
+
+                // Replace the connection so a late response cannot be read as the reply to the repeat.
+                // Left to the next exchange, which does it holding the connection, so exchanges of
+                // other threads are never cut off; a full-duplex connection is only replaced if it failed,
+                // since its reader matches each response to its request.
+                connectionDropped = true;
+                if (callback != null) {
+                    callback.onRetryAttempt("send", attempt + 1, maxAttempts, delay);
+                }
+                if (delay > 0 && !awaitRetry(delay, generation)) {
+                    OperationCancelledException cancelled = new OperationCancelledException("transaction retry delay");
+                    cancelled.initCause(e);
+                    throw cancelled;
+                }
+                previousDelay = delay;
+
+                if (request == message) {
+                    int repeatMti = IsoCodes.repeatMti(mti);
+                    byte[] repeat = messageInspector.withMti(message, repeatMti);
+                    if (repeat != null) {
+                        request = repeat;
+                        requestMti = repeatMti;
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean awaitRetry(long delayMs, int generation) throws IOException {
+        RetryWait retryWait = new RetryWait(delayMs);
+        pendingRetry = retryWait;
+        try {
+            if (cancelGeneration.get() != generation) {
+                retryWait.abort(); // cancelled while the wait was being set up
+            }
+            return retryWait.await();
+        } finally {
+            pendingRetry = null;
+        }
+    }
+
+    private void abortRetry() {
+        cancelGeneration.incrementAndGet();
+        RetryWait retryWait = pendingRetry;
+        if (retryWait != null) {
+            retryWait.abort();
+        }
     }
 
     /**
-     * Cancel any ongoing operations
+     * Cancel the connect or exchange in progress and close the connection. It is woken
+     * at once, without waiting for any lock, and fails with {@link OperationCancelledException}.
+     * The client stays usable: the next call starts uncancelled and reconnects.
      */
     public void cancel() {
         cancelled.set(true);
+        abortRetry();
+        if (!config.isAutoCloseAfterResponse()) {
+            connectionDropped = true;
+        }
         engine.cancel();
+        if (hedger != null) {
+            hedger.close();
+        }
     }
 
     /**
      * Close connection
      */
     public void close() {
+        abortRetry();
+        if (keepAliveTask != null) {
+            keepAliveTask.stop();
+        }
+        if (hedger != null) {
+            hedger.close();
+        }
         engine.close();
     }
 
+    // ========== KEEP-ALIVE ==========
+
+    /**
+     * Milliseconds since the last exchange or connect
+     */
+    long idleMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastActivityNanos);
+    }
+
+    /**
+     * Send a keep-alive echo if the connection is still idle and free
+     * @return Response, or null if a transaction got there first
+     */
+    IsoResponse sendKeepAlive(byte[] message, long idleIntervalMs) throws IOException {
+        if (!exchangeQueue.tryAcquire()) {
+            return null;
+        }
+        try {
+            if (idleMillis() < idleIntervalMs || !engine.isConnected() || pipelinedInFlight.get() > 0) {
+                return null;
+            }
+            try {
+                return engine.sendAndReceive(message);
+            } finally {
+                lastActivityNanos = System.nanoTime();
+            }
+        } finally {
+            exchangeQueue.release();
+        }
+    }
+
+    /**
+     * Replace a connection whose echo failed
+     * @param waitMs Longest wait for the connection, so a stuck exchange cannot hold a pool thread
+     * @return true once connected again, or once pipelined exchanges took the connection over;
+     * they find out soon enough whether it still works, and closing it would fail them all.
+     * False if the connection stayed busy; the caller tries again later.
+     */
+    boolean reconnectForKeepAlive(long waitMs) throws IOException {
+        if (pipelinedInFlight.get() > 0) {
+            return true;
+        }
+        if (!exchangeQueue.acquire(RequestPriority.LOW, Deadline.after(waitMs, TimeUnit.MILLISECONDS))) {
+            return false;
+        }
+        try {
+            engine.close();
+            engine.connect();
+            lastActivityNanos = System.nanoTime();
+            return true;
+        } finally {
+            exchangeQueue.release();
+        }
+    }
+
+    ConnectionStateListener getStateListener() {
+        return stateListener;
+    }
+
+    MessageInspector getMessageInspector() {
+        return messageInspector;
+    }
+
     /**
      * Check if connected
      */
@@ -127,6 +584,85 @@ public class IsoClient {
         return engine.getEngineType();
     }
 
+    /**
+     * Get per-MTI and per-response-code transaction counters
+     */
+    public TransactionStats getTransactionStats() {
+        return transactionStats;
+    }
+
+    /**
+     * Get latency distribution of successful transactions
+     */
+    public LatencyHistogram getLatencyHistogram() {
+        return latencyHistogram;
+    }
+
+    /**
+     * Get the circuit breaker shared with other clients of this endpoint, or null if not configured.
+     * With an endpoint group this is the breaker of the first endpoint; see {@link CircuitBreakerRegistry} for the others.
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Get the retry budget shared with other clients of this endpoint, or null if not configured
+     */
+    public RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    /**
+     * Get the adaptive concurrency limiter shared with other clients of this endpoint, or null if not configured
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * Get the TPS limiter shared with other clients of this endpoint, or null if not configured
+     */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Hedges sent on the spare connection since the client was created
+     */
+    public long getHedgesSent() {
+        return hedger != null ? hedger.getSent() : 0;
+    }
+
+    /**
+     * Hedges that answered before the original request
+     */
+    public long getHedgesWon() {
+        return hedger != null ? hedger.getWon() : 0;
+    }
+
+    /**
+     * Get depth, throughput and wait times of the priority lanes in front of the connection
+     */
+    public List<LaneStats> getLaneStats() {
+        return exchangeQueue.getStats();
+    }
+
+    /**
+     * Get health scores, latency and load of every configured endpoint
+     */
+    public List<EndpointHealth> getEndpointHealth() {
+        return config.getEndpointGroup().getHealth();
+    }
+
+    /**
+     * Get settings that can be tuned while the client is running
+     * (read timeout, max in-flight, hot path logs)
+     */
+    public RuntimeSettings getRuntimeSettings() {
+        return runtimeSettings;
+    }
+
     // ========== STATUS CHECKING METHODS ==========
 
     /**
@@ -0,0 +1,123 @@
+package com.miaad.iso8583TCPSocket;
+
+/**
+ * Helpers for converting MTIs and response codes to compact integers and back
+ */
+public final class IsoCodes {
+
+    /** Number of distinct packed response codes ([0-9A-Z] x [0-9A-Z]) */
+    public static final int RESPONSE_CODE_SPACE = 36 * 36;
+
+    private IsoCodes() {
+    }
+
+    /**
+     * Format an MTI as the usual four-digit string (200 -> "0200")
+     */
+    public static String formatMti(int mti) {
+        if (mti < 0 || mti > 9999) {
+            return "unknown";
+        }
+        char[] chars = new char[4];
+        for (int i = 3; i >= 0; i--) {
+            chars[i] = (char) ('0' + mti % 10);
+            mti /= 10;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Parse a four-digit MTI string ("0200" -> 200)
+     * @return MTI, or -1 if the string is not four decimal digits
+     */
+    public static int parseMti(String mti) {
+        if (mti == null || mti.length() != 4) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            char c = mti.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Get the repeat form of a request MTI (0100 -> 0101, 0220 -> 0221, 0400 -> 0401).
+     * The last MTI digit is the message origin; even origins have an odd repeat.
+     * @return Repeat MTI, or the MTI unchanged if it is already a repeat or invalid
+     */
+    public static int repeatMti(int mti) {
+        if (mti < 0 || mti > 9999 || (mti % 10) % 2 != 0 || mti % 10 > 4) {
+            return mti;
+        }
+        return mti + 1;
+    }
+
+    /**
+     * Get the MTI of the response to a request (0100 -> 0110, 0201 -> 0210, 0420 -> 0430).
+     * The third digit is the message function; a response's is one above its request's.
+     * A repeat is answered like the original, so the repeat bit of the origin is dropped.
+     * @return Response MTI, or -1 if the MTI is invalid or already a response
+     */
+    public static int responseMti(int mti) {
+        if (mti < 0 || mti > 9999) {
+            return -1;
+        }
+        int function = (mti / 10) % 10;
+        if (function % 2 != 0) {
+            return -1;
+        }
+        int origin = mti % 10;
+        if (origin <= 5 && origin % 2 != 0) {
+            origin--;
+        }
+        return mti - mti % 100 + (function + 1) * 10 + origin;
+    }
+
+    /**
+     * Pack a two-character response code into an int in [0, {@link #RESPONSE_CODE_SPACE})
+     * @return Packed code, or -1 if the code is not two alphanumeric characters
+     */
+    public static int packResponseCode(String code) {
+        if (code == null || code.length() != 2) {
+            return -1;
+        }
+        return packResponseCode(code.charAt(0), code.charAt(1));
+    }
+
+    /**
+     * Pack two response code characters (digits or letters, case-insensitive)
+     * @return Packed code, or -1 if either character is not alphanumeric
+     */
+    public static int packResponseCode(int c1, int c2) {
+        int hi = codeDigit(c1);
+        int lo = codeDigit(c2);
+        if (hi < 0 || lo < 0) {
+            return -1;
+        }
+        return hi * 36 + lo;
+    }
+
+    /**
+     * Convert a packed response code back to its two-character form
+     */
+    public static String responseCodeToString(int packed) {
+        if (packed < 0 || packed >= RESPONSE_CODE_SPACE) {
+            return "unknown";
+        }
+        return new String(new char[] { codeChar(packed / 36), codeChar(packed % 36) });
+    }
+
+    private static int codeDigit(int c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'A' && c <= 'Z') return c - 'A' + 10;
+        if (c >= 'a' && c <= 'z') return c - 'a' + 10;
+        return -1;
+    }
+
+    private static char codeChar(int digit) {
+        return (char) (digit < 10 ? '0' + digit : 'A' + digit - 10);
+    }
+}
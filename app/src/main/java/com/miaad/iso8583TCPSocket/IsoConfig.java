@@ -1,5 +1,16 @@
 package com.miaad.iso8583TCPSocket;
 
+import com.miaad.iso8583TCPSocket.dns.DnsCache;
+import com.miaad.iso8583TCPSocket.endpoint.EndpointGroup;
+import com.miaad.iso8583TCPSocket.metrics.TransactionStats;
+import com.miaad.iso8583TCPSocket.resilience.CircuitBreakerConfig;
+import com.miaad.iso8583TCPSocket.resilience.ConcurrencyLimitConfig;
+import com.miaad.iso8583TCPSocket.resilience.RateLimitConfig;
+import com.miaad.iso8583TCPSocket.resilience.RetryBudgetConfig;
+import com.miaad.iso8583TCPSocket.trace.EngineProbe;
+
+import java.util.concurrent.Executor;
+
 /**
  * Simple configuration for ISO-8583 client
  */
@@ -8,6 +19,9 @@ public class IsoConfig {
     private final int port;
         private final int connectTimeoutMs;
     private final int readTimeoutMs;
+    private final int writeTimeoutMs;
+    private final int firstByteTimeoutMs;
+    private final int interByteTimeoutMs;
     private final boolean useTls;
     private final RetryConfig retryConfig;
     private final ConnectionMode connectionMode;
@@ -21,12 +35,40 @@ public class IsoConfig {
     private final int maxMessageSizeBytes;
     private final int nioSelectIntervalMs;
     private final boolean enableHotPathLogs;
+    // Message inspection and statistics
+    private final MessageInspector messageInspector;
+    private final TransactionStats transactionStats;
+    private final int maxInFlight;
+    private final EngineProbe engineProbe;
+    // Resilience
+    private final CircuitBreakerConfig circuitBreakerConfig;
+    private final RetryBudgetConfig retryBudgetConfig;
+    private final ConcurrencyLimitConfig concurrencyLimitConfig;
+    private final RateLimitConfig rateLimitConfig;
+    private final EndpointGroup endpointGroup;
+    private final DnsCache dnsCache;
+    private final boolean happyEyeballs;
+    private final int connectionAttemptDelayMs;
+    private final KeepAliveConfig keepAliveEchoConfig;
+    private final HedgeConfig hedgeConfig;
+    private final boolean livenessMonitor;
+    private final PriorityLanesConfig priorityLanesConfig;
+    private final LateResponseHandler lateResponseHandler;
+    private final long lateResponseWindowMs;
+    private final boolean fullDuplex;
+    private final UnsolicitedMessageHandler unsolicitedMessageHandler;
+    private final Executor unsolicitedExecutor;
 
     private IsoConfig(Builder builder) {
-        this.host = builder.host;
-        this.port = builder.port;
+        this.endpointGroup = builder.endpointGroup != null
+            ? builder.endpointGroup : EndpointGroup.single(builder.host, builder.port);
+        this.host = endpointGroup.get(0).getHost();
+        this.port = endpointGroup.get(0).getPort();
         this.connectTimeoutMs = builder.connectTimeoutMs;
         this.readTimeoutMs = builder.readTimeoutMs;
+        this.writeTimeoutMs = builder.writeTimeoutMs;
+        this.firstByteTimeoutMs = builder.firstByteTimeoutMs;
+        this.interByteTimeoutMs = builder.interByteTimeoutMs;
         this.useTls = builder.useTls;
         this.retryConfig = builder.retryConfig;
         this.connectionMode = builder.connectionMode;
@@ -39,12 +81,37 @@ public class IsoConfig {
         this.maxMessageSizeBytes = builder.maxMessageSizeBytes;
         this.nioSelectIntervalMs = builder.nioSelectIntervalMs;
         this.enableHotPathLogs = builder.enableHotPathLogs;
+        this.messageInspector = builder.messageInspector != null
+            ? builder.messageInspector : DefaultMessageInspector.INSTANCE;
+        this.transactionStats = builder.transactionStats;
+        this.maxInFlight = builder.maxInFlight;
+        this.engineProbe = builder.engineProbe;
+        this.circuitBreakerConfig = builder.circuitBreakerConfig;
+        this.retryBudgetConfig = builder.retryBudgetConfig;
+        this.concurrencyLimitConfig = builder.concurrencyLimitConfig;
+        this.rateLimitConfig = builder.rateLimitConfig;
+        this.dnsCache = builder.dnsCache;
+        this.happyEyeballs = builder.happyEyeballs;
+        this.connectionAttemptDelayMs = builder.connectionAttemptDelayMs;
+        this.keepAliveEchoConfig = builder.keepAliveEchoConfig;
+        this.hedgeConfig = builder.hedgeConfig;
+        this.livenessMonitor = builder.livenessMonitor;
+        this.priorityLanesConfig = builder.priorityLanesConfig != null
+            ? builder.priorityLanesConfig : PriorityLanesConfig.defaultConfig();
+        this.lateResponseHandler = builder.lateResponseHandler;
+        this.lateResponseWindowMs = builder.lateResponseWindowMs;
+        this.fullDuplex = builder.fullDuplex;
+        this.unsolicitedMessageHandler = builder.unsolicitedMessageHandler;
+        this.unsolicitedExecutor = builder.unsolicitedExecutor;
     }
     
     public String getHost() { return host; }
     public int getPort() { return port; }
     public int getConnectTimeoutMs() { return connectTimeoutMs; }
     public int getReadTimeoutMs() { return readTimeoutMs; }
+    public int getWriteTimeoutMs() { return writeTimeoutMs; }
+    public int getFirstByteTimeoutMs() { return firstByteTimeoutMs; }
+    public int getInterByteTimeoutMs() { return interByteTimeoutMs; }
     public boolean isUseTls() { return useTls; }
     public RetryConfig getRetryConfig() { return retryConfig; }
     public ConnectionMode getConnectionMode() { return connectionMode; }
@@ -57,12 +124,36 @@ public class IsoConfig {
     public int getMaxMessageSizeBytes() { return maxMessageSizeBytes; }
     public int getNioSelectIntervalMs() { return nioSelectIntervalMs; }
     public boolean isEnableHotPathLogs() { return enableHotPathLogs; }
+    public MessageInspector getMessageInspector() { return messageInspector; }
+    public TransactionStats getTransactionStats() { return transactionStats; }
+    public int getMaxInFlight() { return maxInFlight; }
+    public EngineProbe getEngineProbe() { return engineProbe; }
+    public CircuitBreakerConfig getCircuitBreakerConfig() { return circuitBreakerConfig; }
+    public RetryBudgetConfig getRetryBudgetConfig() { return retryBudgetConfig; }
+    public ConcurrencyLimitConfig getConcurrencyLimitConfig() { return concurrencyLimitConfig; }
+    public RateLimitConfig getRateLimitConfig() { return rateLimitConfig; }
+    public EndpointGroup getEndpointGroup() { return endpointGroup; }
+    public DnsCache getDnsCache() { return dnsCache; }
+    public boolean isHappyEyeballs() { return happyEyeballs; }
+    public int getConnectionAttemptDelayMs() { return connectionAttemptDelayMs; }
+    public KeepAliveConfig getKeepAliveEchoConfig() { return keepAliveEchoConfig; }
+    public HedgeConfig getHedgeConfig() { return hedgeConfig; }
+    public boolean isLivenessMonitor() { return livenessMonitor; }
+    public PriorityLanesConfig getPriorityLanesConfig() { return priorityLanesConfig; }
+    public LateResponseHandler getLateResponseHandler() { return lateResponseHandler; }
+    public long getLateResponseWindowMs() { return lateResponseWindowMs; }
+    public boolean isFullDuplex() { return fullDuplex; }
+    public UnsolicitedMessageHandler getUnsolicitedMessageHandler() { return unsolicitedMessageHandler; }
+    public Executor getUnsolicitedExecutor() { return unsolicitedExecutor; }
     
     public static class Builder {
         private String host;
         private int port;
         private int connectTimeoutMs = 30000; // Default 30 seconds
         private int readTimeoutMs = 30000;    // Default 30 seconds
+        private int writeTimeoutMs = 0;       // 0 => read timeout
+        private int firstByteTimeoutMs = 0;   // 0 => read timeout
+        private int interByteTimeoutMs = 0;   // 0 => no limit between bytes
         private boolean useTls = false;
         private RetryConfig retryConfig = RetryConfig.defaultConfig();
         private ConnectionMode connectionMode = ConnectionMode.BLOCKING; // Default to blocking
@@ -76,21 +167,80 @@ public class IsoConfig {
         private int maxMessageSizeBytes = 0; // 0 => disabled/not used
         private int nioSelectIntervalMs = 1000; // default existing behavior
         private boolean enableHotPathLogs = true; // keep printing by default
+        private MessageInspector messageInspector = DefaultMessageInspector.INSTANCE;
+        private TransactionStats transactionStats = null; // null => one instance per client
+        private int maxInFlight = 0; // 0 => unlimited
+        private EngineProbe engineProbe = null; // null => EngineProbes.getDefault()
+        private CircuitBreakerConfig circuitBreakerConfig = null; // null => no circuit breaker
+        private RetryBudgetConfig retryBudgetConfig = null; // null => retries limited by RetryConfig only
+        private ConcurrencyLimitConfig concurrencyLimitConfig = null; // null => no adaptive limit
+        private RateLimitConfig rateLimitConfig = null; // null => no TPS limit
+        private EndpointGroup endpointGroup = null; // null => single endpoint host:port
+        private DnsCache dnsCache = null; // null => system resolver on every connect
+        private boolean happyEyeballs = true;
+        private int connectionAttemptDelayMs = 250; // RFC 8305 recommendation
+        private KeepAliveConfig keepAliveEchoConfig = null; // null => no echoes
+        private HedgeConfig hedgeConfig = null; // null => no hedged requests
+        private boolean livenessMonitor = true;
+        private PriorityLanesConfig priorityLanesConfig = PriorityLanesConfig.defaultConfig();
+        private LateResponseHandler lateResponseHandler = null; // null => late responses are logged and dropped
+        private long lateResponseWindowMs = 60000; // Default 60 seconds
+        private boolean fullDuplex = false;
+        private UnsolicitedMessageHandler unsolicitedMessageHandler = null; // null => unsolicited messages are logged and dropped
+        private Executor unsolicitedExecutor = null; // null => shared daemon threads
         
         public Builder(String host, int port) {
             this.host = host;
             this.port = port;
         }
+
+        /**
+         * Connect to any endpoint of a group; host and port are taken from its first endpoint
+         */
+        public Builder(EndpointGroup endpointGroup) {
+            this(endpointGroup.get(0).getHost(), endpointGroup.get(0).getPort());
+            this.endpointGroup = endpointGroup;
+        }
         
         public Builder connectTimeout(int ms) {
             this.connectTimeoutMs = ms;
             return this;
         }
         
+        /**
+         * Time for the whole response, from the end of the write to its last byte
+         */
         public Builder readTimeout(int ms) {
             this.readTimeoutMs = ms;
             return this;
         }
+
+        /**
+         * Time to write a request while the server is not reading (NIO only; a
+         * blocking write cannot time out). Default is the read timeout.
+         */
+        public Builder writeTimeout(int ms) {
+            this.writeTimeoutMs = ms;
+            return this;
+        }
+
+        /**
+         * Time from the end of the write to the first byte of the response.
+         * Default is the read timeout.
+         */
+        public Builder firstByteTimeout(int ms) {
+            this.firstByteTimeoutMs = ms;
+            return this;
+        }
+
+        /**
+         * Longest gap between bytes once a response has started, so a server that
+         * trickles a response is cut off early. Default is none.
+         */
+        public Builder interByteTimeout(int ms) {
+            this.interByteTimeoutMs = ms;
+            return this;
+        }
         
                 public Builder useTls(boolean useTls) {
             this.useTls = useTls;
@@ -156,6 +306,218 @@ public class IsoConfig {
             return this;
         }
 
+        /**
+         * Set how MTI, STAN and response code are read from raw messages.
+         * Default (also for null) is {@link DefaultMessageInspector#INSTANCE}.
+         */
+        public Builder messageInspector(MessageInspector messageInspector) {
+            this.messageInspector = messageInspector;
+            return this;
+        }
+
+        /**
+         * Share transaction counters between clients. By default every client
+         * gets its own {@link TransactionStats}.
+         */
+        public Builder transactionStats(TransactionStats transactionStats) {
+            this.transactionStats = transactionStats;
+            return this;
+        }
+
+        /**
+         * Initial limit on concurrent sendAndReceive calls (0 = unlimited).
+         * Can be changed later through {@link RuntimeSettings#setMaxInFlight(int)}.
+         */
+        public Builder maxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * Set a probe that receives raw phase timings from the engine
+         * (e.g. a JFR or binary trace recorder). Default is the process-wide
+         * probe from {@link com.miaad.iso8583TCPSocket.trace.EngineProbes}.
+         */
+        public Builder engineProbe(EngineProbe engineProbe) {
+            this.engineProbe = engineProbe;
+            return this;
+        }
+
+        /**
+         * Share a circuit breaker with every client of the same host:port. While it is
+         * open, connect() fails fast with a CircuitBreakerOpenException. Default is none.
+         */
+        public Builder circuitBreaker(CircuitBreakerConfig circuitBreakerConfig) {
+            this.circuitBreakerConfig = circuitBreakerConfig;
+            return this;
+        }
+
+        /**
+         * Share a retry budget with every client of the same host:port, so retries
+         * (connect and transaction) add at most a fraction of the live request rate.
+         * Default is none.
+         */
+        public Builder retryBudget(RetryBudgetConfig retryBudgetConfig) {
+            this.retryBudgetConfig = retryBudgetConfig;
+            return this;
+        }
+
+        /**
+         * Share an adaptive concurrency limit with every client of the same host:port.
+         * The limit follows the server's response times; calls past it wait briefly and
+         * then fail with {@code ConcurrencyLimitExceededException}. Default is none.
+         */
+        public Builder concurrencyLimit(ConcurrencyLimitConfig concurrencyLimitConfig) {
+            this.concurrencyLimitConfig = concurrencyLimitConfig;
+            return this;
+        }
+
+        /**
+         * Cap transactions per second globally, per host:port and per request key,
+         * shared by every client of the same host:port. Requests over the rate fail
+         * with {@code RateLimitExceededException} or, with a max wait, are spaced out.
+         * Default is none.
+         */
+        public Builder rateLimit(RateLimitConfig rateLimitConfig) {
+            this.rateLimitConfig = rateLimitConfig;
+            return this;
+        }
+
+        /**
+         * Spread connections over several equivalent servers. A failed connect moves on
+         * to the next endpoint in the same attempt; circuit breakers are kept per endpoint
+         * and the retry budget is shared under the first endpoint. Replaces host and port.
+         */
+        public Builder endpoints(EndpointGroup endpointGroup) {
+            this.endpointGroup = endpointGroup;
+            return this;
+        }
+
+        /**
+         * Resolve host names through a cache with TTL, background refresh and stale
+         * fallback, e.g. {@link DnsCache#getDefault()}. Worth it when connecting per
+         * transaction. Default is the system resolver on every connect.
+         */
+        public Builder dnsCache(DnsCache dnsCache) {
+            this.dnsCache = dnsCache;
+            return this;
+        }
+
+        /**
+         * Race connects to all resolved addresses of the host (RFC 8305) instead of
+         * only trying the first one. Default is true; it only matters for hosts with
+         * several addresses.
+         */
+        public Builder happyEyeballs(boolean happyEyeballs) {
+            this.happyEyeballs = happyEyeballs;
+            return this;
+        }
+
+        /**
+         * How long a connect to one address may run before the next address is tried
+         * in parallel. Default is 250ms.
+         */
+        public Builder connectionAttemptDelay(int ms) {
+            this.connectionAttemptDelayMs = ms;
+            return this;
+        }
+
+        /**
+         * Send network management echoes on idle persistent connections and reconnect
+         * when one fails. Needs {@code autoCloseAfterResponse(false)}. Not to be confused
+         * with {@link #keepAlive(boolean)}, which sets TCP SO_KEEPALIVE. Default is none.
+         */
+        public Builder keepAliveEcho(KeepAliveConfig keepAliveConfig) {
+            this.keepAliveEchoConfig = keepAliveConfig;
+            return this;
+        }
+
+        /**
+         * Hedge slow requests of the MTIs in the config (08xx by default) on a second
+         * connection; the first response wins. Default is none.
+         */
+        public Builder hedging(HedgeConfig hedgeConfig) {
+            this.hedgeConfig = hedgeConfig;
+            return this;
+        }
+
+        /**
+         * Watch idle persistent connections for the server closing or resetting them,
+         * so the next transaction reconnects at once instead of running into a read
+         * timeout. Default is true; connections closed after each response are never watched.
+         * An idle blocking socket costs a 1ms timed read per 250ms poll, on a thread shared
+         * by all clients; past 50 of them, each is probed less often and a close is seen later.
+         */
+        public Builder livenessMonitor(boolean livenessMonitor) {
+            this.livenessMonitor = livenessMonitor;
+            return this;
+        }
+
+        /**
+         * How requests sharing the client wait for its connection. By default reversals
+         * and advices go ahead of authorizations, and those ahead of batch and echo traffic.
+         */
+        public Builder priorityLanes(PriorityLanesConfig priorityLanesConfig) {
+            this.priorityLanesConfig = priorityLanesConfig;
+            return this;
+        }
+
+        /**
+         * Receive responses that arrive on a persistent connection after their request
+         * timed out, e.g. to reverse a transaction the host approved. Default is none:
+         * late responses are only logged.
+         */
+        public Builder lateResponseHandler(LateResponseHandler lateResponseHandler) {
+            this.lateResponseHandler = lateResponseHandler;
+            return this;
+        }
+
+        /**
+         * How long a timed-out request still matches a late response by MTI and STAN.
+         * A response that matches nothing forces a reconnect. Default is 60 seconds.
+         */
+        public Builder lateResponseWindow(long ms) {
+            this.lateResponseWindowMs = ms;
+            return this;
+        }
+
+        /**
+         * Read persistent blocking connections on a dedicated thread per socket, which
+         * hands responses to the callers waiting for them by MTI and STAN and passes
+         * messages the host sends on its own to the unsolicited message handler.
+         * Threads sharing an {@link IsoClient} then exchange concurrently on the one
+         * connection instead of taking turns. Only the blocking engine with
+         * {@code autoCloseAfterResponse(false)} and no hedging does this; the NIO engine,
+         * hedged clients and the default configuration still take turns on the connection.
+         * Needs {@code autoCloseAfterResponse(false)}. Default is false: the caller's thread
+         * writes and then reads in lock-step.
+         */
+        public Builder fullDuplex(boolean fullDuplex) {
+            this.fullDuplex = fullDuplex;
+            return this;
+        }
+
+        /**
+         * Receive messages the host sends on its own, such as 0800 sign-off or 0620
+         * notices; the handler can answer on the same connection. Blocking connections
+         * need {@link #fullDuplex(boolean)}; persistent NIO connections are always read
+         * while idle. Default is none.
+         */
+        public Builder unsolicitedMessageHandler(UnsolicitedMessageHandler unsolicitedMessageHandler) {
+            this.unsolicitedMessageHandler = unsolicitedMessageHandler;
+            return this;
+        }
+
+        /**
+         * Where the unsolicited message handler runs. Default is a shared pool of
+         * daemon threads, 16 handler calls at once and 256 waiting; messages beyond
+         * that are logged and dropped.
+         */
+        public Builder unsolicitedExecutor(Executor unsolicitedExecutor) {
+            this.unsolicitedExecutor = unsolicitedExecutor;
+            return this;
+        }
+
         /**
          * Enable a recommended low-latency configuration without removing callbacks or features.
          */
@@ -0,0 +1,38 @@
+package com.miaad.iso8583TCPSocket;
+
+/**
+ * Randomization applied to retry backoff delays
+ */
+public enum JitterMode {
+    /**
+     * Plain exponential backoff
+     */
+    NONE("No jitter"),
+
+    /**
+     * Uniform between 0 and the exponential delay.
+     * Spreads out clients that failed at the same moment
+     */
+    FULL("Full jitter"),
+
+    /**
+     * Uniform between the base delay and three times the previous delay, capped at the max delay.
+     * Spreads clients out while keeping delays growing
+     */
+    DECORRELATED("Decorrelated jitter");
+
+    private final String description;
+
+    JitterMode(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
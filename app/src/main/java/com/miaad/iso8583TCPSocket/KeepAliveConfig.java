@@ -0,0 +1,101 @@
+package com.miaad.iso8583TCPSocket;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Configuration for network management echoes on idle persistent connections.
+ * <p>
+ * When a connection has been idle for the idle interval, the client sends the echo
+ * message and checks the response: MTI must be the request MTI + 10, STAN must match
+ * and the response code (if present) must be one of the accepted codes. If the echo
+ * fails, the client reconnects right away so the next transaction finds a live connection.
+ * Only used with {@code autoCloseAfterResponse(false)}.
+ */
+public class KeepAliveConfig {
+    private final EchoMessageFactory messageFactory;
+    private final long idleIntervalMs;
+    private final boolean reconnectOnFailure;
+    private final Set<Integer> acceptedResponseCodes;
+
+    private KeepAliveConfig(Builder builder) {
+        this.messageFactory = builder.messageFactory;
+        this.idleIntervalMs = builder.idleIntervalMs;
+        this.reconnectOnFailure = builder.reconnectOnFailure;
+        this.acceptedResponseCodes = new HashSet<>(builder.acceptedResponseCodes);
+    }
+
+    public EchoMessageFactory getMessageFactory() { return messageFactory; }
+    public long getIdleIntervalMs() { return idleIntervalMs; }
+    public boolean isReconnectOnFailure() { return reconnectOnFailure; }
+
+    /**
+     * Check an echo response against its request
+     * @return null if valid, otherwise the reason
+     */
+    public String validate(byte[] request, byte[] response, MessageInspector inspector) {
+        int requestMti = inspector.getMti(request);
+        int responseMti = inspector.getMti(response);
+        if (requestMti >= 0 && responseMti != requestMti + 10) {
+            return "Unexpected response MTI " + IsoCodes.formatMti(responseMti);
+        }
+        int requestStan = inspector.getStan(request);
+        if (requestStan >= 0 && inspector.getStan(response) != requestStan) {
+            return "STAN mismatch";
+        }
+        int code = inspector.getResponseCode(response);
+        if (code >= 0 && !acceptedResponseCodes.contains(code)) {
+            return "Response code " + IsoCodes.responseCodeToString(code);
+        }
+        return null;
+    }
+
+    public static class Builder {
+        private final EchoMessageFactory messageFactory;
+        private long idleIntervalMs = 60000; // 1 minute
+        private boolean reconnectOnFailure = true;
+        private final Set<Integer> acceptedResponseCodes = new HashSet<>();
+
+        public Builder(EchoMessageFactory messageFactory) {
+            this.messageFactory = messageFactory;
+            acceptedResponseCodes.add(IsoCodes.packResponseCode("00"));
+        }
+
+        /**
+         * Send an echo after the connection has been idle this long
+         */
+        public Builder idleInterval(long ms) {
+            this.idleIntervalMs = ms;
+            return this;
+        }
+
+        /**
+         * Close and reconnect when an echo fails or is rejected (default true)
+         */
+        public Builder reconnectOnFailure(boolean reconnect) {
+            this.reconnectOnFailure = reconnect;
+            return this;
+        }
+
+        /**
+         * Field 39 values that count as a good echo response (default "00")
+         */
+        public Builder acceptedResponseCodes(String... codes) {
+            acceptedResponseCodes.clear();
+            for (String code : codes) {
+                acceptedResponseCodes.add(IsoCodes.packResponseCode(code));
+            }
+            return this;
+        }
+
+        public KeepAliveConfig build() {
+            if (messageFactory == null) {
+                throw new IllegalArgumentException("messageFactory must not be null");
+            }
+            if (idleIntervalMs <= 0) {
+                throw new IllegalArgumentException("idleInterval must be positive");
+            }
+            return new KeepAliveConfig(this);
+        }
+    }
+}
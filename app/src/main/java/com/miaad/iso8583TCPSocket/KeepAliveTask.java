@@ -0,0 +1,148 @@
+package com.miaad.iso8583TCPSocket;
+
+import com.miaad.iso8583TCPSocket.engine.DaemonExecutors;
+import com.miaad.iso8583TCPSocket.timer.HashedWheelTimer;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Idle check of one client, driven by the shared timer. The check itself is cheap
+ * and runs on the timer thread; echoes and reconnects do I/O and run on a shared
+ * daemon pool. Closing the client stops the schedule and connecting starts it
+ * again; only a weak reference to the client is held, so an abandoned client
+ * stops its own schedule too.
+ */
+final class KeepAliveTask implements Runnable {
+
+    private static final Executor EXECUTOR = DaemonExecutors.cached("iso-keepalive");
+
+    private final WeakReference<IsoClient> clientRef;
+    private final KeepAliveConfig config;
+    private final AtomicInteger stan = new AtomicInteger();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean reconnectPending;
+    private HashedWheelTimer.Timeout timeout; // guarded by this
+
+    KeepAliveTask(IsoClient client, KeepAliveConfig config) {
+        this.clientRef = new WeakReference<>(client);
+        this.config = config;
+    }
+
+    /**
+     * Start the idle checks, unless they are running already
+     */
+    void start() {
+        if (running.compareAndSet(false, true)) {
+            schedule(config.getIdleIntervalMs());
+        }
+    }
+
+    /**
+     * The application closed the connection on purpose: stop the checks and do not bring it back
+     */
+    void stop() {
+        running.set(false);
+        reconnectPending = false;
+        synchronized (this) {
+            if (timeout != null) {
+                timeout.cancel();
+                timeout = null;
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        final IsoClient client = clientRef.get();
+        if (client == null || !running.get()) {
+            return;
+        }
+        if (reconnectPending) {
+            EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    reconnect(client);
+                }
+            });
+            return;
+        }
+        long idleMs = client.idleMillis();
+        if (!client.isConnected() || idleMs < config.getIdleIntervalMs()) {
+            schedule(client.isConnected() ? config.getIdleIntervalMs() - idleMs : config.getIdleIntervalMs());
+            return;
+        }
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                echo(client);
+            }
+        });
+    }
+
+    private void echo(IsoClient client) {
+        boolean reconnect = false;
+        try {
+            byte[] request = config.getMessageFactory().createEcho(stan.getAndIncrement() % 999999 + 1);
+            long start = System.currentTimeMillis();
+            String failure;
+            try {
+                IsoResponse response = client.sendKeepAlive(request, config.getIdleIntervalMs());
+                if (response == null) {
+                    return; // not idle any more
+                }
+                failure = config.validate(request, response.getData(), client.getMessageInspector());
+            } catch (Exception e) {
+                failure = e.getClass().getSimpleName() + ": " + e.getMessage();
+            }
+            long elapsed = System.currentTimeMillis() - start;
+            ConnectionStateListener listener = client.getStateListener();
+            if (listener != null) {
+                listener.onKeepAliveEcho(failure == null, elapsed, failure != null ? failure : "Echo OK");
+            }
+            if (failure != null && config.isReconnectOnFailure()) {
+                reconnectPending = true;
+                reconnect = true;
+            }
+        } finally {
+            if (reconnect) {
+                reconnect(client);
+            } else {
+                schedule(config.getIdleIntervalMs());
+            }
+        }
+    }
+
+    private void reconnect(IsoClient client) {
+        try {
+            if (reconnectPending && client.reconnectForKeepAlive(config.getIdleIntervalMs())) {
+                reconnectPending = false;
+            }
+        } catch (Exception e) {
+            ConnectionStateListener listener = client.getStateListener();
+            if (listener != null) {
+                listener.onLog("WARN", "Keep-alive reconnect failed: " + e.getMessage(), "Retrying in "
+                    + config.getIdleIntervalMs() + "ms");
+            }
+        } finally {
+            schedule(config.getIdleIntervalMs());
+        }
+    }
+
+    /**
+     * Schedule the next check in place of any pending one, so a stop and start while an
+     * echo runs still leaves a single schedule
+     */
+    private synchronized void schedule(long delayMs) {
+        if (!running.get()) {
+            return;
+        }
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        timeout = HashedWheelTimer.shared().schedule(this, Math.max(1, delayMs), TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,59 @@
+package com.miaad.iso8583TCPSocket;
+
+/**
+ * Point-in-time counters of one priority lane of a client
+ */
+public final class LaneStats {
+    private final RequestPriority priority;
+    private final int depth;
+    private final long served;
+    private final long queued;
+    private final long expired;
+    private final double waitP50Ms;
+    private final double waitP99Ms;
+    private final double maxWaitMs;
+
+    LaneStats(RequestPriority priority, int depth, long served, long queued, long expired,
+              double waitP50Ms, double waitP99Ms, double maxWaitMs) {
+        this.priority = priority;
+        this.depth = depth;
+        this.served = served;
+        this.queued = queued;
+        this.expired = expired;
+        this.waitP50Ms = waitP50Ms;
+        this.waitP99Ms = waitP99Ms;
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    public RequestPriority getPriority() { return priority; }
+
+    /**
+     * Requests waiting in the lane now
+     */
+    public int getDepth() { return depth; }
+
+    /**
+     * Requests that got the connection, with or without waiting
+     */
+    public long getServed() { return served; }
+
+    /**
+     * Requests that found the connection busy and had to wait
+     */
+    public long getQueued() { return queued; }
+
+    /**
+     * Requests whose {@link Deadline} passed before they got the connection
+     */
+    public long getExpired() { return expired; }
+
+    public double getWaitP50Ms() { return waitP50Ms; }
+    public double getWaitP99Ms() { return waitP99Ms; }
+    public double getMaxWaitMs() { return maxWaitMs; }
+
+    @Override
+    public String toString() {
+        return String.format("%s: depth=%d, served=%d, queued=%d, expired=%d, wait p50=%.2fms p99=%.2fms max=%.2fms",
+            priority, depth, served, queued, expired, waitP50Ms, waitP99Ms, maxWaitMs);
+    }
+}
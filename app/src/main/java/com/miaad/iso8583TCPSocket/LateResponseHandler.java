@@ -0,0 +1,19 @@
+package com.miaad.iso8583TCPSocket;
+
+/**
+ * Receives a response that arrived on a persistent connection after its request had
+ * already failed with a timeout. The host may have approved the transaction, so this
+ * is where a reversal is usually sent.
+ * <p>
+ * Runs on a shared background thread, never on the thread of the exchange that read
+ * the response, so it may send through the same client.
+ */
+public interface LateResponseHandler {
+
+    /**
+     * @param request Request that timed out (without length header)
+     * @param response Its response (without length header)
+     * @param lateMs Milliseconds from the request timing out to its response being read
+     */
+    void onLateResponse(byte[] request, byte[] response, long lateMs);
+}
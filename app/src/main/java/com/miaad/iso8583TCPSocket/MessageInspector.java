@@ -0,0 +1,42 @@
+package com.miaad.iso8583TCPSocket;
+
+/**
+ * Extracts well-known fields from raw ISO-8583 messages.
+ * The client itself is format-agnostic, so features that need an MTI, STAN or
+ * response code (statistics, retries, response matching) go through this interface.
+ */
+public interface MessageInspector {
+
+    /**
+     * Get the message type indicator
+     * @param message Raw message (without length header)
+     * @return MTI as a number (e.g. 200 for "0200"), or -1 if it cannot be parsed
+     */
+    int getMti(byte[] message);
+
+    /**
+     * Get the system trace audit number (field 11)
+     * @param message Raw message (without length header)
+     * @return STAN, or -1 if absent or unparsable
+     */
+    int getStan(byte[] message);
+
+    /**
+     * Get the response code (field 39)
+     * @param message Raw message (without length header)
+     * @return Response code packed with {@link IsoCodes#packResponseCode(String)}, or -1
+     */
+    int getResponseCode(byte[] message);
+
+    /**
+     * Copy a message with a different MTI, used to resend a request as a repeat (e.g. 0100 -> 0101).
+     * The default implementation does not know the layout and returns null, in which case
+     * the original message is resent unchanged.
+     * @param message Raw message (without length header)
+     * @param mti New MTI as a number
+     * @return New message, or null if the MTI cannot be rewritten
+     */
+    default byte[] withMti(byte[] message, int mti) {
+        return null;
+    }
+}
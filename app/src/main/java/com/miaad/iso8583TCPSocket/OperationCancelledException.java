@@ -0,0 +1,27 @@
+package com.miaad.iso8583TCPSocket;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Thrown by a connect or exchange that was cancelled by {@link IsoClient#cancel()} or
+ * cut off by a close. It is never retried. The next operation on the client starts
+ * uncancelled.
+ */
+public class OperationCancelledException extends InterruptedIOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String phase;
+
+    public OperationCancelledException(String phase) {
+        super("Operation cancelled during " + phase);
+        this.phase = phase;
+    }
+
+    /**
+     * Phase that was running when the operation was cancelled
+     */
+    public String getPhase() {
+        return phase;
+    }
+}
@@ -0,0 +1,41 @@
+package com.miaad.iso8583TCPSocket;
+
+/**
+ * Chooses the priority lane of a request
+ */
+public interface PriorityClassifier {
+
+    /**
+     * Classify by message class and function of the MTI: reversals (04xx) and advices
+     * (x12x, x22x) are HIGH; file actions (03xx, including batch uploads), reconciliation
+     * (05xx), administrative (06xx) and network management (08xx) messages are LOW;
+     * everything else is NORMAL.
+     */
+    PriorityClassifier BY_MTI = new PriorityClassifier() {
+        @Override
+        public RequestPriority classify(byte[] message, int mti) {
+            if (mti < 0) {
+                return RequestPriority.NORMAL;
+            }
+            int messageClass = (mti / 100) % 10;
+            int function = (mti / 10) % 10;
+            switch (messageClass) {
+                case 4:
+                    return RequestPriority.HIGH;
+                case 3:
+                case 5:
+                case 6:
+                case 8:
+                    return RequestPriority.LOW;
+                default:
+                    return function == 2 ? RequestPriority.HIGH : RequestPriority.NORMAL;
+            }
+        }
+    };
+
+    /**
+     * @param message Raw message (without length header)
+     * @param mti MTI from the client's {@link MessageInspector}, or -1 if it could not be parsed
+     */
+    RequestPriority classify(byte[] message, int mti);
+}
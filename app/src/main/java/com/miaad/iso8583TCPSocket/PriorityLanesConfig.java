@@ -0,0 +1,70 @@
+package com.miaad.iso8583TCPSocket;
+
+/**
+ * Configuration for the priority lanes in front of a client's connection.
+ * <p>
+ * A connection carries one exchange at a time. Requests that find it busy wait in
+ * the lane of their {@link RequestPriority}, and each time the connection frees up
+ * the next request is picked by weighted round robin over the lanes that have
+ * waiters, so a lane with weight 8 gets eight turns for every one of a lane with
+ * weight 1. A lane's weight grows with the wait of its oldest request, by its base
+ * weight again for every aging period, so bulk traffic is slowed but never starved.
+ */
+public class PriorityLanesConfig {
+    private final int[] weights;
+    private final long agingMs;
+    private final PriorityClassifier classifier;
+
+    private PriorityLanesConfig(Builder builder) {
+        this.weights = builder.weights.clone();
+        this.agingMs = builder.agingMs;
+        this.classifier = builder.classifier;
+    }
+
+    public static PriorityLanesConfig defaultConfig() {
+        return new Builder().build();
+    }
+
+    public int getWeight(RequestPriority priority) { return weights[priority.ordinal()]; }
+    public long getAgingMs() { return agingMs; }
+    public PriorityClassifier getClassifier() { return classifier; }
+
+    public static class Builder {
+        private final int[] weights = {16, 4, 1};
+        private long agingMs = 200;
+        private PriorityClassifier classifier = PriorityClassifier.BY_MTI;
+
+        /**
+         * Share of turns of a lane while several lanes have waiters
+         * (defaults HIGH 16, NORMAL 4, LOW 1)
+         */
+        public Builder weight(RequestPriority priority, int weight) {
+            if (weight < 1) {
+                throw new IllegalArgumentException("Lane weight must be at least 1");
+            }
+            this.weights[priority.ordinal()] = weight;
+            return this;
+        }
+
+        /**
+         * Wait after which the oldest request of a lane counts its weight twice, after two
+         * periods three times, and so on (default 200ms; 0 turns aging off)
+         */
+        public Builder aging(long ms) {
+            this.agingMs = ms;
+            return this;
+        }
+
+        /**
+         * How requests are assigned to lanes (default {@link PriorityClassifier#BY_MTI})
+         */
+        public Builder classifier(PriorityClassifier classifier) {
+            this.classifier = classifier;
+            return this;
+        }
+
+        public PriorityLanesConfig build() {
+            return new PriorityLanesConfig(this);
+        }
+    }
+}
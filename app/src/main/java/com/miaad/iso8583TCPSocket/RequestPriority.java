@@ -0,0 +1,14 @@
+package com.miaad.iso8583TCPSocket;
+
+/**
+ * Lane a request waits in while the client's connection is busy, highest first.
+ * See {@link PriorityLanesConfig}.
+ */
+public enum RequestPriority {
+    /** Reversals and advices, which must reach the host even when the link is congested */
+    HIGH,
+    /** Authorizations and financial requests */
+    NORMAL,
+    /** Batch uploads, reconciliation and network management such as echo tests */
+    LOW
+}
@@ -1,10 +1,13 @@
 package com.miaad.iso8583TCPSocket;
 
+import com.miaad.iso8583TCPSocket.resilience.CircuitBreakerOpenException;
+
 import java.io.IOException;
 import java.net.SocketTimeoutException;
 import java.net.ConnectException;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Configuration for retry mechanism in IsoClient
@@ -18,6 +21,10 @@ public class RetryConfig {
     private final boolean retryOnTimeout;
     private final boolean retryOnConnectionFailure;
     private final boolean retryOnIOException;
+    private final JitterMode jitterMode;
+    private final int transactionRetries;
+    private final long transactionDeadlineMs;
+    private final Set<Integer> idempotentMessageTypes;
 
     private RetryConfig(Builder builder) {
         this.maxRetries = builder.maxRetries;
@@ -28,6 +35,10 @@ public class RetryConfig {
         this.retryOnTimeout = builder.retryOnTimeout;
         this.retryOnConnectionFailure = builder.retryOnConnectionFailure;
         this.retryOnIOException = builder.retryOnIOException;
+        this.jitterMode = builder.jitterMode;
+        this.transactionRetries = builder.transactionRetries;
+        this.transactionDeadlineMs = builder.transactionDeadlineMs;
+        this.idempotentMessageTypes = new HashSet<>(builder.idempotentMessageTypes);
     }
 
     public int getMaxRetries() { return maxRetries; }
@@ -37,11 +48,58 @@ public class RetryConfig {
     public boolean isRetryOnTimeout() { return retryOnTimeout; }
     public boolean isRetryOnConnectionFailure() { return retryOnConnectionFailure; }
     public boolean isRetryOnIOException() { return retryOnIOException; }
+    public JitterMode getJitterMode() { return jitterMode; }
+    public int getTransactionRetries() { return transactionRetries; }
+    public long getTransactionDeadlineMs() { return transactionDeadlineMs; }
+
+    /**
+     * Check if a request MTI may be resent after a failed exchange.
+     * The origin digit is ignored, so 0100 and its repeat 0101 match the same entry.
+     */
+    public boolean isIdempotent(int mti) {
+        return mti >= 0 && idempotentMessageTypes.contains(mti / 10);
+    }
+
+    /**
+     * Check if a failed exchange of an idempotent request should be retried.
+     * Timeouts follow {@link #isRetryOnTimeout()}; any other I/O failure means the
+     * connection was lost and is always retryable.
+     */
+    public boolean shouldRetryTransaction(Exception exception) {
+        if (exception instanceof CircuitBreakerOpenException || exception instanceof DeadlineExceededException
+                || exception instanceof OperationCancelledException) {
+            return false;
+        }
+        if (exception instanceof SocketTimeoutException) {
+            return retryOnTimeout;
+        }
+        if (exception instanceof IOException) {
+            return true;
+        }
+        for (Class<? extends Exception> exceptionClass : retryableExceptions) {
+            if (exceptionClass.isInstance(exception)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
     /**
      * Check if an exception should trigger a retry
      */
     public boolean shouldRetry(Exception exception) {
+        // An open circuit breaker means the endpoint is known to be down
+        if (exception instanceof CircuitBreakerOpenException) {
+            return false;
+        }
+        // No time left for another attempt
+        if (exception instanceof DeadlineExceededException) {
+            return false;
+        }
+        // The caller gave up on the operation
+        if (exception instanceof OperationCancelledException) {
+            return false;
+        }
         // Check specific exception types
         if (retryOnTimeout && exception instanceof SocketTimeoutException) {
             return true;
@@ -73,6 +131,32 @@ public class RetryConfig {
         return Math.min((long) delay, maxDelayMs);
     }
 
+    /**
+     * Calculate delay for retry attempt, applying the configured jitter
+     * @param attemptNumber Retry number (1-based)
+     * @param previousDelayMs Delay used before the previous attempt, 0 for the first retry
+     */
+    public long nextDelay(int attemptNumber, long previousDelayMs) {
+        if (attemptNumber <= 0) return 0;
+
+        switch (jitterMode) {
+            case FULL:
+                return randomBetween(0, calculateDelay(attemptNumber));
+            case DECORRELATED:
+                long previous = previousDelayMs > 0 ? previousDelayMs : baseDelayMs;
+                long upper = Math.min(maxDelayMs, Math.max(baseDelayMs, previous * 3));
+                return randomBetween(Math.min(baseDelayMs, upper), upper);
+            case NONE:
+            default:
+                return calculateDelay(attemptNumber);
+        }
+    }
+
+    private static long randomBetween(long min, long max) {
+        if (max <= min) return min;
+        return min + ThreadLocalRandom.current().nextLong(max - min + 1);
+    }
+
     public static class Builder {
         private int maxRetries = 3;
         private long baseDelayMs = 1000; // 1 second
@@ -82,6 +166,15 @@ public class RetryConfig {
         private boolean retryOnTimeout = true;
         private boolean retryOnConnectionFailure = true;
         private boolean retryOnIOException = false; // Only specific IO exceptions
+        private JitterMode jitterMode = JitterMode.NONE;
+        private int transactionRetries = 0; // Transactions are not retried unless enabled
+        private long transactionDeadlineMs = 0;
+        private Set<Integer> idempotentMessageTypes = new HashSet<>();
+
+        public Builder() {
+            // Authorizations, advices, reversals and network management can be repeated
+            idempotentMtis("0100", "0120", "0220", "0400", "0420", "0800");
+        }
 
         public Builder maxRetries(int maxRetries) {
             this.maxRetries = maxRetries;
@@ -118,6 +211,48 @@ public class RetryConfig {
             return this;
         }
 
+        /**
+         * Randomize backoff delays so many clients do not retry in lockstep
+         */
+        public Builder jitter(JitterMode jitterMode) {
+            this.jitterMode = jitterMode;
+            return this;
+        }
+
+        /**
+         * Resend idempotent requests up to this many times after a timeout or lost
+         * connection. Retries reconnect and use the repeat MTI (0100 -> 0101) with the same STAN.
+         */
+        public Builder transactionRetries(int transactionRetries) {
+            this.transactionRetries = transactionRetries;
+            return this;
+        }
+
+        /**
+         * Overall time budget for a transaction including all retries and delays, taken
+         * together with the caller's {@link Deadline}: each attempt gets the time left of
+         * whichever ends first, and no retry starts whose backoff would outlast it. 0 = no limit
+         */
+        public Builder transactionDeadline(long transactionDeadlineMs) {
+            this.transactionDeadlineMs = transactionDeadlineMs;
+            return this;
+        }
+
+        /**
+         * Replace the request MTIs that may be retried (origin digit is ignored, so "0100" also covers "0101")
+         */
+        public Builder idempotentMtis(String... mtis) {
+            this.idempotentMessageTypes.clear();
+            for (String mti : mtis) {
+                int value = IsoCodes.parseMti(mti);
+                if (value < 0) {
+                    throw new IllegalArgumentException("Invalid MTI: " + mti);
+                }
+                this.idempotentMessageTypes.add(value / 10);
+            }
+            return this;
+        }
+
         public Builder addRetryableException(Class<? extends Exception> exceptionClass) {
             this.retryableExceptions.add(exceptionClass);
             return this;
@@ -0,0 +1,54 @@
+package com.miaad.iso8583TCPSocket;
+
+/**
+ * Settings of a client that can be changed while it is running.
+ * {@link IsoConfig} is immutable; its values only seed this object, and engines
+ * read the live values here on every operation.
+ */
+public class RuntimeSettings {
+    private volatile int readTimeoutMs;
+    private volatile boolean enableHotPathLogs;
+    private final InFlightLimiter inFlightLimiter;
+
+    public RuntimeSettings(IsoConfig config) {
+        this.readTimeoutMs = config.getReadTimeoutMs();
+        this.enableHotPathLogs = config.isEnableHotPathLogs();
+        this.inFlightLimiter = new InFlightLimiter(config.getMaxInFlight());
+    }
+
+    public int getReadTimeoutMs() { return readTimeoutMs; }
+    public boolean isEnableHotPathLogs() { return enableHotPathLogs; }
+    public int getMaxInFlight() { return inFlightLimiter.getLimit(); }
+
+    /**
+     * Number of sendAndReceive calls currently running through the client
+     */
+    public int getInFlight() { return inFlightLimiter.getInFlight(); }
+
+    /**
+     * Change the read timeout; applies from the next transaction
+     */
+    public void setReadTimeoutMs(int readTimeoutMs) {
+        if (readTimeoutMs < 0) {
+            throw new IllegalArgumentException("Read timeout must not be negative");
+        }
+        this.readTimeoutMs = readTimeoutMs;
+    }
+
+    public void setEnableHotPathLogs(boolean enableHotPathLogs) {
+        this.enableHotPathLogs = enableHotPathLogs;
+    }
+
+    /**
+     * Change the maximum number of concurrent transactions (0 = unlimited).
+     * Lowering it never interrupts running transactions; new ones wait until
+     * enough of them finish.
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        inFlightLimiter.setLimit(maxInFlight);
+    }
+
+    InFlightLimiter getInFlightLimiter() {
+        return inFlightLimiter;
+    }
+}
@@ -0,0 +1,31 @@
+package com.miaad.iso8583TCPSocket;
+
+import java.io.IOException;
+
+/**
+ * Receives messages the host sends on its own rather than in answer to a request:
+ * 0800 sign-off or echo, 0620 administrative notices, key-change messages and the like.
+ * <p>
+ * Runs on a background thread, never on the thread that reads the connection, so it
+ * may block or send through the same client.
+ */
+public interface UnsolicitedMessageHandler {
+
+    /**
+     * @param message Message from the host (without length header)
+     * @param replier Sends an answer back on the connection the message came on
+     */
+    void onUnsolicitedMessage(byte[] message, Replier replier);
+
+    /**
+     * Writes one message on the connection an unsolicited message arrived on
+     */
+    interface Replier {
+
+        /**
+         * @param message Message to send (without length header), e.g. the 0810 to a host 0800
+         * @throws IOException if that connection is closed or the write fails
+         */
+        void reply(byte[] message) throws IOException;
+    }
+}
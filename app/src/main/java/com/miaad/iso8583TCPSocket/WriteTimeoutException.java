@@ -0,0 +1,23 @@
+package com.miaad.iso8583TCPSocket;
+
+import java.net.SocketTimeoutException;
+
+/**
+ * Thrown when a request cannot be written within the write timeout, because the
+ * server stopped reading and the send buffer stayed full
+ */
+public class WriteTimeoutException extends SocketTimeoutException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long timeoutMs;
+
+    public WriteTimeoutException(long timeoutMs) {
+        super("Write timed out after " + timeoutMs + "ms");
+        this.timeoutMs = timeoutMs;
+    }
+
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+}
@@ -0,0 +1,267 @@
+package com.miaad.iso8583TCPSocket.dns;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Host name cache in front of the system resolver, so that connecting does
+ * not pay for a DNS round trip every time.
+ * <ul>
+ *   <li>Successful lookups are kept for the TTL, failures for the negative TTL</li>
+ *   <li>Once most of the TTL has passed, the next lookup starts a refresh in the
+ *       background and still returns the cached addresses</li>
+ *   <li>After expiry, addresses are served stale (and refreshed in the background)
+ *       for up to the max-stale time, so a resolver outage does not stop connects
+ *       to servers whose addresses have not changed</li>
+ * </ul>
+ * One cache can be shared by any number of clients.
+ */
+public class DnsCache {
+
+    /**
+     * Resolves host names; the default is {@link InetAddress#getAllByName(String)}
+     */
+    public interface Resolver {
+        InetAddress[] resolve(String host) throws UnknownHostException;
+    }
+
+    public static final Resolver SYSTEM_RESOLVER = new Resolver() {
+        @Override
+        public InetAddress[] resolve(String host) throws UnknownHostException {
+            return InetAddress.getAllByName(host);
+        }
+    };
+
+    private static volatile DnsCache defaultCache;
+    private static volatile Executor refreshExecutor;
+
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final long refreshAfterNanos;
+    private final long maxStaleNanos;
+    private final Resolver resolver;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong refreshFailures = new AtomicLong();
+
+    private DnsCache(Builder builder) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(builder.ttlMs);
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(builder.negativeTtlMs);
+        this.refreshAfterNanos = (long) (ttlNanos * builder.refreshAheadFactor);
+        this.maxStaleNanos = TimeUnit.MILLISECONDS.toNanos(builder.maxStaleMs);
+        this.resolver = builder.resolver;
+    }
+
+    /**
+     * Process-wide cache with default settings
+     */
+    public static DnsCache getDefault() {
+        DnsCache cache = defaultCache;
+        if (cache == null) {
+            synchronized (DnsCache.class) {
+                cache = defaultCache;
+                if (cache == null) {
+                    cache = new Builder().build();
+                    defaultCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Resolve without any library cache, timed and reported like a cache miss
+     */
+    public static Resolution resolveDirect(String host) throws UnknownHostException {
+        return new Resolution(host, SYSTEM_RESOLVER.resolve(host), false, false);
+    }
+
+    /**
+     * Addresses of a host, from the cache when possible
+     * @throws UnknownHostException if the host cannot be resolved (possibly a cached failure)
+     */
+    public Resolution lookup(String host) throws UnknownHostException {
+        long now = System.nanoTime();
+        Entry entry = entries.get(host);
+        if (entry != null) {
+            long age = now - entry.resolvedNanos;
+            if (entry.addresses == null) {
+                if (age < negativeTtlNanos) {
+                    hits.incrementAndGet();
+                    throw new UnknownHostException(entry.failure);
+                }
+            } else if (age < ttlNanos) {
+                hits.incrementAndGet();
+                if (age >= refreshAfterNanos) {
+                    refreshAsync(host, entry);
+                }
+                return new Resolution(host, entry.addresses, true, false);
+            } else if (age < ttlNanos + maxStaleNanos) {
+                staleHits.incrementAndGet();
+                refreshAsync(host, entry);
+                return new Resolution(host, entry.addresses, true, true);
+            }
+        }
+
+        misses.incrementAndGet();
+        try {
+            InetAddress[] addresses = resolver.resolve(host);
+            entries.put(host, new Entry(addresses, null, System.nanoTime()));
+            return new Resolution(host, addresses, false, false);
+        } catch (UnknownHostException e) {
+            if (negativeTtlNanos > 0) {
+                entries.put(host, new Entry(null, e.getMessage() != null ? e.getMessage() : host, System.nanoTime()));
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Forget one host, e.g. after its servers were moved
+     */
+    public void invalidate(String host) {
+        entries.remove(host);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() { return entries.size(); }
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getStaleHits() { return staleHits.get(); }
+    public long getRefreshes() { return refreshes.get(); }
+    public long getRefreshFailures() { return refreshFailures.get(); }
+
+    private void refreshAsync(final String host, final Entry entry) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return; // one refresh per entry at a time
+        }
+        refreshExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    InetAddress[] addresses = resolver.resolve(host);
+                    entries.replace(host, entry, new Entry(addresses, null, System.nanoTime()));
+                    refreshes.incrementAndGet();
+                } catch (Exception e) {
+                    // Keep serving what we have; the next lookup tries again
+                    refreshFailures.incrementAndGet();
+                    entry.refreshing.set(false);
+                }
+            }
+        });
+    }
+
+    private static Executor refreshExecutor() {
+        Executor executor = refreshExecutor;
+        if (executor == null) {
+            synchronized (DnsCache.class) {
+                executor = refreshExecutor;
+                if (executor == null) {
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                            @Override
+                            public Thread newThread(Runnable r) {
+                                Thread thread = new Thread(r, "iso-dns-refresh");
+                                thread.setDaemon(true);
+                                return thread;
+                            }
+                        });
+                    pool.allowCoreThreadTimeOut(true);
+                    executor = pool;
+                    refreshExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private static final class Entry {
+        final InetAddress[] addresses; // null for a failed lookup
+        final String failure;
+        final long resolvedNanos;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(InetAddress[] addresses, String failure, long resolvedNanos) {
+            this.addresses = addresses;
+            this.failure = failure;
+            this.resolvedNanos = resolvedNanos;
+        }
+    }
+
+    public static class Builder {
+        private long ttlMs = 60000;          // 1 minute
+        private long negativeTtlMs = 5000;   // 5 seconds
+        private double refreshAheadFactor = 0.8;
+        private long maxStaleMs = 600000;    // 10 minutes
+        private Resolver resolver = SYSTEM_RESOLVER;
+
+        /**
+         * How long resolved addresses are used without asking the resolver
+         */
+        public Builder ttl(long ms) {
+            this.ttlMs = ms;
+            return this;
+        }
+
+        /**
+         * How long a failed lookup is remembered (0 = not cached)
+         */
+        public Builder negativeTtl(long ms) {
+            this.negativeTtlMs = ms;
+            return this;
+        }
+
+        /**
+         * Fraction of the TTL after which lookups trigger a background refresh (0-1)
+         */
+        public Builder refreshAheadFactor(double factor) {
+            this.refreshAheadFactor = factor;
+            return this;
+        }
+
+        /**
+         * How long after expiry addresses are still served while they cannot be refreshed
+         */
+        public Builder maxStale(long ms) {
+            this.maxStaleMs = ms;
+            return this;
+        }
+
+        public Builder resolver(Resolver resolver) {
+            this.resolver = resolver;
+            return this;
+        }
+
+        public DnsCache build() {
+            if (ttlMs <= 0) {
+                throw new IllegalArgumentException("ttl must be positive");
+            }
+            if (negativeTtlMs < 0 || maxStaleMs < 0) {
+                throw new IllegalArgumentException("negativeTtl and maxStale must not be negative");
+            }
+            if (refreshAheadFactor <= 0 || refreshAheadFactor > 1) {
+                throw new IllegalArgumentException("refreshAheadFactor must be in (0, 1]");
+            }
+            if (resolver == null) {
+                throw new IllegalArgumentException("resolver must not be null");
+            }
+            return new DnsCache(this);
+        }
+    }
+}
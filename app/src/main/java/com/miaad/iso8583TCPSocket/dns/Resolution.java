@@ -0,0 +1,53 @@
+package com.miaad.iso8583TCPSocket.dns;
+
+import java.net.InetAddress;
+
+/**
+ * Addresses of a host, as returned by {@link DnsCache#lookup(String)}
+ */
+public final class Resolution {
+    private final String host;
+    private final InetAddress[] addresses;
+    private final boolean cached;
+    private final boolean stale;
+
+    Resolution(String host, InetAddress[] addresses, boolean cached, boolean stale) {
+        this.host = host;
+        this.addresses = addresses;
+        this.cached = cached;
+        this.stale = stale;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * First address, in resolver order
+     */
+    public InetAddress getAddress() {
+        return addresses[0];
+    }
+
+    /**
+     * All addresses, in resolver order. Do not modify.
+     */
+    public InetAddress[] getAddresses() {
+        return addresses;
+    }
+
+    /**
+     * True if no resolver call was made for this lookup
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * True if the entry had expired and is served while a refresh runs
+     * (or while the resolver is failing)
+     */
+    public boolean isStale() {
+        return stale;
+    }
+}
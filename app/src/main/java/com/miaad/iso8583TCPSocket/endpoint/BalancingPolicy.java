@@ -0,0 +1,43 @@
+package com.miaad.iso8583TCPSocket.endpoint;
+
+/**
+ * How an {@link EndpointGroup} orders its endpoints for a connection attempt.
+ * Healthy endpoints always come before endpoints cooling down after a failure.
+ */
+public enum BalancingPolicy {
+    /**
+     * Endpoints in the order they were added: primary, then secondary, ...
+     */
+    PRIORITY_FAILOVER("Priority failover"),
+
+    /**
+     * Rotate the starting endpoint on every connect
+     */
+    ROUND_ROBIN("Round-robin"),
+
+    /**
+     * Endpoint with the fewest transactions in flight across all clients
+     */
+    LEAST_IN_FLIGHT("Least in-flight"),
+
+    /**
+     * Endpoint with the lowest EWMA response time (weighted by load), choosing
+     * the better of two random healthy endpoints so traffic does not all pile onto one
+     */
+    EWMA_LATENCY("EWMA latency");
+
+    private final String description;
+
+    BalancingPolicy(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
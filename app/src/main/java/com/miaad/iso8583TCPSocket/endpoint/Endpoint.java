@@ -0,0 +1,43 @@
+package com.miaad.iso8583TCPSocket.endpoint;
+
+/**
+ * Host and port of one server in an {@link EndpointGroup}
+ */
+public final class Endpoint {
+    private final String host;
+    private final int port;
+
+    public Endpoint(String host, int port) {
+        if (host == null) {
+            throw new IllegalArgumentException("host must not be null");
+        }
+        this.host = host;
+        this.port = port;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Endpoint)) return false;
+        Endpoint other = (Endpoint) o;
+        return port == other.port && host.equals(other.host);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * host.hashCode() + port;
+    }
+
+    @Override
+    public String toString() {
+        return host + ":" + port;
+    }
+}
@@ -0,0 +1,175 @@
+package com.miaad.iso8583TCPSocket.endpoint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A set of equivalent servers for one client. On every connection attempt the
+ * engine tries the endpoints in the order chosen by the {@link BalancingPolicy},
+ * moving straight on to the next one when a connect fails. Only when every
+ * endpoint has failed does the attempt count as failed and back off.
+ *
+ * <p>Health and load of each endpoint are kept in {@link EndpointStats}, shared by all
+ * clients of the same host:port.</p>
+ */
+public class EndpointGroup {
+    private final List<Endpoint> endpoints;
+    private final EndpointStats[] stats;
+    private final BalancingPolicy policy;
+    private final long failureCooldownMs;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Random random = new Random();
+
+    private EndpointGroup(Builder builder) {
+        this.endpoints = Collections.unmodifiableList(new ArrayList<>(builder.endpoints));
+        this.policy = builder.policy;
+        this.failureCooldownMs = builder.failureCooldownMs;
+        this.stats = new EndpointStats[endpoints.size()];
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = EndpointStats.of(endpoints.get(i));
+        }
+    }
+
+    /**
+     * Group with a single endpoint, used when no group is configured
+     */
+    public static EndpointGroup single(String host, int port) {
+        return new Builder().add(host, port).build();
+    }
+
+    public List<Endpoint> getEndpoints() { return endpoints; }
+    public int size() { return endpoints.size(); }
+    public Endpoint get(int index) { return endpoints.get(index); }
+    public EndpointStats getStats(int index) { return stats[index]; }
+    public BalancingPolicy getPolicy() { return policy; }
+    public long getFailureCooldownMs() { return failureCooldownMs; }
+
+    /**
+     * Order in which to try the endpoints for one connection attempt.
+     * Healthy endpoints come first, ordered by policy; endpoints cooling
+     * down after a failure follow in declaration order as a last resort.
+     * @return Endpoint indexes, every endpoint exactly once
+     */
+    public int[] selectOrder() {
+        int n = stats.length;
+        int[] order = new int[n];
+        if (n == 1) {
+            return order;
+        }
+
+        int start = policy == BalancingPolicy.PRIORITY_FAILOVER ? 0 : (next.getAndIncrement() & Integer.MAX_VALUE) % n;
+        boolean[] up = new boolean[n];
+        int healthy = 0;
+        for (int i = 0; i < n; i++) {
+            int index = (start + i) % n;
+            up[index] = stats[index].isHealthy();
+            if (up[index]) {
+                order[healthy++] = index;
+            }
+        }
+        int tail = healthy;
+        for (int index = 0; index < n; index++) {
+            if (!up[index]) {
+                order[tail++] = index;
+            }
+        }
+
+        switch (policy) {
+            case LEAST_IN_FLIGHT:
+                sortHealthy(order, healthy, false);
+                break;
+            case EWMA_LATENCY:
+                sortHealthy(order, healthy, true);
+                // Power of two choices: lead with the better of two random healthy endpoints
+                if (healthy > 2) {
+                    int a = random.nextInt(healthy);
+                    int b = random.nextInt(healthy - 1);
+                    if (b >= a) b++;
+                    int pick = Math.min(a, b); // list is sorted, lower index scores better
+                    int chosen = order[pick];
+                    System.arraycopy(order, 0, order, 1, pick);
+                    order[0] = chosen;
+                }
+                break;
+            default:
+                break;
+        }
+        return order;
+    }
+
+    /**
+     * Snapshot of every endpoint's health, in declaration order
+     */
+    public List<EndpointHealth> getHealth() {
+        List<EndpointHealth> health = new ArrayList<>(stats.length);
+        for (EndpointStats s : stats) {
+            health.add(new EndpointHealth(s));
+        }
+        return health;
+    }
+
+    /**
+     * Insertion sort of the healthy prefix; groups are small and this keeps the
+     * rotation order for ties
+     */
+    private void sortHealthy(int[] order, int count, boolean byLatency) {
+        for (int i = 1; i < count; i++) {
+            int index = order[i];
+            double key = byLatency ? stats[index].latencyScore() : stats[index].getInFlight();
+            int j = i - 1;
+            while (j >= 0 && (byLatency ? stats[order[j]].latencyScore() : stats[order[j]].getInFlight()) > key) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = index;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "EndpointGroup{" + endpoints + ", policy=" + policy + "}";
+    }
+
+    public static class Builder {
+        private final List<Endpoint> endpoints = new ArrayList<>();
+        private BalancingPolicy policy = BalancingPolicy.PRIORITY_FAILOVER;
+        private long failureCooldownMs = 10000; // 10 seconds
+
+        public Builder add(String host, int port) {
+            endpoints.add(new Endpoint(host, port));
+            return this;
+        }
+
+        public Builder add(Endpoint endpoint) {
+            endpoints.add(endpoint);
+            return this;
+        }
+
+        public Builder policy(BalancingPolicy policy) {
+            this.policy = policy;
+            return this;
+        }
+
+        /**
+         * How long an endpoint is tried only after the healthy ones once a connect
+         * or transaction on it has failed
+         */
+        public Builder failureCooldown(long ms) {
+            this.failureCooldownMs = ms;
+            return this;
+        }
+
+        public EndpointGroup build() {
+            if (endpoints.isEmpty()) {
+                throw new IllegalArgumentException("EndpointGroup needs at least one endpoint");
+            }
+            if (policy == null) {
+                throw new IllegalArgumentException("policy must not be null");
+            }
+            return new EndpointGroup(this);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.miaad.iso8583TCPSocket.endpoint;
+
+/**
+ * Point-in-time health of one endpoint
+ */
+public final class EndpointHealth {
+    private final Endpoint endpoint;
+    private final boolean healthy;
+    private final int healthScore;
+    private final double latencyEwmaMs;
+    private final int inFlight;
+    private final int consecutiveFailures;
+    private final long successes;
+    private final long failures;
+
+    EndpointHealth(EndpointStats stats) {
+        this.endpoint = stats.getEndpoint();
+        this.healthy = stats.isHealthy();
+        this.healthScore = stats.getHealthScore();
+        this.latencyEwmaMs = stats.getLatencyEwmaMs();
+        this.inFlight = stats.getInFlight();
+        this.consecutiveFailures = stats.getConsecutiveFailures();
+        this.successes = stats.getSuccesses();
+        this.failures = stats.getFailures();
+    }
+
+    public Endpoint getEndpoint() { return endpoint; }
+    public boolean isHealthy() { return healthy; }
+    public int getHealthScore() { return healthScore; }
+    public double getLatencyEwmaMs() { return latencyEwmaMs; }
+    public int getInFlight() { return inFlight; }
+    public int getConsecutiveFailures() { return consecutiveFailures; }
+    public long getSuccesses() { return successes; }
+    public long getFailures() { return failures; }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s score=%d latency=%.1fms inFlight=%d failures=%d/%d",
+            endpoint, healthy ? "UP" : "COOLDOWN", healthScore, latencyEwmaMs, inFlight,
+            consecutiveFailures, failures);
+    }
+}
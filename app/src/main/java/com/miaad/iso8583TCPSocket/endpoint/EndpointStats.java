@@ -0,0 +1,163 @@
+package com.miaad.iso8583TCPSocket.endpoint;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live health of one endpoint, shared process-wide by every client and group
+ * that uses the same host:port. All updates are lock-free.
+ */
+public class EndpointStats {
+
+    private static final ConcurrentMap<Endpoint, EndpointStats> STATS = new ConcurrentHashMap<>();
+    private static final double LATENCY_ALPHA = 0.3;
+    private static final double SUCCESS_ALPHA = 0.2;
+
+    private final Endpoint endpoint;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong latencyEwmaBits = new AtomicLong(Double.doubleToLongBits(0));
+    private final AtomicLong successEwmaBits = new AtomicLong(Double.doubleToLongBits(1.0));
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile long unhealthyUntilNanos = System.nanoTime();
+
+    EndpointStats(Endpoint endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * Shared stats for an endpoint
+     */
+    public static EndpointStats of(Endpoint endpoint) {
+        EndpointStats stats = STATS.get(endpoint);
+        if (stats == null) {
+            EndpointStats created = new EndpointStats(endpoint);
+            stats = STATS.putIfAbsent(endpoint, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        return stats;
+    }
+
+    public Endpoint getEndpoint() {
+        return endpoint;
+    }
+
+    // ========== RECORDING ==========
+
+    /**
+     * A connection to the endpoint was established
+     */
+    public void onConnectSuccess() {
+        successes.incrementAndGet();
+        consecutiveFailures.set(0);
+        unhealthyUntilNanos = System.nanoTime();
+        updateEwma(successEwmaBits, 1.0, SUCCESS_ALPHA);
+    }
+
+    /**
+     * A connect, or a transaction on a connection to the endpoint, failed
+     * @param cooldownMs How long the endpoint is ranked after healthy ones
+     */
+    public void onFailure(long cooldownMs) {
+        failures.incrementAndGet();
+        consecutiveFailures.incrementAndGet();
+        unhealthyUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(cooldownMs);
+        updateEwma(successEwmaBits, 0.0, SUCCESS_ALPHA);
+    }
+
+    public void onRequestStart() {
+        inFlight.incrementAndGet();
+    }
+
+    public void onRequestEnd() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * A transaction completed
+     */
+    public void onRequestSuccess(long latencyNanos) {
+        successes.incrementAndGet();
+        consecutiveFailures.set(0);
+        updateEwma(successEwmaBits, 1.0, SUCCESS_ALPHA);
+        double latencyMs = latencyNanos / 1_000_000.0;
+        while (true) {
+            long bits = latencyEwmaBits.get();
+            double current = Double.longBitsToDouble(bits);
+            double updated = current == 0 ? latencyMs : current + LATENCY_ALPHA * (latencyMs - current);
+            if (latencyEwmaBits.compareAndSet(bits, Double.doubleToLongBits(updated))) {
+                return;
+            }
+        }
+    }
+
+    // ========== READING ==========
+
+    /**
+     * False while cooling down after a failure
+     */
+    public boolean isHealthy() {
+        return System.nanoTime() - unhealthyUntilNanos >= 0;
+    }
+
+    /**
+     * Health score from 0 (failing) to 100 (all recent calls succeeded),
+     * an exponentially weighted success rate
+     */
+    public int getHealthScore() {
+        return (int) Math.round(Double.longBitsToDouble(successEwmaBits.get()) * 100);
+    }
+
+    /**
+     * EWMA of transaction response time, 0 until the first response
+     */
+    public double getLatencyEwmaMs() {
+        return Double.longBitsToDouble(latencyEwmaBits.get());
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    public long getSuccesses() {
+        return successes.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Load-adjusted latency used by {@link BalancingPolicy#EWMA_LATENCY}; lower is better
+     */
+    double latencyScore() {
+        return getLatencyEwmaMs() * (getInFlight() + 1);
+    }
+
+    private static void updateEwma(AtomicLong target, double sample, double alpha) {
+        while (true) {
+            long bits = target.get();
+            double current = Double.longBitsToDouble(bits);
+            double updated = current + alpha * (sample - current);
+            if (target.compareAndSet(bits, Double.doubleToLongBits(updated))) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return endpoint + "{healthy=" + isHealthy() + ", score=" + getHealthScore()
+            + ", latencyEwmaMs=" + String.format("%.2f", getLatencyEwmaMs()) + ", inFlight=" + getInFlight() + "}";
+    }
+}
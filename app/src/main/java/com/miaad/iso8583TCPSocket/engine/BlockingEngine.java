@@ -3,18 +3,43 @@ package com.miaad.iso8583TCPSocket.engine;
 import com.miaad.iso8583TCPSocket.ConnectionState;
 import com.miaad.iso8583TCPSocket.ConnectionStateListener;
 import com.miaad.iso8583TCPSocket.ConnectionStatus;
+import com.miaad.iso8583TCPSocket.Deadline;
+import com.miaad.iso8583TCPSocket.DeadlineExceededException;
 import com.miaad.iso8583TCPSocket.ConnectionMode;
+import com.miaad.iso8583TCPSocket.IsoCodes;
 import com.miaad.iso8583TCPSocket.IsoConfig;
 import com.miaad.iso8583TCPSocket.IsoResponse;
+import com.miaad.iso8583TCPSocket.OperationCancelledException;
 import com.miaad.iso8583TCPSocket.RetryConfig;
+import com.miaad.iso8583TCPSocket.RuntimeSettings;
+import com.miaad.iso8583TCPSocket.dns.DnsCache;
+import com.miaad.iso8583TCPSocket.dns.Resolution;
+import com.miaad.iso8583TCPSocket.endpoint.Endpoint;
+import com.miaad.iso8583TCPSocket.endpoint.EndpointGroup;
+import com.miaad.iso8583TCPSocket.endpoint.EndpointStats;
+import com.miaad.iso8583TCPSocket.resilience.CircuitBreakerOpenException;
+import com.miaad.iso8583TCPSocket.resilience.RetryBudget;
+import com.miaad.iso8583TCPSocket.resilience.RetryBudgetRegistry;
+import com.miaad.iso8583TCPSocket.trace.EngineProbe;
+import com.miaad.iso8583TCPSocket.trace.EngineProbes;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -28,7 +53,7 @@ public class BlockingEngine implements ConnectionEngine {
     
     public IsoConfig config;
     private ConnectionStateListener stateListener;
-    private Socket socket;
+    private volatile Socket socket;
     private final int lengthHeaderSize;
     private final ByteOrder byteOrder;
     private final byte[] lengthHeaderBuffer;
@@ -36,11 +61,47 @@ public class BlockingEngine implements ConnectionEngine {
     private volatile ConnectionState currentState = ConnectionState.DISCONNECTED;
     private final ReentrantLock operationLock = new ReentrantLock();
     private final AtomicBoolean transactionInProgress = new AtomicBoolean(false);
+    // One connect at a time; exchanges sharing a full-duplex connection wait for it to finish
+    private final ReentrantLock connectLock = new ReentrantLock();
     private AtomicBoolean cancelled = new AtomicBoolean(false);
+    private RuntimeSettings settings;
+    private volatile RetryWait pendingRetry;
+    // Cancellation of every connect and exchange in progress; full-duplex exchanges run at once
+    private final Set<CancelToken> operations =
+        Collections.newSetFromMap(new ConcurrentHashMap<CancelToken, Boolean>());
+    private EndpointGroup endpoints;
+    private CircuitGuard[] circuits;
+    private volatile int endpointIndex;
+    private RetryBudget retryBudget;
     private long connectionStartTime = 0;
     private long lastActivityTime = 0;
     private Exception lastError = null;
     private int reconnectAttempts = 0;
+    // Idle-connection watch; it polls the socket, which cannot join a selector
+    private volatile LivenessMonitor.Watch liveness;
+    private volatile boolean peerClosed;
+    // Requests that timed out on this connection and whose responses may still come
+    private LateResponses late;
+    // The stream is mid-frame or held an unmatched frame; the next exchange reconnects
+    private volatile boolean outOfSync;
+    // Part of a frame has been written or read, but not all of it
+    private boolean frameOpen;
+    // Reader thread of a full-duplex connection; null when the caller's thread reads
+    private volatile DuplexConnection duplex;
+
+    /**
+     * One exchange: its cancellation and phase timestamps for the engine probe. Kept per
+     * exchange, as several run on one full-duplex connection at once.
+     */
+    private static final class Transaction {
+        final CancelToken token;
+        long sentNanos;
+        long firstByteNanos;
+
+        Transaction(CancelToken token) {
+            this.token = token;
+        }
+    }
 
     public BlockingEngine(int lengthHeaderSize, ByteOrder byteOrder) {
         this.lengthHeaderSize = lengthHeaderSize;
@@ -53,193 +114,580 @@ public class BlockingEngine implements ConnectionEngine {
     public void initialize(IsoConfig config, ConnectionStateListener stateListener) {
         this.config = config;
         this.stateListener = stateListener;
+        if (this.settings == null) {
+            this.settings = new RuntimeSettings(config);
+        }
+        this.endpoints = config.getEndpointGroup();
+        this.circuits = CircuitGuard.forGroup(config);
+        this.endpointIndex = 0;
+        this.retryBudget = config.getRetryBudgetConfig() != null
+            ? RetryBudgetRegistry.get(config.getHost(), config.getPort(), config.getRetryBudgetConfig()) : null;
+        this.late = new LateResponses(config, stateListener);
     }
 
     @Override
     public void connect() throws IOException {
-        // Check if any operation is in progress
-        if (!transactionInProgress.compareAndSet(false, true)) {
-            throw new IllegalStateException("Cannot connect while another operation is in progress");
-        }
+        connect(Deadline.none());
+    }
 
-        operationLock.lock();
+    @Override
+    public void connect(Deadline deadline) throws IOException {
+        CancelToken token = beginOperation();
+        connectLock.lock();
         try {
-            if (socket != null && socket.isConnected()) {
-                changeState(ConnectionState.CONNECTED, "Already connected");
-                return; // Already connected
-            }
+            connect(deadline, token);
+        } finally {
+            connectLock.unlock();
+            endOperation(token);
+        }
+        if (token.isCancelled()) {
+            // Closed while the connection was completing, too late to fail the attempt itself
+            close();
+            throw new OperationCancelledException("connect");
+        }
+    }
 
-            RetryConfig retryConfig = config.getRetryConfig();
-            Exception lastException = null;
-            long operationStartTime = System.currentTimeMillis();
-            this.connectionStartTime = operationStartTime;
-            this.lastActivityTime = operationStartTime;
-            int maxAttempts = retryConfig.getMaxRetries() + 1;
-            this.reconnectAttempts = 0;
+    private void connect(Deadline deadline, CancelToken token) throws IOException {
+        if (pendingRetry != null) {
+            throw new IllegalStateException("Cannot connect while a connection retry is pending");
+        }
 
-            for (int attempt = 0; attempt <= retryConfig.getMaxRetries(); attempt++) {
-                try {
-                    if (attempt > 0) {
-                        long delay = retryConfig.calculateDelay(attempt);
-                        changeState(ConnectionState.RETRY_WAITING, "Waiting " + delay + "ms before retry attempt " + (attempt + 1));
-                        
-                        if (stateListener != null) {
-                            stateListener.onRetryDelayStarted(attempt + 1, delay, "Connection failed");
-                        }
-                        
-                        System.out.println("Retry attempt " + attempt + " after " + delay + "ms delay");
-                        Thread.sleep(delay);
-                        
-                        if (stateListener != null) {
-                            stateListener.onRetryDelayEnded(attempt + 1);
-                        }
-                        changeState(ConnectionState.RETRY_CONNECTING, "Starting retry attempt " + (attempt + 1));
-                    } else {
-                        changeState(ConnectionState.CONNECTING, "Starting connection");
-                    }
+        RetryConfig retryConfig = config.getRetryConfig();
+        Exception lastException = null;
+        long operationStartTime = System.currentTimeMillis();
+        int maxAttempts = retryConfig.getMaxRetries() + 1;
+        EngineProbe probe = probe();
+        long operationId = EngineProbes.nextId();
+        long previousDelay = 0;
+        if (retryBudget != null) {
+            retryBudget.deposit();
+        }
 
-                    if (stateListener != null) {
-                        stateListener.onConnectionAttemptStarted(config.getHost(), config.getPort(), attempt + 1, maxAttempts);
-                    }
-                    if (config == null || config.isEnableHotPathLogs()) {
-                        System.out.println("Connecting to " + config.getHost() + ":" + config.getPort() + 
-                                         " (attempt " + (attempt + 1) + "/" + maxAttempts + ") [BLOCKING ENGINE]");
-                    }
+        for (int attempt = 0; attempt <= retryConfig.getMaxRetries(); attempt++) {
+            if (attempt > 0) {
+                // Back off without holding the lock, so close() and cancel() are never blocked
+                long delay = retryConfig.nextDelay(attempt, previousDelay);
+                previousDelay = delay;
+                if (delay >= deadline.remainingMillis()) {
+                    // No time left to wait and try again
+                    throw deadline.exceeded("connect retry delay", lastException);
+                }
+                changeState(ConnectionState.RETRY_WAITING, "Waiting " + delay + "ms before retry attempt " + (attempt + 1));
+                
+                if (stateListener != null) {
+                    stateListener.onRetryDelayStarted(attempt + 1, delay, "Connection failed");
+                }
+                
+                System.out.println("Retry attempt " + attempt + " after " + delay + "ms delay");
+                long waitStartNanos = System.nanoTime();
+                boolean elapsed = awaitRetry(delay);
+                probe.onRetryWait(operationId, config.getHost(), config.getPort(), attempt + 1,
+                    waitStartNanos, System.nanoTime());
+                if (!elapsed) {
+                    throw new OperationCancelledException("connect retry delay");
+                }
 
-                    // Host resolution
-                    changeState(ConnectionState.RESOLVING_HOST, "Resolving " + config.getHost());
-                    if (stateListener != null) {
-                        stateListener.onHostResolutionStarted(config.getHost());
-                    }
-                    long hostResolveStart = System.currentTimeMillis();
-                    
-                    // TCP Connection
-                    changeState(ConnectionState.TCP_CONNECTING, "Establishing TCP connection");
-                    if (stateListener != null) {
-                        stateListener.onTcpConnectionStarted(config.getHost(), config.getPort());
-                    }
-                    long tcpConnectStart = System.currentTimeMillis();
-                    
-                    socket = new Socket();
-                    socket.connect(new InetSocketAddress(config.getHost(), config.getPort()), 
-                                  config.getConnectTimeoutMs());
-                    socket.setSoTimeout(config.getReadTimeoutMs());
-                    
-                    long tcpConnectTime = System.currentTimeMillis() - tcpConnectStart;
-                    changeState(ConnectionState.TCP_CONNECTED, "TCP connection established");
-                    
-                    if (stateListener != null) {
-                        long hostResolveTime = tcpConnectStart - hostResolveStart;
-                        stateListener.onHostResolutionCompleted(config.getHost(), 
-                            socket.getInetAddress().getHostAddress(), hostResolveTime);
-                        stateListener.onTcpConnectionCompleted(
-                            socket.getLocalSocketAddress().toString(),
-                            socket.getRemoteSocketAddress().toString(), tcpConnectTime);
+                if (stateListener != null) {
+                    stateListener.onRetryDelayEnded(attempt + 1);
+                }
+            }
+
+            // Check if any operation is in progress
+            if (!transactionInProgress.compareAndSet(false, true)) {
+                throw new IllegalStateException("Cannot connect while another operation is in progress");
+            }
+
+            operationLock.lock();
+            try {
+                token.check("connect");
+                if (attempt == 0) {
+                    if (peerClosed || outOfSync) {
+                        closeSocket(); // dead or unusable connection left from before
+                        outOfSync = false;
                     }
-                    
-                    if (config == null || config.isEnableHotPathLogs()) {
-                        System.out.println("Connected successfully!");
+                    if (socket != null && socket.isConnected()) {
+                        changeState(ConnectionState.CONNECTED, "Already connected");
+                        return; // Already connected
                     }
+                    this.connectionStartTime = operationStartTime;
+                    this.lastActivityTime = operationStartTime;
+                    this.reconnectAttempts = 0;
+                }
+                if (attempt > 0) {
+                    changeState(ConnectionState.RETRY_CONNECTING, "Starting retry attempt " + (attempt + 1));
+                } else {
+                    changeState(ConnectionState.CONNECTING, "Starting connection");
+                }
 
-                    // Apply socket options for performance
+                int[] order = endpoints.selectOrder();
+                Exception endpointFailure = null;
+                for (int i = 0; ; i++) {
                     try {
-                        if (config.isTcpNoDelay()) socket.setTcpNoDelay(true);
-                        if (config.isKeepAlive()) socket.setKeepAlive(true);
-                        if (config.getSendBufferSize() > 0) socket.setSendBufferSize(config.getSendBufferSize());
-                        if (config.getReceiveBufferSize() > 0) socket.setReceiveBufferSize(config.getReceiveBufferSize());
-                        socket.setPerformancePreferences(0, 1, 2);
-                    } catch (Exception ignored) {
-                    }
-
-                    if (config.isUseTls()) {
-                        changeState(ConnectionState.TLS_HANDSHAKING, "Performing TLS handshake");
-                        if (stateListener != null) {
-                            stateListener.onTlsHandshakeStarted();
+                        connectEndpoint(order[i], attempt, maxAttempts, probe, operationId, deadline, token);
+                        break;
+                    } catch (Exception e) {
+                        if (!(e instanceof CircuitBreakerOpenException) || endpointFailure == null) {
+                            endpointFailure = e;
                         }
-                        
-                        long tlsStart = System.currentTimeMillis();
-                        if (config == null || config.isEnableHotPathLogs()) {
-                            System.out.println("Starting TLS handshake...");
+                        if (i == order.length - 1 || deadline.isExpired() || token.isCancelled()) {
+                            // Report a real connect failure over an open breaker, so it can be retried
+                            throw endpointFailure;
                         }
-                        SSLSocketFactory factory = (SSLSocketFactory) SSLSocketFactory.getDefault();
-                        socket = factory.createSocket(socket, config.getHost(), config.getPort(), true);
-                        ((SSLSocket) socket).startHandshake();
-                        
-                        long tlsTime = System.currentTimeMillis() - tlsStart;
-                        changeState(ConnectionState.TLS_CONNECTED, "TLS handshake completed");
-                        
+                        // Fail over inside the same attempt; backoff only applies once every endpoint failed
                         if (stateListener != null) {
-                            SSLSocket sslSocket = (SSLSocket) socket;
-                            stateListener.onTlsHandshakeCompleted(
-                                sslSocket.getSession().getProtocol(),
-                                sslSocket.getSession().getCipherSuite(), tlsTime);
-                        }
-                        if (config == null || config.isEnableHotPathLogs()) {
-                            System.out.println("TLS handshake completed!");
+                            stateListener.onLog("WARN", "Endpoint " + endpoints.get(order[i]) + " failed: " + e.getMessage(),
+                                "Failing over to " + endpoints.get(order[i + 1]));
                         }
                     }
+                }
 
-                    changeState(ConnectionState.CONNECTED, "Connection established successfully");
-                    
-                    if (stateListener != null) {
-                        stateListener.onMetric("connection_time", System.currentTimeMillis() - operationStartTime, "ms");
-                    }
-                    return;
-
-                } catch (Exception e) {
-                    lastException = e;
-                    this.lastError = e;
-                    this.reconnectAttempts++;
-                    changeState(ConnectionState.CONNECTION_FAILED, "Connection attempt failed: " + e.getMessage());
-                    
-                    if (stateListener != null) {
-                        stateListener.onError(e, currentState, "Connection attempt " + (attempt + 1) + " failed");
-                    }
-                    
-                    if (config == null || config.isEnableHotPathLogs()) {
-                        System.err.println("Connection attempt " + (attempt + 1) + " failed: " + e.getClass().getSimpleName() + " - " + e.getMessage());
-                    }
+                changeState(ConnectionState.CONNECTED, "Connection established successfully");
+                late.clear();
+                startLiveness();
+                
+                if (stateListener != null) {
+                    stateListener.onMetric("connection_time", System.currentTimeMillis() - operationStartTime, "ms");
+                }
+                return;
 
-                    if (socket != null) {
-                        try { socket.close(); } catch (IOException ignored) {}
-                        socket = null;
-                    }
+            } catch (Exception e) {
+                if (token.isCancelled() && !(e instanceof OperationCancelledException)) {
+                    e = token.cancelled("connect", e);
+                } else if (deadline.isExpired() && !(e instanceof DeadlineExceededException)) {
+                    e = deadline.exceeded("connect", e);
+                }
+                lastException = e;
+                this.lastError = e;
+                this.reconnectAttempts++;
+                changeState(ConnectionState.CONNECTION_FAILED, "Connection attempt failed: " + e.getMessage());
+                
+                if (stateListener != null) {
+                    stateListener.onError(e, currentState, "Connection attempt " + (attempt + 1) + " failed");
+                }
+                
+                if (hotPathLogs()) {
+                    System.err.println("Connection attempt " + (attempt + 1) + " failed: " + e.getClass().getSimpleName() + " - " + e.getMessage());
+                }
 
-                    // Check if we should retry
-                    boolean willRetry = (attempt < retryConfig.getMaxRetries() && retryConfig.shouldRetry(e));
+                if (socket != null) {
+                    try { socket.close(); } catch (IOException ignored) {}
+                    socket = null;
+                }
 
-                    if (willRetry) {
-                        System.out.println("Retrying connection...");
-                        continue;
-                    } else {
-                        // No more retries or not retryable
-                        break;
+                // Check if we should retry
+                boolean willRetry = (attempt < retryConfig.getMaxRetries() && retryConfig.shouldRetry(e));
+                if (willRetry && retryBudget != null && !retryBudget.tryWithdraw()) {
+                    // Retries to this endpoint already exceed their share of the traffic
+                    willRetry = false;
+                    if (stateListener != null) {
+                        stateListener.onLog("WARN", "Retry budget exhausted for " + retryBudget.getName(),
+                            "Retry attempt " + (attempt + 2) + " denied");
                     }
                 }
+
+                if (willRetry) {
+                    System.out.println("Retrying connection...");
+                    continue;
+                } else {
+                    // No more retries or not retryable
+                    break;
+                }
+            } finally {
+                // Always reset transaction flag
+                transactionInProgress.set(false);
+                operationLock.unlock();
+            }
+        }
+
+        // All attempts failed
+        if (stateListener != null) {
+            stateListener.onRetryExhausted(maxAttempts, lastException);
+        }
+        if (hotPathLogs()) {
+            System.err.println("All connection attempts failed");
+        }
+        if (lastException instanceof IOException) {
+            throw (IOException) lastException;
+        } else {
+            throw new IOException("Connection failed after " + maxAttempts + " attempts", lastException);
+        }
+    }
+
+    /**
+     * One TCP (and TLS) connect to a single endpoint of the group
+     */
+    private void connectEndpoint(int index, int attempt, int maxAttempts, EngineProbe probe, long operationId,
+                                 Deadline deadline, CancelToken token) throws Exception {
+        Endpoint endpoint = endpoints.get(index);
+        String host = endpoint.getHost();
+        int port = endpoint.getPort();
+        CircuitGuard circuit = circuits[index];
+        long tcpStartNanos = 0;
+        long tlsStartNanos = 0;
+        boolean circuitPermitted = false;
+        long attemptStartNanos = System.nanoTime();
+        try {
+            if (circuit != null) {
+                // Fail fast before any socket is created while the endpoint is known to be down
+                circuit.acquire(stateListener);
+                circuitPermitted = true;
+            }
+            if (stateListener != null) {
+                stateListener.onConnectionAttemptStarted(host, port, attempt + 1, maxAttempts);
+            }
+            if (hotPathLogs()) {
+                System.out.println("Connecting to " + host + ":" + port + 
+                                 " (attempt " + (attempt + 1) + "/" + maxAttempts + ") [BLOCKING ENGINE]");
             }
 
-            // All attempts failed
+            // Host resolution
+            changeState(ConnectionState.RESOLVING_HOST, "Resolving " + host);
             if (stateListener != null) {
-                stateListener.onRetryExhausted(maxAttempts, lastException);
+                stateListener.onHostResolutionStarted(host);
             }
-            if (config == null || config.isEnableHotPathLogs()) {
-                System.err.println("All connection attempts failed");
+            deadline.check("host resolution");
+            Resolution resolution = resolve(host, operationId, probe);
+            
+            // TCP Connection
+            changeState(ConnectionState.TCP_CONNECTING, "Establishing TCP connection");
+            if (stateListener != null) {
+                stateListener.onTcpConnectionStarted(host, port);
             }
-            if (lastException instanceof IOException) {
-                throw (IOException) lastException;
+            long tcpConnectStart = System.currentTimeMillis();
+            
+            tcpStartNanos = System.nanoTime();
+            InetAddress[] addresses = connectAddresses(resolution);
+            if (addresses.length > 1) {
+                // Several addresses: race them on the helper pool
+                socket = HappyEyeballs.connect(addresses, port, deadline.timeoutMillis(config.getConnectTimeoutMs(), "connect"),
+                    config.getConnectionAttemptDelayMs(), token);
             } else {
-                throw new IOException("Connection failed after " + maxAttempts + " attempts", lastException);
+                socket = new Socket();
+                token.onCancel(CancelToken.close(socket));
+                HappyEyeballs.connect(socket, new InetSocketAddress(addresses[0], port),
+                    deadline.timeoutMillis(config.getConnectTimeoutMs(), "connect"));
+            }
+            // Closing the TCP socket also aborts the TLS handshake
+            token.onCancel(CancelToken.close(socket));
+            probe.onConnect(operationId, host, port, attempt + 1,
+                tcpStartNanos, System.nanoTime(), true);
+            tcpStartNanos = 0;
+            // Also bounds the TLS handshake
+            socket.setSoTimeout(deadline.timeoutMillis(settings.getReadTimeoutMs(), "connect"));
+            
+            long tcpConnectTime = System.currentTimeMillis() - tcpConnectStart;
+            changeState(ConnectionState.TCP_CONNECTED, "TCP connection established");
+            
+            if (stateListener != null) {
+                stateListener.onTcpConnectionCompleted(
+                    socket.getLocalSocketAddress().toString(),
+                    socket.getRemoteSocketAddress().toString(), tcpConnectTime);
+            }
+            
+            if (hotPathLogs()) {
+                System.out.println("Connected successfully!");
             }
 
-        } finally {
-            // Always reset transaction flag
-            transactionInProgress.set(false);
-            operationLock.unlock();
+            // Apply socket options for performance
+            try {
+                if (config.isTcpNoDelay()) socket.setTcpNoDelay(true);
+                if (config.isKeepAlive()) socket.setKeepAlive(true);
+                if (config.getSendBufferSize() > 0) socket.setSendBufferSize(config.getSendBufferSize());
+                if (config.getReceiveBufferSize() > 0) socket.setReceiveBufferSize(config.getReceiveBufferSize());
+                socket.setPerformancePreferences(0, 1, 2);
+            } catch (Exception ignored) {
+            }
+
+            if (config.isUseTls()) {
+                changeState(ConnectionState.TLS_HANDSHAKING, "Performing TLS handshake");
+                if (stateListener != null) {
+                    stateListener.onTlsHandshakeStarted();
+                }
+                
+                long tlsStart = System.currentTimeMillis();
+                if (hotPathLogs()) {
+                    System.out.println("Starting TLS handshake...");
+                }
+                tlsStartNanos = System.nanoTime();
+                SSLSocketFactory factory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+                socket = factory.createSocket(socket, host, port, true);
+                ((SSLSocket) socket).startHandshake();
+                probe.onTlsHandshake(operationId, host, port,
+                    tlsStartNanos, System.nanoTime(), true);
+                tlsStartNanos = 0;
+                
+                long tlsTime = System.currentTimeMillis() - tlsStart;
+                changeState(ConnectionState.TLS_CONNECTED, "TLS handshake completed");
+                
+                if (stateListener != null) {
+                    SSLSocket sslSocket = (SSLSocket) socket;
+                    stateListener.onTlsHandshakeCompleted(
+                        sslSocket.getSession().getProtocol(),
+                        sslSocket.getSession().getCipherSuite(), tlsTime);
+                }
+                if (hotPathLogs()) {
+                    System.out.println("TLS handshake completed!");
+                }
+            }
+
+            endpointIndex = index;
+            endpoints.getStats(index).onConnectSuccess();
+            if (circuitPermitted) {
+                circuit.record(true, attemptStartNanos, stateListener);
+            }
+        } catch (Exception e) {
+            if (circuitPermitted) {
+                circuit.record(false, attemptStartNanos, stateListener);
+            }
+            if (circuit == null || circuitPermitted) {
+                endpoints.getStats(index).onFailure(endpoints.getFailureCooldownMs());
+            }
+            if (tcpStartNanos != 0) {
+                probe.onConnect(operationId, host, port, attempt + 1,
+                    tcpStartNanos, System.nanoTime(), false);
+            } else if (tlsStartNanos != 0) {
+                probe.onTlsHandshake(operationId, host, port,
+                    tlsStartNanos, System.nanoTime(), false);
+            }
+            if (socket != null) {
+                try { socket.close(); } catch (IOException ignored) {}
+                socket = null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * One read, with the socket timeout set to what the response's time limits leave
+     * @throws SocketTimeoutException subtype of the limit that ran out first
+     */
+    private static int read(Socket socket, InputStream in, byte[] buffer, int offset, int length, ResponseTimer timer)
+            throws IOException {
+        int timeoutMs = timer.remainingMillis();
+        if (socket.getSoTimeout() != timeoutMs) {
+            socket.setSoTimeout(timeoutMs);
+        }
+        int n;
+        try {
+            n = in.read(buffer, offset, length);
+        } catch (SocketTimeoutException e) {
+            throw timer.expired();
+        }
+        if (n > 0) {
+            timer.onBytes();
+        }
+        return n;
+    }
+
+    /**
+     * Watch the new connection while it is idle, if it stays open between transactions.
+     * A full-duplex connection is always being read, so its reader sees the peer go away.
+     */
+    private void startLiveness() throws IOException {
+        peerClosed = false;
+        if (config.isAutoCloseAfterResponse()) {
+            return;
+        }
+        if (config.isFullDuplex()) {
+            DuplexConnection connection = new DuplexConnection(socket, lengthHeaderSize, byteOrder, config, late,
+                stateListener, new DuplexConnection.Listener() {
+                    @Override
+                    public void onConnectionLost(DuplexConnection connection, IOException error) {
+                        if (connection == duplex) {
+                            markPeerClosed(error.getMessage(), error);
+                        }
+                    }
+                });
+            duplex = connection;
+            connection.start();
+            return;
+        }
+        if (!config.isLivenessMonitor()) {
+            return;
+        }
+        try {
+            liveness = LivenessMonitor.shared().watch(socket, new LivenessMonitor.Listener() {
+                @Override
+                public void onPeerClosed(String reason, IOException error) {
+                    markPeerClosed(reason, error);
+                }
+            });
+        } catch (IOException e) {
+            liveness = null; // no monitor: the connection works, just unwatched
+        }
+    }
+
+    private void markPeerClosed(String reason, IOException error) {
+        peerClosed = true;
+        lastError = error != null ? error : new IOException(reason);
+        if (stateListener != null) {
+            stateListener.onError(lastError, currentState, reason + " while idle");
+        }
+    }
+
+    private void closeSocket() {
+        late.clear();
+        if (duplex != null) {
+            duplex.close();
+            duplex = null;
+        }
+        if (liveness != null) {
+            liveness.cancel();
+            liveness = null;
+        }
+        if (socket != null) {
+            try { socket.close(); } catch (IOException ignored) {}
+            socket = null;
+        }
+    }
+
+    /**
+     * Resolve through the configured DnsCache (or the system resolver), reporting
+     * the lookup on its own instead of as part of the TCP connect
+     */
+    private Resolution resolve(String host, long operationId, EngineProbe probe) throws UnknownHostException {
+        DnsCache dnsCache = config.getDnsCache();
+        long startNanos = System.nanoTime();
+        Resolution resolution;
+        try {
+            resolution = dnsCache != null ? dnsCache.lookup(host) : DnsCache.resolveDirect(host);
+        } catch (UnknownHostException e) {
+            probe.onDnsResolve(operationId, host, startNanos, System.nanoTime(), false, false);
+            throw e;
+        }
+        long endNanos = System.nanoTime();
+        probe.onDnsResolve(operationId, host, startNanos, endNanos, true, resolution.isCached());
+        if (stateListener != null) {
+            stateListener.onHostResolutionCompleted(host, resolution.getAddress().getHostAddress(),
+                TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos));
+            stateListener.onMetric("dns_resolution_time", TimeUnit.NANOSECONDS.toMicros(endNanos - startNanos), "us");
         }
+        return resolution;
+    }
+
+    /**
+     * Addresses to connect to, interleaved by family for racing when happy eyeballs is on
+     */
+    private InetAddress[] connectAddresses(Resolution resolution) {
+        if (!config.isHappyEyeballs()) {
+            return new InetAddress[] { resolution.getAddress() };
+        }
+        return HappyEyeballs.interleave(resolution.getAddresses());
     }
 
     @Override
     public IsoResponse sendAndReceive(byte[] message) throws IOException {
+        return sendAndReceive(message, Deadline.none());
+    }
+
+    @Override
+    public IsoResponse sendAndReceive(byte[] message, Deadline deadline) throws IOException {
+        EngineProbe probe = probe();
+        long transactionId = EngineProbes.nextId();
+        int index = endpointIndex;
+        Endpoint endpoint = endpoints.get(index);
+        EndpointStats stats = endpoints.getStats(index);
+        CircuitGuard circuit = circuits[index];
+        CancelToken token = beginOperation();
+        Transaction tx = new Transaction(token);
+        long startNanos = System.nanoTime();
+        LivenessMonitor.Watch watch = liveness;
+        if (watch != null) {
+            watch.suspend();
+        }
+        stats.onRequestStart();
+        try {
+            IsoResponse response = exchange(message, deadline, tx);
+            long endNanos = System.nanoTime();
+            probe.onTransaction(transactionId, endpoint.getHost(), endpoint.getPort(),
+                config.getMessageInspector().getMti(message), message.length, response.getData().length,
+                startNanos, tx.sentNanos, tx.firstByteNanos, endNanos, true);
+            stats.onRequestSuccess(endNanos - startNanos);
+            if (circuit != null) circuit.record(true, startNanos, stateListener);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            probe.onTransaction(transactionId, endpoint.getHost(), endpoint.getPort(),
+                config.getMessageInspector().getMti(message), message.length, 0,
+                startNanos, tx.sentNanos, tx.firstByteNanos, System.nanoTime(), false);
+            if (token.isCancelled()) {
+                // The caller gave up; not a failure of the endpoint
+                throw e instanceof OperationCancelledException ? (OperationCancelledException) e
+                    : token.cancelled("exchange", e);
+            }
+            if (e instanceof IOException) {
+                stats.onFailure(endpoints.getFailureCooldownMs());
+                if (circuit != null) circuit.record(false, startNanos, stateListener);
+            }
+            throw e;
+        } finally {
+            endOperation(token);
+            stats.onRequestEnd();
+            watch = liveness; // a reconnect during the exchange replaced it
+            if (watch != null) {
+                watch.resume();
+            }
+        }
+    }
+
+    /**
+     * Connect again in the middle of an exchange; the new connection is not watched as
+     * idle until the exchange ends, so the monitor never reads the response
+     */
+    private void reconnect(Deadline deadline, CancelToken token) throws IOException {
+        connectLock.lock();
+        try {
+            // Exchanges sharing a full-duplex connection may have found it broken together
+            if (outOfSync) {
+                connect(deadline, token);
+            }
+        } finally {
+            connectLock.unlock();
+        }
+        LivenessMonitor.Watch watch = liveness;
+        if (watch != null) {
+            watch.suspend();
+        }
+    }
+
+    private IsoResponse exchange(byte[] message, Deadline deadline, Transaction tx) throws IOException {
+        CancelToken token = tx.token;
+        if (outOfSync || connectLock.isLocked()) {
+            // The last exchange left the stream where the next frame cannot be trusted,
+            // or another exchange is replacing the connection: wait for it
+            reconnect(deadline, token);
+        }
+        // The local stays usable if close() clears the field under the exchange
+        Socket socket = this.socket;
+        if (peerClosed) {
+            throw new IOException("Connection closed by peer");
+        }
+        if (socket == null) {
+            throw new IOException("Not connected");
+        }
+        DuplexConnection connection = duplex;
+        if (connection != null) {
+            return exchangeDuplex(connection, socket, message, deadline, tx);
+        }
+        if (config.isFullDuplex() && !config.isAutoCloseAfterResponse()) {
+            // Connected, but another exchange's reconnect has not started the reader yet
+            throw new IOException("Not connected");
+        }
+        // Closing the socket is the only way to wake a blocked write or read
+        token.onCancel(CancelToken.close(socket));
+        InputStream in = input(socket);
+        if (!late.isEmpty() && !drainLate(socket, in, deadline, tx)) {
+            // Never send behind a frame that matches nothing; start over on a new connection
+            reconnect(deadline, token);
+            socket = this.socket;
+            if (socket == null) {
+                throw new IOException("Not connected");
+            }
+            token.onCancel(CancelToken.close(socket));
+            in = input(socket);
+        }
+        // A blocking write cannot be timed out; it only blocks once the send buffer is full
+        deadline.check("write");
+        
         // Note: For blocking engine, we'll implement a simplified version here
         // Full implementation would include all the retry logic from the original
         
@@ -263,9 +711,16 @@ public class BlockingEngine implements ConnectionEngine {
         }
         
         OutputStream out = socket.getOutputStream();
-        out.write(lengthHeader);
-        out.write(message);
-        out.flush();
+        try {
+            out.write(lengthHeader);
+            out.write(message);
+            out.flush();
+        } catch (IOException e) {
+            // Part of the request may be on the wire
+            dropOutOfSync(socket, "Connection out of sync: " + e.getMessage());
+            throw e;
+        }
+        tx.sentNanos = System.nanoTime();
         
         changeState(ConnectionState.DATA_SENT, "Data sent");
         if (stateListener != null) {
@@ -276,7 +731,7 @@ public class BlockingEngine implements ConnectionEngine {
         // Wait for response
         changeState(ConnectionState.WAITING_RESPONSE, "Waiting for response");
         if (stateListener != null) {
-            stateListener.onResponseWaitStarted(config.getReadTimeoutMs());
+            stateListener.onResponseWaitStarted(settings.getReadTimeoutMs());
         }
         
         // Read response header
@@ -285,13 +740,148 @@ public class BlockingEngine implements ConnectionEngine {
             stateListener.onResponseHeaderReadStarted(lengthHeaderSize);
         }
         
-        InputStream in = socket.getInputStream();
+        ResponseTimer timer = ResponseTimer.start(config, settings, deadline);
+        
+        byte[] responseData;
+        try {
+            responseData = readResponse(socket, in, message, timer, startTime, tx);
+        } catch (IOException e) {
+            // A response that times out before its first byte may still come: keep it matchable
+            if (frameOpen || !(e instanceof SocketTimeoutException && late.add(message))) {
+                dropOutOfSync(socket, "Connection out of sync: " + e.getMessage());
+            }
+            throw e;
+        }
+        int responseLength = responseData.length;
+        
+        // Process response
+        changeState(ConnectionState.PROCESSING_RESPONSE, "Processing response");
+        if (stateListener != null) {
+            stateListener.onResponseProcessingStarted(responseLength);
+        }
+        
+        long responseTime = System.currentTimeMillis() - startTime;
+        
+        changeState(ConnectionState.TRANSACTION_COMPLETE, "Transaction complete");
+        if (stateListener != null) {
+            stateListener.onResponseProcessingCompleted(0, responseTime);
+        }
+        
+        // Auto-close after transaction (configurable)
+        if (config != null && config.isAutoCloseAfterResponse()) {
+            close();
+        }
+        
+        return new IsoResponse(responseData, responseTime);
+    }
+
+    /**
+     * Exchange on a full-duplex connection: the request goes through the connection's
+     * outbox, and the reader thread hands over the response
+     */
+    private IsoResponse exchangeDuplex(DuplexConnection connection, Socket socket, byte[] message, Deadline deadline,
+                                       Transaction tx) throws IOException {
+        CancelToken token = tx.token;
+        // Closing the socket is the only way to wake a blocked write
+        token.onCancel(CancelToken.close(connection));
+        deadline.check("write");
+        
+        changeState(ConnectionState.SENDING_DATA, "Sending data");
+        if (stateListener != null) {
+            stateListener.onSendStarted(message.length, "ISO-8583");
+        }
+        
+        long startTime = System.currentTimeMillis();
+        DuplexConnection.Waiter waiter = connection.register(message);
+        try {
+            connection.send(waiter);
+        } catch (IOException e) {
+            connection.abandon(waiter);
+            // Part of the request may be on the wire
+            dropOutOfSync(socket, "Connection out of sync: " + e.getMessage());
+            throw e;
+        }
+        tx.sentNanos = System.nanoTime();
+        
+        changeState(ConnectionState.DATA_SENT, "Data sent");
+        if (stateListener != null) {
+            stateListener.onDataTransmissionCompleted(lengthHeaderSize + message.length,
+                System.currentTimeMillis() - startTime);
+        }
+        
+        changeState(ConnectionState.WAITING_RESPONSE, "Waiting for response");
+        if (stateListener != null) {
+            stateListener.onResponseWaitStarted(settings.getReadTimeoutMs());
+        }
+        
+        // The reader thread keeps the socket; a cancel only has to end this wait
+        token.onCancel(waiter);
+        byte[] responseData;
+        try {
+            responseData = connection.await(waiter, ResponseTimer.start(config, settings, deadline));
+        } catch (IOException e) {
+            responseData = connection.abandon(waiter);
+            if (responseData == null) {
+                if (!waiter.isKeyed() && connection.isSent(waiter)) {
+                    // Its response may still come and would be taken by the next request without a STAN
+                    dropOutOfSync(socket, "Connection out of sync: " + e.getMessage());
+                }
+                throw e;
+            }
+        }
+        tx.firstByteNanos = waiter.getReceivedNanos();
+        
+        changeState(ConnectionState.DATA_RECEIVED, "Data received");
+        if (stateListener != null) {
+            stateListener.onResponseDataReceived(responseData, responseData.length,
+                System.currentTimeMillis() - startTime);
+        }
+        
+        long responseTime = System.currentTimeMillis() - startTime;
+        
+        changeState(ConnectionState.TRANSACTION_COMPLETE, "Transaction complete");
+        if (stateListener != null) {
+            stateListener.onResponseProcessingCompleted(0, responseTime);
+        }
+        
+        return new IsoResponse(responseData, responseTime);
+    }
+
+    /**
+     * Read frames until the response to the request; late responses on the way are handed off
+     */
+    private byte[] readResponse(Socket socket, InputStream in, byte[] message, ResponseTimer timer, long startTime,
+                                Transaction tx) throws IOException {
+        frameOpen = false;
+        while (true) {
+            byte[] frame = readFrame(socket, in, timer, startTime, tx);
+            if (late.isEmpty()) {
+                return frame;
+            }
+            int match = late.classify(frame, message);
+            if (match == LateResponses.OURS) {
+                return frame;
+            }
+            if (match == LateResponses.UNMATCHED) {
+                throw new IOException("Unmatched response " + describe(frame) + ", connection reset");
+            }
+            timer.onFrameSkipped(); // a late response; ours is still to come
+        }
+    }
+
+    /**
+     * Read one length-prefixed frame; {@link #frameOpen} is set while it is partly read
+     */
+    private byte[] readFrame(Socket socket, InputStream in, ResponseTimer timer, long startTime, Transaction tx)
+            throws IOException {
         int headerRead = 0;
         while (headerRead < lengthHeaderSize) {
-            int n = in.read(headerReadBuffer, headerRead, lengthHeaderSize - headerRead);
+            int n = read(socket, in, headerReadBuffer, headerRead, lengthHeaderSize - headerRead, timer);
             if (n < 0) throw new IOException("Connection closed while reading header");
             headerRead += n;
+            frameOpen = true;
         }
+        tx.firstByteNanos = System.nanoTime();
         
         int responseLength = parseLength(headerReadBuffer);
         changeState(ConnectionState.HEADER_RECEIVED, "Header received");
@@ -309,51 +899,117 @@ public class BlockingEngine implements ConnectionEngine {
         byte[] responseData = new byte[responseLength];
         int dataRead = 0;
         while (dataRead < responseLength) {
-            int n = in.read(responseData, dataRead, responseLength - dataRead);
+            int n = read(socket, in, responseData, dataRead, responseLength - dataRead, timer);
             if (n < 0) throw new IOException("Connection closed while reading data");
             dataRead += n;
         }
+        frameOpen = false;
         
         changeState(ConnectionState.DATA_RECEIVED, "Data received");
         if (stateListener != null) {
             stateListener.onResponseDataReceived(responseData, responseLength,
                 System.currentTimeMillis() - startTime);
         }
-        
-        // Process response
-        changeState(ConnectionState.PROCESSING_RESPONSE, "Processing response");
-        if (stateListener != null) {
-            stateListener.onResponseProcessingStarted(responseLength);
+        return responseData;
+    }
+
+    /**
+     * Read the frames already waiting before a request goes out, so late responses are
+     * handed off instead of being taken for its reply
+     * @return false if a frame matched no timed-out request; the connection was dropped
+     */
+    private boolean drainLate(Socket socket, InputStream in, Deadline deadline, Transaction tx) throws IOException {
+        long startTime = System.currentTimeMillis();
+        frameOpen = false;
+        try {
+            while (!late.isEmpty() && in.available() > 0) {
+                byte[] frame = readFrame(socket, in, ResponseTimer.start(config, settings, deadline), startTime, tx);
+                if (late.classify(frame, null) != LateResponses.LATE) {
+                    dropOutOfSync(socket, "Unmatched frame " + describe(frame) + " before sending");
+                    return false;
+                }
+            }
+        } catch (IOException e) {
+            dropOutOfSync(socket, "Connection out of sync: " + e.getMessage());
+            throw e;
         }
-        
-        long responseTime = System.currentTimeMillis() - startTime;
-        
-        changeState(ConnectionState.TRANSACTION_COMPLETE, "Transaction complete");
-        if (stateListener != null) {
-            stateListener.onResponseProcessingCompleted(0, responseTime);
+        return true;
+    }
+
+    /**
+     * Socket input, after any bytes the liveness monitor read while the connection was idle
+     */
+    private InputStream input(Socket socket) throws IOException {
+        InputStream in = socket.getInputStream();
+        LivenessMonitor.Watch watch = liveness;
+        byte[] early = watch != null ? watch.takePending() : null;
+        if (early != null) {
+            in = new SequenceInputStream(new ByteArrayInputStream(early), in);
         }
-        
-        // Auto-close after transaction (configurable)
-        if (config != null && config.isAutoCloseAfterResponse()) {
-            close();
+        return in;
+    }
+
+    /**
+     * Give up on a connection whose next frame cannot be trusted; the next exchange reconnects
+     */
+    private void dropOutOfSync(Socket target, String reason) {
+        outOfSync = true;
+        late.clear();
+        DuplexConnection connection = duplex;
+        if (connection != null) {
+            connection.close();
         }
-        
-        return new IsoResponse(responseData, responseTime);
+        LivenessMonitor.Watch watch = liveness;
+        if (watch != null) {
+            watch.cancel();
+            liveness = null;
+        }
+        try { target.close(); } catch (IOException ignored) {}
+        if (stateListener != null) {
+            stateListener.onLog("WARN", reason, "Reconnecting on the next exchange");
+        }
+    }
+
+    private String describe(byte[] frame) {
+        return IsoCodes.formatMti(config.getMessageInspector().getMti(frame))
+            + " STAN " + config.getMessageInspector().getStan(frame);
     }
 
     @Override
     public void close() {
+        // Only the connection current now; one made by a reconnect after this call is left alone
+        Socket target = socket;
+        RetryWait retryWait = pendingRetry;
+        if (retryWait != null) {
+            retryWait.abort(); // wake a connect() that is backing off
+        }
+        for (CancelToken token : operations) {
+            token.cancel(); // wake every connect or exchange blocked on the socket
+        }
         if (currentState == ConnectionState.DISCONNECTED) {
             return; // Already disconnected
         }
-        
-        changeState(ConnectionState.DISCONNECTING, "Starting disconnection");
-        if (stateListener != null) {
-            stateListener.onDisconnectionStarted("Manual close");
+        if (!operationLock.tryLock()) {
+            return; // a connect holds the lock; woken above, it closes its socket as it fails
         }
-        
-        operationLock.lock();
         try {
+            if (socket != target) {
+                return;
+            }
+            changeState(ConnectionState.DISCONNECTING, "Starting disconnection");
+            if (stateListener != null) {
+                stateListener.onDisconnectionStarted("Manual close");
+            }
+            
+            late.clear();
+            if (liveness != null) {
+                liveness.cancel();
+                liveness = null;
+            }
+            if (duplex != null) {
+                duplex.close(); // stops the reader without reporting the peer gone
+                duplex = null;
+            }
             if (socket != null) {
                 changeState(ConnectionState.CLOSING_SOCKET, "Closing socket");
                 if (stateListener != null) {
@@ -391,7 +1047,12 @@ public class BlockingEngine implements ConnectionEngine {
 
     @Override
     public boolean isConnected() {
-        return socket != null && socket.isConnected() && !socket.isClosed();
+        return socket != null && socket.isConnected() && !socket.isClosed() && !peerClosed;
+    }
+
+    @Override
+    public boolean isPeerClosed() {
+        return peerClosed;
     }
 
     @Override
@@ -409,6 +1070,11 @@ public class BlockingEngine implements ConnectionEngine {
         this.cancelled = cancelled;
     }
 
+    @Override
+    public void setRuntimeSettings(RuntimeSettings settings) {
+        this.settings = settings;
+    }
+
     @Override
     public String getEngineType() {
         return "Blocking I/O Engine";
@@ -423,7 +1089,7 @@ public class BlockingEngine implements ConnectionEngine {
         boolean socketClosed = socket != null && socket.isClosed();
         boolean socketBound = socket != null && socket.isBound();
         
-        builder.connected(socketConnected && !socketClosed)
+        builder.connected(socketConnected && !socketClosed && !peerClosed)
                .closed(socketClosed || currentState == ConnectionState.DISCONNECTED)
                .open(socketConnected && !socketClosed)
                .connecting(currentState.isConnecting())
@@ -444,13 +1110,14 @@ public class BlockingEngine implements ConnectionEngine {
                .lastError(lastError)
                .connectionStartTime(connectionStartTime)
                .lastActivityTime(lastActivityTime)
-               .reconnectAttempts(reconnectAttempts);
+               .reconnectAttempts(reconnectAttempts)
+               .circuitState(circuits[endpointIndex] != null ? circuits[endpointIndex].getState() : null);
 
         // Socket-specific checks
         if (socket != null) {
             try {
-                builder.readable(!socket.isInputShutdown())
-                       .writable(!socket.isOutputShutdown());
+                builder.readable(!peerClosed && !socket.isInputShutdown())
+                       .writable(!peerClosed && !socket.isOutputShutdown());
                 
                 if (socket.getLocalSocketAddress() != null) {
                     builder.localAddress(socket.getLocalSocketAddress().toString());
@@ -478,7 +1145,9 @@ public class BlockingEngine implements ConnectionEngine {
     }
 
     private String generateStatusDescription(ConnectionStatus.Builder builder) {
-        if (currentState == ConnectionState.CONNECTED) {
+        if (peerClosed) {
+            return "Connection closed by peer";
+        } else if (currentState == ConnectionState.CONNECTED) {
             return "Connected and ready";
         } else if (currentState.isConnecting()) {
             return "Connection in progress";
@@ -503,11 +1172,47 @@ public class BlockingEngine implements ConnectionEngine {
         if (stateListener != null) {
             stateListener.onStateChanged(oldState, newState, details);
         }
-        if (stateListener != null && (config == null || config.isEnableHotPathLogs())) {
+        if (stateListener != null && hotPathLogs()) {
             stateListener.onLog("INFO", "State changed: " + oldState + " -> " + newState, details);
         }
     }
 
+    /**
+     * Start a connect or exchange with a fresh token; an earlier cancel does not carry over.
+     * The cancelled flag is only cleared when nothing else runs, or it would hide a cancel
+     * another exchange on the same connection just got.
+     */
+    private CancelToken beginOperation() {
+        CancelToken token = new CancelToken();
+        if (operations.isEmpty()) {
+            cancelled.set(false);
+        }
+        operations.add(token);
+        return token;
+    }
+
+    private void endOperation(CancelToken token) {
+        operations.remove(token);
+    }
+
+    private boolean awaitRetry(long delayMs) throws InterruptedIOException {
+        RetryWait retryWait = new RetryWait(delayMs);
+        pendingRetry = retryWait;
+        try {
+            return retryWait.await();
+        } finally {
+            pendingRetry = null;
+        }
+    }
+
+    private EngineProbe probe() {
+        return EngineProbes.resolve(config.getEngineProbe());
+    }
+
+    private boolean hotPathLogs() {
+        return settings == null || settings.isEnableHotPathLogs();
+    }
+
     private byte[] createLengthHeader(int length) {
         ByteBuffer buffer = ByteBuffer.wrap(lengthHeaderBuffer);
         buffer.order(byteOrder);
@@ -0,0 +1,81 @@
+package com.miaad.iso8583TCPSocket.engine;
+
+import com.miaad.iso8583TCPSocket.OperationCancelledException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.Selector;
+
+/**
+ * Cancellation of one engine operation, a connect or an exchange. The operation
+ * registers how to wake whatever it is blocked on, and {@link #cancel()} does that
+ * at once from any thread: a selector is woken, a blocking socket is closed under
+ * its read. Every operation gets a new token, so a cancel never carries over.
+ */
+final class CancelToken {
+
+    private volatile boolean cancelled;
+    private volatile Runnable wakeup;
+
+    /**
+     * Set what the operation is blocked on now; runs it at once if already cancelled
+     */
+    void onCancel(Runnable wakeup) {
+        this.wakeup = wakeup;
+        if (cancelled) {
+            wakeup.run(); // cancelled while the operation was setting up
+        }
+    }
+
+    void cancel() {
+        cancelled = true;
+        Runnable w = wakeup;
+        if (w != null) {
+            w.run();
+        }
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @throws OperationCancelledException if cancelled, before starting or continuing a phase
+     */
+    void check(String phase) throws OperationCancelledException {
+        if (cancelled) {
+            throw new OperationCancelledException(phase);
+        }
+    }
+
+    /**
+     * Exception for a phase that failed because the operation was cancelled
+     * @param cause What the woken phase failed with, e.g. a closed socket
+     */
+    OperationCancelledException cancelled(String phase, Exception cause) {
+        OperationCancelledException e = new OperationCancelledException(phase);
+        e.initCause(cause);
+        return e;
+    }
+
+    static Runnable wake(final Selector selector) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                selector.wakeup();
+            }
+        };
+    }
+
+    static Runnable close(final Closeable closeable) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    closeable.close();
+                } catch (IOException ignored) {
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,77 @@
+package com.miaad.iso8583TCPSocket.engine;
+
+import com.miaad.iso8583TCPSocket.ConnectionStateListener;
+import com.miaad.iso8583TCPSocket.IsoConfig;
+import com.miaad.iso8583TCPSocket.endpoint.Endpoint;
+import com.miaad.iso8583TCPSocket.endpoint.EndpointGroup;
+import com.miaad.iso8583TCPSocket.resilience.CircuitBreaker;
+import com.miaad.iso8583TCPSocket.resilience.CircuitBreakerOpenException;
+import com.miaad.iso8583TCPSocket.resilience.CircuitBreakerRegistry;
+import com.miaad.iso8583TCPSocket.resilience.CircuitState;
+
+/**
+ * Per-engine view of one endpoint's shared circuit breaker.
+ * Reports state changes the engine observes to its listener.
+ */
+final class CircuitGuard {
+
+    private final CircuitBreaker breaker;
+    private volatile CircuitState lastSeen = CircuitState.CLOSED;
+
+    private CircuitGuard(CircuitBreaker breaker) {
+        this.breaker = breaker;
+    }
+
+    /**
+     * @return One guard per endpoint of the configured group, all null if no circuit breaker is configured
+     */
+    static CircuitGuard[] forGroup(IsoConfig config) {
+        EndpointGroup group = config.getEndpointGroup();
+        CircuitGuard[] guards = new CircuitGuard[group.size()];
+        if (config.getCircuitBreakerConfig() != null) {
+            for (int i = 0; i < guards.length; i++) {
+                Endpoint endpoint = group.get(i);
+                guards[i] = new CircuitGuard(CircuitBreakerRegistry.get(endpoint.getHost(), endpoint.getPort(),
+                    config.getCircuitBreakerConfig()));
+            }
+        }
+        return guards;
+    }
+
+    /**
+     * Get permission for a connection attempt
+     * @throws CircuitBreakerOpenException if the breaker rejects it
+     */
+    void acquire(ConnectionStateListener listener) throws CircuitBreakerOpenException {
+        boolean permitted = breaker.tryAcquirePermission();
+        report(listener);
+        if (!permitted) {
+            throw new CircuitBreakerOpenException(breaker.getName(), breaker.getRetryAfterMs());
+        }
+    }
+
+    void record(boolean success, long startNanos, ConnectionStateListener listener) {
+        long duration = System.nanoTime() - startNanos;
+        if (success) {
+            breaker.onSuccess(duration);
+        } else {
+            breaker.onError(duration);
+        }
+        report(listener);
+    }
+
+    CircuitState getState() {
+        return breaker.getState();
+    }
+
+    private void report(ConnectionStateListener listener) {
+        CircuitState state = breaker.getState();
+        CircuitState previous = lastSeen;
+        if (state != previous) {
+            lastSeen = state;
+            if (listener != null) {
+                listener.onCircuitStateChanged(breaker.getName(), previous, state);
+            }
+        }
+    }
+}
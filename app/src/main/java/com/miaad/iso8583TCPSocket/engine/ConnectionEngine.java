@@ -3,8 +3,10 @@ package com.miaad.iso8583TCPSocket.engine;
 import com.miaad.iso8583TCPSocket.ConnectionState;
 import com.miaad.iso8583TCPSocket.ConnectionStateListener;
 import com.miaad.iso8583TCPSocket.ConnectionStatus;
+import com.miaad.iso8583TCPSocket.Deadline;
 import com.miaad.iso8583TCPSocket.IsoConfig;
 import com.miaad.iso8583TCPSocket.IsoResponse;
+import com.miaad.iso8583TCPSocket.RuntimeSettings;
 
 import java.io.IOException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -25,6 +27,14 @@ public interface ConnectionEngine {
      */
     void connect() throws IOException;
     
+    /**
+     * Connect to the server, giving up on retries and attempts once the deadline passes
+     * @throws IOException if connection fails
+     */
+    default void connect(Deadline deadline) throws IOException {
+        connect();
+    }
+    
     /**
      * Send message and receive response
      * @param message Message to send
@@ -34,12 +44,23 @@ public interface ConnectionEngine {
     IsoResponse sendAndReceive(byte[] message) throws IOException;
     
     /**
-     * Close the connection
+     * Send message and receive response, with the write and the read bounded by the
+     * time left before the deadline
+     * @throws IOException if send/receive fails
+     */
+    default IsoResponse sendAndReceive(byte[] message, Deadline deadline) throws IOException {
+        return sendAndReceive(message);
+    }
+    
+    /**
+     * Close the connection, cancelling an operation in progress
      */
     void close();
     
     /**
-     * Cancel any ongoing operations
+     * Cancel the connect or exchange in progress and close the connection. The
+     * operation is woken at once and fails with OperationCancelledException; the
+     * next one starts uncancelled. Never waits for the operation to finish.
      */
     void cancel();
     
@@ -48,6 +69,13 @@ public interface ConnectionEngine {
      */
     boolean isConnected();
     
+    /**
+     * Check if the server closed or reset the connection while it was idle
+     */
+    default boolean isPeerClosed() {
+        return false;
+    }
+    
     /**
      * Get current connection state
      */
@@ -59,10 +87,16 @@ public interface ConnectionEngine {
     boolean isOperationInProgress();
     
     /**
-     * Set cancellation flag
+     * Set the flag reporting a cancelled operation in the connection status; the
+     * engine clears it when the next operation starts
      */
     void setCancelled(AtomicBoolean cancelled);
     
+    /**
+     * Set live settings (read timeout, hot path logs) shared with the client
+     */
+    void setRuntimeSettings(RuntimeSettings settings);
+    
     /**
      * Get engine type description
      */
@@ -0,0 +1,58 @@
+package com.miaad.iso8583TCPSocket.engine;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pools of daemon threads shared by all clients. A pool starts no thread until its
+ * first task, and idle threads end after {@link #KEEP_ALIVE_SECONDS}, so holding one
+ * in a static field costs nothing while a feature is unused.
+ */
+public final class DaemonExecutors {
+
+    static final long KEEP_ALIVE_SECONDS = 30;
+
+    private DaemonExecutors() {
+    }
+
+    /**
+     * Pool that runs every task at once on a thread of its own, for library I/O that
+     * may block for a timeout; its callers bound how many tasks they start
+     * @param prefix Thread name prefix, e.g. "iso-connect" for iso-connect-1, iso-connect-2...
+     */
+    public static ExecutorService cached(String prefix) {
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new SynchronousQueue<Runnable>(), threads(prefix));
+    }
+
+    /**
+     * Pool of at most {@code maxThreads} threads with at most {@code maxQueued} tasks
+     * waiting, for application handlers fed by what the host sends: a flood of frames
+     * must not grow it without limit. Beyond that, {@code execute} throws
+     * {@link RejectedExecutionException}; callers log the task and drop it.
+     */
+    public static ExecutorService bounded(String prefix, int maxThreads, int maxQueued) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(maxQueued), threads(prefix));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    static ThreadFactory threads(final String prefix) {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, prefix + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
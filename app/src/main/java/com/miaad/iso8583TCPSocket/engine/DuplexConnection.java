@@ -0,0 +1,497 @@
+package com.miaad.iso8583TCPSocket.engine;
+
+import com.miaad.iso8583TCPSocket.ConnectionStateListener;
+import com.miaad.iso8583TCPSocket.IsoCodes;
+import com.miaad.iso8583TCPSocket.IsoConfig;
+import com.miaad.iso8583TCPSocket.OperationCancelledException;
+import com.miaad.iso8583TCPSocket.UnsolicitedMessageHandler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A blocking connection read by a dedicated thread, so the host can send at any time.
+ * <p>
+ * The reader owns the input stream. Each frame goes to the caller waiting for it by
+ * response MTI and STAN, else to the late response handler if it answers a request that
+ * already timed out, else to the {@link UnsolicitedMessageHandler} if the host sent it on
+ * its own. Requests without a STAN wait in order for responses nobody else claims.
+ * <p>
+ * Writers never take a lock. Each frame goes on a lock-free outbox, and whichever thread
+ * finds nobody writing becomes its single owner: it writes every queued frame in order,
+ * several per socket write under load, until the outbox is empty. A request never waits
+ * for another's write, only for its own response; a request given up before its turn
+ * is never sent.
+ */
+final class DuplexConnection implements Runnable, Closeable {
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    // One socket write takes queued frames up to this size
+    private static final int MAX_BATCH_BYTES = 64 * 1024;
+
+    private static final int QUEUED = 0;
+    private static final int SENT = 1;
+    private static final int WITHDRAWN = 2;
+
+    /**
+     * Told when the connection ends other than by {@link #close()}
+     */
+    interface Listener {
+        void onConnectionLost(DuplexConnection connection, IOException error);
+    }
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final int lengthHeaderSize;
+    private final ByteOrder byteOrder;
+    private final IsoConfig config;
+    private final LateResponses late;
+    private final ConnectionStateListener stateListener;
+    private final Listener listener;
+    // Frames to write, and the flag whose holder writes them; the batch buffer is the holder's
+    private final ConcurrentLinkedQueue<Outgoing> outbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean writing = new AtomicBoolean();
+    private byte[] batch;
+    // Waiters by response key, and those without a key in the order they were sent; guarded by this
+    private final Map<Long, Waiter> keyed = new HashMap<>();
+    private final ArrayDeque<Waiter> unkeyed = new ArrayDeque<>();
+    private IOException failure;
+    private volatile boolean closing;
+    private final UnsolicitedMessageHandler.Replier replier = new UnsolicitedMessageHandler.Replier() {
+        @Override
+        public void reply(byte[] message) throws IOException {
+            write(message);
+        }
+    };
+
+    /**
+     * One frame in the outbox: a request, or a reply whose writer waits for the write
+     */
+    private static final class Outgoing {
+        final byte[] frame;
+        final Waiter waiter;
+        final Thread thread;
+        volatile boolean done;
+        volatile IOException error;
+
+        Outgoing(byte[] frame, Waiter waiter, Thread thread) {
+            this.frame = frame;
+            this.waiter = waiter;
+            this.thread = thread;
+        }
+
+        void written(IOException e) {
+            error = e;
+            done = true;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    /**
+     * One request waiting for its response
+     */
+    final class Waiter implements Runnable {
+        final byte[] request;
+        final long key;
+        private final Thread thread;
+        private final AtomicInteger sendState = new AtomicInteger(QUEUED);
+        private volatile byte[] response;
+        private volatile IOException error;
+        private long receivedNanos;
+
+        Waiter(byte[] request, long key) {
+            this.request = request;
+            this.key = key;
+            this.thread = Thread.currentThread();
+        }
+
+        boolean isKeyed() {
+            return key != LateResponses.NO_KEY;
+        }
+
+        /**
+         * When the reader had the whole response, as a nanoTime
+         */
+        long getReceivedNanos() {
+            return receivedNanos;
+        }
+
+        /**
+         * Cancel the wait
+         */
+        @Override
+        public void run() {
+            fail(new OperationCancelledException("read"));
+        }
+
+        void complete(byte[] frame) {
+            receivedNanos = System.nanoTime();
+            response = frame;
+            LockSupport.unpark(thread);
+        }
+
+        void fail(IOException e) {
+            error = e;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    DuplexConnection(Socket socket, int lengthHeaderSize, ByteOrder byteOrder, IsoConfig config,
+                     LateResponses late, ConnectionStateListener stateListener, Listener listener) throws IOException {
+        this.socket = socket;
+        this.in = socket.getInputStream();
+        this.out = socket.getOutputStream();
+        this.lengthHeaderSize = lengthHeaderSize;
+        this.byteOrder = byteOrder;
+        this.config = config;
+        this.late = late;
+        this.stateListener = stateListener;
+        this.listener = listener;
+    }
+
+    /**
+     * Start the reader thread; the socket must not be read by anyone else from now on
+     */
+    void start() throws IOException {
+        socket.setSoTimeout(0); // the reader waits for the host as long as the connection lives
+        Thread thread = new Thread(this, "iso-reader-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Expect the response to a request, before it is written so the response cannot be missed
+     * @throws IOException if the connection is gone or a request with the same key is in flight
+     */
+    synchronized Waiter register(byte[] request) throws IOException {
+        if (failure != null) {
+            throw new IOException("Connection lost: " + failure.getMessage(), failure);
+        }
+        Waiter waiter = new Waiter(request, late.requestKey(request));
+        if (!waiter.isKeyed()) {
+            unkeyed.add(waiter);
+        } else if (keyed.containsKey(waiter.key)) {
+            throw new IOException("A request with the same MTI and STAN is already waiting for its response");
+        } else {
+            keyed.put(waiter.key, waiter);
+        }
+        return waiter;
+    }
+
+    /**
+     * Queue a registered request for writing. Returns once it is written, or as soon as
+     * another thread has taken over writing it; a failed write fails its waiter.
+     * @throws IOException if this thread was writing and the write failed
+     */
+    void send(Waiter waiter) throws IOException {
+        outbox.add(new Outgoing(frame(waiter.request), waiter, null));
+        flush();
+    }
+
+    /**
+     * Write one frame outside any exchange, such as a reply to the host, and wait until it is written
+     */
+    void write(byte[] message) throws IOException {
+        Outgoing outgoing = new Outgoing(frame(message), null, Thread.currentThread());
+        outbox.add(outgoing);
+        flush();
+        boolean interrupted = false;
+        while (!outgoing.done) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (outgoing.error != null) {
+            throw outgoing.error;
+        }
+    }
+
+    private byte[] frame(byte[] message) {
+        byte[] frame = new byte[lengthHeaderSize + message.length];
+        ByteBuffer buffer = ByteBuffer.wrap(frame).order(byteOrder);
+        if (lengthHeaderSize == 2) {
+            buffer.putShort((short) (message.length & 0xFFFF));
+        } else {
+            buffer.putInt(message.length);
+        }
+        buffer.put(message);
+        return frame;
+    }
+
+    /**
+     * Write the outbox if nobody else is. The holder writes until the outbox is empty and
+     * checks again after letting go, so a frame queued meanwhile is never left behind.
+     */
+    private void flush() throws IOException {
+        IOException failure = null;
+        while (!outbox.isEmpty() && writing.compareAndSet(false, true)) {
+            try {
+                drain();
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                writing.set(false);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Write queued frames in order, as many per socket write as fit in one batch
+     */
+    private void drain() throws IOException {
+        ArrayDeque<Outgoing> pending = new ArrayDeque<>();
+        int length = 0;
+        Outgoing next;
+        while ((next = pollSendable()) != null) {
+            if (length > 0 && length + next.frame.length > MAX_BATCH_BYTES) {
+                writeFrames(batch, length, pending);
+                length = 0;
+            }
+            pending.add(next);
+            if (length == 0 && (outbox.isEmpty() || next.frame.length > MAX_BATCH_BYTES)) {
+                writeFrames(next.frame, next.frame.length, pending); // alone: no copy
+                continue;
+            }
+            if (batch == null) {
+                batch = new byte[MAX_BATCH_BYTES];
+            }
+            System.arraycopy(next.frame, 0, batch, length, next.frame.length);
+            length += next.frame.length;
+        }
+        if (length > 0) {
+            writeFrames(batch, length, pending);
+        }
+    }
+
+    /**
+     * Next frame to write; requests given up before their turn are skipped
+     */
+    private Outgoing pollSendable() {
+        Outgoing next;
+        while ((next = outbox.poll()) != null) {
+            if (next.waiter == null || next.waiter.sendState.compareAndSet(QUEUED, SENT)) {
+                return next;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * One socket write, so headers and bodies never go out in separate segments. A failed
+     * write leaves the stream mid-frame: the socket is closed and the reader fails every waiter.
+     */
+    private void writeFrames(byte[] data, int length, ArrayDeque<Outgoing> frames) throws IOException {
+        IOException error = null;
+        try {
+            out.write(data, 0, length);
+            out.flush();
+        } catch (IOException e) {
+            error = e;
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+        Outgoing outgoing;
+        while ((outgoing = frames.poll()) != null) {
+            outgoing.written(error);
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Wait for the response within the response's time limits
+     * @throws SocketTimeoutException subtype of the limit that ran out first
+     */
+    byte[] await(Waiter waiter, ResponseTimer timer) throws IOException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                byte[] response = waiter.response;
+                if (response != null) {
+                    return response;
+                }
+                IOException error = waiter.error;
+                if (error != null) {
+                    throw error;
+                }
+                long nanos = timer.remainingNanos();
+                if (nanos == Long.MAX_VALUE) {
+                    LockSupport.park(this);
+                } else {
+                    LockSupport.parkNanos(this, nanos);
+                }
+                if (Thread.interrupted()) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Stop waiting for a response. A request still in the outbox is never sent; a keyed
+     * request already sent stays matchable as a late response.
+     * @return The response if it arrived after all, or null
+     */
+    synchronized byte[] abandon(Waiter waiter) {
+        if (waiter.response != null) {
+            return waiter.response;
+        }
+        boolean sent = !waiter.sendState.compareAndSet(QUEUED, WITHDRAWN);
+        if (waiter.isKeyed()) {
+            if (keyed.get(waiter.key) == waiter) {
+                keyed.remove(waiter.key);
+                if (sent) {
+                    late.add(waiter.request);
+                }
+            }
+        } else {
+            unkeyed.remove(waiter);
+        }
+        return null;
+    }
+
+    /**
+     * Whether a waiter's request went out, or may still be going out; false once withdrawn
+     */
+    boolean isSent(Waiter waiter) {
+        return waiter.sendState.get() != WITHDRAWN;
+    }
+
+    boolean isOpen() {
+        return !closing && !socket.isClosed();
+    }
+
+    /**
+     * Close the socket; the reader stops and waiters fail without the listener being told
+     */
+    @Override
+    public void close() {
+        closing = true;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Override
+    public void run() {
+        byte[] header = new byte[lengthHeaderSize];
+        try {
+            while (true) {
+                readFully(header, lengthHeaderSize);
+                int length = parseLength(header);
+                int max = config.getMaxMessageSizeBytes();
+                if (length < 0 || (max > 0 && length > max)) {
+                    throw new IOException("Invalid frame length " + length);
+                }
+                byte[] frame = new byte[length];
+                readFully(frame, length);
+                dispatch(frame);
+            }
+        } catch (IOException e) {
+            stopped(e);
+        } catch (RuntimeException e) {
+            stopped(new IOException("Reader failed", e));
+        }
+    }
+
+    private void readFully(byte[] buffer, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int n = in.read(buffer, read, length - read);
+            if (n < 0) {
+                throw new IOException("Connection closed by peer");
+            }
+            read += n;
+        }
+    }
+
+    private int parseLength(byte[] header) {
+        ByteBuffer buffer = ByteBuffer.wrap(header).order(byteOrder);
+        return lengthHeaderSize == 2 ? buffer.getShort() & 0xFFFF : buffer.getInt();
+    }
+
+    private void dispatch(byte[] frame) {
+        boolean unsolicited = false;
+        synchronized (this) {
+            // Completed under the lock, so a waiter giving up at the same moment still gets it
+            long key = late.frameKey(frame);
+            Waiter waiter = key != LateResponses.NO_KEY ? keyed.remove(key) : null;
+            if (waiter == null) {
+                if (UnsolicitedMessages.isUnsolicited(config, frame)) {
+                    unsolicited = true;
+                } else if (!late.isEmpty() && late.classify(frame, null) == LateResponses.LATE) {
+                    return;
+                } else {
+                    // A request without a STAN takes the next response nobody else claims
+                    waiter = unkeyed.poll();
+                }
+            }
+            if (waiter != null) {
+                waiter.complete(frame);
+                return;
+            }
+        }
+        if (unsolicited) {
+            UnsolicitedMessages.dispatch(config, stateListener, frame, replier);
+        } else if (stateListener != null) {
+            stateListener.onLog("WARN", "Unmatched response " + IsoCodes.formatMti(config.getMessageInspector().getMti(frame))
+                + " STAN " + config.getMessageInspector().getStan(frame), "Dropped");
+        }
+    }
+
+    /**
+     * The reader ended: fail every waiter, and report it unless the connection was closed on purpose
+     */
+    private void stopped(IOException e) {
+        if (!closing) {
+            // First, so an exchange that finds the connection failed already sees it gone
+            listener.onConnectionLost(this, e);
+        }
+        ArrayDeque<Waiter> failed = new ArrayDeque<>();
+        synchronized (this) {
+            failure = e;
+            failed.addAll(keyed.values());
+            failed.addAll(unkeyed);
+            keyed.clear();
+            unkeyed.clear();
+        }
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+        for (Waiter waiter : failed) {
+            waiter.fail(e);
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.miaad.iso8583TCPSocket.engine;
+
+import com.miaad.iso8583TCPSocket.ConnectTimeoutException;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Staggered parallel connects over all addresses of a host (RFC 8305).
+ * <p>
+ * Addresses are interleaved by family. The first attempt starts at once; each
+ * following one starts when the previous attempt failed or after the connection
+ * attempt delay, whichever comes first. The first connection to succeed wins and
+ * every other attempt is closed. Each attempt has its own connect timeout.
+ */
+final class HappyEyeballs {
+
+    // Queued by a cancel to wake the caller waiting for an attempt to finish
+    private static final Future<Socket> WAKEUP = new FutureTask<>(new Callable<Socket>() {
+        @Override
+        public Socket call() {
+            return null;
+        }
+    });
+
+    // Threads only live while a race is running; a black-holed attempt holds one for its timeout
+    private static final ExecutorService POOL = DaemonExecutors.cached("iso-connect");
+
+    private HappyEyeballs() {
+    }
+
+    /**
+     * Order addresses for racing: alternate families, starting with the family
+     * the resolver put first
+     */
+    static InetAddress[] interleave(InetAddress[] addresses) {
+        if (addresses.length < 3) {
+            return addresses;
+        }
+        boolean firstIsV6 = addresses[0] instanceof Inet6Address;
+        List<InetAddress> preferred = new ArrayList<>();
+        List<InetAddress> other = new ArrayList<>();
+        for (InetAddress address : addresses) {
+            if ((address instanceof Inet6Address) == firstIsV6) {
+                preferred.add(address);
+            } else {
+                other.add(address);
+            }
+        }
+        InetAddress[] ordered = new InetAddress[addresses.length];
+        int i = 0;
+        for (int p = 0, o = 0; p < preferred.size() || o < other.size(); ) {
+            if (p < preferred.size()) ordered[i++] = preferred.get(p++);
+            if (o < other.size()) ordered[i++] = other.get(o++);
+        }
+        return ordered;
+    }
+
+    // ========== BLOCKING ==========
+
+    /**
+     * Race blocking connects on the helper pool
+     * @return Connected socket; all other attempts are closed
+     */
+    static Socket connect(InetAddress[] addresses, int port, int connectTimeoutMs, long attemptDelayMs,
+                          CancelToken cancel) throws IOException {
+        final LinkedBlockingQueue<Future<Socket>> completed = new LinkedBlockingQueue<>();
+        ExecutorCompletionService<Socket> completion = new ExecutorCompletionService<>(POOL, completed);
+        cancel.onCancel(new Runnable() {
+            @Override
+            public void run() {
+                completed.offer(WAKEUP);
+            }
+        });
+        List<Attempt> attempts = new ArrayList<>(addresses.length);
+        int next = 0;
+        int pending = 0;
+        long nextStartNanos = System.nanoTime();
+        IOException lastError = null;
+        Socket winner = null;
+        try {
+            while (winner == null) {
+                cancel.check("connect");
+                long now = System.nanoTime();
+                if (next < addresses.length && (pending == 0 || now - nextStartNanos >= 0)) {
+                    Attempt attempt = new Attempt(addresses[next++], port, connectTimeoutMs);
+                    attempts.add(attempt);
+                    completion.submit(attempt);
+                    pending++;
+                    nextStartNanos = now + TimeUnit.MILLISECONDS.toNanos(attemptDelayMs);
+                    continue;
+                }
+                if (pending == 0) {
+                    break; // every address failed
+                }
+
+                // Wait for an attempt to finish, the next one to be due or a cancel
+                Future<Socket> done;
+                try {
+                    done = next < addresses.length
+                        ? completion.poll(nextStartNanos - now, TimeUnit.NANOSECONDS) : completion.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Connection interrupted", e);
+                }
+                if (done == null || done == WAKEUP) {
+                    continue;
+                }
+                pending--;
+                try {
+                    winner = done.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    lastError = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                    nextStartNanos = System.nanoTime(); // a failure starts the next address at once
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Connection interrupted", e);
+                }
+            }
+        } finally {
+            for (Attempt attempt : attempts) {
+                attempt.abandonUnless(winner);
+            }
+        }
+        if (winner == null) {
+            throw lastError != null ? lastError : new IOException("Connection failed to all addresses");
+        }
+        return winner;
+    }
+
+    /**
+     * Blocking connect that reports a timeout as {@link ConnectTimeoutException}
+     */
+    static void connect(Socket socket, InetSocketAddress address, int timeoutMs) throws IOException {
+        try {
+            socket.connect(address, timeoutMs);
+        } catch (SocketTimeoutException e) {
+            ConnectTimeoutException timeout = new ConnectTimeoutException(timeoutMs);
+            timeout.initCause(e);
+            throw timeout;
+        }
+    }
+
+    private static final class Attempt implements Callable<Socket> {
+        private final InetAddress address;
+        private final int port;
+        private final int timeoutMs;
+        private Socket socket;
+        private boolean abandoned;
+
+        Attempt(InetAddress address, int port, int timeoutMs) {
+            this.address = address;
+            this.port = port;
+            this.timeoutMs = timeoutMs;
+        }
+
+        @Override
+        public Socket call() throws IOException {
+            Socket s = new Socket();
+            synchronized (this) {
+                if (abandoned) {
+                    throw new IOException("Connection attempt abandoned");
+                }
+                socket = s;
+            }
+            try {
+                connect(s, new InetSocketAddress(address, port), timeoutMs);
+            } catch (IOException e) {
+                closeQuietly(s);
+                throw e;
+            }
+            return s;
+        }
+
+        synchronized void abandonUnless(Socket winner) {
+            abandoned = true;
+            if (socket != null && socket != winner) {
+                closeQuietly(socket); // also wakes a connect still in progress
+            }
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // ========== NON-BLOCKING ==========
+
+    /**
+     * Race non-blocking connects on the engine's selector
+     * @param cancel Must wake the selector when cancelled
+     * @param selectIntervalMs Upper bound of one select call
+     * @return Connected channel, still registered on the selector; all other attempts are closed
+     */
+    static SocketChannel connect(Selector selector, InetAddress[] addresses, int port, int connectTimeoutMs,
+                                 long attemptDelayMs, CancelToken cancel, long selectIntervalMs)
+            throws IOException {
+        List<SocketChannel> pending = new ArrayList<>(addresses.length);
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(connectTimeoutMs);
+        int next = 0;
+        long nextStartNanos = System.nanoTime();
+        IOException lastError = null;
+        SocketChannel winner = null;
+        try {
+            while (winner == null) {
+                long now = System.nanoTime();
+                if (next < addresses.length && (pending.isEmpty() || now - nextStartNanos >= 0)) {
+                    SocketChannel channel = SocketChannel.open();
+                    try {
+                        channel.configureBlocking(false);
+                        if (channel.connect(new InetSocketAddress(addresses[next++], port))) {
+                            channel.register(selector, SelectionKey.OP_CONNECT);
+                            winner = channel;
+                            break;
+                        }
+                        channel.register(selector, SelectionKey.OP_CONNECT, now + timeoutNanos);
+                        pending.add(channel);
+                        nextStartNanos = now + TimeUnit.MILLISECONDS.toNanos(attemptDelayMs);
+                    } catch (IOException e) {
+                        channel.close();
+                        lastError = e;
+                        nextStartNanos = now;
+                    }
+                    continue;
+                }
+                if (pending.isEmpty()) {
+                    break; // every address failed
+                }
+                cancel.check("connect");
+
+                long waitNanos = TimeUnit.MILLISECONDS.toNanos(selectIntervalMs);
+                if (next < addresses.length) {
+                    waitNanos = Math.min(waitNanos, nextStartNanos - now);
+                }
+                for (SocketChannel channel : pending) {
+                    waitNanos = Math.min(waitNanos, deadline(selector, channel) - now);
+                }
+                // Round up, so a connect is not found short of its deadline and polled again
+                selector.select(Math.max(1, (waitNanos + 999_999) / 1_000_000));
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid() || !key.isConnectable()) {
+                        continue;
+                    }
+                    SocketChannel channel = (SocketChannel) key.channel();
+                    try {
+                        if (channel.finishConnect()) {
+                            pending.remove(channel);
+                            winner = channel;
+                            break;
+                        }
+                    } catch (IOException e) {
+                        lastError = e;
+                        pending.remove(channel);
+                        key.cancel();
+                        channel.close();
+                        nextStartNanos = System.nanoTime(); // a failure starts the next address at once
+                    }
+                }
+
+                now = System.nanoTime();
+                for (Iterator<SocketChannel> it = pending.iterator(); winner == null && it.hasNext(); ) {
+                    SocketChannel channel = it.next();
+                    if (now - deadline(selector, channel) >= 0) {
+                        it.remove();
+                        channel.keyFor(selector).cancel();
+                        channel.close();
+                        lastError = new ConnectTimeoutException(connectTimeoutMs);
+                    }
+                }
+            }
+        } finally {
+            for (SocketChannel channel : pending) {
+                if (channel != winner) {
+                    SelectionKey key = channel.keyFor(selector);
+                    if (key != null) key.cancel();
+                    try { channel.close(); } catch (IOException ignored) {}
+                }
+            }
+        }
+        if (winner == null) {
+            throw lastError != null ? lastError : new IOException("Connection failed to all addresses");
+        }
+        SelectionKey key = winner.keyFor(selector);
+        key.interestOps(0);
+        key.attach(null);
+        return winner;
+    }
+
+    private static long deadline(Selector selector, SocketChannel channel) {
+        return (Long) channel.keyFor(selector).attachment();
+    }
+}
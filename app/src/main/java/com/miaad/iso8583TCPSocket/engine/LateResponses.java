@@ -0,0 +1,191 @@
+package com.miaad.iso8583TCPSocket.engine;
+
+import com.miaad.iso8583TCPSocket.ConnectionStateListener;
+import com.miaad.iso8583TCPSocket.IsoCodes;
+import com.miaad.iso8583TCPSocket.IsoConfig;
+import com.miaad.iso8583TCPSocket.LateResponseHandler;
+import com.miaad.iso8583TCPSocket.MessageInspector;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests of one persistent connection whose read timed out at a frame boundary, so
+ * their responses may still arrive ahead of the next request's. Every frame read while
+ * any are pending is classified by response MTI and STAN before it is taken as a reply.
+ * <p>
+ * A late response goes to the configured {@link LateResponseHandler} on a shared
+ * daemon thread. With every one of them busy and a backlog queued, further late
+ * responses are logged and dropped, so a host cannot grow the pool. A frame that
+ * matches neither the request nor a pending one means the stream can no longer be
+ * trusted, and the engine reconnects.
+ */
+final class LateResponses {
+
+    /** The frame answers the request being exchanged */
+    static final int OURS = 0;
+    /** The frame answered a timed-out request and was handed off */
+    static final int LATE = 1;
+    /** The frame matches nothing; the connection has to be replaced */
+    static final int UNMATCHED = 2;
+
+    // Beyond this many, a connection that keeps timing out is replaced instead
+    private static final int MAX_PENDING = 64;
+    /** Key of a message without a usable MTI or STAN */
+    static final long NO_KEY = -1;
+
+    // Handlers may block sending a reversal, so each runs on a thread of its own, up to a limit
+    private static final Executor EXECUTOR = DaemonExecutors.bounded("iso-late-response", 16, 256);
+
+    private final MessageInspector inspector;
+    private final LateResponseHandler handler;
+    private final long windowNanos;
+    private final ConnectionStateListener listener;
+    private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+
+    private static final class Pending {
+        final long key;
+        final byte[] request;
+        final long timedOutNanos;
+
+        Pending(long key, byte[] request, long timedOutNanos) {
+            this.key = key;
+            this.request = request;
+            this.timedOutNanos = timedOutNanos;
+        }
+    }
+
+    LateResponses(IsoConfig config, ConnectionStateListener listener) {
+        this.inspector = config.getMessageInspector();
+        this.handler = config.getLateResponseHandler();
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(config.getLateResponseWindowMs());
+        this.listener = listener;
+    }
+
+    synchronized boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * Remember a request whose read timed out with no part of its response read
+     * @return false if its response could not be told apart later; the connection must be replaced
+     */
+    synchronized boolean add(byte[] request) {
+        long key = requestKey(request);
+        if (key == NO_KEY || windowNanos <= 0) {
+            return false;
+        }
+        long now = System.nanoTime();
+        prune(now);
+        if (pending.size() >= MAX_PENDING) {
+            return false;
+        }
+        pending.add(new Pending(key, request, now));
+        return true;
+    }
+
+    /**
+     * Classify a frame read on the connection; a late one is handed off before this returns
+     * @param request Request being exchanged, or null when draining before a write
+     * @return {@link #OURS}, {@link #LATE} or {@link #UNMATCHED}
+     */
+    int classify(byte[] frame, byte[] request) {
+        long key = frameKey(frame);
+        long expected = request != null ? requestKey(request) : NO_KEY;
+        Pending late = null;
+        long lateNanos = 0;
+        synchronized (this) {
+            long now = System.nanoTime();
+            prune(now);
+            if (key != NO_KEY) {
+                for (Iterator<Pending> it = pending.iterator(); it.hasNext(); ) {
+                    Pending p = it.next();
+                    if (p.key == key) {
+                        it.remove();
+                        late = p;
+                        lateNanos = now - p.timedOutNanos;
+                        break;
+                    }
+                }
+            }
+        }
+        if (key == expected && key != NO_KEY) {
+            // Same MTI and STAN as a timed-out request too: the host answers each once, take it as ours
+            return OURS;
+        }
+        if (late == null) {
+            // An unkeyed request has nothing to check against; anything not late is its reply
+            return request != null && expected == NO_KEY ? OURS : UNMATCHED;
+        }
+        dispatch(late.request, frame, TimeUnit.NANOSECONDS.toMillis(lateNanos));
+        return LATE;
+    }
+
+    /**
+     * Forget every pending request, when their connection is closed
+     */
+    synchronized void clear() {
+        pending.clear();
+    }
+
+    private void prune(long now) {
+        while (!pending.isEmpty() && now - pending.peekFirst().timedOutNanos > windowNanos) {
+            pending.pollFirst();
+        }
+    }
+
+    /**
+     * Key of the response a request expects: its response MTI and STAN
+     */
+    long requestKey(byte[] request) {
+        int mti = IsoCodes.responseMti(inspector.getMti(request));
+        return key(mti, inspector.getStan(request));
+    }
+
+    /**
+     * Key of a message as read: its own MTI and STAN
+     */
+    long frameKey(byte[] frame) {
+        return key(inspector.getMti(frame), inspector.getStan(frame));
+    }
+
+    private static long key(int mti, int stan) {
+        if (mti < 0 || stan < 0) {
+            return NO_KEY;
+        }
+        return mti * 1_000_000L + stan;
+    }
+
+    private void dispatch(final byte[] request, final byte[] response, final long lateMs) {
+        if (listener != null) {
+            listener.onLog("WARN", "Late response " + IsoCodes.formatMti(inspector.getMti(response))
+                + " STAN " + inspector.getStan(response) + " after " + lateMs + "ms",
+                handler != null ? "Passed to the late response handler" : "Dropped, no late response handler");
+        }
+        if (handler == null) {
+            return;
+        }
+        try {
+            EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        handler.onLateResponse(request, response, lateMs);
+                    } catch (RuntimeException e) {
+                        if (listener != null) {
+                            listener.onLog("ERROR", "Late response handler failed: " + e, "Late response dropped");
+                        }
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (listener != null) {
+                listener.onLog("WARN", "Late response " + IsoCodes.formatMti(inspector.getMti(response))
+                    + " STAN " + inspector.getStan(response), "Dropped, late response handlers are all busy");
+            }
+        }
+    }
+}
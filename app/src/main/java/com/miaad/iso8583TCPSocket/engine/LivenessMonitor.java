@@ -0,0 +1,432 @@
+package com.miaad.iso8583TCPSocket.engine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Watches idle persistent connections for the peer going away, on shared threads.
+ * <p>
+ * NIO channels are registered for OP_READ on the monitor's selector, so EOF or a
+ * reset is seen the moment it arrives. Blocking sockets cannot be registered with a
+ * selector; a second thread, started with the first of them, polls them every
+ * {@link #POLL_INTERVAL_MS}, so they never hold up the selector. Bytes already waiting
+ * are read without blocking. EOF shows up only to a read, so a 1ms timed read probes
+ * for it, on at most {@link #MAX_PROBES_PER_ROUND} sockets per round in turn: beyond
+ * that many idle blocking connections, a close is seen proportionally later.
+ * <p>
+ * An engine suspends its watch for the duration of every exchange, so the monitor
+ * never reads while the engine does. Bytes that arrive on an idle connection are kept
+ * and handed back to the engine's next read, unless the engine takes whole frames out
+ * of them as they arrive.
+ */
+final class LivenessMonitor implements Runnable {
+
+    static final long POLL_INTERVAL_MS = 250;
+    // Bounds a polling round to about 50ms of timed reads, however many sockets are watched
+    static final int MAX_PROBES_PER_ROUND = 50;
+    private static final int MAX_PENDING_BYTES = 64 * 1024;
+
+    /**
+     * Receives the death of a watched connection, on the monitor thread
+     */
+    interface Listener {
+        void onPeerClosed(String reason, IOException error);
+
+        /**
+         * Bytes arrived on the idle connection and were added to the pending ones;
+         * frames may be taken with {@link Watch#pollFrame(int, ByteOrder)}
+         */
+        default void onBytes(Watch watch) {
+        }
+    }
+
+    private static volatile LivenessMonitor shared;
+
+    private final Selector selector;
+    private final ConcurrentLinkedQueue<Watch> changes = new ConcurrentLinkedQueue<>();
+    private final CopyOnWriteArrayList<Watch> polled = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean pollerStarted = new AtomicBoolean();
+
+    private LivenessMonitor() throws IOException {
+        this.selector = Selector.open();
+        Thread thread = new Thread(this, "iso-liveness");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    static LivenessMonitor shared() throws IOException {
+        LivenessMonitor monitor = shared;
+        if (monitor == null) {
+            synchronized (LivenessMonitor.class) {
+                monitor = shared;
+                if (monitor == null) {
+                    monitor = new LivenessMonitor();
+                    shared = monitor;
+                }
+            }
+        }
+        return monitor;
+    }
+
+    /**
+     * Start watching a connected NIO channel; the watch starts active (idle connection)
+     */
+    Watch watch(SocketChannel channel, Listener listener) {
+        Watch watch = new Watch(channel, null, listener);
+        changes.add(watch);
+        selector.wakeup();
+        return watch;
+    }
+
+    /**
+     * Start watching a connected blocking socket; the watch starts active (idle connection)
+     */
+    Watch watch(Socket socket, Listener listener) {
+        Watch watch = new Watch(null, socket, listener);
+        polled.add(watch);
+        if (pollerStarted.compareAndSet(false, true)) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    poll();
+                }
+            }, "iso-liveness-poll");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return watch;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                Watch change;
+                while ((change = changes.poll()) != null) {
+                    change.apply();
+                }
+                selector.select(POLL_INTERVAL_MS);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid()) {
+                        ((Watch) key.attachment()).check(false);
+                    }
+                }
+            } catch (Throwable t) {
+                // Never let one bad connection stop the monitor for everyone
+            }
+        }
+    }
+
+    /**
+     * Poll the blocking sockets; the timed reads that probe for EOF go round the
+     * watches in turn, so each gets one within a bounded number of rounds
+     */
+    private void poll() {
+        int cursor = 0;
+        while (true) {
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+                Watch[] watches = polled.toArray(new Watch[0]);
+                int probes = 0;
+                int next = cursor;
+                for (int i = 0; i < watches.length; i++) {
+                    int index = (cursor + i) % watches.length;
+                    if (watches[index].check(probes < MAX_PROBES_PER_ROUND)) {
+                        probes++;
+                        next = index + 1;
+                    }
+                }
+                cursor = next;
+            } catch (InterruptedException e) {
+                return;
+            } catch (Throwable t) {
+                // Never let one bad connection stop the monitor for everyone
+            }
+        }
+    }
+
+    final class Watch {
+        private final SocketChannel channel;
+        private final Socket socket;
+        private final Listener listener;
+        private final ReentrantLock lock = new ReentrantLock();
+        private SelectionKey key;
+        private boolean active = true;
+        private volatile boolean dead;
+        private boolean cancelled;
+        private byte[] pending;
+        private int pendingLength;
+        private ByteBuffer readBuffer;
+        private byte[] pollBuffer;
+
+        private Watch(SocketChannel channel, Socket socket, Listener listener) {
+            this.channel = channel;
+            this.socket = socket;
+            this.listener = listener;
+        }
+
+        /**
+         * Stop watching for an exchange. When this returns, the monitor does not
+         * touch the connection until {@link #resume()}.
+         */
+        void suspend() {
+            lock.lock();
+            try {
+                active = false;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Watch again after an exchange
+         */
+        void resume() {
+            lock.lock();
+            try {
+                if (cancelled || dead) {
+                    return;
+                }
+                active = true;
+            } finally {
+                lock.unlock();
+            }
+            if (channel != null) {
+                changes.add(this);
+                selector.wakeup();
+            }
+        }
+
+        /**
+         * Stop watching for good (connection closed by the engine)
+         */
+        void cancel() {
+            lock.lock();
+            try {
+                cancelled = true;
+                active = false;
+            } finally {
+                lock.unlock();
+            }
+            if (channel != null) {
+                changes.add(this);
+                selector.wakeup();
+            } else {
+                polled.remove(this);
+            }
+        }
+
+        boolean isDead() {
+            return dead;
+        }
+
+        /**
+         * Bytes that arrived while the connection was idle, or null. Call while suspended.
+         */
+        byte[] takePending() {
+            lock.lock();
+            try {
+                if (pendingLength == 0) {
+                    return null;
+                }
+                byte[] data = Arrays.copyOf(pending, pendingLength);
+                pendingLength = 0;
+                return data;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Take the first whole length-prefixed frame out of the bytes that arrived while idle
+         * @return Frame without its length header, or null if none is complete yet
+         */
+        byte[] pollFrame(int lengthHeaderSize, ByteOrder byteOrder) {
+            lock.lock();
+            try {
+                if (pendingLength < lengthHeaderSize) {
+                    return null;
+                }
+                ByteBuffer header = ByteBuffer.wrap(pending, 0, lengthHeaderSize).order(byteOrder);
+                long length = lengthHeaderSize == 2 ? header.getShort() & 0xFFFF : header.getInt() & 0xFFFFFFFFL;
+                if (pendingLength - lengthHeaderSize < length) {
+                    return null;
+                }
+                int end = lengthHeaderSize + (int) length;
+                byte[] frame = Arrays.copyOfRange(pending, lengthHeaderSize, end);
+                System.arraycopy(pending, end, pending, 0, pendingLength - end);
+                pendingLength -= end;
+                return frame;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Apply registration changes on the monitor thread
+         */
+        private void apply() {
+            try {
+                if (cancelled) {
+                    if (key != null) key.cancel();
+                    return;
+                }
+                if (key == null) {
+                    key = channel.register(selector, SelectionKey.OP_READ, this);
+                } else if (key.isValid()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            } catch (ClosedChannelException e) {
+                // closed by the engine in the meantime
+            }
+        }
+
+        /**
+         * Read what arrived on the idle connection, and see whether it is still open
+         * @param mayProbe A blocking socket with nothing waiting may get a timed read for EOF
+         * @return true if that timed read was made
+         */
+        private boolean check(boolean mayProbe) {
+            if (!lock.tryLock()) {
+                return false; // engine is suspending us
+            }
+            boolean probed = false;
+            try {
+                if (!active || dead || cancelled) {
+                    if (key != null && key.isValid()) key.interestOps(0);
+                    return false;
+                }
+                int read;
+                if (channel != null) {
+                    read = readChannel();
+                } else {
+                    read = readAvailable();
+                    if (read == 0 && mayProbe) {
+                        read = probeSocket();
+                        probed = true;
+                    }
+                }
+                if (read != 0 && pendingLength > 0) {
+                    listener.onBytes(this); // also for what came just before an EOF
+                }
+                if (read < 0) {
+                    markDead("Connection closed by peer", null);
+                } else if (pendingLength >= MAX_PENDING_BYTES && key != null && key.isValid()) {
+                    key.interestOps(0); // leave the rest in the socket for the engine
+                }
+            } catch (IOException e) {
+                markDead("Connection reset by peer", e);
+            } finally {
+                lock.unlock();
+            }
+            return probed;
+        }
+
+        private int readChannel() throws IOException {
+            if (readBuffer == null) {
+                readBuffer = ByteBuffer.allocate(4096);
+            }
+            int total = 0;
+            while (pendingLength < MAX_PENDING_BYTES) {
+                readBuffer.clear();
+                int n = channel.read(readBuffer);
+                if (n < 0) {
+                    return -1;
+                }
+                if (n == 0) {
+                    break;
+                }
+                append(readBuffer.array(), n);
+                total += n;
+            }
+            return total;
+        }
+
+        /**
+         * Read the bytes already waiting on a blocking socket; returns at once
+         */
+        private int readAvailable() throws IOException {
+            if (socket.isClosed()) {
+                return -1;
+            }
+            InputStream in = socket.getInputStream();
+            int available = in.available();
+            if (available <= 0 || pendingLength >= MAX_PENDING_BYTES) {
+                return 0;
+            }
+            if (pollBuffer == null) {
+                pollBuffer = new byte[4096];
+            }
+            int n = in.read(pollBuffer, 0, Math.min(Math.min(available, pollBuffer.length),
+                MAX_PENDING_BYTES - pendingLength));
+            if (n > 0) {
+                append(pollBuffer, n);
+            }
+            return n;
+        }
+
+        /**
+         * Read with a 1ms timeout, the only way to see EOF on a blocking socket. The
+         * engine is suspended, so changing the socket's timeout cannot affect its reads.
+         */
+        private int probeSocket() throws IOException {
+            if (pendingLength >= MAX_PENDING_BYTES) {
+                return 0;
+            }
+            if (pollBuffer == null) {
+                pollBuffer = new byte[4096];
+            }
+            int timeout = socket.getSoTimeout();
+            socket.setSoTimeout(1);
+            try {
+                InputStream in = socket.getInputStream();
+                int n = in.read(pollBuffer, 0, Math.min(pollBuffer.length, MAX_PENDING_BYTES - pendingLength));
+                if (n > 0) {
+                    append(pollBuffer, n);
+                }
+                return n;
+            } catch (SocketTimeoutException e) {
+                return 0; // nothing arrived: still alive
+            } finally {
+                if (!socket.isClosed()) {
+                    socket.setSoTimeout(timeout);
+                }
+            }
+        }
+
+        private void append(byte[] data, int length) {
+            if (pending == null) {
+                pending = new byte[Math.max(256, length)];
+            } else if (pendingLength + length > pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + length));
+            }
+            System.arraycopy(data, 0, pending, pendingLength, length);
+            pendingLength += length;
+        }
+
+        private void markDead(String reason, IOException error) {
+            dead = true;
+            active = false;
+            if (key != null) key.cancel();
+            polled.remove(this);
+            listener.onPeerClosed(reason, error);
+        }
+    }
+}
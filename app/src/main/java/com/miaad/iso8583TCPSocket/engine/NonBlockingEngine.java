@@ -3,20 +3,41 @@ package com.miaad.iso8583TCPSocket.engine;
 import com.miaad.iso8583TCPSocket.ConnectionState;
 import com.miaad.iso8583TCPSocket.ConnectionStateListener;
 import com.miaad.iso8583TCPSocket.ConnectionStatus;
+import com.miaad.iso8583TCPSocket.Deadline;
+import com.miaad.iso8583TCPSocket.DeadlineExceededException;
 import com.miaad.iso8583TCPSocket.ConnectionMode;
+import com.miaad.iso8583TCPSocket.IsoCodes;
 import com.miaad.iso8583TCPSocket.IsoConfig;
 import com.miaad.iso8583TCPSocket.IsoResponse;
+import com.miaad.iso8583TCPSocket.OperationCancelledException;
 import com.miaad.iso8583TCPSocket.RetryConfig;
+import com.miaad.iso8583TCPSocket.RuntimeSettings;
+import com.miaad.iso8583TCPSocket.UnsolicitedMessageHandler;
+import com.miaad.iso8583TCPSocket.WriteTimeoutException;
+import com.miaad.iso8583TCPSocket.dns.DnsCache;
+import com.miaad.iso8583TCPSocket.dns.Resolution;
+import com.miaad.iso8583TCPSocket.endpoint.Endpoint;
+import com.miaad.iso8583TCPSocket.endpoint.EndpointGroup;
+import com.miaad.iso8583TCPSocket.endpoint.EndpointStats;
+import com.miaad.iso8583TCPSocket.resilience.CircuitBreakerOpenException;
+import com.miaad.iso8583TCPSocket.resilience.RetryBudget;
+import com.miaad.iso8583TCPSocket.resilience.RetryBudgetRegistry;
+import com.miaad.iso8583TCPSocket.trace.EngineProbe;
+import com.miaad.iso8583TCPSocket.trace.EngineProbes;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
-import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -26,20 +47,43 @@ public class NonBlockingEngine implements ConnectionEngine {
     
     public IsoConfig config;
     private ConnectionStateListener stateListener;
-    private SocketChannel channel;
-    private Selector selector;
+    private volatile SocketChannel channel;
+    private volatile Selector selector;
     private final int lengthHeaderSize;
     private final ByteOrder byteOrder;
     private ByteBuffer headerBuffer;
     private ByteBuffer dataBuffer;
     private volatile ConnectionState currentState = ConnectionState.DISCONNECTED;
     private final ReentrantLock operationLock = new ReentrantLock();
+    // Held for the write of one frame, so replies to the host never interleave with a request
+    private final ReentrantLock writeLock = new ReentrantLock();
     private final AtomicBoolean transactionInProgress = new AtomicBoolean(false);
     private AtomicBoolean cancelled = new AtomicBoolean(false);
+    private RuntimeSettings settings;
+    private volatile RetryWait pendingRetry;
+    // Cancellation of the connect or exchange in progress
+    private volatile CancelToken operation;
+    private EndpointGroup endpoints;
+    private CircuitGuard[] circuits;
+    private volatile int endpointIndex;
+    private RetryBudget retryBudget;
     private long connectionStartTime = 0;
     private long lastActivityTime = 0;
     private Exception lastError = null;
     private int reconnectAttempts = 0;
+    // Phase timestamps of the current transaction, for the engine probe
+    private long sentNanos;
+    private long firstByteNanos;
+    // Idle-connection watch and what it read before the next exchange
+    private volatile LivenessMonitor.Watch liveness;
+    private volatile boolean peerClosed;
+    private ByteBuffer earlyInput;
+    // Requests that timed out on this connection and whose responses may still come
+    private LateResponses late;
+    // The stream is mid-frame or held an unmatched frame; the next exchange reconnects
+    private volatile boolean outOfSync;
+    // Part of a frame has been written or read, but not all of it
+    private boolean frameOpen;
 
     public NonBlockingEngine(int lengthHeaderSize, ByteOrder byteOrder) {
         this.lengthHeaderSize = lengthHeaderSize;
@@ -51,223 +95,498 @@ public class NonBlockingEngine implements ConnectionEngine {
     public void initialize(IsoConfig config, ConnectionStateListener stateListener) {
         this.config = config;
         this.stateListener = stateListener;
+        if (this.settings == null) {
+            this.settings = new RuntimeSettings(config);
+        }
+        this.endpoints = config.getEndpointGroup();
+        this.circuits = CircuitGuard.forGroup(config);
+        this.endpointIndex = 0;
+        this.retryBudget = config.getRetryBudgetConfig() != null
+            ? RetryBudgetRegistry.get(config.getHost(), config.getPort(), config.getRetryBudgetConfig()) : null;
+        this.late = new LateResponses(config, stateListener);
     }
 
     @Override
     public void connect() throws IOException {
-        // Check if any operation is in progress
-        if (!transactionInProgress.compareAndSet(false, true)) {
-            throw new IllegalStateException("Cannot connect while another operation is in progress");
-        }
+        connect(Deadline.none());
+    }
 
-        operationLock.lock();
+    @Override
+    public void connect(Deadline deadline) throws IOException {
+        CancelToken token = beginOperation();
         try {
-            if (channel != null && channel.isConnected()) {
-                changeState(ConnectionState.CONNECTED, "Already connected");
-                return; // Already connected
-            }
+            connect(deadline, token);
+        } finally {
+            endOperation(token);
+        }
+        if (token.isCancelled()) {
+            // Closed while the connection was completing, too late to fail the attempt itself
+            close();
+            throw new OperationCancelledException("connect");
+        }
+    }
 
-            RetryConfig retryConfig = config.getRetryConfig();
-            Exception lastException = null;
-            long operationStartTime = System.currentTimeMillis();
-            int maxAttempts = retryConfig.getMaxRetries() + 1;
+    private void connect(Deadline deadline, CancelToken token) throws IOException {
+        if (pendingRetry != null) {
+            throw new IllegalStateException("Cannot connect while a connection retry is pending");
+        }
 
-            for (int attempt = 0; attempt <= retryConfig.getMaxRetries(); attempt++) {
-                try {
-                    if (attempt > 0) {
-                        long delay = retryConfig.calculateDelay(attempt);
-                        changeState(ConnectionState.RETRY_WAITING, "Waiting " + delay + "ms before retry attempt " + (attempt + 1));
-                        
-                        if (stateListener != null) {
-                            stateListener.onRetryDelayStarted(attempt + 1, delay, "Connection failed");
-                        }
-                        
-                        System.out.println("Retry attempt " + attempt + " after " + delay + "ms delay");
-                        Thread.sleep(delay);
-                        
-                        if (stateListener != null) {
-                            stateListener.onRetryDelayEnded(attempt + 1);
-                        }
-                        changeState(ConnectionState.RETRY_CONNECTING, "Starting retry attempt " + (attempt + 1));
-                    } else {
-                        changeState(ConnectionState.CONNECTING, "Starting NIO connection");
-                    }
+        RetryConfig retryConfig = config.getRetryConfig();
+        Exception lastException = null;
+        long operationStartTime = System.currentTimeMillis();
+        int maxAttempts = retryConfig.getMaxRetries() + 1;
+        EngineProbe probe = probe();
+        long operationId = EngineProbes.nextId();
+        long previousDelay = 0;
+        if (retryBudget != null) {
+            retryBudget.deposit();
+        }
 
-                    if (stateListener != null) {
-                        stateListener.onConnectionAttemptStarted(config.getHost(), config.getPort(), attempt + 1, maxAttempts);
-                    }
-                    if (config == null || config.isEnableHotPathLogs()) {
-                        System.out.println("Connecting to " + config.getHost() + ":" + config.getPort() + 
-                                         " (attempt " + (attempt + 1) + "/" + maxAttempts + ") [NON-BLOCKING ENGINE]");
-                    }
+        for (int attempt = 0; attempt <= retryConfig.getMaxRetries(); attempt++) {
+            if (attempt > 0) {
+                // Back off without holding the lock, so close() and cancel() are never blocked
+                long delay = retryConfig.nextDelay(attempt, previousDelay);
+                previousDelay = delay;
+                if (delay >= deadline.remainingMillis()) {
+                    // No time left to wait and try again
+                    throw deadline.exceeded("connect retry delay", lastException);
+                }
+                changeState(ConnectionState.RETRY_WAITING, "Waiting " + delay + "ms before retry attempt " + (attempt + 1));
+                
+                if (stateListener != null) {
+                    stateListener.onRetryDelayStarted(attempt + 1, delay, "Connection failed");
+                }
+                
+                System.out.println("Retry attempt " + attempt + " after " + delay + "ms delay");
+                long waitStartNanos = System.nanoTime();
+                boolean elapsed = awaitRetry(delay);
+                probe.onRetryWait(operationId, config.getHost(), config.getPort(), attempt + 1,
+                    waitStartNanos, System.nanoTime());
+                if (!elapsed) {
+                    throw new OperationCancelledException("connect retry delay");
+                }
 
-                    // Initialize NIO components
-                    changeState(ConnectionState.RESOLVING_HOST, "Initializing NIO components");
-                    if (stateListener != null) {
-                        stateListener.onHostResolutionStarted(config.getHost());
-                    }
-                    long hostResolveStart = System.currentTimeMillis();
-                    
-                    selector = Selector.open();
-                    channel = SocketChannel.open();
-                    channel.configureBlocking(false);
-                    
-                    // Start TCP connection
-                    changeState(ConnectionState.TCP_CONNECTING, "Establishing NIO TCP connection");
-                    if (stateListener != null) {
-                        stateListener.onTcpConnectionStarted(config.getHost(), config.getPort());
-                    }
-                    long tcpConnectStart = System.currentTimeMillis();
-                    
-                    InetSocketAddress address = new InetSocketAddress(config.getHost(), config.getPort());
-                    boolean connected = channel.connect(address);
-                    
-                    if (!connected) {
-                        // Register for connect events
-                        SelectionKey key = channel.register(selector, SelectionKey.OP_CONNECT);
-                        
-                        // Wait for connection to complete
-                        long connectTimeout = config.getConnectTimeoutMs();
-                        long startTime = System.currentTimeMillis();
-                        
-                        while (!connected && (System.currentTimeMillis() - startTime) < connectTimeout) {
-                            if (cancelled.get()) {
-                                throw new IOException("Connection cancelled");
-                            }
-                            
-                            int readyChannels = selector.select(1000); // 1 second timeout
-                            
-                            if (readyChannels > 0) {
-                                Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
-                                
-                                while (keyIterator.hasNext()) {
-                                    SelectionKey selectedKey = keyIterator.next();
-                                    keyIterator.remove();
-                                    
-                                    if (selectedKey.isConnectable()) {
-                                        SocketChannel sc = (SocketChannel) selectedKey.channel();
-                                        if (sc.finishConnect()) {
-                                            connected = true;
-                                            break;
-                                        }
-                                    }
-                                }
-                            }
+                if (stateListener != null) {
+                    stateListener.onRetryDelayEnded(attempt + 1);
+                }
+            }
+
+            // Check if any operation is in progress
+            if (!transactionInProgress.compareAndSet(false, true)) {
+                throw new IllegalStateException("Cannot connect while another operation is in progress");
+            }
+
+            operationLock.lock();
+            try {
+                token.check("connect");
+                if (attempt == 0 && (peerClosed || outOfSync)) {
+                    cleanupConnection(); // dead or unusable connection left from before
+                    outOfSync = false;
+                }
+                if (attempt == 0 && channel != null && channel.isConnected()) {
+                    changeState(ConnectionState.CONNECTED, "Already connected");
+                    return; // Already connected
+                }
+                if (attempt > 0) {
+                    changeState(ConnectionState.RETRY_CONNECTING, "Starting retry attempt " + (attempt + 1));
+                } else {
+                    changeState(ConnectionState.CONNECTING, "Starting NIO connection");
+                }
+
+                int[] order = endpoints.selectOrder();
+                Exception endpointFailure = null;
+                for (int i = 0; ; i++) {
+                    try {
+                        connectEndpoint(order[i], attempt, maxAttempts, probe, operationId, deadline, token);
+                        break;
+                    } catch (Exception e) {
+                        if (!(e instanceof CircuitBreakerOpenException) || endpointFailure == null) {
+                            endpointFailure = e;
                         }
-                        
-                        if (!connected) {
-                            throw new IOException("Connection timeout after " + connectTimeout + "ms");
+                        if (i == order.length - 1 || deadline.isExpired() || token.isCancelled()) {
+                            // Report a real connect failure over an open breaker, so it can be retried
+                            throw endpointFailure;
                         }
-                    }
-                    
-                    long tcpConnectTime = System.currentTimeMillis() - tcpConnectStart;
-                    changeState(ConnectionState.TCP_CONNECTED, "NIO TCP connection established");
-                    
-                    if (stateListener != null) {
-                        long hostResolveTime = tcpConnectStart - hostResolveStart;
-                        stateListener.onHostResolutionCompleted(config.getHost(), 
-                            address.getAddress().getHostAddress(), hostResolveTime);
-                        
-                        // Use socket() method for API 21+ compatibility
-                        String localAddress = "N/A";
-                        String remoteAddress = "N/A";
-                        try {
-                            if (channel.socket() != null) {
-                                if (channel.socket().getLocalAddress() != null) {
-                                    localAddress = channel.socket().getLocalAddress().toString();
-                                }
-                                if (channel.socket().getInetAddress() != null) {
-                                    remoteAddress = channel.socket().getInetAddress().toString();
-                                }
-                            }
-                        } catch (Exception e) {
-                            // Ignore address resolution errors
+                        // Fail over inside the same attempt; backoff only applies once every endpoint failed
+                        if (stateListener != null) {
+                            stateListener.onLog("WARN", "Endpoint " + endpoints.get(order[i]) + " failed: " + e.getMessage(),
+                                "Failing over to " + endpoints.get(order[i + 1]));
                         }
-                        
-                        stateListener.onTcpConnectionCompleted(localAddress, remoteAddress, tcpConnectTime);
-                    }
-                    
-                    if (config == null || config.isEnableHotPathLogs()) {
-                        System.out.println("NIO Connected successfully!");
                     }
+                }
 
-                    // Apply socket options
-                    try {
-                        if (channel != null) {
-                            if (config.isTcpNoDelay()) channel.socket().setTcpNoDelay(true);
-                            if (config.isKeepAlive()) channel.socket().setKeepAlive(true);
-                            if (config.getSendBufferSize() > 0) channel.socket().setSendBufferSize(config.getSendBufferSize());
-                            if (config.getReceiveBufferSize() > 0) channel.socket().setReceiveBufferSize(config.getReceiveBufferSize());
-                            channel.socket().setPerformancePreferences(0, 1, 2);
-                        }
-                    } catch (Exception ignored) {
-                    }
+                changeState(ConnectionState.CONNECTED, "NIO connection established successfully");
+                late.clear();
+                startLiveness();
+                
+                if (stateListener != null) {
+                    stateListener.onMetric("nio_connection_time", System.currentTimeMillis() - operationStartTime, "ms");
+                }
+                return;
 
-                    // Note: TLS support would require SSLEngine for NIO
-                    if (config.isUseTls()) {
-                        changeState(ConnectionState.TLS_HANDSHAKING, "TLS not yet supported in NIO engine");
-                        throw new UnsupportedOperationException("TLS not yet implemented for NIO engine");
-                    }
+            } catch (Exception e) {
+                if (token.isCancelled() && !(e instanceof OperationCancelledException)) {
+                    e = token.cancelled("connect", e);
+                } else if (deadline.isExpired() && !(e instanceof DeadlineExceededException)) {
+                    e = deadline.exceeded("connect", e);
+                }
+                lastException = e;
+                changeState(ConnectionState.CONNECTION_FAILED, "NIO connection attempt failed: " + e.getMessage());
+                
+                if (stateListener != null) {
+                    stateListener.onError(e, currentState, "NIO connection attempt " + (attempt + 1) + " failed");
+                }
+                
+                if (hotPathLogs()) {
+                    System.err.println("NIO Connection attempt " + (attempt + 1) + " failed: " + e.getClass().getSimpleName() + " - " + e.getMessage());
+                }
 
-                    changeState(ConnectionState.CONNECTED, "NIO connection established successfully");
-                    
-                    if (stateListener != null) {
-                        stateListener.onMetric("nio_connection_time", System.currentTimeMillis() - operationStartTime, "ms");
-                    }
-                    return;
+                // Cleanup
+                cleanupConnection();
 
-                } catch (Exception e) {
-                    lastException = e;
-                    changeState(ConnectionState.CONNECTION_FAILED, "NIO connection attempt failed: " + e.getMessage());
-                    
+                // Check if we should retry
+                boolean willRetry = (attempt < retryConfig.getMaxRetries() && retryConfig.shouldRetry(e));
+                if (willRetry && retryBudget != null && !retryBudget.tryWithdraw()) {
+                    // Retries to this endpoint already exceed their share of the traffic
+                    willRetry = false;
                     if (stateListener != null) {
-                        stateListener.onError(e, currentState, "NIO connection attempt " + (attempt + 1) + " failed");
-                    }
-                    
-                    if (config == null || config.isEnableHotPathLogs()) {
-                        System.err.println("NIO Connection attempt " + (attempt + 1) + " failed: " + e.getClass().getSimpleName() + " - " + e.getMessage());
+                        stateListener.onLog("WARN", "Retry budget exhausted for " + retryBudget.getName(),
+                            "Retry attempt " + (attempt + 2) + " denied");
                     }
+                }
 
-                    // Cleanup
-                    cleanupConnection();
+                if (willRetry) {
+                    System.out.println("Retrying NIO connection...");
+                    continue;
+                } else {
+                    // No more retries or not retryable
+                    break;
+                }
+            } finally {
+                // Always reset transaction flag
+                transactionInProgress.set(false);
+                operationLock.unlock();
+            }
+        }
 
-                    // Check if we should retry
-                    boolean willRetry = (attempt < retryConfig.getMaxRetries() && retryConfig.shouldRetry(e));
+        // All attempts failed
+        if (stateListener != null) {
+            stateListener.onRetryExhausted(maxAttempts, lastException);
+        }
+        if (hotPathLogs()) {
+            System.err.println("All NIO connection attempts failed");
+        }
+        if (lastException instanceof IOException) {
+            throw (IOException) lastException;
+        } else {
+            throw new IOException("NIO connection failed after " + maxAttempts + " attempts", lastException);
+        }
+    }
 
-                    if (willRetry) {
-                        System.out.println("Retrying NIO connection...");
-                        continue;
-                    } else {
-                        // No more retries or not retryable
-                        break;
+    /**
+     * One NIO connect to a single endpoint of the group
+     */
+    private void connectEndpoint(int index, int attempt, int maxAttempts, EngineProbe probe, long operationId,
+                                 Deadline deadline, CancelToken token) throws Exception {
+        Endpoint endpoint = endpoints.get(index);
+        String host = endpoint.getHost();
+        int port = endpoint.getPort();
+        CircuitGuard circuit = circuits[index];
+        long tcpStartNanos = 0;
+        boolean circuitPermitted = false;
+        long attemptStartNanos = System.nanoTime();
+        try {
+            if (circuit != null) {
+                // Fail fast before any socket is created while the endpoint is known to be down
+                circuit.acquire(stateListener);
+                circuitPermitted = true;
+            }
+            if (stateListener != null) {
+                stateListener.onConnectionAttemptStarted(host, port, attempt + 1, maxAttempts);
+            }
+            if (hotPathLogs()) {
+                System.out.println("Connecting to " + host + ":" + port + 
+                                 " (attempt " + (attempt + 1) + "/" + maxAttempts + ") [NON-BLOCKING ENGINE]");
+            }
+
+            // Host resolution
+            changeState(ConnectionState.RESOLVING_HOST, "Resolving " + host);
+            if (stateListener != null) {
+                stateListener.onHostResolutionStarted(host);
+            }
+            deadline.check("host resolution");
+            Resolution resolution = resolve(host, operationId, probe);
+
+            // Initialize NIO components
+            selector = Selector.open();
+            token.onCancel(CancelToken.wake(selector));
+            
+            // Start TCP connection
+            changeState(ConnectionState.TCP_CONNECTING, "Establishing NIO TCP connection");
+            if (stateListener != null) {
+                stateListener.onTcpConnectionStarted(host, port);
+            }
+            long tcpConnectStart = System.currentTimeMillis();
+            tcpStartNanos = System.nanoTime();
+            
+            // Races every resolved address on the selector when there are several
+            channel = HappyEyeballs.connect(selector, connectAddresses(resolution), port,
+                deadline.timeoutMillis(config.getConnectTimeoutMs(), "connect"), config.getConnectionAttemptDelayMs(),
+                token, selectIntervalMs());
+            
+            probe.onConnect(operationId, host, port, attempt + 1,
+                tcpStartNanos, System.nanoTime(), true);
+            tcpStartNanos = 0;
+            long tcpConnectTime = System.currentTimeMillis() - tcpConnectStart;
+            changeState(ConnectionState.TCP_CONNECTED, "NIO TCP connection established");
+            
+            if (stateListener != null) {
+                // Use socket() method for API 21+ compatibility
+                String localAddress = "N/A";
+                String remoteAddress = "N/A";
+                try {
+                    if (channel.socket() != null) {
+                        if (channel.socket().getLocalAddress() != null) {
+                            localAddress = channel.socket().getLocalAddress().toString();
+                        }
+                        if (channel.socket().getInetAddress() != null) {
+                            remoteAddress = channel.socket().getInetAddress().toString();
+                        }
                     }
+                } catch (Exception e) {
+                    // Ignore address resolution errors
                 }
+                
+                stateListener.onTcpConnectionCompleted(localAddress, remoteAddress, tcpConnectTime);
+            }
+            
+            if (hotPathLogs()) {
+                System.out.println("NIO Connected successfully!");
             }
 
-            // All attempts failed
-            if (stateListener != null) {
-                stateListener.onRetryExhausted(maxAttempts, lastException);
+            // Apply socket options
+            try {
+                if (channel != null) {
+                    if (config.isTcpNoDelay()) channel.socket().setTcpNoDelay(true);
+                    if (config.isKeepAlive()) channel.socket().setKeepAlive(true);
+                    if (config.getSendBufferSize() > 0) channel.socket().setSendBufferSize(config.getSendBufferSize());
+                    if (config.getReceiveBufferSize() > 0) channel.socket().setReceiveBufferSize(config.getReceiveBufferSize());
+                    channel.socket().setPerformancePreferences(0, 1, 2);
+                }
+            } catch (Exception ignored) {
             }
-            if (config == null || config.isEnableHotPathLogs()) {
-                System.err.println("All NIO connection attempts failed");
+
+            // Note: TLS support would require SSLEngine for NIO
+            if (config.isUseTls()) {
+                changeState(ConnectionState.TLS_HANDSHAKING, "TLS not yet supported in NIO engine");
+                throw new UnsupportedOperationException("TLS not yet implemented for NIO engine");
             }
-            if (lastException instanceof IOException) {
-                throw (IOException) lastException;
-            } else {
-                throw new IOException("NIO connection failed after " + maxAttempts + " attempts", lastException);
+
+            endpointIndex = index;
+            endpoints.getStats(index).onConnectSuccess();
+            if (circuitPermitted) {
+                circuit.record(true, attemptStartNanos, stateListener);
             }
+        } catch (Exception e) {
+            if (circuitPermitted) {
+                circuit.record(false, attemptStartNanos, stateListener);
+            }
+            if (circuit == null || circuitPermitted) {
+                endpoints.getStats(index).onFailure(endpoints.getFailureCooldownMs());
+            }
+            if (tcpStartNanos != 0) {
+                probe.onConnect(operationId, host, port, attempt + 1,
+                    tcpStartNanos, System.nanoTime(), false);
+            }
+            try {
+                if (channel != null) channel.close();
+                if (selector != null) selector.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+            selector = null;
+            throw e;
+        }
+    }
 
-        } finally {
-            // Always reset transaction flag
-            transactionInProgress.set(false);
-            operationLock.unlock();
+    /**
+     * Watch the new connection while it is idle, if it stays open between transactions.
+     * With an unsolicited message handler it is watched even without the liveness monitor,
+     * so what the host sends between transactions is handled as it arrives.
+     */
+    private void startLiveness() {
+        peerClosed = false;
+        if ((!config.isLivenessMonitor() && config.getUnsolicitedMessageHandler() == null)
+                || config.isAutoCloseAfterResponse()) {
+            return;
+        }
+        final SocketChannel target = channel;
+        try {
+            liveness = LivenessMonitor.shared().watch(target, new LivenessMonitor.Listener() {
+                @Override
+                public void onPeerClosed(String reason, IOException error) {
+                    markPeerClosed(reason, error);
+                }
+
+                @Override
+                public void onBytes(LivenessMonitor.Watch watch) {
+                    dispatchIdle(target, watch);
+                }
+            });
+        } catch (IOException e) {
+            liveness = null; // no monitor selector: the connection works, just unwatched
         }
     }
 
+    /**
+     * Hand off the whole frames the host sent while the connection was idle, on the monitor thread
+     */
+    private void dispatchIdle(SocketChannel target, LivenessMonitor.Watch watch) {
+        if (config.getUnsolicitedMessageHandler() == null) {
+            return; // kept for the next exchange, as before
+        }
+        byte[] frame;
+        while ((frame = watch.pollFrame(lengthHeaderSize, byteOrder)) != null) {
+            if (UnsolicitedMessages.isUnsolicited(config, frame)) {
+                UnsolicitedMessages.dispatch(config, stateListener, frame, replier(target));
+            } else if ((late.isEmpty() || late.classify(frame, null) != LateResponses.LATE) && stateListener != null) {
+                stateListener.onLog("WARN", "Unmatched response " + describe(frame) + " while idle", "Dropped");
+            }
+        }
+    }
+
+    private void markPeerClosed(String reason, IOException error) {
+        peerClosed = true;
+        lastError = error != null ? error : new IOException(reason);
+        if (stateListener != null) {
+            stateListener.onError(lastError, currentState, reason + " while idle");
+        }
+    }
+
+    /**
+     * Resolve through the configured DnsCache (or the system resolver), reporting
+     * the lookup on its own instead of as part of the TCP connect
+     */
+    private Resolution resolve(String host, long operationId, EngineProbe probe) throws UnknownHostException {
+        DnsCache dnsCache = config.getDnsCache();
+        long startNanos = System.nanoTime();
+        Resolution resolution;
+        try {
+            resolution = dnsCache != null ? dnsCache.lookup(host) : DnsCache.resolveDirect(host);
+        } catch (UnknownHostException e) {
+            probe.onDnsResolve(operationId, host, startNanos, System.nanoTime(), false, false);
+            throw e;
+        }
+        long endNanos = System.nanoTime();
+        probe.onDnsResolve(operationId, host, startNanos, endNanos, true, resolution.isCached());
+        if (stateListener != null) {
+            stateListener.onHostResolutionCompleted(host, resolution.getAddress().getHostAddress(),
+                TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos));
+            stateListener.onMetric("dns_resolution_time", TimeUnit.NANOSECONDS.toMicros(endNanos - startNanos), "us");
+        }
+        return resolution;
+    }
+
+    /**
+     * Addresses to connect to, interleaved by family for racing when happy eyeballs is on
+     */
+    private InetAddress[] connectAddresses(Resolution resolution) {
+        if (!config.isHappyEyeballs()) {
+            return new InetAddress[] { resolution.getAddress() };
+        }
+        return HappyEyeballs.interleave(resolution.getAddresses());
+    }
+
     @Override
     public IsoResponse sendAndReceive(byte[] message) throws IOException {
-        if (!isConnected()) {
-            throw new IOException("Not connected");
+        return sendAndReceive(message, Deadline.none());
+    }
+
+    @Override
+    public IsoResponse sendAndReceive(byte[] message, Deadline deadline) throws IOException {
+        EngineProbe probe = probe();
+        long transactionId = EngineProbes.nextId();
+        int index = endpointIndex;
+        Endpoint endpoint = endpoints.get(index);
+        EndpointStats stats = endpoints.getStats(index);
+        CircuitGuard circuit = circuits[index];
+        CancelToken token = beginOperation();
+        long startNanos = System.nanoTime();
+        sentNanos = 0;
+        firstByteNanos = 0;
+        LivenessMonitor.Watch watch = liveness;
+        if (watch != null) {
+            watch.suspend();
+        }
+        stats.onRequestStart();
+        try {
+            IsoResponse response = exchange(message, deadline, token);
+            long endNanos = System.nanoTime();
+            probe.onTransaction(transactionId, endpoint.getHost(), endpoint.getPort(),
+                config.getMessageInspector().getMti(message), message.length, response.getData().length,
+                startNanos, sentNanos, firstByteNanos, endNanos, true);
+            stats.onRequestSuccess(endNanos - startNanos);
+            if (circuit != null) circuit.record(true, startNanos, stateListener);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            probe.onTransaction(transactionId, endpoint.getHost(), endpoint.getPort(),
+                config.getMessageInspector().getMti(message), message.length, 0,
+                startNanos, sentNanos, firstByteNanos, System.nanoTime(), false);
+            if (token.isCancelled()) {
+                // The caller gave up; not a failure of the endpoint
+                throw e instanceof OperationCancelledException ? (OperationCancelledException) e
+                    : token.cancelled("exchange", e);
+            }
+            if (e instanceof IOException) {
+                stats.onFailure(endpoints.getFailureCooldownMs());
+                if (circuit != null) circuit.record(false, startNanos, stateListener);
+            }
+            throw e;
+        } finally {
+            endOperation(token);
+            stats.onRequestEnd();
+            watch = liveness; // a reconnect during the exchange replaced it
+            if (watch != null) {
+                watch.resume();
+            }
+        }
+    }
+
+    /**
+     * Connect again in the middle of an exchange; the new connection is not watched as
+     * idle until the exchange ends, so the monitor never reads the response
+     */
+    private void reconnect(Deadline deadline, CancelToken token) throws IOException {
+        connect(deadline, token);
+        LivenessMonitor.Watch watch = liveness;
+        if (watch != null) {
+            watch.suspend();
+        }
+    }
+
+    private IsoResponse exchange(byte[] message, Deadline deadline, CancelToken token) throws IOException {
+        if (outOfSync) {
+            // The last exchange left the stream where the next frame cannot be trusted
+            reconnect(deadline, token);
+        }
+        // Locals stay usable if close() clears the fields under the exchange
+        SocketChannel channel = this.channel;
+        Selector selector = this.selector;
+        if (channel == null || !channel.isConnected() || peerClosed) {
+            throw new IOException(peerClosed ? "Connection closed by peer" : "Not connected");
+        }
+        token.onCancel(CancelToken.wake(selector));
+        takeEarlyInput();
+        if (!late.isEmpty() && !drainLate(channel, selector, deadline, token)) {
+            // Never send behind a frame that matches nothing; start over on a new connection
+            reconnect(deadline, token);
+            channel = this.channel;
+            selector = this.selector;
+            if (channel == null || selector == null) {
+                throw new IOException("Not connected");
+            }
+            token.onCancel(CancelToken.wake(selector));
+            takeEarlyInput();
         }
 
         changeState(ConnectionState.PREPARING_SEND, "Preparing to send NIO message");
@@ -295,20 +614,44 @@ public class NonBlockingEngine implements ConnectionEngine {
             stateListener.onDataTransmissionStarted(sendBuffer.remaining());
         }
         
-        while (sendBuffer.hasRemaining()) {
-            if (cancelled.get()) {
-                throw new IOException("Send operation cancelled");
-            }
+        int writeTimeoutMs = config.getWriteTimeoutMs() > 0 ? config.getWriteTimeoutMs() : settings.getReadTimeoutMs();
+        long writeStartNanos = System.nanoTime();
+        writeLock.lock();
+        try {
+            while (sendBuffer.hasRemaining()) {
+                token.check("write");
             
-            int written = channel.write(sendBuffer);
-            if (written == 0) {
-                // Channel is not ready, use selector
-                SelectionKey key = channel.register(selector, SelectionKey.OP_WRITE);
-                selector.select(config.getReadTimeoutMs());
-                key.cancel();
+                int written = channel.write(sendBuffer);
+                if (written == 0) {
+                    // Send buffer full: wait for room, until the write timeout or the deadline ends
+                    long waitNanos = Long.MAX_VALUE;
+                    if (writeTimeoutMs > 0) {
+                        waitNanos = writeStartNanos + TimeUnit.MILLISECONDS.toNanos(writeTimeoutMs) - System.nanoTime();
+                        if (waitNanos <= 0) {
+                            throw new WriteTimeoutException(writeTimeoutMs);
+                        }
+                    }
+                    if (deadline.isBounded()) {
+                        long remaining = deadline.remainingNanos();
+                        if (remaining <= 0) {
+                            throw new DeadlineExceededException("write");
+                        }
+                        waitNanos = Math.min(waitNanos, remaining);
+                    }
+                    awaitReady(channel, selector, SelectionKey.OP_WRITE, waitNanos);
+                }
+            }
+        } catch (IOException e) {
+            if (sendBuffer.position() > 0) {
+                // Part of the request is on the wire
+                dropOutOfSync(channel, "Connection out of sync: " + e.getMessage());
             }
+            throw e;
+        } finally {
+            writeLock.unlock();
         }
         
+        sentNanos = System.nanoTime();
         changeState(ConnectionState.DATA_SENT, "NIO data sent");
         if (stateListener != null) {
             stateListener.onDataTransmissionCompleted(lengthHeader.length + message.length, 
@@ -318,27 +661,95 @@ public class NonBlockingEngine implements ConnectionEngine {
         // Read response
         changeState(ConnectionState.WAITING_RESPONSE, "Waiting for NIO response");
         if (stateListener != null) {
-            stateListener.onResponseWaitStarted(config.getReadTimeoutMs());
+            stateListener.onResponseWaitStarted(settings.getReadTimeoutMs());
         }
         
+        ResponseTimer timer = ResponseTimer.start(config, settings, deadline);
+        
         // Read length header
         changeState(ConnectionState.READING_HEADER, "Reading NIO response header");
         if (stateListener != null) {
             stateListener.onResponseHeaderReadStarted(lengthHeaderSize);
         }
         
+        byte[] responseData;
+        try {
+            responseData = readResponse(channel, selector, message, timer, token, startTime);
+        } catch (IOException e) {
+            // A response that times out before its first byte may still come: keep it matchable
+            if (frameOpen || !(e instanceof SocketTimeoutException && late.add(message))) {
+                dropOutOfSync(channel, "Connection out of sync: " + e.getMessage());
+            }
+            throw e;
+        }
+        int responseLength = responseData.length;
+        
+        // Process response
+        changeState(ConnectionState.PROCESSING_RESPONSE, "Processing NIO response");
+        if (stateListener != null) {
+            stateListener.onResponseProcessingStarted(responseLength);
+        }
+        
+        long responseTime = System.currentTimeMillis() - startTime;
+        
+        changeState(ConnectionState.TRANSACTION_COMPLETE, "NIO transaction complete");
+        if (stateListener != null) {
+            stateListener.onResponseProcessingCompleted(0, responseTime);
+        }
+        
+        // Auto-close after transaction (configurable)
+        if (config != null && config.isAutoCloseAfterResponse()) {
+            close();
+        }
+        
+        return new IsoResponse(responseData, responseTime);
+    }
+
+    /**
+     * Read frames until the response to the request; late responses on the way are handed off
+     */
+    private byte[] readResponse(SocketChannel channel, Selector selector, byte[] message, ResponseTimer timer,
+                                CancelToken token, long startTime) throws IOException {
+        frameOpen = false;
+        while (true) {
+            byte[] frame = readFrame(channel, selector, timer, token, startTime);
+            if (isUnsolicited(frame)) {
+                UnsolicitedMessages.dispatch(config, stateListener, frame, replier(channel));
+                timer.onFrameSkipped(); // sent by the host on its own; ours is still to come
+                continue;
+            }
+            if (late.isEmpty()) {
+                return frame;
+            }
+            int match = late.classify(frame, message);
+            if (match == LateResponses.OURS) {
+                return frame;
+            }
+            if (match == LateResponses.UNMATCHED) {
+                throw new IOException("Unmatched response " + describe(frame) + ", connection reset");
+            }
+            timer.onFrameSkipped(); // a late response; ours is still to come
+        }
+    }
+
+    /**
+     * Read one length-prefixed frame; {@link #frameOpen} is set while it is partly read
+     */
+    private byte[] readFrame(SocketChannel channel, Selector selector, ResponseTimer timer, CancelToken token,
+                             long startTime) throws IOException {
         if (config.isReuseBuffers()) {
             if (headerBuffer == null || headerBuffer.capacity() < lengthHeaderSize) {
                 headerBuffer = ByteBuffer.allocateDirect(lengthHeaderSize);
             }
             headerBuffer.clear();
-            readFullBuffer(headerBuffer, config.getReadTimeoutMs());
+            readFullBuffer(channel, selector, headerBuffer, timer, token);
         } else {
             ByteBuffer hb = ByteBuffer.allocate(lengthHeaderSize);
-            readFullBuffer(hb, config.getReadTimeoutMs());
+            readFullBuffer(channel, selector, hb, timer, token);
             headerBuffer = hb;
         }
         
+        firstByteNanos = System.nanoTime();
         headerBuffer.flip();
         int responseLength = parseLength(headerBuffer.array());
         
@@ -364,52 +775,189 @@ public class NonBlockingEngine implements ConnectionEngine {
             }
             dataBuffer.clear();
             dataBuffer.limit(responseLength);
-            readFullBuffer(dataBuffer, config.getReadTimeoutMs());
+            readFullBuffer(channel, selector, dataBuffer, timer, token);
         } else {
             dataBuffer = ByteBuffer.allocate(responseLength);
-            readFullBuffer(dataBuffer, config.getReadTimeoutMs());
+            readFullBuffer(channel, selector, dataBuffer, timer, token);
         }
         
+        frameOpen = false;
+        
         changeState(ConnectionState.DATA_RECEIVED, "NIO data received");
         if (stateListener != null) {
             stateListener.onResponseDataReceived(dataBuffer.array(), responseLength,
                 System.currentTimeMillis() - startTime);
         }
-        
-        // Process response
-        changeState(ConnectionState.PROCESSING_RESPONSE, "Processing NIO response");
-        if (stateListener != null) {
-            stateListener.onResponseProcessingStarted(responseLength);
+        return dataBuffer.array();
+    }
+
+    /**
+     * Read the frames already waiting before a request goes out, so late responses are
+     * handed off instead of being taken for its reply
+     * @return false if a frame matched no timed-out request; the connection was dropped
+     */
+    private boolean drainLate(SocketChannel channel, Selector selector, Deadline deadline, CancelToken token)
+            throws IOException {
+        long startTime = System.currentTimeMillis();
+        frameOpen = false;
+        try {
+            while (!late.isEmpty() && frameWaiting(channel)) {
+                byte[] frame = readFrame(channel, selector, ResponseTimer.start(config, settings, deadline), token,
+                    startTime);
+                if (isUnsolicited(frame)) {
+                    UnsolicitedMessages.dispatch(config, stateListener, frame, replier(channel));
+                } else if (late.classify(frame, null) != LateResponses.LATE) {
+                    dropOutOfSync(channel, "Unmatched frame " + describe(frame) + " before sending");
+                    return false;
+                }
+            }
+        } catch (IOException e) {
+            dropOutOfSync(channel, "Connection out of sync: " + e.getMessage());
+            throw e;
         }
-        
-        long responseTime = System.currentTimeMillis() - startTime;
-        
-        changeState(ConnectionState.TRANSACTION_COMPLETE, "NIO transaction complete");
-        if (stateListener != null) {
-            stateListener.onResponseProcessingCompleted(0, responseTime);
+        return true;
+    }
+
+    /**
+     * Check without waiting whether a frame has started to arrive; bytes read to find out
+     * are kept in {@link #earlyInput} for the frame read
+     */
+    private boolean frameWaiting(SocketChannel channel) throws IOException {
+        if (earlyInput != null && earlyInput.hasRemaining()) {
+            return true;
         }
-        
-        // Auto-close after transaction (configurable)
-        if (config != null && config.isAutoCloseAfterResponse()) {
-            close();
+        ByteBuffer peek = ByteBuffer.allocate(lengthHeaderSize);
+        int read = channel.read(peek);
+        if (read == -1) {
+            throw new IOException("Channel closed");
         }
-        
-        return new IsoResponse(dataBuffer.array(), responseTime);
+        if (read == 0) {
+            return false;
+        }
+        peek.flip();
+        earlyInput = peek;
+        return true;
+    }
+
+    /**
+     * Bytes the liveness monitor read while the connection was idle come first
+     */
+    private void takeEarlyInput() {
+        LivenessMonitor.Watch watch = liveness;
+        byte[] early = watch != null ? watch.takePending() : null;
+        earlyInput = early != null ? ByteBuffer.wrap(early) : null;
+    }
+
+    /**
+     * Whether a frame read during an exchange goes to the unsolicited message handler;
+     * without one, frames are taken as responses as they always were
+     */
+    private boolean isUnsolicited(byte[] frame) {
+        return config.getUnsolicitedMessageHandler() != null && UnsolicitedMessages.isUnsolicited(config, frame);
+    }
+
+    private UnsolicitedMessageHandler.Replier replier(final SocketChannel target) {
+        return new UnsolicitedMessageHandler.Replier() {
+            @Override
+            public void reply(byte[] message) throws IOException {
+                writeReply(target, message);
+            }
+        };
+    }
+
+    /**
+     * Write a handler's reply on the connection its message came on, between request writes.
+     * Runs on the handler's thread; the channel is non-blocking, so a full send buffer is
+     * waited out in short sleeps up to the write timeout.
+     */
+    private void writeReply(SocketChannel target, byte[] message) throws IOException {
+        if (target != channel || !target.isOpen()) {
+            throw new IOException("Connection the message came on is closed");
+        }
+        byte[] lengthHeader = createLengthHeader(message.length);
+        ByteBuffer buffer = ByteBuffer.allocate(lengthHeader.length + message.length);
+        buffer.put(lengthHeader);
+        buffer.put(message);
+        buffer.flip();
+        int writeTimeoutMs = config.getWriteTimeoutMs() > 0 ? config.getWriteTimeoutMs() : settings.getReadTimeoutMs();
+        long startNanos = System.nanoTime();
+        writeLock.lock();
+        try {
+            while (buffer.hasRemaining()) {
+                if (target.write(buffer) == 0) {
+                    if (writeTimeoutMs > 0
+                            && System.nanoTime() - startNanos >= TimeUnit.MILLISECONDS.toNanos(writeTimeoutMs)) {
+                        throw new WriteTimeoutException(writeTimeoutMs);
+                    }
+                    LockSupport.parkNanos(1_000_000L);
+                }
+            }
+        } catch (IOException e) {
+            if (buffer.position() > 0) {
+                // Part of the reply is on the wire; the exchange thread replaces the connection
+                outOfSync = true;
+                try { target.close(); } catch (IOException ignored) {}
+                if (stateListener != null) {
+                    stateListener.onLog("WARN", "Reply to the host failed: " + e.getMessage(),
+                        "Reconnecting on the next exchange");
+                }
+            }
+            throw e;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Give up on a connection whose next frame cannot be trusted; the next exchange reconnects
+     */
+    private void dropOutOfSync(SocketChannel target, String reason) {
+        outOfSync = true;
+        late.clear();
+        earlyInput = null;
+        LivenessMonitor.Watch watch = liveness;
+        if (watch != null) {
+            watch.cancel();
+            liveness = null;
+        }
+        try { target.close(); } catch (IOException ignored) {}
+        if (stateListener != null) {
+            stateListener.onLog("WARN", reason, "Reconnecting on the next exchange");
+        }
+    }
+
+    private String describe(byte[] frame) {
+        return IsoCodes.formatMti(config.getMessageInspector().getMti(frame))
+            + " STAN " + config.getMessageInspector().getStan(frame);
     }
 
     @Override
     public void close() {
+        // Only the connection current now; one made by a reconnect after this call is left alone
+        SocketChannel target = channel;
+        RetryWait retryWait = pendingRetry;
+        if (retryWait != null) {
+            retryWait.abort(); // wake a connect() that is backing off
+        }
+        CancelToken token = operation;
+        if (token != null) {
+            token.cancel(); // wake a connect or exchange waiting on the selector
+        }
         if (currentState == ConnectionState.DISCONNECTED) {
             return; // Already disconnected
         }
-        
-        changeState(ConnectionState.DISCONNECTING, "Starting NIO disconnection");
-        if (stateListener != null) {
-            stateListener.onDisconnectionStarted("Manual close");
+        if (!operationLock.tryLock()) {
+            return; // a connect holds the lock; woken above, it closes its channel as it fails
         }
-        
-        operationLock.lock();
         try {
+            if (channel != target) {
+                return;
+            }
+            changeState(ConnectionState.DISCONNECTING, "Starting NIO disconnection");
+            if (stateListener != null) {
+                stateListener.onDisconnectionStarted("Manual close");
+            }
+            
             cleanupConnection();
             changeState(ConnectionState.DISCONNECTED, "NIO connection closed");
             
@@ -428,7 +976,12 @@ public class NonBlockingEngine implements ConnectionEngine {
 
     @Override
     public boolean isConnected() {
-        return channel != null && channel.isConnected();
+        return channel != null && channel.isConnected() && !peerClosed;
+    }
+
+    @Override
+    public boolean isPeerClosed() {
+        return peerClosed;
     }
 
     @Override
@@ -446,6 +999,11 @@ public class NonBlockingEngine implements ConnectionEngine {
         this.cancelled = cancelled;
     }
 
+    @Override
+    public void setRuntimeSettings(RuntimeSettings settings) {
+        this.settings = settings;
+    }
+
     @Override
     public String getEngineType() {
         return "Non-blocking NIO Engine";
@@ -460,7 +1018,7 @@ public class NonBlockingEngine implements ConnectionEngine {
         boolean channelClosed = channel != null && !channel.isOpen();
         boolean channelOpen = channel != null && channel.isOpen();
         
-        builder.connected(channelConnected && channelOpen)
+        builder.connected(channelConnected && channelOpen && !peerClosed)
                .closed(channelClosed || currentState == ConnectionState.DISCONNECTED)
                .open(channelOpen)
                .connecting(currentState.isConnecting())
@@ -481,13 +1039,14 @@ public class NonBlockingEngine implements ConnectionEngine {
                .lastError(lastError)
                .connectionStartTime(connectionStartTime)
                .lastActivityTime(lastActivityTime)
-               .reconnectAttempts(reconnectAttempts);
+               .reconnectAttempts(reconnectAttempts)
+               .circuitState(circuits[endpointIndex] != null ? circuits[endpointIndex].getState() : null);
 
         // Channel-specific checks
         if (channel != null && channel.isOpen()) {
             try {
-                builder.readable(true) // NIO channels are generally readable if open
-                       .writable(true); // NIO channels are generally writable if open
+                builder.readable(!peerClosed && !channel.socket().isInputShutdown())
+                       .writable(!peerClosed && !channel.socket().isOutputShutdown());
                 
                 // Use socket() method for API 21+ compatibility
                 if (channel.socket() != null) {
@@ -518,7 +1077,9 @@ public class NonBlockingEngine implements ConnectionEngine {
     }
 
     private String generateStatusDescription() {
-        if (currentState == ConnectionState.CONNECTED) {
+        if (peerClosed) {
+            return "NIO Connection closed by peer";
+        } else if (currentState == ConnectionState.CONNECTED) {
             return "NIO Connected and ready";
         } else if (currentState.isConnecting()) {
             return "NIO Connection in progress";
@@ -545,6 +1106,12 @@ public class NonBlockingEngine implements ConnectionEngine {
         
         long closeStart = System.currentTimeMillis();
         
+        if (liveness != null) {
+            liveness.cancel();
+            liveness = null;
+        }
+        earlyInput = null;
+        late.clear();
         try {
             if (channel != null) {
                 channel.close();
@@ -564,47 +1131,119 @@ public class NonBlockingEngine implements ConnectionEngine {
         }
     }
 
-    private void readFullBuffer(ByteBuffer buffer, int timeoutMs) throws IOException {
-        long startTime = System.currentTimeMillis();
-        
-        while (buffer.hasRemaining()) {
-            if (cancelled.get()) {
-                throw new IOException("Read operation cancelled");
+    /**
+     * Fill the buffer within the response's time limits
+     * @throws SocketTimeoutException subtype of the limit that ran out first
+     */
+    private void readFullBuffer(SocketChannel channel, Selector selector, ByteBuffer buffer, ResponseTimer timer,
+                                CancelToken token) throws IOException {
+        if (earlyInput != null) {
+            // Bytes the liveness monitor read while the connection was idle come first
+            while (buffer.hasRemaining() && earlyInput.hasRemaining()) {
+                buffer.put(earlyInput.get());
             }
-            
-            if (System.currentTimeMillis() - startTime > timeoutMs) {
-                throw new IOException("Read timeout");
+            if (!earlyInput.hasRemaining()) {
+                earlyInput = null;
             }
+            timer.onBytes();
+            frameOpen = true;
+        }
+        
+        while (buffer.hasRemaining()) {
+            token.check("read");
             
             int read = channel.read(buffer);
             if (read == -1) {
                 throw new IOException("Channel closed");
             }
-            
-            if (read == 0) {
-                // Channel not ready, use selector
-                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
-                int ready = selector.select(1000); // 1 second timeout
-                key.cancel();
-                
-                if (ready == 0) {
-                    continue; // Timeout, check cancellation and overall timeout
-                }
+            if (read > 0) {
+                timer.onBytes();
+                frameOpen = true;
+            } else {
+                // Nothing yet: select for exactly the time left (throws once it is up)
+                awaitReady(channel, selector, SelectionKey.OP_READ, timer.remainingNanos());
             }
         }
     }
 
+    /**
+     * Wait until the channel is ready for the given operations. The channel keeps one
+     * key on the selector for its lifetime; cancelling and re-registering it between
+     * selects fails with CancelledKeyException on persistent connections.
+     * A cancel wakes the select at once.
+     * @param waitNanos Time left in the current phase; one select never exceeds the select interval
+     */
+    private int awaitReady(SocketChannel channel, Selector selector, int ops, long waitNanos) throws IOException {
+        long intervalMs = selectIntervalMs();
+        // Round up: waking a moment early would only spin, and select(0) would block forever
+        long timeoutMs = waitNanos >= TimeUnit.MILLISECONDS.toNanos(intervalMs)
+            ? intervalMs : Math.max(1, (waitNanos + 999_999) / 1_000_000);
+        SelectionKey key = channel.keyFor(selector);
+        if (key == null) {
+            key = channel.register(selector, ops);
+        } else {
+            key.interestOps(ops);
+        }
+        try {
+            int ready = selector.select(timeoutMs);
+            selector.selectedKeys().clear();
+            return ready;
+        } finally {
+            if (key.isValid()) {
+                key.interestOps(0);
+            }
+        }
+    }
+
+    private long selectIntervalMs() {
+        return config.getNioSelectIntervalMs() > 0 ? config.getNioSelectIntervalMs() : 1000;
+    }
+
     private void changeState(ConnectionState newState, String details) {
         ConnectionState oldState = currentState;
         currentState = newState;
         if (stateListener != null) {
             stateListener.onStateChanged(oldState, newState, details);
         }
-        if (stateListener != null && (config == null || config.isEnableHotPathLogs())) {
+        if (stateListener != null && hotPathLogs()) {
             stateListener.onLog("INFO", "NIO State changed: " + oldState + " -> " + newState, details);
         }
     }
 
+    /**
+     * Start a connect or exchange with a fresh token; an earlier cancel does not carry over
+     */
+    private CancelToken beginOperation() {
+        CancelToken token = new CancelToken();
+        operation = token;
+        cancelled.set(false);
+        return token;
+    }
+
+    private void endOperation(CancelToken token) {
+        if (operation == token) {
+            operation = null;
+        }
+    }
+
+    private boolean awaitRetry(long delayMs) throws InterruptedIOException {
+        RetryWait retryWait = new RetryWait(delayMs);
+        pendingRetry = retryWait;
+        try {
+            return retryWait.await();
+        } finally {
+            pendingRetry = null;
+        }
+    }
+
+    private EngineProbe probe() {
+        return EngineProbes.resolve(config.getEngineProbe());
+    }
+
+    private boolean hotPathLogs() {
+        return settings == null || settings.isEnableHotPathLogs();
+    }
+
     private byte[] createLengthHeader(int length) {
         ByteBuffer buffer = ByteBuffer.allocate(lengthHeaderSize);
         buffer.order(byteOrder);
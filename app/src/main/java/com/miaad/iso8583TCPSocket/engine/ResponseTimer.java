@@ -0,0 +1,154 @@
+package com.miaad.iso8583TCPSocket.engine;
+
+import com.miaad.iso8583TCPSocket.Deadline;
+import com.miaad.iso8583TCPSocket.DeadlineExceededException;
+import com.miaad.iso8583TCPSocket.FirstByteTimeoutException;
+import com.miaad.iso8583TCPSocket.InterByteTimeoutException;
+import com.miaad.iso8583TCPSocket.IsoConfig;
+import com.miaad.iso8583TCPSocket.RuntimeSettings;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time limits on reading one response, started once the request is written. Whichever
+ * of these ends first bounds the next wait:
+ * <ul>
+ *   <li>the read timeout, for the whole response</li>
+ *   <li>the first-byte timeout, until any byte arrives</li>
+ *   <li>the inter-byte timeout, from the last byte that arrived</li>
+ *   <li>the transaction's {@link Deadline}</li>
+ * </ul>
+ * A timeout of 0 or less is off. All limits are on {@link System#nanoTime()}.
+ */
+final class ResponseTimer {
+
+    private static final int READ = 0;
+    private static final int FIRST_BYTE = 1;
+    private static final int INTER_BYTE = 2;
+    private static final int DEADLINE = 3;
+
+    private final Deadline deadline;
+    private final long startNanos;
+    private final int readTimeoutMs;
+    private final int firstByteTimeoutMs;
+    private final int interByteTimeoutMs;
+    private long lastByteNanos;
+    private boolean anyByte;
+    // Set by limit(): the phase whose end is nearest
+    private int binding;
+
+    /**
+     * Start the limits of a response whose request was just written
+     */
+    static ResponseTimer start(IsoConfig config, RuntimeSettings settings, Deadline deadline) {
+        int readTimeoutMs = settings.getReadTimeoutMs();
+        int firstByteTimeoutMs = config.getFirstByteTimeoutMs() > 0 ? config.getFirstByteTimeoutMs() : readTimeoutMs;
+        return new ResponseTimer(deadline, readTimeoutMs, firstByteTimeoutMs, config.getInterByteTimeoutMs());
+    }
+
+    ResponseTimer(Deadline deadline, int readTimeoutMs, int firstByteTimeoutMs, int interByteTimeoutMs) {
+        this.deadline = deadline;
+        this.startNanos = System.nanoTime();
+        this.readTimeoutMs = readTimeoutMs;
+        this.firstByteTimeoutMs = firstByteTimeoutMs;
+        this.interByteTimeoutMs = interByteTimeoutMs;
+    }
+
+    /**
+     * Bytes of the response arrived
+     */
+    void onBytes() {
+        lastByteNanos = System.nanoTime();
+        anyByte = true;
+    }
+
+    /**
+     * A whole frame that was not the response was read; the response's first byte is
+     * still to come
+     */
+    void onFrameSkipped() {
+        anyByte = false;
+    }
+
+    /**
+     * Time the next wait for bytes may take
+     * @return Nanoseconds, or Long.MAX_VALUE if no limit applies
+     * @throws SocketTimeoutException of the phase that ran out, if one did
+     */
+    long remainingNanos() throws SocketTimeoutException {
+        long now = System.nanoTime();
+        long limit = limit(now);
+        if (limit == Long.MAX_VALUE) {
+            return limit;
+        }
+        long remaining = limit - now;
+        if (remaining <= 0) {
+            throw expired();
+        }
+        return remaining;
+    }
+
+    /**
+     * Socket timeout for the next blocking read, rounded up; 0 means none
+     * @throws SocketTimeoutException of the phase that ran out, if one did
+     */
+    int remainingMillis() throws SocketTimeoutException {
+        long nanos = remainingNanos();
+        if (nanos == Long.MAX_VALUE) {
+            return 0;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, (nanos + 999_999) / 1_000_000);
+    }
+
+    /**
+     * Exception for the phase that bounded the last wait, thrown when it ran out
+     */
+    SocketTimeoutException expired() {
+        limit(System.nanoTime());
+        switch (binding) {
+            case FIRST_BYTE:
+                return new FirstByteTimeoutException(firstByteTimeoutMs);
+            case INTER_BYTE:
+                return new InterByteTimeoutException(interByteTimeoutMs);
+            case DEADLINE:
+                return new DeadlineExceededException("read");
+            default:
+                return new SocketTimeoutException("Read timed out after " + readTimeoutMs + "ms");
+        }
+    }
+
+    /**
+     * Nearest end of all phases as a nanoTime, or Long.MAX_VALUE; sets {@link #binding}
+     */
+    private long limit(long now) {
+        long limit = Long.MAX_VALUE;
+        binding = READ;
+        if (readTimeoutMs > 0) {
+            limit = startNanos + TimeUnit.MILLISECONDS.toNanos(readTimeoutMs);
+        }
+        if (!anyByte) {
+            if (firstByteTimeoutMs > 0) {
+                long end = startNanos + TimeUnit.MILLISECONDS.toNanos(firstByteTimeoutMs);
+                if (limit == Long.MAX_VALUE || end - limit <= 0) {
+                    limit = end;
+                    binding = FIRST_BYTE;
+                }
+            }
+        } else if (interByteTimeoutMs > 0) {
+            long end = lastByteNanos + TimeUnit.MILLISECONDS.toNanos(interByteTimeoutMs);
+            if (limit == Long.MAX_VALUE || end - limit <= 0) {
+                limit = end;
+                binding = INTER_BYTE;
+            }
+        }
+        if (deadline.isBounded()) {
+            long end = now + deadline.remainingNanos();
+            if (limit == Long.MAX_VALUE || end - limit < 0) {
+                limit = end;
+                binding = DEADLINE;
+            }
+        }
+        return limit;
+    }
+}
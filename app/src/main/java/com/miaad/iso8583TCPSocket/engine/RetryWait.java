@@ -0,0 +1,62 @@
+package com.miaad.iso8583TCPSocket.engine;
+
+import com.miaad.iso8583TCPSocket.timer.HashedWheelTimer;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Backoff delay between connection or transaction attempts, driven by the shared
+ * wheel timer. The waiting thread holds no engine lock, and {@link #abort()}
+ * (from close or cancel) wakes it immediately.
+ */
+public final class RetryWait implements Runnable {
+
+    private static final int WAITING = 0;
+    private static final int ELAPSED = 1;
+    private static final int ABORTED = 2;
+
+    private final Thread waiter;
+    private final AtomicInteger state = new AtomicInteger(WAITING);
+    private final HashedWheelTimer.Timeout timeout;
+
+    public RetryWait(long delayMs) {
+        this.waiter = Thread.currentThread();
+        this.timeout = HashedWheelTimer.shared().schedule(this, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void run() {
+        if (state.compareAndSet(WAITING, ELAPSED)) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * Stop waiting; the waiter returns false from {@link #await()}
+     */
+    public void abort() {
+        if (state.compareAndSet(WAITING, ABORTED)) {
+            timeout.cancel();
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * Park until the delay elapses or the wait is aborted
+     * @return true if the delay elapsed, false if aborted
+     */
+    public boolean await() throws InterruptedIOException {
+        while (state.get() == WAITING) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                abort();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted during retry delay");
+            }
+        }
+        return state.get() == ELAPSED;
+    }
+}
@@ -0,0 +1,65 @@
+package com.miaad.iso8583TCPSocket.engine;
+
+import com.miaad.iso8583TCPSocket.ConnectionStateListener;
+import com.miaad.iso8583TCPSocket.IsoCodes;
+import com.miaad.iso8583TCPSocket.IsoConfig;
+import com.miaad.iso8583TCPSocket.UnsolicitedMessageHandler;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Hands messages the host sent on its own to the configured {@link UnsolicitedMessageHandler},
+ * off the thread that read them, so a handler that blocks or sends never stalls the reads.
+ * Handlers run on the configured executor, else on shared daemon threads: 16 at once
+ * and 256 waiting, beyond which messages are logged and dropped, so a host flooding the
+ * connection cannot grow the pool.
+ */
+final class UnsolicitedMessages {
+
+    /** Threads for handlers; they may block replying or sending, so several run at once */
+    private static final Executor EXECUTOR = DaemonExecutors.bounded("iso-unsolicited", 16, 256);
+
+    private UnsolicitedMessages() {
+    }
+
+    /**
+     * Check whether a message the engine did not ask for was sent by the host on its
+     * own: a request or advice, not a response to something sent earlier
+     */
+    static boolean isUnsolicited(IsoConfig config, byte[] message) {
+        return IsoCodes.responseMti(config.getMessageInspector().getMti(message)) >= 0;
+    }
+
+    static void dispatch(IsoConfig config, final ConnectionStateListener listener, final byte[] message,
+                         final UnsolicitedMessageHandler.Replier replier) {
+        final UnsolicitedMessageHandler handler = config.getUnsolicitedMessageHandler();
+        if (handler == null) {
+            if (listener != null) {
+                listener.onLog("WARN", "Unsolicited " + IsoCodes.formatMti(config.getMessageInspector().getMti(message))
+                    + " from the host", "Dropped, no unsolicited message handler");
+            }
+            return;
+        }
+        Executor executor = config.getUnsolicitedExecutor();
+        try {
+            (executor != null ? executor : EXECUTOR).execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        handler.onUnsolicitedMessage(message, replier);
+                    } catch (RuntimeException e) {
+                        if (listener != null) {
+                            listener.onLog("ERROR", "Unsolicited message handler failed: " + e, "Message dropped");
+                        }
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (listener != null) {
+                listener.onLog("WARN", "Unsolicited " + IsoCodes.formatMti(config.getMessageInspector().getMti(message))
+                    + " from the host", "Dropped, unsolicited executor rejected it");
+            }
+        }
+    }
+}
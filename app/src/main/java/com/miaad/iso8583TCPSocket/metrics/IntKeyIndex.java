@@ -0,0 +1,110 @@
+package com.miaad.iso8583TCPSocket.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Lock-free map from small integer keys (MTIs, packed response codes) to dense slot
+ * numbers. Slots are claimed once with a CAS and never released, so a slot number can
+ * index plain arrays. Keys that arrive after the table is full share the overflow slot
+ * {@link #capacity()}.
+ */
+public final class IntKeyIndex {
+
+    private static final int EMPTY = 0;
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicIntegerArray table; // key + 2 per bucket, EMPTY if free
+    private final AtomicIntegerArray slotOfBucket;
+    private final AtomicIntegerArray keyOfSlot; // key + 2 per slot, EMPTY until published
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @param capacity Maximum number of distinct keys before overflow
+     */
+    public IntKeyIndex(int capacity) {
+        int buckets = 1;
+        while (buckets < capacity * 2) {
+            buckets <<= 1;
+        }
+        this.capacity = capacity;
+        this.mask = buckets - 1;
+        this.table = new AtomicIntegerArray(buckets);
+        this.slotOfBucket = new AtomicIntegerArray(buckets);
+        this.keyOfSlot = new AtomicIntegerArray(capacity);
+    }
+
+    /**
+     * Number of regular slots; the overflow slot has this index
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Number of slots claimed so far
+     */
+    public int size() {
+        return Math.min(size.get(), capacity);
+    }
+
+    /**
+     * Get the key stored in a slot
+     * @return Key, or -1 for the overflow slot or a slot that is not yet published
+     */
+    public int keyAt(int slot) {
+        if (slot < 0 || slot >= capacity) {
+            return -1;
+        }
+        int stored = keyOfSlot.get(slot);
+        return stored == EMPTY ? -1 : stored - 2;
+    }
+
+    /**
+     * Find or claim the slot for a key (keys must be >= -1)
+     */
+    public int slotFor(int key) {
+        int stored = key + 2;
+        int bucket = hash(key) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            int current = table.get(bucket);
+            if (current == stored) {
+                return awaitSlot(bucket);
+            }
+            if (current == EMPTY) {
+                if (size.get() >= capacity) {
+                    return capacity;
+                }
+                if (table.compareAndSet(bucket, EMPTY, stored)) {
+                    int slot = size.getAndIncrement();
+                    if (slot >= capacity) {
+                        slotOfBucket.set(bucket, capacity + 1);
+                        return capacity;
+                    }
+                    keyOfSlot.set(slot, stored);
+                    slotOfBucket.set(bucket, slot + 1);
+                    return slot;
+                }
+                if (table.get(bucket) == stored) {
+                    return awaitSlot(bucket);
+                }
+            }
+            bucket = (bucket + 1) & mask;
+        }
+        return capacity;
+    }
+
+    private int awaitSlot(int bucket) {
+        int slot;
+        while ((slot = slotOfBucket.get(bucket)) == 0) {
+            Thread.yield(); // another thread is between claiming the bucket and publishing the slot
+        }
+        return slot - 1;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
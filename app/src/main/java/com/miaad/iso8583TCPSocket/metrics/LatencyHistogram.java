@@ -0,0 +1,134 @@
+package com.miaad.iso8583TCPSocket.metrics;
+
+/**
+ * Lock-free latency histogram with log-linear buckets (8 sub-buckets per power
+ * of two, so percentiles are accurate to within 12.5%). Values are recorded in
+ * microseconds into a {@link StripedLongArray}, so concurrent recording does not
+ * contend. Covers 1 us to about 19 hours; larger values land in the last bucket.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final StripedLongArray counts = new StripedLongArray(BUCKETS);
+
+    /**
+     * Record one latency
+     * @param nanos Elapsed time in nanoseconds
+     */
+    public void recordNanos(long nanos) {
+        counts.increment(bucketOf(nanos / 1000));
+    }
+
+    /**
+     * Take a copy of the bucket counts
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        counts.sumInto(copy);
+        return new Snapshot(copy);
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return micros <= 0 ? 0 : (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Upper bound (exclusive) of a bucket in microseconds
+     */
+    static long bucketUpperMicros(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * Immutable copy of a histogram
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long total;
+
+        Snapshot(long[] counts) {
+            this.counts = counts;
+            long sum = 0;
+            for (long c : counts) sum += c;
+            this.total = sum;
+        }
+
+        /**
+         * Number of recorded values
+         */
+        public long getCount() {
+            return total;
+        }
+
+        /**
+         * Latency at a percentile, in milliseconds
+         * @param percentile Between 0 and 100, e.g. 99.9
+         * @return Upper bound of the bucket holding the percentile, or 0 if empty
+         */
+        public double getPercentileMs(double percentile) {
+            return getPercentileMicros(percentile) / 1000.0;
+        }
+
+        /**
+         * Latency at a percentile, in microseconds
+         */
+        public long getPercentileMicros(double percentile) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+            if (rank < 1) rank = 1;
+            long seen = 0;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                seen += counts[bucket];
+                if (seen >= rank) {
+                    return bucketUpperMicros(bucket);
+                }
+            }
+            return bucketUpperMicros(counts.length - 1);
+        }
+
+        /**
+         * Largest recorded latency (bucket upper bound), in milliseconds
+         */
+        public double getMaxMs() {
+            for (int bucket = counts.length - 1; bucket >= 0; bucket--) {
+                if (counts[bucket] != 0) {
+                    return bucketUpperMicros(bucket) / 1000.0;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Values recorded since an earlier snapshot of the same histogram
+         */
+        public Snapshot delta(Snapshot previous) {
+            if (previous == null) {
+                return this;
+            }
+            long[] diff = new long[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                diff[i] = counts[i] - previous.counts[i];
+            }
+            return new Snapshot(diff);
+        }
+    }
+}
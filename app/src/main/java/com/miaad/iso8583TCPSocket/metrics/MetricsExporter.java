@@ -0,0 +1,533 @@
+package com.miaad.iso8583TCPSocket.metrics;
+
+import com.miaad.iso8583TCPSocket.ConnectionState;
+import com.miaad.iso8583TCPSocket.ConnectionStateAdapter;
+import com.miaad.iso8583TCPSocket.ConnectionStateListener;
+import com.miaad.iso8583TCPSocket.ConnectionStatus;
+import com.miaad.iso8583TCPSocket.IsoClient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aggregates client, transaction and engine metrics and exposes them in the
+ * Prometheus text format, either from a small embedded HTTP listener or by
+ * rewriting a file on a timer.
+ * <p>
+ * Recording never happens here: transaction counters are read straight from
+ * {@link TransactionStats}, and engine metrics are folded into counters as they
+ * arrive. A scrape renders into a reused buffer, so it does not allocate per
+ * sample or contend with transaction threads.
+ *
+ * <pre>
+ * MetricsExporter exporter = new MetricsExporter();
+ * exporter.register("acquirer-a", client);
+ * client.setConnectionStateListener(exporter.listener("acquirer-a"));
+ * exporter.startHttpServer(9464); // http://127.0.0.1:9464/metrics
+ * </pre>
+ */
+public class MetricsExporter {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final int MAX_REQUEST_HEADER_BYTES = 8192;
+
+    private final Object registrationLock = new Object();
+    private volatile Source[] sources = new Source[0];
+    private final PrometheusWriter writer = new PrometheusWriter();
+
+    private volatile ServerSocket serverSocket;
+    private volatile Thread serverThread;
+    private ScheduledExecutorService fileWriterExecutor;
+
+    // ========== REGISTRATION ==========
+
+    /**
+     * Export connection status and transaction counters of a client
+     * @param name Value of the {@code client} label
+     */
+    public void register(String name, IsoClient client) {
+        Source source = source(name);
+        source.client = client;
+        source.setStats(client.getTransactionStats());
+    }
+
+    /**
+     * Export transaction counters that are not tied to a single client,
+     * e.g. an instance shared through {@code IsoConfig.Builder.transactionStats}
+     */
+    public void register(String name, TransactionStats stats) {
+        source(name).setStats(stats);
+    }
+
+    /**
+     * Stop exporting everything registered under a name
+     */
+    public void unregister(String name) {
+        synchronized (registrationLock) {
+            Source[] current = sources;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i].name.equals(name)) {
+                    Source[] next = new Source[current.length - 1];
+                    System.arraycopy(current, 0, next, 0, i);
+                    System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                    sources = next;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Listener that aggregates a client's {@code onMetric}, {@code onError} and
+     * {@code onTimeout} callbacks under a name. If the client already has a
+     * listener, forward those callbacks to {@link #recordEngineMetric},
+     * {@link #recordEngineError} and {@link #recordEngineTimeout} instead.
+     */
+    public ConnectionStateListener listener(String name) {
+        final Source source = source(name);
+        return new ConnectionStateAdapter() {
+            @Override
+            public void onMetric(String metricName, long value, String unit) {
+                source.recordMetric(metricName, value, unit);
+            }
+
+            @Override
+            public void onError(Exception error, ConnectionState currentState, String details) {
+                source.engineErrors.incrementAndGet();
+            }
+
+            @Override
+            public void onTimeout(String timeoutType, int timeoutMs, ConnectionState currentState) {
+                source.engineTimeouts.incrementAndGet();
+            }
+        };
+    }
+
+    public void recordEngineMetric(String name, String metricName, long value, String unit) {
+        source(name).recordMetric(metricName, value, unit);
+    }
+
+    public void recordEngineError(String name) {
+        source(name).engineErrors.incrementAndGet();
+    }
+
+    public void recordEngineTimeout(String name) {
+        source(name).engineTimeouts.incrementAndGet();
+    }
+
+    private Source source(String name) {
+        for (Source s : sources) {
+            if (s.name.equals(name)) return s;
+        }
+        synchronized (registrationLock) {
+            Source[] current = sources;
+            for (Source s : current) {
+                if (s.name.equals(name)) return s;
+            }
+            Source created = new Source(name);
+            Source[] next = new Source[current.length + 1];
+            System.arraycopy(current, 0, next, 0, current.length);
+            next[current.length] = created;
+            sources = next;
+            return created;
+        }
+    }
+
+    // ========== RENDERING ==========
+
+    /**
+     * Render all metrics to a stream
+     * @return Number of bytes written
+     */
+    public int render(OutputStream out) throws IOException {
+        synchronized (writer) {
+            renderLocked();
+            writer.writeTo(out);
+            return writer.size();
+        }
+    }
+
+    /**
+     * Render all metrics to a string (convenience for logging and tests)
+     */
+    public String render() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            render(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private void renderLocked() {
+        PrometheusWriter w = writer;
+        w.reset();
+        Source[] current = sources;
+
+        for (Source s : current) {
+            s.refresh();
+        }
+
+        renderMtiFamily(w, current, "iso_transactions_total", "Transactions sent, by request MTI", TransactionStats.TRANSACTIONS);
+        renderMtiFamily(w, current, "iso_bytes_out_total", "Request bytes written, by request MTI", TransactionStats.BYTES_OUT);
+        renderMtiFamily(w, current, "iso_bytes_in_total", "Response bytes read, by request MTI", TransactionStats.BYTES_IN);
+        renderMtiFamily(w, current, "iso_timeouts_total", "Transactions that timed out, by request MTI", TransactionStats.TIMEOUTS);
+        renderMtiFamily(w, current, "iso_errors_total", "Transactions that failed, by request MTI", TransactionStats.ERRORS);
+
+        w.help("iso_responses_total", "counter", "Responses received, by response code (field 39)");
+        for (Source s : current) {
+            if (s.stats == null) continue;
+            IntKeyIndex index = s.stats.responseCodeIndex();
+            for (int slot = 0; slot <= index.capacity(); slot++) {
+                long value = s.rcSums[slot];
+                if (value == 0) continue;
+                int key = slot == index.capacity() ? TransactionStatsSnapshot.OTHER : index.keyAt(slot);
+                w.ascii("iso_responses_total{client=\"").bytes(s.label)
+                 .ascii("\",response_code=\"").responseCode(key).ascii("\"} ").number(value).ch('\n');
+            }
+        }
+
+        w.help("iso_connection_up", "gauge", "1 if the client is connected");
+        for (Source s : current) {
+            if (s.status == null) continue;
+            gauge(w, "iso_connection_up", s, s.status.isConnected() ? 1 : 0);
+        }
+        w.help("iso_transaction_in_progress", "gauge", "1 if a transaction is in progress");
+        for (Source s : current) {
+            if (s.status == null) continue;
+            gauge(w, "iso_transaction_in_progress", s, s.status.isTransactionInProgress() ? 1 : 0);
+        }
+        w.help("iso_reconnect_attempts", "gauge", "Failed connection attempts during the last connect");
+        for (Source s : current) {
+            if (s.status == null) continue;
+            gauge(w, "iso_reconnect_attempts", s, s.status.getReconnectAttempts());
+        }
+
+        w.help("iso_engine_errors_total", "counter", "Errors reported by the connection engine");
+        for (Source s : current) {
+            gauge(w, "iso_engine_errors_total", s, s.engineErrors.get());
+        }
+        w.help("iso_engine_timeouts_total", "counter", "Timeouts reported by the connection engine");
+        for (Source s : current) {
+            gauge(w, "iso_engine_timeouts_total", s, s.engineTimeouts.get());
+        }
+
+        w.help("iso_engine_metric", "summary", "Engine metrics reported through onMetric");
+        for (Source s : current) {
+            for (EngineMetric m : s.engineMetrics.values()) {
+                engineSample(w, "iso_engine_metric_sum", s, m, m.sum.get());
+                engineSample(w, "iso_engine_metric_count", s, m, m.count.get());
+            }
+        }
+        w.help("iso_engine_metric_max", "gauge", "Largest value reported through onMetric");
+        for (Source s : current) {
+            for (EngineMetric m : s.engineMetrics.values()) {
+                engineSample(w, "iso_engine_metric_max", s, m, m.max.get());
+            }
+        }
+    }
+
+    private static void renderMtiFamily(PrometheusWriter w, Source[] sources, String name, String help, int metric) {
+        w.help(name, "counter", help);
+        for (Source s : sources) {
+            if (s.stats == null) continue;
+            IntKeyIndex index = s.stats.mtiIndex();
+            for (int slot = 0; slot <= index.capacity(); slot++) {
+                if (s.mtiSums[slot * TransactionStats.METRIC_COUNT + TransactionStats.TRANSACTIONS] == 0) continue;
+                int key = slot == index.capacity() ? TransactionStatsSnapshot.OTHER : index.keyAt(slot);
+                w.ascii(name).ascii("{client=\"").bytes(s.label).ascii("\",mti=\"").mti(key).ascii("\"} ")
+                 .number(s.mtiSums[slot * TransactionStats.METRIC_COUNT + metric]).ch('\n');
+            }
+        }
+    }
+
+    private static void gauge(PrometheusWriter w, String name, Source s, long value) {
+        w.ascii(name).ascii("{client=\"").bytes(s.label).ascii("\"} ").number(value).ch('\n');
+    }
+
+    private static void engineSample(PrometheusWriter w, String name, Source s, EngineMetric m, long value) {
+        w.ascii(name).ascii("{client=\"").bytes(s.label).ascii("\",").bytes(m.labels).ascii("} ").number(value).ch('\n');
+    }
+
+    // ========== HTTP ENDPOINT ==========
+
+    /**
+     * Serve {@code /metrics} on the loopback interface
+     */
+    public void startHttpServer(int port) throws IOException {
+        startHttpServer(InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * Serve {@code /metrics} on the given address. Port 0 picks a free port,
+     * see {@link #getHttpPort()}.
+     */
+    public synchronized void startHttpServer(InetAddress bindAddress, int port) throws IOException {
+        if (serverSocket != null) {
+            throw new IllegalStateException("HTTP server already running on port " + serverSocket.getLocalPort());
+        }
+        final ServerSocket server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(new InetSocketAddress(bindAddress, port), 16);
+        serverSocket = server;
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!server.isClosed()) {
+                    Socket socket;
+                    try {
+                        socket = server.accept();
+                    } catch (IOException e) {
+                        return; // closed by stop()
+                    }
+                    handleHttp(socket);
+                }
+            }
+        }, "iso-metrics-http");
+        thread.setDaemon(true);
+        serverThread = thread;
+        thread.start();
+    }
+
+    /**
+     * Port of the running HTTP server, or -1
+     */
+    public int getHttpPort() {
+        ServerSocket server = serverSocket;
+        return server != null ? server.getLocalPort() : -1;
+    }
+
+    private void handleHttp(Socket socket) {
+        try {
+            socket.setSoTimeout(5000);
+            InputStream in = socket.getInputStream();
+            String requestLine = readRequestHead(in);
+            OutputStream out = socket.getOutputStream();
+            if (requestLine == null) {
+                return;
+            }
+            String[] parts = requestLine.split(" ");
+            if (parts.length < 2 || !(parts[0].equals("GET") || parts[0].equals("HEAD"))) {
+                writeHttpHead(out, "405 Method Not Allowed", 0);
+                return;
+            }
+            String path = parts[1];
+            int query = path.indexOf('?');
+            if (query >= 0) path = path.substring(0, query);
+            if (!path.equals("/metrics") && !path.equals("/")) {
+                writeHttpHead(out, "404 Not Found", 0);
+                return;
+            }
+            synchronized (writer) {
+                renderLocked();
+                writeHttpHead(out, "200 OK", writer.size());
+                if (parts[0].equals("GET")) {
+                    writer.writeTo(out);
+                }
+            }
+            out.flush();
+        } catch (IOException ignored) {
+            // scraper went away
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static String readRequestHead(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        String requestLine = null;
+        int total = 0;
+        int lineLength = 0;
+        int b;
+        while ((b = in.read()) != -1 && total++ < MAX_REQUEST_HEADER_BYTES) {
+            if (b == '\n') {
+                if (requestLine == null) {
+                    requestLine = line.toString().trim();
+                }
+                if (lineLength == 0) {
+                    return requestLine; // blank line ends the headers
+                }
+                lineLength = 0;
+            } else if (b != '\r') {
+                if (requestLine == null) line.append((char) b);
+                lineLength++;
+            }
+        }
+        return requestLine;
+    }
+
+    private static void writeHttpHead(OutputStream out, String status, int contentLength) throws IOException {
+        String head = "HTTP/1.1 " + status + "\r\n"
+            + "Content-Type: " + CONTENT_TYPE + "\r\n"
+            + "Content-Length: " + contentLength + "\r\n"
+            + "Connection: close\r\n\r\n";
+        out.write(head.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // ========== FILE OUTPUT ==========
+
+    /**
+     * Rewrite a file with the current metrics every {@code intervalMs}, e.g. for
+     * the node_exporter textfile collector. The file is replaced atomically.
+     */
+    public synchronized void startFileWriter(final File file, long intervalMs) {
+        if (fileWriterExecutor != null) {
+            throw new IllegalStateException("File writer already running");
+        }
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "iso-metrics-file");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    writeFile(file);
+                } catch (IOException ignored) {
+                    // try again on the next tick
+                }
+            }
+        }, 0, intervalMs, TimeUnit.MILLISECONDS);
+        fileWriterExecutor = executor;
+    }
+
+    /**
+     * Write the current metrics to a file once
+     */
+    public void writeFile(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            render(out);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Could not rename " + tmp + " to " + file);
+        }
+    }
+
+    /**
+     * Stop the HTTP server and the file writer
+     */
+    public synchronized void stop() {
+        ServerSocket server = serverSocket;
+        serverSocket = null;
+        if (server != null) {
+            try {
+                server.close();
+            } catch (IOException ignored) {
+            }
+        }
+        Thread thread = serverThread;
+        serverThread = null;
+        if (thread != null) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (fileWriterExecutor != null) {
+            fileWriterExecutor.shutdownNow();
+            fileWriterExecutor = null;
+        }
+    }
+
+    // ========== SOURCES ==========
+
+    private static final class Source {
+        final String name;
+        final byte[] label;
+        volatile IsoClient client;
+        volatile TransactionStats stats;
+        final ConcurrentHashMap<String, EngineMetric> engineMetrics = new ConcurrentHashMap<>();
+        final AtomicLong engineErrors = new AtomicLong();
+        final AtomicLong engineTimeouts = new AtomicLong();
+
+        // Render-time state, only touched while holding the writer lock
+        long[] mtiSums = new long[0];
+        long[] rcSums = new long[0];
+        ConnectionStatus status;
+
+        Source(String name) {
+            this.name = name;
+            this.label = PrometheusWriter.escapeLabelValue(name);
+        }
+
+        void setStats(TransactionStats stats) {
+            this.stats = stats;
+        }
+
+        void recordMetric(String metricName, long value, String unit) {
+            EngineMetric metric = engineMetrics.get(metricName);
+            if (metric == null) {
+                EngineMetric created = new EngineMetric(metricName, unit);
+                metric = engineMetrics.putIfAbsent(metricName, created);
+                if (metric == null) metric = created;
+            }
+            metric.record(value);
+        }
+
+        void refresh() {
+            TransactionStats current = stats;
+            if (current != null) {
+                if (mtiSums.length != current.mtiCounters().slots()) {
+                    mtiSums = new long[current.mtiCounters().slots()];
+                    rcSums = new long[current.responseCodeCounters().slots()];
+                }
+                current.mtiCounters().sumInto(mtiSums);
+                current.responseCodeCounters().sumInto(rcSums);
+            }
+            IsoClient c = client;
+            status = c != null ? c.getConnectionStatus() : null;
+        }
+    }
+
+    private static final class EngineMetric {
+        final byte[] labels;
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong sum = new AtomicLong();
+        final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+        EngineMetric(String name, String unit) {
+            String escaped = new String(PrometheusWriter.escapeLabelValue(name), StandardCharsets.UTF_8);
+            String escapedUnit = new String(PrometheusWriter.escapeLabelValue(unit != null ? unit : ""), StandardCharsets.UTF_8);
+            this.labels = ("metric=\"" + escaped + "\",unit=\"" + escapedUnit + "\"").getBytes(StandardCharsets.UTF_8);
+        }
+
+        void record(long value) {
+            count.incrementAndGet();
+            sum.addAndGet(value);
+            long current;
+            while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+                // retry
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.miaad.iso8583TCPSocket.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Growable byte buffer that writes Prometheus text exposition format.
+ * The buffer is reused between renders, and numbers and codes are written as
+ * ASCII digits directly, so a steady-state render allocates nothing.
+ */
+final class PrometheusWriter {
+
+    private byte[] buf = new byte[8192];
+    private int pos;
+
+    void reset() {
+        pos = 0;
+    }
+
+    int size() {
+        return pos;
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, pos);
+    }
+
+    /**
+     * Write an ASCII string without encoding it first
+     */
+    PrometheusWriter ascii(String s) {
+        int n = s.length();
+        ensure(n);
+        for (int i = 0; i < n; i++) {
+            buf[pos++] = (byte) s.charAt(i);
+        }
+        return this;
+    }
+
+    PrometheusWriter bytes(byte[] b) {
+        ensure(b.length);
+        System.arraycopy(b, 0, buf, pos, b.length);
+        pos += b.length;
+        return this;
+    }
+
+    PrometheusWriter ch(char c) {
+        ensure(1);
+        buf[pos++] = (byte) c;
+        return this;
+    }
+
+    PrometheusWriter number(long value) {
+        ensure(20);
+        if (value == Long.MIN_VALUE) {
+            return ascii("-9223372036854775808");
+        }
+        if (value < 0) {
+            buf[pos++] = '-';
+            value = -value;
+        }
+        int start = pos;
+        do {
+            buf[pos++] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = pos - 1; i < j; i++, j--) {
+            byte t = buf[i];
+            buf[i] = buf[j];
+            buf[j] = t;
+        }
+        return this;
+    }
+
+    /**
+     * Write an MTI as four digits, "unknown" or "other"
+     */
+    PrometheusWriter mti(int mti) {
+        if (mti == TransactionStatsSnapshot.OTHER) return ascii("other");
+        if (mti < 0 || mti > 9999) return ascii("unknown");
+        ensure(4);
+        buf[pos++] = (byte) ('0' + mti / 1000);
+        buf[pos++] = (byte) ('0' + mti / 100 % 10);
+        buf[pos++] = (byte) ('0' + mti / 10 % 10);
+        buf[pos++] = (byte) ('0' + mti % 10);
+        return this;
+    }
+
+    /**
+     * Write a packed response code as two characters, "unknown" or "other"
+     */
+    PrometheusWriter responseCode(int packed) {
+        if (packed == TransactionStatsSnapshot.OTHER) return ascii("other");
+        if (packed < 0) return ascii("unknown");
+        ensure(2);
+        buf[pos++] = codeChar(packed / 36);
+        buf[pos++] = codeChar(packed % 36);
+        return this;
+    }
+
+    PrometheusWriter help(String name, String type, String help) {
+        return ascii("# HELP ").ascii(name).ch(' ').ascii(help).ch('\n')
+            .ascii("# TYPE ").ascii(name).ch(' ').ascii(type).ch('\n');
+    }
+
+    /**
+     * Escape a label value once, at registration time
+     */
+    static byte[] escapeLabelValue(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\') sb.append("\\\\");
+            else if (c == '"') sb.append("\\\"");
+            else if (c == '\n') sb.append("\\n");
+            else sb.append(c);
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte codeChar(int digit) {
+        return (byte) (digit < 10 ? '0' + digit : 'A' + digit - 10);
+    }
+
+    private void ensure(int extra) {
+        if (pos + extra > buf.length) {
+            byte[] grown = new byte[Math.max(buf.length * 2, pos + extra)];
+            System.arraycopy(buf, 0, grown, 0, pos);
+            buf = grown;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.miaad.iso8583TCPSocket.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size array of counters, each striped across several cells in the manner of
+ * {@code LongAdder}. Updates from different threads usually land on different
+ * stripes and never share a cache line; reads sum the stripes.
+ * <p>
+ * Layout is {@code [stripe][slot]} in a single {@link AtomicLongArray}, with padding
+ * between stripes, so no per-counter objects are allocated.
+ */
+public final class StripedLongArray {
+
+    // 16 longs = 128 bytes, enough to keep two stripes off the same (or adjacent) cache line
+    private static final int PAD = 16;
+    private static final int MAX_STRIPES = 64;
+
+    private static final ThreadLocal<int[]> PROBE = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            long id = Thread.currentThread().getId();
+            return new int[] { mix((int) (id ^ (id >>> 32))) };
+        }
+    };
+
+    private final int slots;
+    private final int stripeMask;
+    private final int stripeStride;
+    private final AtomicLongArray cells;
+
+    /**
+     * @param slots Number of independent counters
+     */
+    public StripedLongArray(int slots) {
+        this(slots, defaultStripes());
+    }
+
+    /**
+     * @param slots Number of independent counters
+     * @param stripes Number of stripes (rounded up to a power of two, max 64)
+     */
+    public StripedLongArray(int slots, int stripes) {
+        if (slots <= 0) {
+            throw new IllegalArgumentException("slots must be positive");
+        }
+        int n = 1;
+        while (n < stripes && n < MAX_STRIPES) {
+            n <<= 1;
+        }
+        this.slots = slots;
+        this.stripeMask = n - 1;
+        this.stripeStride = ((slots + PAD - 1) / PAD) * PAD + PAD;
+        this.cells = new AtomicLongArray(stripeStride * n + PAD);
+    }
+
+    public int slots() {
+        return slots;
+    }
+
+    public void increment(int slot) {
+        add(slot, 1);
+    }
+
+    /**
+     * Add to a counter. On CAS contention the calling thread moves to another
+     * stripe, as {@code LongAdder} does.
+     */
+    public void add(int slot, long delta) {
+        int[] probe = PROBE.get();
+        int index = PAD + (probe[0] & stripeMask) * stripeStride + slot;
+        long current = cells.get(index);
+        if (cells.compareAndSet(index, current, current + delta)) {
+            return;
+        }
+        probe[0] = mix(probe[0] + 0x9E3779B9);
+        cells.getAndAdd(PAD + (probe[0] & stripeMask) * stripeStride + slot, delta);
+    }
+
+    /**
+     * Sum of all stripes for a counter. Not an atomic snapshot across counters.
+     */
+    public long sum(int slot) {
+        long total = 0;
+        for (int stripe = 0; stripe <= stripeMask; stripe++) {
+            total += cells.get(PAD + stripe * stripeStride + slot);
+        }
+        return total;
+    }
+
+    /**
+     * Sum every counter into {@code target}, which must hold at least {@link #slots()} values
+     */
+    public void sumInto(long[] target) {
+        for (int slot = 0; slot < slots; slot++) {
+            target[slot] = 0;
+        }
+        for (int stripe = 0; stripe <= stripeMask; stripe++) {
+            int base = PAD + stripe * stripeStride;
+            for (int slot = 0; slot < slots; slot++) {
+                target[slot] += cells.get(base + slot);
+            }
+        }
+    }
+
+    private static int defaultStripes() {
+        return Runtime.getRuntime().availableProcessors() * 2;
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
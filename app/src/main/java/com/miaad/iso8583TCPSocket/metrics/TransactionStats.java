@@ -0,0 +1,153 @@
+package com.miaad.iso8583TCPSocket.metrics;
+
+/**
+ * Per-MTI and per-response-code transaction counters.
+ * <p>
+ * Counters live in {@link StripedLongArray}s indexed through {@link IntKeyIndex}, so
+ * recording is a couple of array probes and one uncontended CAS, with no map lookups,
+ * boxing or locks. One instance can be shared by any number of clients via
+ * {@link com.miaad.iso8583TCPSocket.IsoConfig.Builder#transactionStats(TransactionStats)}.
+ */
+public class TransactionStats {
+
+    /** Every call to sendAndReceive, whatever the outcome */
+    public static final int TRANSACTIONS = 0;
+    /** Request bytes written (excluding the length header) */
+    public static final int BYTES_OUT = 1;
+    /** Response bytes read (excluding the length header) */
+    public static final int BYTES_IN = 2;
+    /** Transactions that failed with a {@link java.net.SocketTimeoutException} */
+    public static final int TIMEOUTS = 3;
+    /** Transactions that failed with any other exception */
+    public static final int ERRORS = 4;
+
+    static final int METRIC_COUNT = 5;
+
+    private final IntKeyIndex mtiIndex;
+    private final IntKeyIndex responseCodeIndex;
+    private final StripedLongArray mtiCounters;
+    private final StripedLongArray responseCodeCounters;
+
+    public TransactionStats() {
+        this(64, 64);
+    }
+
+    /**
+     * @param maxMtis Distinct request MTIs tracked individually; others are counted as "other"
+     * @param maxResponseCodes Distinct response codes tracked individually
+     */
+    public TransactionStats(int maxMtis, int maxResponseCodes) {
+        this.mtiIndex = new IntKeyIndex(maxMtis);
+        this.responseCodeIndex = new IntKeyIndex(maxResponseCodes);
+        this.mtiCounters = new StripedLongArray((maxMtis + 1) * METRIC_COUNT);
+        this.responseCodeCounters = new StripedLongArray(maxResponseCodes + 1);
+    }
+
+    /**
+     * Record a transaction that received a response
+     * @param requestMti MTI of the request, or -1 if unknown
+     * @param responseCode Packed field 39 of the response, or -1 if absent
+     */
+    public void recordResponse(int requestMti, int responseCode, int bytesOut, int bytesIn) {
+        int base = mtiIndex.slotFor(requestMti) * METRIC_COUNT;
+        mtiCounters.increment(base + TRANSACTIONS);
+        mtiCounters.add(base + BYTES_OUT, bytesOut);
+        mtiCounters.add(base + BYTES_IN, bytesIn);
+        responseCodeCounters.increment(responseCodeIndex.slotFor(responseCode));
+    }
+
+    /**
+     * Record a transaction that timed out waiting for the response
+     */
+    public void recordTimeout(int requestMti, int bytesOut) {
+        recordFailure(requestMti, bytesOut, TIMEOUTS);
+    }
+
+    /**
+     * Record a transaction that failed for any reason other than a timeout
+     */
+    public void recordError(int requestMti, int bytesOut) {
+        recordFailure(requestMti, bytesOut, ERRORS);
+    }
+
+    private void recordFailure(int requestMti, int bytesOut, int metric) {
+        int base = mtiIndex.slotFor(requestMti) * METRIC_COUNT;
+        mtiCounters.increment(base + TRANSACTIONS);
+        mtiCounters.add(base + BYTES_OUT, bytesOut);
+        mtiCounters.increment(base + metric);
+    }
+
+    /**
+     * Take a point-in-time copy of all counters. Counters are read one by one, so
+     * concurrent updates may be partially reflected; each value is still monotonic.
+     */
+    public TransactionStatsSnapshot snapshot() {
+        long[] mtiSums = new long[mtiCounters.slots()];
+        mtiCounters.sumInto(mtiSums);
+        long[] rcSums = new long[responseCodeCounters.slots()];
+        responseCodeCounters.sumInto(rcSums);
+
+        int mtiCount = mtiIndex.size();
+        int[] mtis = new int[mtiCount + 1];
+        long[] mtiValues = new long[(mtiCount + 1) * METRIC_COUNT];
+        int n = 0;
+        for (int slot = 0; slot <= mtiIndex.capacity(); slot++) {
+            int key;
+            if (slot == mtiIndex.capacity()) {
+                if (mtiSums[slot * METRIC_COUNT + TRANSACTIONS] == 0) continue;
+                key = TransactionStatsSnapshot.OTHER;
+            } else if (slot < mtiCount) {
+                key = mtiIndex.keyAt(slot);
+                if (key == -1 && mtiSums[slot * METRIC_COUNT + TRANSACTIONS] == 0) continue;
+            } else {
+                continue;
+            }
+            mtis[n] = key;
+            System.arraycopy(mtiSums, slot * METRIC_COUNT, mtiValues, n * METRIC_COUNT, METRIC_COUNT);
+            n++;
+        }
+
+        int rcCount = responseCodeIndex.size();
+        int[] codes = new int[rcCount + 1];
+        long[] codeValues = new long[rcCount + 1];
+        int m = 0;
+        for (int slot = 0; slot <= responseCodeIndex.capacity(); slot++) {
+            int key;
+            if (slot == responseCodeIndex.capacity()) {
+                if (rcSums[slot] == 0) continue;
+                key = TransactionStatsSnapshot.OTHER;
+            } else if (slot < rcCount) {
+                key = responseCodeIndex.keyAt(slot);
+                if (key == -1 && rcSums[slot] == 0) continue;
+            } else {
+                continue;
+            }
+            codes[m] = key;
+            codeValues[m] = rcSums[slot];
+            m++;
+        }
+
+        return new TransactionStatsSnapshot(System.currentTimeMillis(),
+            trim(mtis, n), trim(mtiValues, n * METRIC_COUNT), trim(codes, m), trim(codeValues, m));
+    }
+
+    // Direct access for renderers in this package that reuse their own buffers
+    IntKeyIndex mtiIndex() { return mtiIndex; }
+    IntKeyIndex responseCodeIndex() { return responseCodeIndex; }
+    StripedLongArray mtiCounters() { return mtiCounters; }
+    StripedLongArray responseCodeCounters() { return responseCodeCounters; }
+
+    private static int[] trim(int[] array, int length) {
+        if (array.length == length) return array;
+        int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, length);
+        return copy;
+    }
+
+    private static long[] trim(long[] array, int length) {
+        if (array.length == length) return array;
+        long[] copy = new long[length];
+        System.arraycopy(array, 0, copy, 0, length);
+        return copy;
+    }
+}
@@ -0,0 +1,170 @@
+package com.miaad.iso8583TCPSocket.metrics;
+
+import com.miaad.iso8583TCPSocket.IsoCodes;
+
+/**
+ * Immutable copy of {@link TransactionStats} counters at one point in time.
+ * Use {@link #delta(TransactionStatsSnapshot)} to turn two snapshots into per-interval rates.
+ */
+public final class TransactionStatsSnapshot {
+
+    /** Key used for MTIs or response codes that did not fit in the fixed index */
+    public static final int OTHER = -2;
+
+    private final long timestampMs;
+    private final int[] mtis;
+    private final long[] mtiValues;
+    private final int[] responseCodes;
+    private final long[] responseCodeCounts;
+
+    TransactionStatsSnapshot(long timestampMs, int[] mtis, long[] mtiValues,
+                             int[] responseCodes, long[] responseCodeCounts) {
+        this.timestampMs = timestampMs;
+        this.mtis = mtis;
+        this.mtiValues = mtiValues;
+        this.responseCodes = responseCodes;
+        this.responseCodeCounts = responseCodeCounts;
+    }
+
+    public long getTimestampMs() { return timestampMs; }
+
+    // ========== PER MTI ==========
+
+    /**
+     * Number of MTI rows in this snapshot
+     */
+    public int getMtiCount() { return mtis.length; }
+
+    /**
+     * MTI of a row: a number such as 200, -1 for unparsable messages or {@link #OTHER}
+     */
+    public int getMti(int row) { return mtis[row]; }
+
+    /**
+     * MTI of a row as a label ("0200", "unknown" or "other")
+     */
+    public String getMtiLabel(int row) {
+        return mtis[row] == OTHER ? "other" : IsoCodes.formatMti(mtis[row]);
+    }
+
+    /**
+     * Counter value for a row
+     * @param metric One of the {@link TransactionStats} metric constants
+     */
+    public long getValue(int row, int metric) {
+        return mtiValues[row * TransactionStats.METRIC_COUNT + metric];
+    }
+
+    /**
+     * Counter value for an MTI, or 0 if it has not been seen
+     */
+    public long getValueForMti(int mti, int metric) {
+        for (int row = 0; row < mtis.length; row++) {
+            if (mtis[row] == mti) return getValue(row, metric);
+        }
+        return 0;
+    }
+
+    /**
+     * Counter value summed over all MTIs
+     */
+    public long getTotal(int metric) {
+        long total = 0;
+        for (int row = 0; row < mtis.length; row++) {
+            total += getValue(row, metric);
+        }
+        return total;
+    }
+
+    // ========== PER RESPONSE CODE ==========
+
+    /**
+     * Number of response code rows in this snapshot
+     */
+    public int getResponseCodeCount() { return responseCodes.length; }
+
+    /**
+     * Packed response code of a row, -1 for responses without field 39, or {@link #OTHER}
+     */
+    public int getResponseCode(int row) { return responseCodes[row]; }
+
+    /**
+     * Response code of a row as a label ("00", "unknown" or "other")
+     */
+    public String getResponseCodeLabel(int row) {
+        return responseCodes[row] == OTHER ? "other" : IsoCodes.responseCodeToString(responseCodes[row]);
+    }
+
+    /**
+     * Number of responses carrying the response code of a row
+     */
+    public long getResponseCodeTransactions(int row) { return responseCodeCounts[row]; }
+
+    /**
+     * Number of responses carrying a response code, e.g. "00"
+     */
+    public long getResponseCodeTransactions(String responseCode) {
+        int packed = IsoCodes.packResponseCode(responseCode);
+        for (int row = 0; row < responseCodes.length; row++) {
+            if (responseCodes[row] == packed) return responseCodeCounts[row];
+        }
+        return 0;
+    }
+
+    // ========== DELTAS ==========
+
+    /**
+     * Difference between this snapshot and an earlier one of the same {@link TransactionStats}
+     * @param previous Earlier snapshot, or null to return this snapshot unchanged
+     */
+    public TransactionStatsSnapshot delta(TransactionStatsSnapshot previous) {
+        if (previous == null) {
+            return this;
+        }
+        long[] values = mtiValues.clone();
+        for (int row = 0; row < mtis.length; row++) {
+            int prevRow = indexOf(previous.mtis, mtis[row]);
+            if (prevRow < 0) continue;
+            for (int metric = 0; metric < TransactionStats.METRIC_COUNT; metric++) {
+                values[row * TransactionStats.METRIC_COUNT + metric] -=
+                    previous.mtiValues[prevRow * TransactionStats.METRIC_COUNT + metric];
+            }
+        }
+        long[] counts = responseCodeCounts.clone();
+        for (int row = 0; row < responseCodes.length; row++) {
+            int prevRow = indexOf(previous.responseCodes, responseCodes[row]);
+            if (prevRow >= 0) {
+                counts[row] -= previous.responseCodeCounts[prevRow];
+            }
+        }
+        return new TransactionStatsSnapshot(timestampMs, mtis, values, responseCodes, counts);
+    }
+
+    /**
+     * Milliseconds covered by a delta against an earlier snapshot
+     */
+    public long getIntervalMs(TransactionStatsSnapshot previous) {
+        return previous == null ? 0 : timestampMs - previous.timestampMs;
+    }
+
+    private static int indexOf(int[] keys, int key) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == key) return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("TransactionStatsSnapshot{");
+        for (int row = 0; row < mtis.length; row++) {
+            if (row > 0) sb.append(", ");
+            sb.append(getMtiLabel(row)).append('=').append(getValue(row, TransactionStats.TRANSACTIONS));
+        }
+        sb.append(" | rc:");
+        for (int row = 0; row < responseCodes.length; row++) {
+            sb.append(' ').append(getResponseCodeLabel(row)).append('=').append(responseCodeCounts[row]);
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,246 @@
+package com.miaad.iso8583TCPSocket.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Circuit breaker for one endpoint, shared by every client connecting to it
+ * (see {@link CircuitBreakerRegistry}).
+ * <p>
+ * Outcomes are counted in a sliding window of one-second buckets. A bucket is
+ * replaced with a CAS when its second has passed, and counters are atomic, so
+ * recording never locks. Once the window holds {@code minimumCalls} calls and the
+ * failure or slow-call rate reaches its threshold the breaker opens. After
+ * {@code openDuration} it turns half-open and lets exactly one probe through; the
+ * probe's outcome closes or re-opens it.
+ */
+public class CircuitBreaker {
+
+    private static final int CALLS = 0;
+    private static final int FAILURES = 1;
+    private static final int SLOW = 2;
+
+    private final String name;
+    private final CircuitBreakerConfig config;
+    private final long slowCallNanos;
+    private final AtomicReferenceArray<Bucket> buckets;
+    private final AtomicInteger state = new AtomicInteger(CircuitState.CLOSED.ordinal());
+    private final AtomicBoolean probeInFlight = new AtomicBoolean();
+    private final long baseNanos = System.nanoTime();
+    private volatile long openedAtNanos;
+    private volatile long probeStartedNanos;
+
+    public CircuitBreaker(String name, CircuitBreakerConfig config) {
+        this.name = name;
+        this.config = config;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(config.getSlowCallDurationMs());
+        this.buckets = new AtomicReferenceArray<>(config.getWindowSeconds());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public CircuitBreakerConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Current state; an open breaker whose open period has elapsed reports HALF_OPEN
+     */
+    public CircuitState getState() {
+        CircuitState current = CircuitState.values()[state.get()];
+        if (current == CircuitState.OPEN && remainingOpenNanos() <= 0) {
+            return CircuitState.HALF_OPEN;
+        }
+        return current;
+    }
+
+    /**
+     * Ask to make a call (a connection attempt)
+     * @return true if the call may proceed; the caller must then report it with
+     *         {@link #onSuccess(long)} or {@link #onError(long)}
+     */
+    public boolean tryAcquirePermission() {
+        int current = state.get();
+        if (current == CircuitState.CLOSED.ordinal()) {
+            return true;
+        }
+        if (current == CircuitState.OPEN.ordinal()) {
+            if (remainingOpenNanos() > 0) {
+                return false;
+            }
+            transition(CircuitState.OPEN, CircuitState.HALF_OPEN);
+        }
+        // Half-open: one probe at a time; a probe that never reported is replaced after the open period
+        if (probeInFlight.compareAndSet(false, true)) {
+            probeStartedNanos = System.nanoTime();
+            return true;
+        }
+        if (System.nanoTime() - probeStartedNanos > TimeUnit.MILLISECONDS.toNanos(config.getOpenDurationMs())) {
+            probeStartedNanos = System.nanoTime();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Milliseconds until an open breaker lets a probe through (0 if not open)
+     */
+    public long getRetryAfterMs() {
+        if (state.get() != CircuitState.OPEN.ordinal()) {
+            return 0;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(remainingOpenNanos()));
+    }
+
+    /**
+     * Record a successful call
+     */
+    public void onSuccess(long durationNanos) {
+        boolean slow = slowCallNanos > 0 && durationNanos > slowCallNanos;
+        if (state.get() == CircuitState.HALF_OPEN.ordinal()) {
+            if (slow) {
+                reopen();
+            } else if (transition(CircuitState.HALF_OPEN, CircuitState.CLOSED)) {
+                resetWindow();
+                probeInFlight.set(false);
+            }
+            return;
+        }
+        record(false, slow);
+    }
+
+    /**
+     * Record a failed call (connect failure, timeout or lost connection)
+     */
+    public void onError(long durationNanos) {
+        if (state.get() == CircuitState.HALF_OPEN.ordinal()) {
+            reopen();
+            return;
+        }
+        record(true, slowCallNanos > 0 && durationNanos > slowCallNanos);
+    }
+
+    /**
+     * Failure percentage over the current window (0-100), or -1 if fewer than the minimum calls
+     */
+    public int getFailureRate() {
+        long[] totals = windowTotals();
+        return totals[CALLS] < config.getMinimumCalls() ? -1 : (int) (totals[FAILURES] * 100 / totals[CALLS]);
+    }
+
+    /**
+     * Slow-call percentage over the current window (0-100), or -1 if fewer than the minimum calls
+     */
+    public int getSlowCallRate() {
+        long[] totals = windowTotals();
+        return totals[CALLS] < config.getMinimumCalls() ? -1 : (int) (totals[SLOW] * 100 / totals[CALLS]);
+    }
+
+    /**
+     * Number of calls in the current window
+     */
+    public long getWindowCalls() {
+        return windowTotals()[CALLS];
+    }
+
+    /**
+     * Force the breaker back to CLOSED with an empty window
+     */
+    public void reset() {
+        state.set(CircuitState.CLOSED.ordinal());
+        probeInFlight.set(false);
+        resetWindow();
+    }
+
+    // ========== WINDOW ==========
+
+    private void record(boolean failure, boolean slow) {
+        long second = currentSecond();
+        Bucket bucket = bucketFor(second);
+        bucket.counts.incrementAndGet(CALLS);
+        if (failure) bucket.counts.incrementAndGet(FAILURES);
+        if (slow) bucket.counts.incrementAndGet(SLOW);
+
+        if ((failure || slow) && state.get() == CircuitState.CLOSED.ordinal()) {
+            long[] totals = windowTotals();
+            if (totals[CALLS] >= config.getMinimumCalls()
+                && (totals[FAILURES] * 100 >= (long) config.getFailureRateThreshold() * totals[CALLS]
+                    || (slowCallNanos > 0 && totals[SLOW] * 100 >= (long) config.getSlowCallRateThreshold() * totals[CALLS]))) {
+                if (transition(CircuitState.CLOSED, CircuitState.OPEN)) {
+                    openedAtNanos = System.nanoTime();
+                }
+            }
+        }
+    }
+
+    private Bucket bucketFor(long second) {
+        int index = (int) (second % buckets.length());
+        while (true) {
+            Bucket bucket = buckets.get(index);
+            if (bucket != null && bucket.second == second) {
+                return bucket;
+            }
+            if (bucket != null && bucket.second > second) {
+                return bucket; // stale caller racing a roll-over; count in the newer bucket
+            }
+            Bucket fresh = new Bucket(second);
+            if (buckets.compareAndSet(index, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private long[] windowTotals() {
+        long second = currentSecond();
+        long[] totals = new long[3];
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null && second - bucket.second < buckets.length()) {
+                totals[CALLS] += bucket.counts.get(CALLS);
+                totals[FAILURES] += bucket.counts.get(FAILURES);
+                totals[SLOW] += bucket.counts.get(SLOW);
+            }
+        }
+        return totals;
+    }
+
+    private void resetWindow() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, null);
+        }
+    }
+
+    private long currentSecond() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - baseNanos);
+    }
+
+    // ========== STATE ==========
+
+    private void reopen() {
+        openedAtNanos = System.nanoTime();
+        state.set(CircuitState.OPEN.ordinal());
+        probeInFlight.set(false);
+    }
+
+    private boolean transition(CircuitState from, CircuitState to) {
+        return state.compareAndSet(from.ordinal(), to.ordinal());
+    }
+
+    private long remainingOpenNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(config.getOpenDurationMs()) - (System.nanoTime() - openedAtNanos);
+    }
+
+    private static final class Bucket {
+        final long second;
+        final AtomicLongArray counts = new AtomicLongArray(3);
+
+        Bucket(long second) {
+            this.second = second;
+        }
+    }
+}
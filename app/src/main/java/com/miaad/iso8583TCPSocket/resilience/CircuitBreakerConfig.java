@@ -0,0 +1,100 @@
+package com.miaad.iso8583TCPSocket.resilience;
+
+/**
+ * Thresholds for an endpoint {@link CircuitBreaker}
+ */
+public class CircuitBreakerConfig {
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallDurationMs;
+    private final int minimumCalls;
+    private final int windowSeconds;
+    private final long openDurationMs;
+
+    private CircuitBreakerConfig(Builder builder) {
+        this.failureRateThreshold = builder.failureRateThreshold;
+        this.slowCallRateThreshold = builder.slowCallRateThreshold;
+        this.slowCallDurationMs = builder.slowCallDurationMs;
+        this.minimumCalls = builder.minimumCalls;
+        this.windowSeconds = builder.windowSeconds;
+        this.openDurationMs = builder.openDurationMs;
+    }
+
+    public int getFailureRateThreshold() { return failureRateThreshold; }
+    public int getSlowCallRateThreshold() { return slowCallRateThreshold; }
+    public long getSlowCallDurationMs() { return slowCallDurationMs; }
+    public int getMinimumCalls() { return minimumCalls; }
+    public int getWindowSeconds() { return windowSeconds; }
+    public long getOpenDurationMs() { return openDurationMs; }
+
+    public static class Builder {
+        private int failureRateThreshold = 50;
+        private int slowCallRateThreshold = 100;
+        private long slowCallDurationMs = 0;
+        private int minimumCalls = 20;
+        private int windowSeconds = 10;
+        private long openDurationMs = 30000;
+
+        /**
+         * Open when at least this percentage of calls in the window failed (default 50)
+         */
+        public Builder failureRateThreshold(int percent) {
+            this.failureRateThreshold = percent;
+            return this;
+        }
+
+        /**
+         * Open when at least this percentage of calls in the window were slow (default 100)
+         */
+        public Builder slowCallRateThreshold(int percent) {
+            this.slowCallRateThreshold = percent;
+            return this;
+        }
+
+        /**
+         * Calls taking longer than this count as slow (default 0 = slow calls not tracked)
+         */
+        public Builder slowCallDuration(long ms) {
+            this.slowCallDurationMs = ms;
+            return this;
+        }
+
+        /**
+         * Calls needed in the window before rates are evaluated (default 20)
+         */
+        public Builder minimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /**
+         * Length of the sliding window in seconds (default 10)
+         */
+        public Builder windowSeconds(int seconds) {
+            this.windowSeconds = seconds;
+            return this;
+        }
+
+        /**
+         * Time the breaker stays open before letting a probe through (default 30s)
+         */
+        public Builder openDuration(long ms) {
+            this.openDurationMs = ms;
+            return this;
+        }
+
+        public CircuitBreakerConfig build() {
+            if (windowSeconds < 1) {
+                throw new IllegalArgumentException("windowSeconds must be >= 1");
+            }
+            return new CircuitBreakerConfig(this);
+        }
+    }
+
+    /**
+     * Default config: open at 50% failures over 10s (min 20 calls), probe after 30s
+     */
+    public static CircuitBreakerConfig defaultConfig() {
+        return new Builder().build();
+    }
+}
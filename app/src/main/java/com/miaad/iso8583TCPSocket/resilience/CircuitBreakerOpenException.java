@@ -0,0 +1,31 @@
+package com.miaad.iso8583TCPSocket.resilience;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of connecting while the endpoint's circuit breaker is open
+ */
+public class CircuitBreakerOpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String endpoint;
+    private final long retryAfterMs;
+
+    public CircuitBreakerOpenException(String endpoint, long retryAfterMs) {
+        super("Circuit breaker for " + endpoint + " is open, retry after " + retryAfterMs + "ms");
+        this.endpoint = endpoint;
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Time until the breaker lets a probe through
+     */
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+}
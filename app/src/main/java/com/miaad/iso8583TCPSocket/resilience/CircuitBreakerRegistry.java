@@ -0,0 +1,52 @@
+package com.miaad.iso8583TCPSocket.resilience;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Process-wide circuit breakers keyed by "host:port", so every client talking
+ * to the same endpoint shares one view of its health.
+ */
+public final class CircuitBreakerRegistry {
+
+    private static final ConcurrentMap<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+
+    private CircuitBreakerRegistry() {
+    }
+
+    /**
+     * Get or create the breaker for an endpoint. The config of the first caller wins.
+     */
+    public static CircuitBreaker get(String host, int port, CircuitBreakerConfig config) {
+        String key = host + ":" + port;
+        CircuitBreaker breaker = BREAKERS.get(key);
+        if (breaker == null) {
+            CircuitBreaker created = new CircuitBreaker(key, config);
+            breaker = BREAKERS.putIfAbsent(key, created);
+            if (breaker == null) {
+                breaker = created;
+            }
+        }
+        return breaker;
+    }
+
+    /**
+     * Get an existing breaker, or null if no client has used the endpoint
+     */
+    public static CircuitBreaker find(String host, int port) {
+        return BREAKERS.get(host + ":" + port);
+    }
+
+    public static List<CircuitBreaker> getAll() {
+        return new ArrayList<>(BREAKERS.values());
+    }
+
+    /**
+     * Remove a breaker so the next client starts from a fresh one
+     */
+    public static void remove(String host, int port) {
+        BREAKERS.remove(host + ":" + port);
+    }
+}
@@ -0,0 +1,36 @@
+package com.miaad.iso8583TCPSocket.resilience;
+
+/**
+ * State of an endpoint circuit breaker
+ */
+public enum CircuitState {
+    /**
+     * Calls flow normally while failure and slow-call rates are tracked
+     */
+    CLOSED("Closed"),
+
+    /**
+     * Endpoint considered down; connects fail fast without opening a socket
+     */
+    OPEN("Open"),
+
+    /**
+     * Open period elapsed; a single probe call decides whether to close again
+     */
+    HALF_OPEN("Half-open");
+
+    private final String description;
+
+    CircuitState(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
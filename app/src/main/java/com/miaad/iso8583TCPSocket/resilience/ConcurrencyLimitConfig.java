@@ -0,0 +1,124 @@
+package com.miaad.iso8583TCPSocket.resilience;
+
+/**
+ * Settings for an endpoint {@link ConcurrencyLimiter}
+ */
+public class ConcurrencyLimitConfig {
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long maxQueueWaitMs;
+    private final double rttTolerance;
+    private final double smoothing;
+    private final double backoffRatio;
+    private final long baselineResetMs;
+
+    private ConcurrencyLimitConfig(Builder builder) {
+        this.minLimit = Math.max(1, builder.minLimit);
+        this.maxLimit = Math.max(minLimit, builder.maxLimit);
+        this.initialLimit = Math.min(maxLimit, Math.max(minLimit, builder.initialLimit));
+        this.maxQueueWaitMs = Math.max(0, builder.maxQueueWaitMs);
+        this.rttTolerance = Math.max(1.0, builder.rttTolerance);
+        this.smoothing = Math.min(1.0, Math.max(0.01, builder.smoothing));
+        this.backoffRatio = Math.min(1.0, Math.max(0.1, builder.backoffRatio));
+        this.baselineResetMs = builder.baselineResetMs;
+    }
+
+    public int getInitialLimit() { return initialLimit; }
+    public int getMinLimit() { return minLimit; }
+    public int getMaxLimit() { return maxLimit; }
+    public long getMaxQueueWaitMs() { return maxQueueWaitMs; }
+    public double getRttTolerance() { return rttTolerance; }
+    public double getSmoothing() { return smoothing; }
+    public double getBackoffRatio() { return backoffRatio; }
+    public long getBaselineResetMs() { return baselineResetMs; }
+
+    public static class Builder {
+        private int initialLimit = 20;
+        private int minLimit = 1;
+        private int maxLimit = 200;
+        private long maxQueueWaitMs = 50;
+        private double rttTolerance = 1.5;
+        private double smoothing = 0.2;
+        private double backoffRatio = 0.9;
+        private long baselineResetMs = 60000;
+
+        /**
+         * Limit before any latency was measured (default 20)
+         */
+        public Builder initialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        /**
+         * The limit never drops below this (default 1)
+         */
+        public Builder minLimit(int minLimit) {
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        /**
+         * The limit never grows past this (default 200)
+         */
+        public Builder maxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * How long a call past the limit waits for a slot before it is rejected
+         * with {@link ConcurrencyLimitExceededException}. 0 rejects at once. Default 50ms.
+         */
+        public Builder maxQueueWait(long ms) {
+            this.maxQueueWaitMs = ms;
+            return this;
+        }
+
+        /**
+         * How much slower than the no-load baseline a response may be before the
+         * limit shrinks (default 1.5 = 50% slower)
+         */
+        public Builder rttTolerance(double rttTolerance) {
+            this.rttTolerance = rttTolerance;
+            return this;
+        }
+
+        /**
+         * Weight of each new limit estimate, 0.01 to 1 (default 0.2)
+         */
+        public Builder smoothing(double smoothing) {
+            this.smoothing = smoothing;
+            return this;
+        }
+
+        /**
+         * Factor applied to the limit on a read timeout (default 0.9)
+         */
+        public Builder backoffRatio(double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        /**
+         * How often the no-load baseline is forgotten and measured again, so it follows
+         * a server that got permanently slower or faster. 0 never resets. Default 60000ms.
+         */
+        public Builder baselineReset(long ms) {
+            this.baselineResetMs = ms;
+            return this;
+        }
+
+        public ConcurrencyLimitConfig build() {
+            return new ConcurrencyLimitConfig(this);
+        }
+    }
+
+    /**
+     * Default limiter: starts at 20, adapts between 1 and 200, queues up to 50ms
+     */
+    public static ConcurrencyLimitConfig defaultConfig() {
+        return new Builder().build();
+    }
+}
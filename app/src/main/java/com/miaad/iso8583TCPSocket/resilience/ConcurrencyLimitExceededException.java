@@ -0,0 +1,32 @@
+package com.miaad.iso8583TCPSocket.resilience;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending when an endpoint's adaptive concurrency limit is reached
+ * and no slot became free within the queue wait
+ */
+public class ConcurrencyLimitExceededException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String endpoint;
+    private final int limit;
+
+    public ConcurrencyLimitExceededException(String endpoint, int limit) {
+        super("Concurrency limit of " + limit + " for " + endpoint + " reached");
+        this.endpoint = endpoint;
+        this.limit = limit;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Limit at the time of the rejection
+     */
+    public int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,236 @@
+package com.miaad.iso8583TCPSocket.resilience;
+
+import com.miaad.iso8583TCPSocket.Deadline;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit for one endpoint that finds the server's throughput knee by
+ * itself, shared by every client using it (see {@link ConcurrencyLimiterRegistry}).
+ * <p>
+ * The lowest response time seen is the no-load baseline. Every response compares its
+ * time with it: while it stays within {@code rttTolerance} of the baseline the limit
+ * grows by about the square root of itself, once requests start queueing at the
+ * server it shrinks in proportion to the slow-down, and a read timeout cuts it by
+ * {@code backoffRatio}. Each new estimate is smoothed into the limit. The limit is a
+ * double in an {@link AtomicLong} updated by CAS, so samples take no lock; only
+ * callers waiting for a slot do.
+ */
+public class ConcurrencyLimiter {
+
+    private final String name;
+    private final ConcurrencyLimitConfig config;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong limitBits;
+    private final AtomicLong baselineNanos = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong baselineStartNanos = new AtomicLong(System.nanoTime());
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public ConcurrencyLimiter(String name, ConcurrencyLimitConfig config) {
+        this.name = name;
+        this.config = config;
+        this.limitBits = new AtomicLong(Double.doubleToLongBits(config.getInitialLimit()));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ConcurrencyLimitConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Take a slot, waiting up to the configured queue wait for one to become free.
+     * Every successful acquire must be followed by exactly one of
+     * {@link #onSuccess}, {@link #onDropped} or {@link #onIgnore}.
+     * @return Requests in flight including this one
+     * @throws ConcurrencyLimitExceededException if no slot became free in time
+     */
+    public int acquire() throws IOException {
+        return acquire(Deadline.none());
+    }
+
+    /**
+     * Take a slot, never waiting past the deadline
+     * @return Requests in flight including this one
+     * @throws ConcurrencyLimitExceededException if no slot became free in time
+     * @throws InterruptedIOException if the thread was interrupted while waiting
+     */
+    public int acquire(Deadline deadline) throws IOException {
+        int current = tryAcquire();
+        if (current > 0) {
+            accepted.incrementAndGet();
+            return current;
+        }
+        long remaining = Math.min(TimeUnit.MILLISECONDS.toNanos(config.getMaxQueueWaitMs()),
+            Math.max(0, deadline.remainingNanos()));
+        if (remaining > 0) {
+            waiting.incrementAndGet();
+            lock.lock();
+            try {
+                while ((current = tryAcquire()) == 0 && remaining > 0) {
+                    remaining = released.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                // Not load shedding: the caller gave up, so it is not counted as a rejection
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a concurrency limit slot");
+            } finally {
+                lock.unlock();
+                waiting.decrementAndGet();
+            }
+            if (current > 0) {
+                accepted.incrementAndGet();
+                return current;
+            }
+        }
+        rejected.incrementAndGet();
+        throw new ConcurrencyLimitExceededException(name, getLimit());
+    }
+
+    /**
+     * Release a slot after a response
+     * @param rttNanos Time from acquire to response
+     * @param inFlightAtStart Value returned by {@link #acquire()}
+     */
+    public void onSuccess(long rttNanos, int inFlightAtStart) {
+        release();
+        long baseline = updateBaseline(rttNanos);
+        double gradient = Math.max(0.5, Math.min(1.0, config.getRttTolerance() * baseline / (double) rttNanos));
+        while (true) {
+            long bits = limitBits.get();
+            double limit = Double.longBitsToDouble(bits);
+            if (gradient >= 1.0 && inFlightAtStart < limit / 2) {
+                return; // too little load to learn anything about the knee; don't grow
+            }
+            double estimate = limit * gradient + Math.sqrt(limit);
+            if (setLimit(bits, limit * (1 - config.getSmoothing()) + estimate * config.getSmoothing())) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Release a slot after a read timeout, which shrinks the limit
+     */
+    public void onDropped() {
+        release();
+        dropped.incrementAndGet();
+        while (true) {
+            long bits = limitBits.get();
+            if (setLimit(bits, Double.longBitsToDouble(bits) * config.getBackoffRatio())) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Release a slot after a failure that says nothing about server load
+     * (connect failure, cancel, rejected request)
+     */
+    public void onIgnore() {
+        release();
+    }
+
+    /**
+     * Current limit
+     */
+    public int getLimit() {
+        return (int) Double.longBitsToDouble(limitBits.get());
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * No-load response time baseline in milliseconds, or 0 before the first response
+     */
+    public double getBaselineMs() {
+        long baseline = baselineNanos.get();
+        return baseline == Long.MAX_VALUE ? 0 : baseline / 1_000_000.0;
+    }
+
+    public long getAccepted() {
+        return accepted.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return In-flight count including the new request, or 0 if at the limit
+     */
+    private int tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                return 0;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    private void release() {
+        inFlight.decrementAndGet();
+        if (waiting.get() > 0) {
+            lock.lock();
+            try {
+                released.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private long updateBaseline(long rttNanos) {
+        long resetNanos = TimeUnit.MILLISECONDS.toNanos(config.getBaselineResetMs());
+        long now = System.nanoTime();
+        long start = baselineStartNanos.get();
+        if (resetNanos > 0 && now - start >= resetNanos && baselineStartNanos.compareAndSet(start, now)) {
+            baselineNanos.set(rttNanos); // forget the old baseline and measure again
+            return rttNanos;
+        }
+        while (true) {
+            long baseline = baselineNanos.get();
+            if (rttNanos >= baseline || baselineNanos.compareAndSet(baseline, rttNanos)) {
+                return Math.min(baseline, rttNanos);
+            }
+        }
+    }
+
+    private boolean setLimit(long expectedBits, double limit) {
+        limit = Math.max(config.getMinLimit(), Math.min(config.getMaxLimit(), limit));
+        if (!limitBits.compareAndSet(expectedBits, Double.doubleToLongBits(limit))) {
+            return false;
+        }
+        if (waiting.get() > 0) {
+            lock.lock();
+            try {
+                released.signalAll(); // the limit may have grown
+            } finally {
+                lock.unlock();
+            }
+        }
+        return true;
+    }
+}
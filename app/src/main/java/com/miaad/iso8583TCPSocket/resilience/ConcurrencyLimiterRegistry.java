@@ -0,0 +1,48 @@
+package com.miaad.iso8583TCPSocket.resilience;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Process-wide concurrency limiters keyed by "host:port", shared by every client of an endpoint
+ */
+public final class ConcurrencyLimiterRegistry {
+
+    private static final ConcurrentMap<String, ConcurrencyLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    private ConcurrencyLimiterRegistry() {
+    }
+
+    /**
+     * Get or create the limiter for an endpoint. The config of the first caller wins.
+     */
+    public static ConcurrencyLimiter get(String host, int port, ConcurrencyLimitConfig config) {
+        String key = host + ":" + port;
+        ConcurrencyLimiter limiter = LIMITERS.get(key);
+        if (limiter == null) {
+            ConcurrencyLimiter created = new ConcurrencyLimiter(key, config);
+            limiter = LIMITERS.putIfAbsent(key, created);
+            if (limiter == null) {
+                limiter = created;
+            }
+        }
+        return limiter;
+    }
+
+    /**
+     * Get an existing limiter, or null if no client has used the endpoint
+     */
+    public static ConcurrencyLimiter find(String host, int port) {
+        return LIMITERS.get(host + ":" + port);
+    }
+
+    public static List<ConcurrencyLimiter> getAll() {
+        return new ArrayList<>(LIMITERS.values());
+    }
+
+    public static void remove(String host, int port) {
+        LIMITERS.remove(host + ":" + port);
+    }
+}
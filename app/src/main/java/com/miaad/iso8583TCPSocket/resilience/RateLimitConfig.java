@@ -0,0 +1,106 @@
+package com.miaad.iso8583TCPSocket.resilience;
+
+/**
+ * Transactions-per-second limits for a {@link RateLimiter}. Each level is optional;
+ * a request needs a token from every level that is set.
+ */
+public class RateLimitConfig {
+    private final double globalTps;
+    private final int globalBurst;
+    private final double endpointTps;
+    private final int endpointBurst;
+    private final double keyTps;
+    private final int keyBurst;
+    private final RateLimitKeyExtractor keyExtractor;
+    private final long maxWaitMs;
+    private final int maxKeys;
+
+    private RateLimitConfig(Builder builder) {
+        this.globalTps = builder.globalTps;
+        this.globalBurst = builder.globalBurst;
+        this.endpointTps = builder.endpointTps;
+        this.endpointBurst = builder.endpointBurst;
+        this.keyTps = builder.keyTps;
+        this.keyBurst = builder.keyBurst;
+        this.keyExtractor = builder.keyExtractor;
+        this.maxWaitMs = Math.max(0, builder.maxWaitMs);
+        this.maxKeys = Math.max(1, builder.maxKeys);
+    }
+
+    public double getGlobalTps() { return globalTps; }
+    public int getGlobalBurst() { return globalBurst; }
+    public double getEndpointTps() { return endpointTps; }
+    public int getEndpointBurst() { return endpointBurst; }
+    public double getKeyTps() { return keyTps; }
+    public int getKeyBurst() { return keyBurst; }
+    public RateLimitKeyExtractor getKeyExtractor() { return keyExtractor; }
+    public long getMaxWaitMs() { return maxWaitMs; }
+    public int getMaxKeys() { return maxKeys; }
+
+    public static class Builder {
+        private double globalTps = 0;
+        private int globalBurst = 1;
+        private double endpointTps = 0;
+        private int endpointBurst = 1;
+        private double keyTps = 0;
+        private int keyBurst = 1;
+        private RateLimitKeyExtractor keyExtractor = null;
+        private long maxWaitMs = 0;
+        private int maxKeys = 10000;
+
+        /**
+         * Limit over all endpoints of the process. The first client that sets it
+         * creates the bucket. Default is none.
+         * @param burst Requests allowed at once after an idle period
+         */
+        public Builder globalTps(double tps, int burst) {
+            this.globalTps = tps;
+            this.globalBurst = burst;
+            return this;
+        }
+
+        /**
+         * Limit per host:port, shared by every client of the endpoint (e.g. the
+         * acquirer's per-link limit). Default is none.
+         */
+        public Builder endpointTps(double tps, int burst) {
+            this.endpointTps = tps;
+            this.endpointBurst = burst;
+            return this;
+        }
+
+        /**
+         * Limit per key of each endpoint, e.g. per merchant with
+         * {@link RateLimitKeyExtractor#MERCHANT_ID}. Requests without a key only
+         * count against the other levels. Default is none.
+         */
+        public Builder keyTps(double tps, int burst, RateLimitKeyExtractor keyExtractor) {
+            this.keyTps = tps;
+            this.keyBurst = burst;
+            this.keyExtractor = keyExtractor;
+            return this;
+        }
+
+        /**
+         * Smooth bursts instead of rejecting them: a request may wait up to this long
+         * for its token, so requests over the rate are spaced out evenly. With a
+         * burst of 1 every request is spaced. 0 rejects at once. Default 0.
+         */
+        public Builder maxWait(long ms) {
+            this.maxWaitMs = ms;
+            return this;
+        }
+
+        /**
+         * Per-key buckets kept per endpoint before full (idle) ones are dropped (default 10000)
+         */
+        public Builder maxKeys(int maxKeys) {
+            this.maxKeys = maxKeys;
+            return this;
+        }
+
+        public RateLimitConfig build() {
+            return new RateLimitConfig(this);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.miaad.iso8583TCPSocket.resilience;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending when a request would exceed a configured TPS limit
+ */
+public class RateLimitExceededException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String bucket;
+    private final double tps;
+
+    public RateLimitExceededException(String bucket, double tps) {
+        super("Rate limit of " + tps + " TPS for " + bucket + " exceeded");
+        this.bucket = bucket;
+        this.tps = tps;
+    }
+
+    /**
+     * Name of the bucket that ran out: "global", "host:port" or "host:port/key"
+     */
+    public String getBucket() {
+        return bucket;
+    }
+
+    public double getTps() {
+        return tps;
+    }
+}
@@ -0,0 +1,36 @@
+package com.miaad.iso8583TCPSocket.resilience;
+
+import com.miaad.iso8583TCPSocket.DefaultMessageInspector;
+
+/**
+ * Picks the per-key rate limit bucket for a request, e.g. by merchant or terminal
+ */
+public interface RateLimitKeyExtractor {
+
+    /**
+     * Card acceptor identification code (field 42, the merchant ID), read with the
+     * default ISO-8583:1987 ASCII layout
+     */
+    RateLimitKeyExtractor MERCHANT_ID = new RateLimitKeyExtractor() {
+        @Override
+        public String extractKey(byte[] message) {
+            return DefaultMessageInspector.INSTANCE.getField(message, 42);
+        }
+    };
+
+    /**
+     * Card acceptor terminal identification (field 41)
+     */
+    RateLimitKeyExtractor TERMINAL_ID = new RateLimitKeyExtractor() {
+        @Override
+        public String extractKey(byte[] message) {
+            return DefaultMessageInspector.INSTANCE.getField(message, 41);
+        }
+    };
+
+    /**
+     * @param message Raw request (without length header)
+     * @return Bucket key, or null if the request has no per-key limit
+     */
+    String extractKey(byte[] message);
+}
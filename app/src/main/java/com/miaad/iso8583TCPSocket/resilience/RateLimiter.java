@@ -0,0 +1,169 @@
+package com.miaad.iso8583TCPSocket.resilience;
+
+import com.miaad.iso8583TCPSocket.Deadline;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hierarchical TPS limit for one endpoint, shared by every client using it (see
+ * {@link RateLimiterRegistry}).
+ * <p>
+ * A request takes one token from its key's bucket, the endpoint bucket and the
+ * process-wide bucket, most specific first. If any level has no token in time,
+ * the tokens already taken are given back and the request is rejected, so a busy
+ * merchant does not use up the link's rate for the others.
+ */
+public class RateLimiter {
+
+    private final String name;
+    private final RateLimitConfig config;
+    private final TokenBucket global;
+    private final TokenBucket endpoint;
+    private final ConcurrentMap<String, TokenBucket> keys = new ConcurrentHashMap<>();
+    private final AtomicLong delayed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+
+    public RateLimiter(String name, RateLimitConfig config, TokenBucket global) {
+        this.name = name;
+        this.config = config;
+        this.global = global;
+        this.endpoint = config.getEndpointTps() > 0
+            ? new TokenBucket(name, config.getEndpointTps(), config.getEndpointBurst()) : null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public RateLimitConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Take a token for a request from every level, waiting up to the configured
+     * max wait when smoothing is on
+     * @throws RateLimitExceededException if a level has no token in time
+     */
+    public void acquire(byte[] message) throws IOException {
+        acquire(message, Deadline.none());
+    }
+
+    /**
+     * Take a token for a request from every level, never waiting past the deadline
+     * @throws RateLimitExceededException if a level has no token in time
+     */
+    public void acquire(byte[] message, Deadline deadline) throws IOException {
+        long maxWaitNanos = Math.min(TimeUnit.MILLISECONDS.toNanos(config.getMaxWaitMs()),
+            Math.max(0, deadline.remainingNanos()));
+        TokenBucket key = keyBucket(message);
+        long keyWait = 0;
+        long endpointWait = 0;
+        long globalWait = 0;
+        if (key != null && (keyWait = key.reserve(maxWaitNanos)) < 0) {
+            throw reject(key);
+        }
+        if (endpoint != null && (endpointWait = endpoint.reserve(maxWaitNanos)) < 0) {
+            if (key != null) key.cancel();
+            throw reject(endpoint);
+        }
+        if (global != null && (globalWait = global.reserve(maxWaitNanos)) < 0) {
+            if (key != null) key.cancel();
+            if (endpoint != null) endpoint.cancel();
+            throw reject(global);
+        }
+
+        long wait = Math.max(keyWait, Math.max(endpointWait, globalWait));
+        if (wait > 0) {
+            delayed.incrementAndGet();
+            waitNanos.addAndGet(wait);
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a rate limit token");
+            }
+        }
+    }
+
+    public TokenBucket getGlobalBucket() {
+        return global;
+    }
+
+    public TokenBucket getEndpointBucket() {
+        return endpoint;
+    }
+
+    /**
+     * Bucket of one key, or null if no request with that key was seen recently
+     */
+    public TokenBucket getKeyBucket(String key) {
+        return keys.get(key);
+    }
+
+    public int getKeyCount() {
+        return keys.size();
+    }
+
+    /**
+     * Requests that waited for their token
+     */
+    public long getDelayed() {
+        return delayed.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Total time requests spent waiting for tokens, in milliseconds
+     */
+    public long getTotalWaitMs() {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos.get());
+    }
+
+    private TokenBucket keyBucket(byte[] message) {
+        if (config.getKeyTps() <= 0 || config.getKeyExtractor() == null) {
+            return null;
+        }
+        String key = config.getKeyExtractor().extractKey(message);
+        if (key == null) {
+            return null;
+        }
+        TokenBucket bucket = keys.get(key);
+        if (bucket == null) {
+            if (keys.size() >= config.getMaxKeys()) {
+                evictFull();
+            }
+            TokenBucket created = new TokenBucket(name + "/" + key, config.getKeyTps(), config.getKeyBurst());
+            bucket = keys.putIfAbsent(key, created);
+            if (bucket == null) {
+                bucket = created;
+            }
+        }
+        return bucket;
+    }
+
+    /**
+     * Drop buckets that are full again; a new bucket for the key behaves the same
+     */
+    private void evictFull() {
+        for (Iterator<TokenBucket> it = keys.values().iterator(); it.hasNext(); ) {
+            if (it.next().isFull()) {
+                it.remove();
+            }
+        }
+    }
+
+    private RateLimitExceededException reject(TokenBucket bucket) {
+        rejected.incrementAndGet();
+        return new RateLimitExceededException(bucket.getName(), bucket.getTps());
+    }
+}
@@ -0,0 +1,75 @@
+package com.miaad.iso8583TCPSocket.resilience;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Process-wide rate limiters keyed by "host:port", shared by every client of an
+ * endpoint, plus the single global bucket they all draw from
+ */
+public final class RateLimiterRegistry {
+
+    private static final ConcurrentMap<String, RateLimiter> LIMITERS = new ConcurrentHashMap<>();
+    private static volatile TokenBucket global;
+
+    private RateLimiterRegistry() {
+    }
+
+    /**
+     * Get or create the limiter for an endpoint. The config of the first caller wins,
+     * for the endpoint and for the global bucket alike.
+     */
+    public static RateLimiter get(String host, int port, RateLimitConfig config) {
+        String key = host + ":" + port;
+        RateLimiter limiter = LIMITERS.get(key);
+        if (limiter == null) {
+            RateLimiter created = new RateLimiter(key, config, globalBucket(config));
+            limiter = LIMITERS.putIfAbsent(key, created);
+            if (limiter == null) {
+                limiter = created;
+            }
+        }
+        return limiter;
+    }
+
+    /**
+     * Get an existing limiter, or null if no client has used the endpoint
+     */
+    public static RateLimiter find(String host, int port) {
+        return LIMITERS.get(host + ":" + port);
+    }
+
+    /**
+     * The process-wide bucket, or null if no config set a global limit
+     */
+    public static TokenBucket getGlobalBucket() {
+        return global;
+    }
+
+    public static List<RateLimiter> getAll() {
+        return new ArrayList<>(LIMITERS.values());
+    }
+
+    public static void remove(String host, int port) {
+        LIMITERS.remove(host + ":" + port);
+    }
+
+    private static TokenBucket globalBucket(RateLimitConfig config) {
+        if (config.getGlobalTps() <= 0) {
+            return null; // this endpoint does not count against the global limit
+        }
+        TokenBucket bucket = global;
+        if (bucket == null) {
+            synchronized (RateLimiterRegistry.class) {
+                bucket = global;
+                if (bucket == null) {
+                    bucket = new TokenBucket("global", config.getGlobalTps(), config.getGlobalBurst());
+                    global = bucket;
+                }
+            }
+        }
+        return bucket;
+    }
+}
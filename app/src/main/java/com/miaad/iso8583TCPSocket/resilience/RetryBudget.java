@@ -0,0 +1,117 @@
+package com.miaad.iso8583TCPSocket.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket that caps retries to a fraction of live traffic for one endpoint,
+ * shared by every client using it (see {@link RetryBudgetRegistry}).
+ * <p>
+ * Each original request deposits {@code retryRatio} tokens, each retry withdraws
+ * one, and {@code minRetriesPerSecond} tokens trickle in over time. The balance
+ * is kept in micro-tokens in an {@link AtomicLong} and refilled lazily by
+ * whichever caller wins a CAS on the refill timestamp, so no lock is taken.
+ */
+public class RetryBudget {
+
+    private static final long SCALE = 1_000_000L; // micro-tokens per token
+
+    private final String name;
+    private final RetryBudgetConfig config;
+    private final long depositMicros;
+    private final long maxMicros;
+    private final AtomicLong balanceMicros;
+    private final AtomicLong lastRefillNanos = new AtomicLong(System.nanoTime());
+    private final AtomicLong deposits = new AtomicLong();
+    private final AtomicLong granted = new AtomicLong();
+    private final AtomicLong denied = new AtomicLong();
+
+    public RetryBudget(String name, RetryBudgetConfig config) {
+        this.name = name;
+        this.config = config;
+        this.depositMicros = (long) (config.getRetryRatio() * SCALE);
+        this.maxMicros = (long) (config.getMaxBalance() * SCALE);
+        // Start with one second's worth of minimum retries
+        this.balanceMicros = new AtomicLong(Math.min(maxMicros, (long) (config.getMinRetriesPerSecond() * SCALE)));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public RetryBudgetConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Record an original (non-retry) request
+     */
+    public void deposit() {
+        deposits.incrementAndGet();
+        add(depositMicros);
+    }
+
+    /**
+     * Ask to make a retry
+     * @return true if the budget allows it (one token was withdrawn)
+     */
+    public boolean tryWithdraw() {
+        refill();
+        while (true) {
+            long balance = balanceMicros.get();
+            if (balance < SCALE) {
+                denied.incrementAndGet();
+                return false;
+            }
+            if (balanceMicros.compareAndSet(balance, balance - SCALE)) {
+                granted.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Retries currently available
+     */
+    public double getBalance() {
+        refill();
+        return balanceMicros.get() / (double) SCALE;
+    }
+
+    public long getDeposits() {
+        return deposits.get();
+    }
+
+    public long getGrantedRetries() {
+        return granted.get();
+    }
+
+    public long getDeniedRetries() {
+        return denied.get();
+    }
+
+    private void refill() {
+        if (config.getMinRetriesPerSecond() <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        long last = lastRefillNanos.get();
+        long elapsed = now - last;
+        // Refill in steps of at least 1ms so concurrent callers rarely contend
+        if (elapsed < TimeUnit.MILLISECONDS.toNanos(1) || !lastRefillNanos.compareAndSet(last, now)) {
+            return;
+        }
+        add((long) (config.getMinRetriesPerSecond() * SCALE * elapsed / TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    private void add(long micros) {
+        micros = Math.min(micros, maxMicros); // avoid overflow after long idle periods
+        while (true) {
+            long balance = balanceMicros.get();
+            long updated = Math.min(maxMicros, balance + micros);
+            if (updated == balance || balanceMicros.compareAndSet(balance, updated)) {
+                return;
+            }
+        }
+    }
+}
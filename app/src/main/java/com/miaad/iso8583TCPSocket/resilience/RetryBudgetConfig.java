@@ -0,0 +1,62 @@
+package com.miaad.iso8583TCPSocket.resilience;
+
+/**
+ * Limits for an endpoint {@link RetryBudget}
+ */
+public class RetryBudgetConfig {
+    private final double retryRatio;
+    private final double minRetriesPerSecond;
+    private final double maxBalance;
+
+    private RetryBudgetConfig(Builder builder) {
+        this.retryRatio = builder.retryRatio;
+        this.minRetriesPerSecond = builder.minRetriesPerSecond;
+        this.maxBalance = builder.maxBalance;
+    }
+
+    public double getRetryRatio() { return retryRatio; }
+    public double getMinRetriesPerSecond() { return minRetriesPerSecond; }
+    public double getMaxBalance() { return maxBalance; }
+
+    public static class Builder {
+        private double retryRatio = 0.1;
+        private double minRetriesPerSecond = 10;
+        private double maxBalance = 100;
+
+        /**
+         * Retries allowed per original request (default 0.1 = retries add at most 10% load)
+         */
+        public Builder retryRatio(double retryRatio) {
+            this.retryRatio = retryRatio;
+            return this;
+        }
+
+        /**
+         * Retries always allowed per second regardless of traffic, so a quiet endpoint can still
+         * recover (default 10)
+         */
+        public Builder minRetriesPerSecond(double minRetriesPerSecond) {
+            this.minRetriesPerSecond = minRetriesPerSecond;
+            return this;
+        }
+
+        /**
+         * Maximum retries that can be saved up (default 100)
+         */
+        public Builder maxBalance(double maxBalance) {
+            this.maxBalance = maxBalance;
+            return this;
+        }
+
+        public RetryBudgetConfig build() {
+            return new RetryBudgetConfig(this);
+        }
+    }
+
+    /**
+     * Default budget: 10% of traffic plus 10 retries per second, at most 100 saved up
+     */
+    public static RetryBudgetConfig defaultConfig() {
+        return new Builder().build();
+    }
+}
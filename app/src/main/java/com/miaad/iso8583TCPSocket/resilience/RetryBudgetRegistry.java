@@ -0,0 +1,48 @@
+package com.miaad.iso8583TCPSocket.resilience;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Process-wide retry budgets keyed by "host:port", shared by every client of an endpoint
+ */
+public final class RetryBudgetRegistry {
+
+    private static final ConcurrentMap<String, RetryBudget> BUDGETS = new ConcurrentHashMap<>();
+
+    private RetryBudgetRegistry() {
+    }
+
+    /**
+     * Get or create the budget for an endpoint. The config of the first caller wins.
+     */
+    public static RetryBudget get(String host, int port, RetryBudgetConfig config) {
+        String key = host + ":" + port;
+        RetryBudget budget = BUDGETS.get(key);
+        if (budget == null) {
+            RetryBudget created = new RetryBudget(key, config);
+            budget = BUDGETS.putIfAbsent(key, created);
+            if (budget == null) {
+                budget = created;
+            }
+        }
+        return budget;
+    }
+
+    /**
+     * Get an existing budget, or null if no client has used the endpoint
+     */
+    public static RetryBudget find(String host, int port) {
+        return BUDGETS.get(host + ":" + port);
+    }
+
+    public static List<RetryBudget> getAll() {
+        return new ArrayList<>(BUDGETS.values());
+    }
+
+    public static void remove(String host, int port) {
+        BUDGETS.remove(host + ":" + port);
+    }
+}
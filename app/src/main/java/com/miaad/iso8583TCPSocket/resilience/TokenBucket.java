@@ -0,0 +1,104 @@
+package com.miaad.iso8583TCPSocket.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket of {@code burst} tokens refilled at {@code tps} tokens per second.
+ * <p>
+ * Kept as the time at which the bucket will next be full again (the generic cell
+ * rate algorithm), so one {@link AtomicLong} holds the whole state. Taking a token
+ * and refilling are a single CAS; no thread ever refills on a timer. A token may
+ * be reserved ahead of time, which tells the caller how long to wait for it.
+ */
+public class TokenBucket {
+
+    private final String name;
+    private final double tps;
+    private final int burst;
+    private final long intervalNanos;
+    private final long burstNanos;
+    // The bucket is full from this time on; every token taken pushes it one interval later
+    private final AtomicLong fullAtNanos = new AtomicLong(System.nanoTime());
+    private final AtomicLong granted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public TokenBucket(String name, double tps, int burst) {
+        if (tps <= 0) {
+            throw new IllegalArgumentException("tps must be positive");
+        }
+        this.name = name;
+        this.tps = tps;
+        this.burst = Math.max(1, burst);
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / tps));
+        this.burstNanos = intervalNanos * this.burst;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getTps() {
+        return tps;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    /**
+     * Take a token now or reserve the next free one
+     * @param maxWaitNanos Longest acceptable wait for the token; 0 takes only a token available now
+     * @return Nanoseconds until the token may be used (0 = now), or -1 if it would take longer than maxWaitNanos
+     */
+    public long reserve(long maxWaitNanos) {
+        while (true) {
+            long now = System.nanoTime();
+            long fullAt = fullAtNanos.get();
+            long next = Math.max(fullAt, now) + intervalNanos;
+            long wait = next - burstNanos - now;
+            if (wait > maxWaitNanos) {
+                rejected.incrementAndGet();
+                return -1;
+            }
+            if (fullAtNanos.compareAndSet(fullAt, next)) {
+                granted.incrementAndGet();
+                return Math.max(0, wait);
+            }
+        }
+    }
+
+    /**
+     * Give back a reserved token that was not used
+     */
+    public void cancel() {
+        fullAtNanos.addAndGet(-intervalNanos);
+        granted.decrementAndGet();
+    }
+
+    /**
+     * Tokens that could be taken right now
+     */
+    public double getAvailableTokens() {
+        long fullIn = fullAtNanos.get() - System.nanoTime();
+        if (fullIn <= 0) {
+            return burst;
+        }
+        return Math.max(0, burst - fullIn / (double) intervalNanos);
+    }
+
+    /**
+     * True when the bucket is full, i.e. indistinguishable from a new one
+     */
+    boolean isFull() {
+        return fullAtNanos.get() - System.nanoTime() <= 0;
+    }
+
+    public long getGranted() {
+        return granted.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+}
@@ -0,0 +1,246 @@
+package com.miaad.iso8583TCPSocket.timer;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed wheel timer for large numbers of short, coarse-grained timeouts
+ * (retry backoff, keep-alive, hedging).
+ * <p>
+ * Scheduling and cancelling are lock-free and O(1). A single daemon thread
+ * advances the wheel once per tick and runs expired tasks, so tasks must be
+ * short and must not block; hand real work to another thread. Timeouts fire
+ * with up to one tick of delay.
+ */
+public final class HashedWheelTimer {
+
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_CANCELLED = 1;
+    private static final int STATE_EXPIRED = 2;
+
+    private static volatile HashedWheelTimer shared;
+
+    private final String name;
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final ConcurrentLinkedQueue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger workerState = new AtomicInteger(); // 0 init, 1 started, 2 stopped
+    private volatile long startNanos;
+    private volatile boolean started;
+    private Thread worker;
+
+    /**
+     * @param name Worker thread name
+     * @param tickMs Tick duration (timer resolution)
+     * @param wheelSize Number of buckets, rounded up to a power of two
+     */
+    public HashedWheelTimer(String name, long tickMs, int wheelSize) {
+        if (tickMs <= 0) {
+            throw new IllegalArgumentException("tickMs must be > 0");
+        }
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        this.name = name;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Process-wide timer (10 ms ticks) shared by all clients
+     */
+    public static HashedWheelTimer shared() {
+        HashedWheelTimer timer = shared;
+        if (timer == null) {
+            synchronized (HashedWheelTimer.class) {
+                timer = shared;
+                if (timer == null) {
+                    timer = new HashedWheelTimer("iso-timer", 10, 512);
+                    shared = timer;
+                }
+            }
+        }
+        return timer;
+    }
+
+    /**
+     * Run a task once after the given delay
+     * @return Handle that can cancel the task
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (workerState.get() == 2) {
+            throw new IllegalStateException("Timer " + name + " is stopped");
+        }
+        start();
+        long deadline = System.nanoTime() - startNanos + Math.max(0, unit.toNanos(delay));
+        Timeout timeout = new Timeout(task, deadline);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stop the worker thread; pending timeouts never fire
+     */
+    public void stop() {
+        if (workerState.getAndSet(2) == 1 && worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    private void start() {
+        if (workerState.get() == 0 && workerState.compareAndSet(0, 1)) {
+            startNanos = System.nanoTime();
+            started = true;
+            worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runWheel();
+                }
+            }, name);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        while (!started) {
+            Thread.yield(); // another thread is starting the worker
+        }
+    }
+
+    private void runWheel() {
+        long tick = 0;
+        while (workerState.get() == 1) {
+            long deadline = tickNanos * (tick + 1);
+            long sleepNanos = deadline - (System.nanoTime() - startNanos);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (workerState.get() != 1) {
+                        return;
+                    }
+                }
+            }
+            transferPending(tick);
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    private void transferPending(long currentTick) {
+        // Bounded so a flood of new timeouts cannot stall the wheel
+        for (int i = 0; i < 100_000; i++) {
+            Timeout timeout = pending.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state.get() == STATE_CANCELLED) {
+                continue;
+            }
+            long ticks = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (ticks - currentTick) / wheel.length;
+            long slot = Math.max(ticks, currentTick); // never schedule into the past
+            wheel[(int) (slot & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * Handle of a scheduled task
+     */
+    public static final class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(STATE_PENDING);
+        long remainingRounds;
+        Timeout next;
+        Timeout prev;
+
+        Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancel the task if it has not run yet
+         * @return true if this call cancelled it
+         */
+        public boolean cancel() {
+            return state.compareAndSet(STATE_PENDING, STATE_CANCELLED);
+        }
+
+        public boolean isCancelled() {
+            return state.get() == STATE_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == STATE_EXPIRED;
+        }
+
+        void run() {
+            if (state.compareAndSet(STATE_PENDING, STATE_EXPIRED)) {
+                try {
+                    task.run();
+                } catch (Throwable ignored) {
+                    // a failing task must not kill the shared worker
+                }
+            }
+        }
+    }
+
+    /**
+     * Doubly linked list of timeouts, only touched by the worker thread
+     */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.state.get() == STATE_CANCELLED) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.run();
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        private void remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.miaad.iso8583TCPSocket.trace;
+
+/**
+ * Low-level hook for engine phase timings, for profilers and tracers.
+ * <p>
+ * Unlike {@link com.miaad.iso8583TCPSocket.ConnectionStateListener}, every callback
+ * fires once per completed phase with raw {@link System#nanoTime()} timestamps and
+ * primitive arguments, and nothing is formatted. Implementations are called on the
+ * engine's hot path and must be fast and must not throw.
+ * <p>
+ * Timestamps that were not reached (e.g. first byte of a transaction that failed
+ * while sending) are 0.
+ */
+public interface EngineProbe {
+
+    /** Probe that ignores everything */
+    EngineProbe NONE = new EngineProbe() {
+        @Override
+        public void onConnect(long operationId, String host, int port, int attempt,
+                              long startNanos, long endNanos, boolean success) {
+        }
+
+        @Override
+        public void onTlsHandshake(long operationId, String host, int port,
+                                   long startNanos, long endNanos, boolean success) {
+        }
+
+        @Override
+        public void onRetryWait(long operationId, String host, int port, int attempt,
+                                long startNanos, long endNanos) {
+        }
+
+        @Override
+        public void onTransaction(long transactionId, String host, int port, int mti, int bytesOut, int bytesIn,
+                                  long startNanos, long sentNanos, long firstByteNanos, long endNanos,
+                                  boolean success) {
+        }
+    };
+
+    /**
+     * A TCP connection attempt finished
+     * @param operationId Id shared by all attempts of one connect call
+     * @param attempt Attempt number (1-based)
+     */
+    void onConnect(long operationId, String host, int port, int attempt,
+                   long startNanos, long endNanos, boolean success);
+
+    /**
+     * A host name lookup finished, before the TCP connect of the same attempt
+     * @param cached True if served from a {@link com.miaad.iso8583TCPSocket.dns.DnsCache} without a resolver call
+     */
+    default void onDnsResolve(long operationId, String host, long startNanos, long endNanos,
+                              boolean success, boolean cached) {
+    }
+
+    /**
+     * A TLS handshake finished
+     */
+    void onTlsHandshake(long operationId, String host, int port,
+                        long startNanos, long endNanos, boolean success);
+
+    /**
+     * A backoff delay between connection attempts finished
+     * @param attempt Attempt number that follows the delay (1-based)
+     */
+    void onRetryWait(long operationId, String host, int port, int attempt,
+                     long startNanos, long endNanos);
+
+    /**
+     * A request/response exchange finished
+     * @param transactionId Process-unique transaction id
+     * @param mti Request MTI, or -1 if unknown
+     * @param bytesOut Request bytes (excluding length header)
+     * @param bytesIn Response bytes (excluding length header), 0 on failure
+     * @param sentNanos When the request was fully written
+     * @param firstByteNanos When the response length header was received
+     */
+    void onTransaction(long transactionId, String host, int port, int mti, int bytesOut, int bytesIn,
+                       long startNanos, long sentNanos, long firstByteNanos, long endNanos,
+                       boolean success);
+}
@@ -0,0 +1,96 @@
+package com.miaad.iso8583TCPSocket.trace;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide default {@link EngineProbe} and id generation for probe events.
+ * Clients whose config does not set a probe use the default, so a profiler can be
+ * attached once at startup.
+ */
+public final class EngineProbes {
+
+    private static final AtomicLong IDS = new AtomicLong();
+    private static volatile EngineProbe defaultProbe = EngineProbe.NONE;
+
+    private EngineProbes() {
+    }
+
+    /**
+     * Install the probe used by clients without an explicit one
+     * @param probe Probe, or null to disable
+     */
+    public static void setDefault(EngineProbe probe) {
+        defaultProbe = probe != null ? probe : EngineProbe.NONE;
+    }
+
+    public static EngineProbe getDefault() {
+        return defaultProbe;
+    }
+
+    /**
+     * Resolve the probe for a config value (null means the default)
+     */
+    public static EngineProbe resolve(EngineProbe configured) {
+        return configured != null ? configured : defaultProbe;
+    }
+
+    /**
+     * Combine several probes into one that calls each of them in order,
+     * e.g. a {@link TraceRecorder} alongside a profiler probe
+     */
+    public static EngineProbe compose(final EngineProbe... probes) {
+        if (probes.length == 1) {
+            return probes[0];
+        }
+        return new EngineProbe() {
+            @Override
+            public void onConnect(long operationId, String host, int port, int attempt,
+                                  long startNanos, long endNanos, boolean success) {
+                for (EngineProbe probe : probes) {
+                    probe.onConnect(operationId, host, port, attempt, startNanos, endNanos, success);
+                }
+            }
+
+            @Override
+            public void onDnsResolve(long operationId, String host, long startNanos, long endNanos,
+                                     boolean success, boolean cached) {
+                for (EngineProbe probe : probes) {
+                    probe.onDnsResolve(operationId, host, startNanos, endNanos, success, cached);
+                }
+            }
+
+            @Override
+            public void onTlsHandshake(long operationId, String host, int port,
+                                       long startNanos, long endNanos, boolean success) {
+                for (EngineProbe probe : probes) {
+                    probe.onTlsHandshake(operationId, host, port, startNanos, endNanos, success);
+                }
+            }
+
+            @Override
+            public void onRetryWait(long operationId, String host, int port, int attempt,
+                                    long startNanos, long endNanos) {
+                for (EngineProbe probe : probes) {
+                    probe.onRetryWait(operationId, host, port, attempt, startNanos, endNanos);
+                }
+            }
+
+            @Override
+            public void onTransaction(long transactionId, String host, int port, int mti, int bytesOut, int bytesIn,
+                                      long startNanos, long sentNanos, long firstByteNanos, long endNanos,
+                                      boolean success) {
+                for (EngineProbe probe : probes) {
+                    probe.onTransaction(transactionId, host, port, mti, bytesOut, bytesIn,
+                            startNanos, sentNanos, firstByteNanos, endNanos, success);
+                }
+            }
+        };
+    }
+
+    /**
+     * Next process-unique operation or transaction id
+     */
+    public static long nextId() {
+        return IDS.incrementAndGet();
+    }
+}
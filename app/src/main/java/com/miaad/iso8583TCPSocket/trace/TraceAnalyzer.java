@@ -0,0 +1,367 @@
+package com.miaad.iso8583TCPSocket.trace;
+
+import com.miaad.iso8583TCPSocket.IsoCodes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Offline analyzer for files written by {@link TraceRecorder}.
+ * <p>
+ * Prints per-phase latency percentiles, then the slowest transactions and
+ * connection operations, each with a waterfall of its phases.
+ * <pre>
+ * java -cp iso8583TCPSocket-jvm.jar com.miaad.iso8583TCPSocket.trace.TraceAnalyzer [--top N] [--width W] &lt;file-or-directory&gt;...
+ * </pre>
+ */
+public class TraceAnalyzer {
+
+    private static final int PHASES = TraceFormat.PHASE_DNS + 1;
+
+    private final List<File> files = new ArrayList<>();
+    private int top = 10;
+    private int width = 50;
+
+    public TraceAnalyzer(List<File> inputs) {
+        for (File input : inputs) {
+            if (input.isDirectory()) {
+                File[] children = input.listFiles();
+                if (children != null) {
+                    Arrays.sort(children);
+                    for (File child : children) {
+                        if (child.getName().endsWith(TraceFormat.FILE_SUFFIX)) {
+                            files.add(child);
+                        }
+                    }
+                }
+            } else {
+                files.add(input);
+            }
+        }
+    }
+
+    /**
+     * Number of slow transactions and connection operations to list (default 10)
+     */
+    public TraceAnalyzer top(int top) {
+        this.top = top;
+        return this;
+    }
+
+    /**
+     * Width of the waterfall bars in characters (default 50)
+     */
+    public TraceAnalyzer width(int width) {
+        this.width = width;
+        return this;
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<File> inputs = new ArrayList<>();
+        int top = 10;
+        int width = 50;
+        for (int i = 0; i < args.length; i++) {
+            if ("--top".equals(args[i]) && i + 1 < args.length) {
+                top = Integer.parseInt(args[++i]);
+            } else if ("--width".equals(args[i]) && i + 1 < args.length) {
+                width = Integer.parseInt(args[++i]);
+            } else {
+                inputs.add(new File(args[i]));
+            }
+        }
+        if (inputs.isEmpty()) {
+            System.err.println("Usage: TraceAnalyzer [--top N] [--width W] <trace-file-or-directory>...");
+            System.exit(2);
+        }
+        new TraceAnalyzer(inputs).top(top).width(width).report(System.out);
+    }
+
+    /**
+     * Analyze the trace files and print the report
+     */
+    public void report(PrintStream out) throws IOException {
+        final long[][] durations = new long[PHASES][];
+        final int[] counts = new int[PHASES];
+        final int[] failures = new int[PHASES];
+        for (int i = 0; i < PHASES; i++) {
+            durations[i] = new long[1024];
+        }
+        final PriorityQueue<Rec> slowest = new PriorityQueue<>(Math.max(1, top), BY_DURATION);
+        final Map<Long, Operation> connects = new HashMap<>();
+        final long[] totals = new long[2]; // records, files
+
+        // Pass 1: percentiles, slowest transactions, connection operations
+        scan(new Visitor() {
+            @Override
+            public void visit(Rec rec) {
+                totals[0]++;
+                if (rec.phase <= 0 || rec.phase >= PHASES) {
+                    return;
+                }
+                int n = counts[rec.phase]++;
+                if (n == durations[rec.phase].length) {
+                    durations[rec.phase] = Arrays.copyOf(durations[rec.phase], n * 2);
+                }
+                durations[rec.phase][n] = rec.duration;
+                if (!rec.success) {
+                    failures[rec.phase]++;
+                }
+                if (rec.phase == TraceFormat.PHASE_TRANSACTION && top > 0) {
+                    if (slowest.size() < top) {
+                        slowest.add(rec);
+                    } else if (rec.duration > slowest.peek().duration) {
+                        slowest.poll();
+                        slowest.add(rec);
+                    }
+                } else if (rec.phase == TraceFormat.PHASE_CONNECT || rec.phase == TraceFormat.PHASE_TLS
+                        || rec.phase == TraceFormat.PHASE_RETRY_WAIT || rec.phase == TraceFormat.PHASE_DNS) {
+                    Operation op = connects.get(rec.id);
+                    if (op == null) {
+                        op = new Operation(rec.id);
+                        connects.put(rec.id, op);
+                    }
+                    op.add(rec);
+                }
+            }
+        });
+
+        // Pass 2: phases of the slowest transactions
+        final Map<Long, Operation> transactions = new HashMap<>();
+        for (Rec rec : slowest) {
+            transactions.put(rec.id, new Operation(rec.id));
+        }
+        if (!transactions.isEmpty()) {
+            scan(new Visitor() {
+                @Override
+                public void visit(Rec rec) {
+                    Operation op = transactions.get(rec.id);
+                    if (op != null && rec.phase >= TraceFormat.PHASE_SEND) {
+                        op.add(rec);
+                    }
+                }
+            });
+        }
+
+        out.printf("Trace files: %d, records: %d%n%n", files.size(), totals[0]);
+        out.printf("%-12s %10s %8s %10s %10s %10s %10s%n", "phase", "count", "failed", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        for (int phase = 1; phase < PHASES; phase++) {
+            int n = counts[phase];
+            if (n == 0) {
+                continue;
+            }
+            long[] sorted = Arrays.copyOf(durations[phase], n);
+            Arrays.sort(sorted);
+            out.printf("%-12s %10d %8d %10.3f %10.3f %10.3f %10.3f%n", TraceFormat.phaseName(phase), n, failures[phase],
+                    ms(percentile(sorted, 0.50)), ms(percentile(sorted, 0.90)),
+                    ms(percentile(sorted, 0.99)), ms(sorted[n - 1]));
+        }
+
+        List<Operation> slowTx = new ArrayList<>(transactions.values());
+        Collections.sort(slowTx, BY_SPAN);
+        if (!slowTx.isEmpty()) {
+            out.printf("%nSlowest %d transactions%n", slowTx.size());
+            int rank = 1;
+            for (Operation op : slowTx) {
+                Rec total = op.find(TraceFormat.PHASE_TRANSACTION);
+                out.printf("%n#%d tx %d  %s  MTI %s  %.3f ms  %s  %d bytes%n", rank++, op.id, timestamp(total),
+                        total.aux >= 0 ? IsoCodes.formatMti(total.aux) : "?", ms(total.duration),
+                        total.success ? "OK" : "FAILED", total.bytes);
+                printWaterfall(out, op, TraceFormat.PHASE_TRANSACTION);
+            }
+        }
+
+        List<Operation> slowConnects = new ArrayList<>(connects.values());
+        Collections.sort(slowConnects, BY_SPAN);
+        if (slowConnects.size() > top) {
+            slowConnects = slowConnects.subList(0, top);
+        }
+        if (!slowConnects.isEmpty()) {
+            out.printf("%nSlowest %d connection operations%n", slowConnects.size());
+            int rank = 1;
+            for (Operation op : slowConnects) {
+                Rec first = op.records.get(0);
+                out.printf("%n#%d connect %d  %s  %d attempt(s)  %.3f ms  %s%n", rank++, op.id, timestamp(first),
+                        op.attempts(), ms(op.span()), op.connected() ? "OK" : "FAILED");
+                printWaterfall(out, op, -1);
+            }
+        }
+    }
+
+    private void printWaterfall(PrintStream out, Operation op, int skipPhase) {
+        long start = op.start();
+        long span = Math.max(1, op.span());
+        char[] bar = new char[width];
+        for (Rec rec : op.records) {
+            if (rec.phase == skipPhase) {
+                continue;
+            }
+            int from = (int) Math.min(width - 1, (rec.start - start) * width / span);
+            int to = (int) Math.min(width, Math.max(from + 1, (rec.start + rec.duration - start) * width / span));
+            Arrays.fill(bar, ' ');
+            Arrays.fill(bar, from, to, rec.success ? '#' : 'x');
+            String label = TraceFormat.phaseName(rec.phase);
+            if (rec.phase == TraceFormat.PHASE_CONNECT || rec.phase == TraceFormat.PHASE_RETRY_WAIT) {
+                label += " " + rec.aux;
+            } else if (rec.phase == TraceFormat.PHASE_DNS && rec.cached) {
+                label += " cached";
+            }
+            out.printf("   %-13s|%s| %10.3f ms%n", label, new String(bar), ms(rec.duration));
+        }
+    }
+
+    // ========== READING ==========
+
+    private interface Visitor {
+        void visit(Rec rec);
+    }
+
+    private void scan(Visitor visitor) throws IOException {
+        for (File file : files) {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.limit() < TraceFormat.HEADER_SIZE || buffer.getLong(0) != TraceFormat.MAGIC) {
+                    System.err.println("Skipping " + file + ": not a trace file");
+                    continue;
+                }
+                int recordSize = buffer.getInt(12);
+                long baseNanos = buffer.getLong(16);
+                long baseEpochMs = buffer.getLong(24);
+                for (int p = TraceFormat.HEADER_SIZE; p + recordSize <= buffer.limit(); p += recordSize) {
+                    int phase = buffer.get(p + TraceFormat.OFF_PHASE);
+                    if (phase == 0) {
+                        break; // end of written data
+                    }
+                    Rec r = new Rec();
+                    r.id = buffer.getLong(p + TraceFormat.OFF_ID);
+                    r.start = buffer.getLong(p + TraceFormat.OFF_START);
+                    r.duration = buffer.getLong(p + TraceFormat.OFF_DURATION);
+                    r.phase = phase;
+                    byte flags = buffer.get(p + TraceFormat.OFF_FLAGS);
+                    r.success = (flags & TraceFormat.FLAG_SUCCESS) != 0;
+                    r.cached = (flags & TraceFormat.FLAG_CACHED) != 0;
+                    r.aux = buffer.getShort(p + TraceFormat.OFF_AUX);
+                    r.bytes = buffer.getInt(p + TraceFormat.OFF_BYTES);
+                    r.epochMs = baseEpochMs + (r.start - baseNanos) / 1_000_000L;
+                    visitor.visit(r);
+                }
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+    private static final class Rec {
+        long id;
+        long start;
+        long duration;
+        int phase;
+        boolean success;
+        boolean cached;
+        int aux;
+        int bytes;
+        long epochMs;
+    }
+
+    private static final class Operation {
+        final long id;
+        final List<Rec> records = new ArrayList<>(4);
+
+        Operation(long id) {
+            this.id = id;
+        }
+
+        void add(Rec rec) {
+            records.add(rec);
+            Collections.sort(records, BY_START);
+        }
+
+        Rec find(int phase) {
+            for (Rec rec : records) {
+                if (rec.phase == phase) {
+                    return rec;
+                }
+            }
+            return records.get(0);
+        }
+
+        long start() {
+            return records.get(0).start;
+        }
+
+        long span() {
+            long end = Long.MIN_VALUE;
+            for (Rec rec : records) {
+                end = Math.max(end, rec.start + rec.duration);
+            }
+            return end - start();
+        }
+
+        int attempts() {
+            int attempts = 0;
+            for (Rec rec : records) {
+                if (rec.phase == TraceFormat.PHASE_CONNECT) {
+                    attempts++;
+                }
+            }
+            return attempts;
+        }
+
+        boolean connected() {
+            Rec last = records.get(records.size() - 1);
+            return last.success && last.phase != TraceFormat.PHASE_RETRY_WAIT;
+        }
+    }
+
+    private static final Comparator<Rec> BY_DURATION = new Comparator<Rec>() {
+        @Override
+        public int compare(Rec a, Rec b) {
+            return Long.compare(a.duration, b.duration);
+        }
+    };
+
+    private static final Comparator<Rec> BY_START = new Comparator<Rec>() {
+        @Override
+        public int compare(Rec a, Rec b) {
+            if (a.start != b.start) {
+                return Long.compare(a.start, b.start);
+            }
+            return Integer.compare(a.phase, b.phase);
+        }
+    };
+
+    private static final Comparator<Operation> BY_SPAN = new Comparator<Operation>() {
+        @Override
+        public int compare(Operation a, Operation b) {
+            return Long.compare(b.span(), a.span());
+        }
+    };
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static double ms(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static String timestamp(Rec rec) {
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(rec.epochMs));
+    }
+}
@@ -0,0 +1,59 @@
+package com.miaad.iso8583TCPSocket.trace;
+
+/**
+ * On-disk layout shared by {@link TraceRecorder} and {@link TraceAnalyzer}.
+ * <pre>
+ * header (32 bytes): magic "ISOTRC01" | version:int | recordSize:int | baseNanos:long | baseEpochMs:long
+ * record (32 bytes): id:long | startNanos:long | durationNanos:long | phase:byte | flags:byte | aux:short | bytes:int
+ * </pre>
+ * All values are big-endian. {@code aux} is the MTI for transaction phases and the
+ * attempt number for connection phases. DNS records set {@code FLAG_CACHED} when
+ * no resolver call was made. A record whose phase byte is 0 was never
+ * completed (the file is preallocated), and marks the end of the data.
+ */
+final class TraceFormat {
+
+    static final long MAGIC = 0x49534F5452433031L; // "ISOTRC01"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 32;
+
+    static final int OFF_ID = 0;
+    static final int OFF_START = 8;
+    static final int OFF_DURATION = 16;
+    static final int OFF_PHASE = 24;
+    static final int OFF_FLAGS = 25;
+    static final int OFF_AUX = 26;
+    static final int OFF_BYTES = 28;
+
+    static final byte FLAG_SUCCESS = 1;
+    static final byte FLAG_CACHED = 2;
+
+    static final byte PHASE_CONNECT = 1;
+    static final byte PHASE_TLS = 2;
+    static final byte PHASE_RETRY_WAIT = 3;
+    static final byte PHASE_SEND = 4;
+    static final byte PHASE_WAIT = 5;
+    static final byte PHASE_READ = 6;
+    static final byte PHASE_TRANSACTION = 7;
+    static final byte PHASE_DNS = 8;
+
+    static final String FILE_SUFFIX = ".trc";
+
+    private TraceFormat() {
+    }
+
+    static String phaseName(int phase) {
+        switch (phase) {
+            case PHASE_CONNECT: return "connect";
+            case PHASE_TLS: return "tls";
+            case PHASE_RETRY_WAIT: return "retry-wait";
+            case PHASE_SEND: return "send";
+            case PHASE_WAIT: return "wait";
+            case PHASE_READ: return "read";
+            case PHASE_TRANSACTION: return "transaction";
+            case PHASE_DNS: return "dns";
+            default: return "phase-" + phase;
+        }
+    }
+}
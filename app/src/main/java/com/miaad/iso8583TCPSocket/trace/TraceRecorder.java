@@ -0,0 +1,268 @@
+package com.miaad.iso8583TCPSocket.trace;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link EngineProbe} that appends fixed-size binary records to memory-mapped,
+ * rotating trace files, for offline analysis with {@link TraceAnalyzer}.
+ * <p>
+ * Appending reserves a slot with one atomic add and writes six primitives into
+ * the mapped segment. Nothing is formatted, allocated or flushed on the
+ * transaction thread, so the recorder can stay on at full production rate.
+ * When a segment is full the next one is mapped; once {@code maxSegments} files
+ * exist the oldest is deleted.
+ *
+ * <pre>
+ * TraceRecorder recorder = new TraceRecorder.Builder(new File("/var/log/iso-trace"))
+ *     .segmentSizeBytes(64 * 1024 * 1024)
+ *     .maxSegments(8)
+ *     .build();
+ * EngineProbes.setDefault(recorder);
+ * </pre>
+ */
+public class TraceRecorder implements EngineProbe, Closeable {
+
+    private final File directory;
+    private final String filePrefix;
+    private final int segmentSizeBytes;
+    private final int maxSegments;
+    private final Deque<File> segmentFiles = new ArrayDeque<>();
+    private final AtomicLong droppedRecords = new AtomicLong();
+    private final AtomicLong writtenRecords = new AtomicLong();
+
+    private volatile Segment current;
+    private volatile boolean closed;
+    private int segmentSequence;
+
+    private TraceRecorder(Builder builder) throws IOException {
+        this.directory = builder.directory;
+        this.filePrefix = builder.filePrefix;
+        int records = Math.max(1, (builder.segmentSizeBytes - TraceFormat.HEADER_SIZE) / TraceFormat.RECORD_SIZE);
+        this.segmentSizeBytes = TraceFormat.HEADER_SIZE + records * TraceFormat.RECORD_SIZE;
+        this.maxSegments = Math.max(1, builder.maxSegments);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create trace directory " + directory);
+        }
+        this.segmentSequence = nextSequence();
+        this.current = openSegment();
+    }
+
+    // ========== ENGINE PROBE ==========
+
+    @Override
+    public void onConnect(long operationId, String host, int port, int attempt,
+                          long startNanos, long endNanos, boolean success) {
+        append(operationId, startNanos, endNanos - startNanos, TraceFormat.PHASE_CONNECT, success, attempt, 0);
+    }
+
+    @Override
+    public void onDnsResolve(long operationId, String host, long startNanos, long endNanos,
+                             boolean success, boolean cached) {
+        int flags = (success ? TraceFormat.FLAG_SUCCESS : 0) | (cached ? TraceFormat.FLAG_CACHED : 0);
+        append(operationId, startNanos, endNanos - startNanos, TraceFormat.PHASE_DNS, flags, 0, 0);
+    }
+
+    @Override
+    public void onTlsHandshake(long operationId, String host, int port,
+                               long startNanos, long endNanos, boolean success) {
+        append(operationId, startNanos, endNanos - startNanos, TraceFormat.PHASE_TLS, success, 0, 0);
+    }
+
+    @Override
+    public void onRetryWait(long operationId, String host, int port, int attempt,
+                            long startNanos, long endNanos) {
+        append(operationId, startNanos, endNanos - startNanos, TraceFormat.PHASE_RETRY_WAIT, true, attempt, 0);
+    }
+
+    @Override
+    public void onTransaction(long transactionId, String host, int port, int mti, int bytesOut, int bytesIn,
+                              long startNanos, long sentNanos, long firstByteNanos, long endNanos,
+                              boolean success) {
+        if (sentNanos != 0) {
+            append(transactionId, startNanos, sentNanos - startNanos, TraceFormat.PHASE_SEND, true, mti, bytesOut);
+            long waitEnd = firstByteNanos != 0 ? firstByteNanos : endNanos;
+            append(transactionId, sentNanos, waitEnd - sentNanos, TraceFormat.PHASE_WAIT, firstByteNanos != 0, mti, 0);
+            if (firstByteNanos != 0) {
+                append(transactionId, firstByteNanos, endNanos - firstByteNanos, TraceFormat.PHASE_READ, success, mti, bytesIn);
+            }
+        }
+        append(transactionId, startNanos, endNanos - startNanos, TraceFormat.PHASE_TRANSACTION, success, mti, bytesOut + bytesIn);
+    }
+
+    // ========== APPENDING ==========
+
+    private void append(long id, long startNanos, long durationNanos, byte phase, boolean success, int aux, int bytes) {
+        append(id, startNanos, durationNanos, phase, success ? TraceFormat.FLAG_SUCCESS : 0, aux, bytes);
+    }
+
+    private void append(long id, long startNanos, long durationNanos, byte phase, int flags, int aux, int bytes) {
+        while (!closed) {
+            Segment segment = current;
+            long position = segment.next.getAndAdd(TraceFormat.RECORD_SIZE);
+            if (position + TraceFormat.RECORD_SIZE <= segmentSizeBytes) {
+                int p = (int) position;
+                MappedByteBuffer buffer = segment.buffer;
+                buffer.putLong(p + TraceFormat.OFF_ID, id);
+                buffer.putLong(p + TraceFormat.OFF_START, startNanos);
+                buffer.putLong(p + TraceFormat.OFF_DURATION, durationNanos);
+                buffer.put(p + TraceFormat.OFF_FLAGS, (byte) flags);
+                buffer.putShort(p + TraceFormat.OFF_AUX, (short) aux);
+                buffer.putInt(p + TraceFormat.OFF_BYTES, bytes);
+                buffer.put(p + TraceFormat.OFF_PHASE, phase); // written last: marks the record complete
+                writtenRecords.incrementAndGet();
+                return;
+            }
+            rotate(segment);
+        }
+        droppedRecords.incrementAndGet();
+    }
+
+    private synchronized void rotate(Segment full) {
+        if (closed || current != full) {
+            return; // another thread already rotated
+        }
+        full.buffer.force();
+        try {
+            current = openSegment();
+        } catch (IOException e) {
+            closed = true; // cannot continue; further records are counted as dropped
+        }
+    }
+
+    private Segment openSegment() throws IOException {
+        File file = new File(directory, String.format("%s-%08d%s", filePrefix, segmentSequence++, TraceFormat.FILE_SUFFIX));
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        MappedByteBuffer buffer;
+        try {
+            raf.setLength(segmentSizeBytes);
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSizeBytes);
+        } finally {
+            raf.close(); // the mapping stays valid after the channel is closed
+        }
+        buffer.putLong(0, TraceFormat.MAGIC);
+        buffer.putInt(8, TraceFormat.VERSION);
+        buffer.putInt(12, TraceFormat.RECORD_SIZE);
+        buffer.putLong(16, System.nanoTime());
+        buffer.putLong(24, System.currentTimeMillis());
+
+        segmentFiles.addLast(file);
+        while (segmentFiles.size() > maxSegments) {
+            File oldest = segmentFiles.removeFirst();
+            if (!oldest.delete()) {
+                oldest.deleteOnExit();
+            }
+        }
+        return new Segment(buffer);
+    }
+
+    private int nextSequence() {
+        File[] existing = directory.listFiles();
+        int next = 0;
+        if (existing == null) {
+            return next;
+        }
+        Arrays.sort(existing);
+        for (File f : existing) {
+            String name = f.getName();
+            if (name.startsWith(filePrefix + "-") && name.endsWith(TraceFormat.FILE_SUFFIX)) {
+                try {
+                    int seq = Integer.parseInt(name.substring(filePrefix.length() + 1, name.length() - TraceFormat.FILE_SUFFIX.length()));
+                    next = Math.max(next, seq + 1);
+                    segmentFiles.addLast(f);
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        return next;
+    }
+
+    // ========== STATUS ==========
+
+    public long getWrittenRecords() {
+        return writtenRecords.get();
+    }
+
+    /**
+     * Records lost because the recorder was closed or could not map a new segment
+     */
+    public long getDroppedRecords() {
+        return droppedRecords.get();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Flush the current segment to disk
+     */
+    public void flush() {
+        Segment segment = current;
+        if (segment != null) {
+            segment.buffer.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        flush();
+    }
+
+    private static final class Segment {
+        final MappedByteBuffer buffer;
+        final AtomicLong next = new AtomicLong(TraceFormat.HEADER_SIZE);
+
+        Segment(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    public static class Builder {
+        private final File directory;
+        private String filePrefix = "iso-trace";
+        private int segmentSizeBytes = 16 * 1024 * 1024;
+        private int maxSegments = 4;
+
+        public Builder(File directory) {
+            this.directory = directory;
+        }
+
+        public Builder filePrefix(String filePrefix) {
+            this.filePrefix = filePrefix;
+            return this;
+        }
+
+        /**
+         * Size of each mapped trace file (default 16 MB, about 500k records)
+         */
+        public Builder segmentSizeBytes(int segmentSizeBytes) {
+            this.segmentSizeBytes = segmentSizeBytes;
+            return this;
+        }
+
+        /**
+         * Number of trace files kept before the oldest is deleted (default 4)
+         */
+        public Builder maxSegments(int maxSegments) {
+            this.maxSegments = maxSegments;
+            return this;
+        }
+
+        public TraceRecorder build() throws IOException {
+            return new TraceRecorder(this);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.miaad.iso8583TCPSocket;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ExchangeQueueTest {
+
+    private static ExchangeQueue queue(int highWeight, int lowWeight) {
+        return new ExchangeQueue(new PriorityLanesConfig.Builder()
+            .weight(RequestPriority.HIGH, highWeight)
+            .weight(RequestPriority.LOW, lowWeight)
+            .aging(0)
+            .build());
+    }
+
+    @Test
+    public void uncontendedAcquireTakesTheConnectionAtOnce() {
+        ExchangeQueue queue = queue(16, 1);
+
+        assertTrue(queue.acquire(RequestPriority.NORMAL, Deadline.none()));
+        assertFalse(queue.tryAcquire());
+        queue.release();
+        assertTrue(queue.tryAcquire());
+
+        LaneStats normal = stats(queue, RequestPriority.NORMAL);
+        assertEquals(1, normal.getServed());
+        assertEquals(0, normal.getQueued());
+    }
+
+    @Test
+    public void releaseHandsTheConnectionToTheWaiter() throws Exception {
+        final ExchangeQueue queue = queue(16, 1);
+        queue.acquire(RequestPriority.NORMAL);
+        final CountDownLatch granted = new CountDownLatch(1);
+        Thread waiter = start(new Runnable() {
+            @Override
+            public void run() {
+                queue.acquire(RequestPriority.NORMAL);
+                granted.countDown();
+            }
+        });
+        awaitDepth(queue, 1);
+
+        assertFalse(granted.await(50, TimeUnit.MILLISECONDS));
+        queue.release();
+        assertTrue(granted.await(1, TimeUnit.SECONDS));
+        waiter.join();
+        // Handed over, never free in between: nobody else can slip in
+        assertFalse(queue.tryAcquire());
+        assertEquals(1, stats(queue, RequestPriority.NORMAL).getQueued());
+        assertEquals(0, stats(queue, RequestPriority.NORMAL).getDepth());
+    }
+
+    @Test
+    public void tryAcquireDoesNotJumpAheadOfWaiters() throws Exception {
+        final ExchangeQueue queue = queue(16, 1);
+        queue.acquire(RequestPriority.NORMAL);
+        Thread waiter = start(new Runnable() {
+            @Override
+            public void run() {
+                queue.acquire(RequestPriority.LOW);
+                queue.release();
+            }
+        });
+        awaitDepth(queue, 1);
+
+        assertFalse(queue.tryAcquire());
+        queue.release();
+        waiter.join(1000);
+        assertTrue(queue.tryAcquire());
+    }
+
+    @Test
+    public void waitersAreServedByWeightedRoundRobin() throws Exception {
+        final ExchangeQueue queue = queue(3, 1);
+        queue.acquire(RequestPriority.NORMAL);
+        final List<String> order = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            threads.add(waiter(queue, RequestPriority.LOW, "L", order));
+            threads.add(waiter(queue, RequestPriority.HIGH, "H", order));
+        }
+        awaitDepth(queue, 6);
+        Thread.sleep(20); // let the last waiter finish enqueueing
+
+        queue.release();
+        for (Thread thread : threads) {
+            thread.join(1000);
+        }
+        // Weights 3:1 give HIGH three of every four turns while both lanes wait
+        StringBuilder served = new StringBuilder();
+        for (String label : order) {
+            served.append(label);
+        }
+        assertEquals("HHLHLL", served.toString());
+    }
+
+    @Test
+    public void waiterGivesUpAtItsDeadline() throws Exception {
+        ExchangeQueue queue = queue(16, 1);
+        queue.acquire(RequestPriority.NORMAL);
+        long start = System.nanoTime();
+
+        assertFalse(queue.acquire(RequestPriority.HIGH, Deadline.after(50, TimeUnit.MILLISECONDS)));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        LaneStats high = stats(queue, RequestPriority.HIGH);
+        assertEquals(1, high.getExpired());
+        assertEquals(0, high.getDepth());
+        assertEquals(0, high.getServed());
+
+        // The expired waiter is gone, so a release leaves the connection free
+        queue.release();
+        assertTrue(queue.tryAcquire());
+    }
+
+    @Test
+    public void expiredDeadlineIsNotQueued() {
+        ExchangeQueue queue = queue(16, 1);
+        queue.acquire(RequestPriority.NORMAL);
+
+        assertFalse(queue.acquire(RequestPriority.LOW, Deadline.after(0, TimeUnit.MILLISECONDS)));
+        LaneStats low = stats(queue, RequestPriority.LOW);
+        assertEquals(0, low.getQueued());
+        assertEquals(1, low.getExpired());
+    }
+
+    @Test
+    public void interruptDoesNotAbortTheWait() throws Exception {
+        final ExchangeQueue queue = queue(16, 1);
+        queue.acquire(RequestPriority.NORMAL);
+        final AtomicBoolean interruptedAfter = new AtomicBoolean();
+        final AtomicReference<Boolean> result = new AtomicReference<>();
+        Thread waiter = start(new Runnable() {
+            @Override
+            public void run() {
+                result.set(queue.acquire(RequestPriority.NORMAL, Deadline.after(5, TimeUnit.SECONDS)));
+                interruptedAfter.set(Thread.currentThread().isInterrupted());
+            }
+        });
+        awaitDepth(queue, 1);
+
+        waiter.interrupt();
+        Thread.sleep(30);
+        assertEquals(null, result.get());
+        queue.release();
+        waiter.join(1000);
+        assertEquals(Boolean.TRUE, result.get());
+        assertTrue("interrupt flag restored", interruptedAfter.get());
+    }
+
+    private static Thread waiter(final ExchangeQueue queue, final RequestPriority priority,
+                                 final String label, final List<String> order) {
+        return start(new Runnable() {
+            @Override
+            public void run() {
+                queue.acquire(priority);
+                order.add(label); // only the holder touches the list
+                queue.release();
+            }
+        });
+    }
+
+    private static Thread start(Runnable task) {
+        Thread thread = new Thread(task, "queue-test");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static LaneStats stats(ExchangeQueue queue, RequestPriority priority) {
+        return queue.getStats().get(priority.ordinal());
+    }
+
+    private static void awaitDepth(ExchangeQueue queue, int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (true) {
+            int total = 0;
+            for (LaneStats lane : queue.getStats()) {
+                total += lane.getDepth();
+            }
+            if (total >= depth) {
+                return;
+            }
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("only " + total + " of " + depth + " waiters queued");
+            }
+            Thread.sleep(1);
+        }
+    }
+}
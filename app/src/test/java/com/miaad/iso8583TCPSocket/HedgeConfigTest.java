@@ -0,0 +1,46 @@
+package com.miaad.iso8583TCPSocket;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HedgeConfigTest {
+
+    @Test
+    public void defaultHedgesNetworkManagementOnly() {
+        HedgeConfig config = new HedgeConfig.Builder().build();
+
+        assertTrue(config.isHedged(800));
+        assertTrue(config.isHedged(801));
+        // Each of these could be authorized or reversed twice by the host
+        assertFalse(config.isHedged(100));
+        assertFalse(config.isHedged(200));
+        assertFalse(config.isHedged(220));
+        assertFalse(config.isHedged(400));
+        assertFalse(config.isHedged(420));
+        assertFalse(config.isHedged(-1));
+    }
+
+    @Test
+    public void namedMtisReplaceTheDefault() {
+        HedgeConfig config = new HedgeConfig.Builder().mtis("0100").build();
+
+        assertTrue(config.isHedged(100));
+        assertTrue(config.isHedged(101));
+        assertFalse(config.isHedged(800));
+    }
+
+    @Test
+    public void noMtisHedgesNothing() {
+        HedgeConfig config = new HedgeConfig.Builder().mtis().build();
+
+        assertFalse(config.isHedged(800));
+        assertFalse(config.isHedged(100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidMti() {
+        new HedgeConfig.Builder().mtis("08");
+    }
+}
@@ -0,0 +1,243 @@
+package com.miaad.iso8583TCPSocket.engine;
+
+import com.miaad.iso8583TCPSocket.Deadline;
+import com.miaad.iso8583TCPSocket.IsoConfig;
+import com.miaad.iso8583TCPSocket.LateResponseHandler;
+import com.miaad.iso8583TCPSocket.UnsolicitedMessageHandler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteOrder;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.miaad.iso8583TCPSocket.engine.TestMessages.frame;
+import static com.miaad.iso8583TCPSocket.engine.TestMessages.message;
+import static com.miaad.iso8583TCPSocket.engine.TestMessages.readFrame;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DuplexConnectionTest {
+
+    private final BlockingQueue<byte[]> lateResponses = new LinkedBlockingQueue<>();
+    private final BlockingQueue<byte[]> unsolicited = new LinkedBlockingQueue<>();
+    private final CountDownLatch lost = new CountDownLatch(1);
+    private ServerSocket server;
+    private Socket host;
+    private InputStream hostIn;
+    private OutputStream hostOut;
+    private DuplexConnection connection;
+
+    @Before
+    public void setUp() throws Exception {
+        IsoConfig config = new IsoConfig.Builder("localhost", 1)
+            .lateResponseHandler(new LateResponseHandler() {
+                @Override
+                public void onLateResponse(byte[] request, byte[] response, long lateMs) {
+                    lateResponses.add(response);
+                }
+            })
+            .unsolicitedMessageHandler(new UnsolicitedMessageHandler() {
+                @Override
+                public void onUnsolicitedMessage(byte[] message, Replier replier) {
+                    unsolicited.add(message);
+                    try {
+                        replier.reply(message("0810", 77));
+                    } catch (IOException ignored) {
+                    }
+                }
+            })
+            .build();
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        Socket client = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+        host = server.accept();
+        hostIn = host.getInputStream();
+        hostOut = host.getOutputStream();
+        connection = new DuplexConnection(client, 2, ByteOrder.BIG_ENDIAN, config,
+            new LateResponses(config, null), null, new DuplexConnection.Listener() {
+                @Override
+                public void onConnectionLost(DuplexConnection connection, IOException error) {
+                    lost.countDown();
+                }
+            });
+        connection.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        connection.close();
+        host.close();
+        server.close();
+    }
+
+    @Test
+    public void responsesReachTheirWaitersInAnyOrder() throws Exception {
+        DuplexConnection.Waiter first = connection.register(message("0200", 1));
+        DuplexConnection.Waiter second = connection.register(message("0200", 2));
+        connection.send(first);
+        connection.send(second);
+        assertArrayEquals(message("0200", 1), readFrame(hostIn));
+        assertArrayEquals(message("0200", 2), readFrame(hostIn));
+
+        hostSends(message("0210", 2));
+        hostSends(message("0210", 1));
+
+        assertArrayEquals(message("0210", 1), connection.await(first, timer(1000)));
+        assertArrayEquals(message("0210", 2), connection.await(second, timer(1000)));
+        assertTrue(second.getReceivedNanos() <= first.getReceivedNanos());
+    }
+
+    @Test
+    public void secondRequestWithTheSameKeyIsRefused() throws Exception {
+        connection.register(message("0200", 1));
+        try {
+            connection.register(message("0200", 1));
+            fail("registered a second waiter for 0210 STAN 1");
+        } catch (IOException expected) {
+        }
+        // A different response MTI is a different key
+        assertNotNull(connection.register(message("0100", 1)));
+    }
+
+    @Test
+    public void requestsWithoutStanTakeUnclaimedResponsesInOrder() throws Exception {
+        DuplexConnection.Waiter first = connection.register(message("0800", -1));
+        DuplexConnection.Waiter second = connection.register(message("0800", -1));
+        DuplexConnection.Waiter keyed = connection.register(message("0200", 4));
+        connection.send(first);
+        connection.send(second);
+        connection.send(keyed);
+
+        hostSends(message("0210", 4));
+        hostSends(message("0810", 11));
+        hostSends(message("0810", 12));
+
+        assertArrayEquals(message("0810", 11), connection.await(first, timer(1000)));
+        assertArrayEquals(message("0810", 12), connection.await(second, timer(1000)));
+        assertArrayEquals(message("0210", 4), connection.await(keyed, timer(1000)));
+    }
+
+    @Test
+    public void awaitTimesOutWithoutAResponse() throws Exception {
+        DuplexConnection.Waiter waiter = connection.register(message("0200", 1));
+        connection.send(waiter);
+        long start = System.nanoTime();
+        try {
+            connection.await(waiter, timer(50));
+            fail("no response was sent");
+        } catch (SocketTimeoutException expected) {
+        }
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    public void responseToAnAbandonedRequestGoesToTheLateHandler() throws Exception {
+        DuplexConnection.Waiter waiter = connection.register(message("0200", 3));
+        connection.send(waiter);
+        readFrame(hostIn);
+        assertNull(connection.abandon(waiter));
+        assertTrue(connection.isSent(waiter));
+
+        // The key is free again, but the late response must not be taken for the new request's
+        DuplexConnection.Waiter retry = connection.register(message("0200", 9));
+        connection.send(retry);
+        hostSends(message("0210", 3));
+        hostSends(message("0210", 9));
+
+        assertArrayEquals(message("0210", 9), connection.await(retry, timer(1000)));
+        assertArrayEquals(message("0210", 3), lateResponses.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void requestAbandonedBeforeItsTurnIsNeverSent() throws Exception {
+        DuplexConnection.Waiter withdrawn = connection.register(message("0200", 1));
+        assertNull(connection.abandon(withdrawn));
+        assertFalse(connection.isSent(withdrawn));
+        connection.send(withdrawn);
+
+        DuplexConnection.Waiter next = connection.register(message("0200", 2));
+        connection.send(next);
+        assertArrayEquals(message("0200", 2), readFrame(hostIn));
+    }
+
+    @Test
+    public void abandonReturnsAResponseThatAlreadyArrived() throws Exception {
+        DuplexConnection.Waiter waiter = connection.register(message("0200", 1));
+        connection.send(waiter);
+        hostSends(message("0210", 1));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (waiter.getReceivedNanos() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+
+        assertArrayEquals(message("0210", 1), connection.abandon(waiter));
+    }
+
+    @Test
+    public void hostRequestGoesToTheUnsolicitedHandlerWhichCanReply() throws Exception {
+        hostSends(message("0800", 42));
+
+        assertArrayEquals(message("0800", 42), unsolicited.poll(1, TimeUnit.SECONDS));
+        assertArrayEquals(message("0810", 77), readFrame(hostIn));
+    }
+
+    @Test
+    public void hostClosingFailsWaitersAndIsReported() throws Exception {
+        DuplexConnection.Waiter waiter = connection.register(message("0200", 1));
+        connection.send(waiter);
+        host.close();
+
+        try {
+            connection.await(waiter, timer(5000));
+            fail("connection was closed by the host");
+        } catch (IOException expected) {
+            assertFalse(expected instanceof SocketTimeoutException);
+        }
+        assertTrue(lost.await(1, TimeUnit.SECONDS));
+        try {
+            connection.register(message("0200", 2));
+            fail("registered on a lost connection");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void closeFailsWaitersWithoutReportingALoss() throws Exception {
+        DuplexConnection.Waiter waiter = connection.register(message("0200", 1));
+        connection.send(waiter);
+        connection.close();
+
+        try {
+            connection.await(waiter, timer(5000));
+            fail("connection was closed");
+        } catch (IOException expected) {
+        }
+        assertFalse(connection.isOpen());
+        assertFalse(lost.await(100, TimeUnit.MILLISECONDS));
+    }
+
+    private void hostSends(byte[] message) throws IOException {
+        hostOut.write(frame(message));
+        hostOut.flush();
+    }
+
+    private static ResponseTimer timer(int readTimeoutMs) {
+        return new ResponseTimer(Deadline.none(), readTimeoutMs, readTimeoutMs, 0);
+    }
+}
@@ -0,0 +1,137 @@
+package com.miaad.iso8583TCPSocket.engine;
+
+import com.miaad.iso8583TCPSocket.IsoConfig;
+import com.miaad.iso8583TCPSocket.LateResponseHandler;
+
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.miaad.iso8583TCPSocket.engine.TestMessages.message;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LateResponsesTest {
+
+    /** What the late response handler was given: request then response */
+    private final BlockingQueue<byte[][]> handled = new LinkedBlockingQueue<>();
+
+    private LateResponses lateResponses(long windowMs) {
+        IsoConfig config = new IsoConfig.Builder("localhost", 1)
+            .lateResponseHandler(new LateResponseHandler() {
+                @Override
+                public void onLateResponse(byte[] request, byte[] response, long lateMs) {
+                    handled.add(new byte[][] {request, response});
+                }
+            })
+            .lateResponseWindow(windowMs)
+            .build();
+        return new LateResponses(config, null);
+    }
+
+    @Test
+    public void responseToTheCurrentRequestIsOurs() throws Exception {
+        LateResponses late = lateResponses(60000);
+
+        assertEquals(LateResponses.OURS, late.classify(message("0210", 7), message("0200", 7)));
+        assertNull(handled.poll(50, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void responseToATimedOutRequestGoesToTheHandler() throws Exception {
+        LateResponses late = lateResponses(60000);
+        byte[] timedOut = message("0200", 5);
+        byte[] response = message("0210", 5);
+        assertTrue(late.add(timedOut));
+        assertFalse(late.isEmpty());
+
+        assertEquals(LateResponses.LATE, late.classify(response, message("0200", 6)));
+        byte[][] call = handled.poll(1, TimeUnit.SECONDS);
+        assertNotNull(call);
+        assertArrayEquals(timedOut, call[0]);
+        assertArrayEquals(response, call[1]);
+        // Matched once: the same response again matches nothing
+        assertTrue(late.isEmpty());
+        assertEquals(LateResponses.UNMATCHED, late.classify(response, message("0200", 6)));
+    }
+
+    @Test
+    public void lateMatchUsesResponseMtiNotJustStan() {
+        LateResponses late = lateResponses(60000);
+        late.add(message("0200", 5));
+
+        // A 0410 with the STAN of the pending 0200 answers something else
+        assertEquals(LateResponses.UNMATCHED, late.classify(message("0410", 5), message("0200", 6)));
+        assertFalse(late.isEmpty());
+    }
+
+    @Test
+    public void responseMatchingBothIsOursAndClearsThePendingOne() throws Exception {
+        LateResponses late = lateResponses(60000);
+        late.add(message("0200", 5));
+
+        assertEquals(LateResponses.OURS, late.classify(message("0210", 5), message("0200", 5)));
+        assertTrue(late.isEmpty());
+        assertNull(handled.poll(50, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void frameMatchingNothingIsUnmatched() {
+        LateResponses late = lateResponses(60000);
+
+        assertEquals(LateResponses.UNMATCHED, late.classify(message("0210", 8), message("0200", 7)));
+        assertEquals(LateResponses.UNMATCHED, late.classify(message("0210", 8), null));
+    }
+
+    @Test
+    public void requestWithoutStanTakesAnyFrameThatIsNotLate() {
+        LateResponses late = lateResponses(60000);
+        late.add(message("0200", 5));
+
+        assertEquals(LateResponses.OURS, late.classify(message("0810", 9), message("0800", -1)));
+        assertEquals(LateResponses.LATE, late.classify(message("0210", 5), message("0800", -1)));
+    }
+
+    @Test
+    public void drainingBeforeAWriteHandsOffLateFrames() {
+        LateResponses late = lateResponses(60000);
+        late.add(message("0100", 3));
+
+        assertEquals(LateResponses.LATE, late.classify(message("0110", 3), null));
+    }
+
+    @Test
+    public void pendingRequestsExpireAfterTheWindow() throws Exception {
+        LateResponses late = lateResponses(30);
+        late.add(message("0200", 5));
+        Thread.sleep(60);
+
+        assertEquals(LateResponses.UNMATCHED, late.classify(message("0210", 5), message("0200", 6)));
+        assertTrue(late.isEmpty());
+    }
+
+    @Test
+    public void requestsThatCannotBeMatchedAreRefused() {
+        assertFalse("no STAN", lateResponses(60000).add(message("0200", -1)));
+        assertFalse("window off", lateResponses(0).add(message("0200", 5)));
+    }
+
+    @Test
+    public void pendingRequestsAreBounded() {
+        LateResponses late = lateResponses(60000);
+        for (int stan = 1; stan <= 64; stan++) {
+            assertTrue(late.add(message("0200", stan)));
+        }
+
+        assertFalse(late.add(message("0200", 65)));
+        late.clear();
+        assertTrue(late.isEmpty());
+        assertTrue(late.add(message("0200", 65)));
+    }
+}
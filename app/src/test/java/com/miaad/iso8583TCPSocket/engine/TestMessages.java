@@ -0,0 +1,61 @@
+package com.miaad.iso8583TCPSocket.engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ISO 8583 messages as the default message inspector reads them: ASCII MTI, binary
+ * bitmap, fields 3, 11 (unless there is no STAN) and 41, framed with a 2-byte length
+ */
+final class TestMessages {
+
+    private TestMessages() {
+    }
+
+    /**
+     * @param stan STAN, or -1 for a message without field 11
+     */
+    static byte[] message(String mti, int stan) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] bitmap = new byte[8];
+        set(bitmap, 3);
+        if (stan >= 0) {
+            set(bitmap, 11);
+        }
+        set(bitmap, 41);
+        write(out, mti.getBytes(StandardCharsets.US_ASCII));
+        write(out, bitmap);
+        write(out, "000000".getBytes(StandardCharsets.US_ASCII));
+        if (stan >= 0) {
+            write(out, String.format("%06d", stan).getBytes(StandardCharsets.US_ASCII));
+        }
+        write(out, "TERM0001".getBytes(StandardCharsets.US_ASCII));
+        return out.toByteArray();
+    }
+
+    static byte[] frame(byte[] message) {
+        byte[] frame = new byte[2 + message.length];
+        frame[0] = (byte) (message.length >> 8);
+        frame[1] = (byte) message.length;
+        System.arraycopy(message, 0, frame, 2, message.length);
+        return frame;
+    }
+
+    static byte[] readFrame(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] message = new byte[data.readUnsignedShort()];
+        data.readFully(message);
+        return message;
+    }
+
+    private static void set(byte[] bitmap, int field) {
+        bitmap[(field - 1) / 8] |= (byte) (0x80 >>> ((field - 1) % 8));
+    }
+
+    private static void write(ByteArrayOutputStream out, byte[] bytes) {
+        out.write(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,161 @@
+package com.miaad.iso8583TCPSocket.resilience;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long OPEN_MS = 60;
+
+    private static CircuitBreaker breaker(int minimumCalls, long slowCallMs) {
+        return new CircuitBreaker("host:1", new CircuitBreakerConfig.Builder()
+            .minimumCalls(minimumCalls)
+            .failureRateThreshold(50)
+            .slowCallDuration(slowCallMs)
+            .slowCallRateThreshold(50)
+            .openDuration(OPEN_MS)
+            .build());
+    }
+
+    private static CircuitBreaker opened() {
+        CircuitBreaker breaker = breaker(2, 0);
+        breaker.onError(FAST);
+        breaker.onError(FAST);
+        assertEquals(CircuitState.OPEN, breaker.getState());
+        return breaker;
+    }
+
+    private static void waitOpenDuration() throws InterruptedException {
+        Thread.sleep(OPEN_MS + 20);
+    }
+
+    @Test
+    public void staysClosedUntilMinimumCalls() {
+        CircuitBreaker breaker = breaker(4, 0);
+        breaker.onError(FAST);
+        breaker.onError(FAST);
+        breaker.onError(FAST);
+
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+        assertEquals(-1, breaker.getFailureRate());
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void opensWhenFailureRateReachesThreshold() {
+        CircuitBreaker breaker = breaker(4, 0);
+        breaker.onSuccess(FAST);
+        breaker.onSuccess(FAST);
+        breaker.onError(FAST);
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+        breaker.onError(FAST);
+
+        assertEquals(CircuitState.OPEN, breaker.getState());
+        assertEquals(50, breaker.getFailureRate());
+        assertFalse(breaker.tryAcquirePermission());
+        long retryAfter = breaker.getRetryAfterMs();
+        assertTrue(retryAfter > 0 && retryAfter <= OPEN_MS);
+    }
+
+    @Test
+    public void successesAloneNeverOpen() {
+        CircuitBreaker breaker = breaker(2, 0);
+        for (int i = 0; i < 50; i++) {
+            breaker.onSuccess(FAST);
+        }
+
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getFailureRate());
+        assertEquals(50, breaker.getWindowCalls());
+    }
+
+    @Test
+    public void opensOnSlowCallRate() {
+        CircuitBreaker breaker = breaker(2, 10);
+        long slow = TimeUnit.MILLISECONDS.toNanos(20);
+        breaker.onSuccess(slow);
+        breaker.onSuccess(slow);
+
+        assertEquals(CircuitState.OPEN, breaker.getState());
+        assertEquals(100, breaker.getSlowCallRate());
+    }
+
+    @Test
+    public void turnsHalfOpenAfterOpenDurationAndLetsOneProbeThrough() throws Exception {
+        CircuitBreaker breaker = opened();
+        waitOpenDuration();
+
+        assertEquals(CircuitState.HALF_OPEN, breaker.getState());
+        assertEquals(0, breaker.getRetryAfterMs());
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse("only one probe at a time", breaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void successfulProbeClosesWithEmptyWindow() throws Exception {
+        CircuitBreaker breaker = opened();
+        waitOpenDuration();
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onSuccess(FAST);
+
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getWindowCalls());
+        assertTrue(breaker.tryAcquirePermission());
+        // The failures that opened it are gone: one more does not reopen it
+        breaker.onError(FAST);
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void failedProbeReopensForAnotherOpenDuration() throws Exception {
+        CircuitBreaker breaker = opened();
+        waitOpenDuration();
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onError(FAST);
+
+        assertEquals(CircuitState.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+        assertTrue(breaker.getRetryAfterMs() > OPEN_MS / 2);
+        waitOpenDuration();
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void slowProbeReopens() throws Exception {
+        CircuitBreaker breaker = breaker(2, 10);
+        breaker.onError(FAST);
+        breaker.onError(FAST);
+        waitOpenDuration();
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(20));
+
+        assertEquals(CircuitState.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void probeThatNeverReportsIsReplacedAfterOpenDuration() throws Exception {
+        CircuitBreaker breaker = opened();
+        waitOpenDuration();
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission());
+        waitOpenDuration();
+
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void resetCloses() {
+        CircuitBreaker breaker = opened();
+        breaker.reset();
+
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getWindowCalls());
+        assertTrue(breaker.tryAcquirePermission());
+    }
+}
@@ -0,0 +1,90 @@
+package com.miaad.iso8583TCPSocket.resilience;
+
+import com.miaad.iso8583TCPSocket.Deadline;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ConcurrencyLimiterTest {
+
+    /** One slot, and a queue wait far longer than any test runs */
+    private static ConcurrencyLimiter fullLimiter() throws IOException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("host:1", new ConcurrencyLimitConfig.Builder()
+            .initialLimit(1)
+            .minLimit(1)
+            .maxLimit(1)
+            .maxQueueWait(10000)
+            .build());
+        assertEquals(1, limiter.acquire());
+        return limiter;
+    }
+
+    @Test
+    public void slotWaitEndsAtTheCallersDeadline() throws Exception {
+        ConcurrencyLimiter limiter = fullLimiter();
+        long start = System.nanoTime();
+        try {
+            limiter.acquire(Deadline.after(50, TimeUnit.MILLISECONDS));
+            fail("the only slot is taken");
+        } catch (ConcurrencyLimitExceededException expected) {
+        }
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("waited " + waitedMs + "ms", waitedMs >= 45 && waitedMs < 2000);
+        assertEquals(1, limiter.getRejected());
+    }
+
+    @Test
+    public void releasedSlotGoesToTheWaiter() throws Exception {
+        final ConcurrencyLimiter limiter = fullLimiter();
+        Thread releaser = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(30);
+                } catch (InterruptedException ignored) {
+                }
+                limiter.onIgnore();
+            }
+        });
+        releaser.start();
+
+        assertEquals(1, limiter.acquire(Deadline.after(2, TimeUnit.SECONDS)));
+        releaser.join();
+        assertEquals(2, limiter.getAccepted());
+    }
+
+    @Test
+    public void interruptedWaitIsNotARejection() throws Exception {
+        final ConcurrencyLimiter limiter = fullLimiter();
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final AtomicReference<Boolean> stillInterrupted = new AtomicReference<>();
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    limiter.acquire(Deadline.none());
+                } catch (IOException e) {
+                    failure.set(e);
+                }
+                stillInterrupted.set(Thread.currentThread().isInterrupted());
+            }
+        });
+        waiter.start();
+        Thread.sleep(30);
+        waiter.interrupt();
+        waiter.join(1000);
+
+        assertTrue(String.valueOf(failure.get()), failure.get() instanceof InterruptedIOException);
+        assertEquals(Boolean.TRUE, stillInterrupted.get());
+        assertEquals(0, limiter.getRejected());
+        assertEquals(1, limiter.getInFlight());
+    }
+}
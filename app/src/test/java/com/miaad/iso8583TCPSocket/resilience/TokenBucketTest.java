@@ -0,0 +1,110 @@
+package com.miaad.iso8583TCPSocket.resilience;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TokenBucketTest {
+
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100); // at 10 tps
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void newBucketHandsOutItsBurstAtOnce() {
+        TokenBucket bucket = new TokenBucket("terminal", 10, 3);
+        assertTrue(bucket.isFull());
+        assertEquals(3, bucket.getAvailableTokens(), 0.01);
+
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(-1, bucket.reserve(0));
+
+        assertFalse(bucket.isFull());
+        assertEquals(3, bucket.getGranted());
+        assertEquals(1, bucket.getRejected());
+    }
+
+    @Test
+    public void reservationWaitsOneIntervalPerTokenAhead() {
+        TokenBucket bucket = new TokenBucket("terminal", 10, 1);
+        assertEquals(0, bucket.reserve(0));
+
+        long first = bucket.reserve(SECOND);
+        long second = bucket.reserve(SECOND);
+        assertBetween(first, INTERVAL - TimeUnit.MILLISECONDS.toNanos(20), INTERVAL);
+        assertBetween(second - first, INTERVAL - TimeUnit.MILLISECONDS.toNanos(20), INTERVAL + TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    public void refusedReservationLeavesBucketUntouched() {
+        TokenBucket bucket = new TokenBucket("terminal", 10, 1);
+        bucket.reserve(0);
+
+        assertEquals(-1, bucket.reserve(INTERVAL / 2));
+        long wait = bucket.reserve(SECOND);
+        assertBetween(wait, INTERVAL - TimeUnit.MILLISECONDS.toNanos(20), INTERVAL);
+        assertEquals(2, bucket.getGranted());
+        assertEquals(1, bucket.getRejected());
+    }
+
+    @Test
+    public void cancelGivesTheTokenBack() {
+        TokenBucket bucket = new TokenBucket("terminal", 10, 1);
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(-1, bucket.reserve(0));
+
+        bucket.cancel();
+        assertEquals(0, bucket.getGranted());
+        assertEquals(0, bucket.reserve(0));
+    }
+
+    @Test
+    public void cancelledReservationShortensTheNextWait() {
+        TokenBucket bucket = new TokenBucket("terminal", 10, 1);
+        bucket.reserve(0);
+        long ahead = bucket.reserve(SECOND);
+        long behind = bucket.reserve(SECOND);
+        assertTrue(behind > ahead);
+
+        // The caller of the second reservation gave up; the next one takes its place
+        bucket.cancel();
+        long next = bucket.reserve(SECOND);
+        assertBetween(next, behind - TimeUnit.MILLISECONDS.toNanos(20), behind);
+    }
+
+    @Test
+    public void refillsAtTheConfiguredRate() throws Exception {
+        TokenBucket bucket = new TokenBucket("terminal", 100, 2);
+        bucket.reserve(0);
+        bucket.reserve(0);
+        assertEquals(-1, bucket.reserve(0));
+
+        Thread.sleep(15);
+        assertEquals(0, bucket.reserve(0));
+        Thread.sleep(30);
+        assertTrue(bucket.isFull());
+        assertEquals(2, bucket.getAvailableTokens(), 0.01);
+    }
+
+    @Test
+    public void burstBelowOneMeansOne() {
+        TokenBucket bucket = new TokenBucket("terminal", 10, 0);
+        assertEquals(1, bucket.getBurst());
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(-1, bucket.reserve(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveRate() {
+        new TokenBucket("terminal", 0, 1);
+    }
+
+    private static void assertBetween(long value, long min, long max) {
+        assertTrue(value + " not in [" + min + ", " + max + "]", value >= min && value <= max);
+    }
+}
@@ -0,0 +1,146 @@
+package com.miaad.iso8583TCPSocket.timer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HashedWheelTimerTest {
+
+    private HashedWheelTimer timer;
+
+    @Before
+    public void setUp() {
+        // A small wheel, so a few tens of milliseconds already take several rounds
+        timer = new HashedWheelTimer("test-timer", 5, 4);
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    public void runsTaskNoEarlierThanItsDelay() throws Exception {
+        final CountDownLatch ran = new CountDownLatch(1);
+        long start = System.nanoTime();
+        HashedWheelTimer.Timeout timeout = timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                ran.countDown();
+            }
+        }, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(ran.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    public void firesInDeadlineOrderAcrossRounds() throws Exception {
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(3);
+        // 4 buckets of 5ms: 63ms wraps the wheel three times, 23ms once
+        for (final int delay : new int[] {63, 7, 23}) {
+            timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    order.add(delay);
+                    done.countDown();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(7, 23, 63), order);
+    }
+
+    @Test
+    public void cancelledTaskNeverRuns() throws Exception {
+        final CountDownLatch ran = new CountDownLatch(1);
+        HashedWheelTimer.Timeout timeout = timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                ran.countDown();
+            }
+        }, 30, TimeUnit.MILLISECONDS);
+
+        assertTrue(timeout.cancel());
+        assertFalse("a second cancel reports nothing to cancel", timeout.cancel());
+        assertFalse(ran.await(150, TimeUnit.MILLISECONDS));
+        assertTrue(timeout.isCancelled());
+        assertFalse(timeout.isExpired());
+    }
+
+    @Test
+    public void failingTaskDoesNotStopTheWorker() throws Exception {
+        final CountDownLatch ran = new CountDownLatch(1);
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("task failure");
+            }
+        }, 5, TimeUnit.MILLISECONDS);
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                ran.countDown();
+            }
+        }, 40, TimeUnit.MILLISECONDS);
+
+        assertTrue(ran.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void stoppedTimerDropsPendingTasksAndRefusesNewOnes() throws Exception {
+        final CountDownLatch ran = new CountDownLatch(1);
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                ran.countDown();
+            }
+        }, 30, TimeUnit.MILLISECONDS);
+        timer.stop();
+
+        assertFalse(ran.await(150, TimeUnit.MILLISECONDS));
+        try {
+            timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }, 1, TimeUnit.MILLISECONDS);
+            fail("scheduled on a stopped timer");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void negativeDelayRunsOnNextTick() throws Exception {
+        final CountDownLatch ran = new CountDownLatch(1);
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                ran.countDown();
+            }
+        }, -10, TimeUnit.MILLISECONDS);
+
+        assertTrue(ran.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveTick() {
+        new HashedWheelTimer("bad", 0, 8);
+    }
+}
@@ -0,0 +1,252 @@
+package com.miaad.iso8583TCPSocket.bench;
+
+import com.miaad.iso8583TCPSocket.IsoClient;
+import com.miaad.iso8583TCPSocket.IsoConfig;
+import com.miaad.iso8583TCPSocket.RetryConfig;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput of N threads sending 0200s to a loopback host, three ways: a client per
+ * thread, one shared half-duplex client (exchanges take turns) and one shared
+ * full-duplex client (exchanges run at once on one connection). The host answers each
+ * request after a fixed latency, on its own timer, so it never holds up the next read.
+ * <p>
+ * Usage: {@code java -cp iso8583TCPSocket-jvm.jar com.miaad.iso8583TCPSocket.bench.SharedClientBenchmark
+ * [hostLatencyMicros] [requestsPerThread] [threads,threads,...]}, defaults {@code 1000 300 1,4,16}.
+ */
+public final class SharedClientBenchmark {
+
+    private static final int HEADER = 2;
+
+    private final long hostLatencyMicros;
+    private final int requestsPerThread;
+    private final ScheduledExecutorService replies = Executors.newScheduledThreadPool(4, daemonThreads("bench-host-reply"));
+    private ServerSocket server;
+
+    private SharedClientBenchmark(long hostLatencyMicros, int requestsPerThread) {
+        this.hostLatencyMicros = hostLatencyMicros;
+        this.requestsPerThread = requestsPerThread;
+    }
+
+    public static void main(String[] args) throws Exception {
+        long latency = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        String[] threadCounts = (args.length > 2 ? args[2] : "1,4,16").split(",");
+
+        SharedClientBenchmark benchmark = new SharedClientBenchmark(latency, requests);
+        benchmark.startHost();
+        System.out.println("Host latency " + latency + "us, " + requests + " requests per thread");
+        benchmark.warmUp();
+        for (String count : threadCounts) {
+            int threads = Integer.parseInt(count.trim());
+            System.out.println(benchmark.clientPerThread(threads));
+            System.out.println(benchmark.shared(threads, false));
+            System.out.println(benchmark.shared(threads, true));
+        }
+        benchmark.server.close();
+        benchmark.replies.shutdownNow();
+    }
+
+    private void warmUp() throws Exception {
+        shared(4, false);
+        shared(4, true);
+    }
+
+    private String clientPerThread(int threads) throws Exception {
+        IsoClient[] clients = new IsoClient[threads];
+        for (int i = 0; i < threads; i++) {
+            clients[i] = connect(false);
+        }
+        try {
+            return run("client per thread", clients);
+        } finally {
+            for (IsoClient client : clients) {
+                client.close();
+            }
+        }
+    }
+
+    private String shared(int threads, boolean fullDuplex) throws Exception {
+        IsoClient client = connect(fullDuplex);
+        IsoClient[] clients = new IsoClient[threads];
+        Arrays.fill(clients, client);
+        try {
+            return run(fullDuplex ? "shared, full-duplex" : "shared, half-duplex", clients);
+        } finally {
+            client.close();
+        }
+    }
+
+    private IsoClient connect(boolean fullDuplex) throws IOException {
+        IsoClient client = new IsoClient(new IsoConfig.Builder("127.0.0.1", server.getLocalPort())
+            .autoCloseAfterResponse(false)
+            .fullDuplex(fullDuplex)
+            .tcpNoDelay(true)
+            .livenessMonitor(false)
+            .enableHotPathLogs(false)
+            .readTimeout(10000)
+            .retryConfig(new RetryConfig.Builder().maxRetries(0).build())
+            .build());
+        client.connect();
+        return client;
+    }
+
+    /**
+     * Run one request loop per client slot, all released at once
+     */
+    private String run(String name, IsoClient[] clients) throws Exception {
+        final int threads = clients.length;
+        final long[] latencies = new long[threads * requestsPerThread];
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads, daemonThreads("bench-client"));
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            final IsoClient client = clients[t];
+            futures.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    start.await();
+                    for (int i = 0; i < requestsPerThread; i++) {
+                        // Concurrent requests on a shared connection need distinct STANs
+                        int stan = (id * requestsPerThread + i) % 999999 + 1;
+                        long startNanos = System.nanoTime();
+                        try {
+                            client.sendAndReceive(request(stan));
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies[id * requestsPerThread + i] = System.nanoTime() - startNanos;
+                    }
+                    return null;
+                }
+            }));
+        }
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        pool.shutdown();
+
+        Arrays.sort(latencies);
+        double tps = latencies.length * 1e9 / elapsedNanos;
+        return String.format("%-20s threads=%-3d %9.0f tx/s  p50=%6dus  p99=%6dus  errors=%d", name, threads, tps,
+            latencies[latencies.length / 2] / 1000, latencies[latencies.length * 99 / 100] / 1000, errors.get());
+    }
+
+    /**
+     * 0200 with a binary bitmap and fields 3, 4, 11 and 41, as the default message inspector reads it
+     */
+    private static byte[] request(int stan) {
+        String fields = "000000" + "000000001000" + String.format("%06d", stan) + "TERM0001";
+        byte[] message = new byte[4 + 8 + fields.length()];
+        System.arraycopy("0200".getBytes(StandardCharsets.US_ASCII), 0, message, 0, 4);
+        message[4] = 0x30;  // fields 3, 4
+        message[5] = 0x20;  // field 11
+        message[9] = (byte) 0x80; // field 41
+        System.arraycopy(fields.getBytes(StandardCharsets.US_ASCII), 0, message, 12, fields.length());
+        return message;
+    }
+
+    private void startHost() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!server.isClosed()) {
+                    try {
+                        final Socket socket = server.accept();
+                        socket.setTcpNoDelay(true);
+                        Thread reader = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(socket);
+                            }
+                        }, "bench-host");
+                        reader.setDaemon(true);
+                        reader.start();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }
+        }, "bench-host-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Answer every request on the connection with its MTI's response (0200 -> 0210), STAN unchanged
+     */
+    private void serve(Socket socket) {
+        try {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            final OutputStream out = socket.getOutputStream();
+            while (true) {
+                int length = in.readUnsignedShort();
+                final byte[] frame = new byte[HEADER + length];
+                frame[0] = (byte) (length >> 8);
+                frame[1] = (byte) length;
+                in.readFully(frame, HEADER, length);
+                frame[HEADER + 2]++;
+                Runnable reply = new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            synchronized (out) {
+                                out.write(frame);
+                                out.flush();
+                            }
+                        } catch (IOException ignored) {
+                        }
+                    }
+                };
+                if (hostLatencyMicros > 0) {
+                    replies.schedule(reply, hostLatencyMicros, TimeUnit.MICROSECONDS);
+                } else {
+                    reply.run();
+                }
+            }
+        } catch (IOException ignored) {
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
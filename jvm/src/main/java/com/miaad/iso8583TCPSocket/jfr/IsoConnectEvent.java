@@ -0,0 +1,36 @@
+package com.miaad.iso8583TCPSocket.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.miaad.iso8583TCPSocket.IsoConnect")
+@Label("ISO Connect")
+@Category({"ISO-8583", "Connection"})
+@Description("TCP connection attempt of an ISO-8583 client")
+@StackTrace(false)
+class IsoConnectEvent extends Event {
+
+    @Label("Operation Id")
+    long operationId;
+
+    @Label("Host")
+    String host;
+
+    @Label("Port")
+    int port;
+
+    @Label("Attempt")
+    int attempt;
+
+    @Label("Connect Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long connectTime;
+
+    @Label("Success")
+    boolean success;
+}
@@ -0,0 +1,33 @@
+package com.miaad.iso8583TCPSocket.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.miaad.iso8583TCPSocket.IsoDnsResolve")
+@Label("ISO DNS Resolve")
+@Category({"ISO-8583", "Connection"})
+@Description("Host name lookup of an ISO-8583 client")
+@StackTrace(false)
+class IsoDnsResolveEvent extends Event {
+
+    @Label("Operation Id")
+    long operationId;
+
+    @Label("Host")
+    String host;
+
+    @Label("Resolve Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long resolveTime;
+
+    @Label("Cached")
+    boolean cached;
+
+    @Label("Success")
+    boolean success;
+}
@@ -0,0 +1,33 @@
+package com.miaad.iso8583TCPSocket.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.miaad.iso8583TCPSocket.IsoTlsHandshake")
+@Label("ISO TLS Handshake")
+@Category({"ISO-8583", "Connection"})
+@Description("TLS handshake of an ISO-8583 client")
+@StackTrace(false)
+class IsoTlsHandshakeEvent extends Event {
+
+    @Label("Operation Id")
+    long operationId;
+
+    @Label("Host")
+    String host;
+
+    @Label("Port")
+    int port;
+
+    @Label("Handshake Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long handshakeTime;
+
+    @Label("Success")
+    boolean success;
+}
@@ -0,0 +1,60 @@
+package com.miaad.iso8583TCPSocket.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.miaad.iso8583TCPSocket.IsoTransaction")
+@Label("ISO Transaction")
+@Category({"ISO-8583", "Transaction"})
+@Description("Request/response exchange of an ISO-8583 client")
+@StackTrace(false)
+class IsoTransactionEvent extends Event {
+
+    @Label("Transaction Id")
+    long transactionId;
+
+    @Label("Host")
+    String host;
+
+    @Label("Port")
+    int port;
+
+    @Label("MTI")
+    String mti;
+
+    @Label("Bytes Out")
+    @DataAmount
+    int bytesOut;
+
+    @Label("Bytes In")
+    @DataAmount
+    int bytesIn;
+
+    @Label("Send Time")
+    @Description("Start of the transaction until the request was written")
+    @Timespan(Timespan.NANOSECONDS)
+    long sendTime;
+
+    @Label("Wait Time")
+    @Description("Request written until the response header arrived")
+    @Timespan(Timespan.NANOSECONDS)
+    long waitTime;
+
+    @Label("Read Time")
+    @Description("Response header until the full response was read")
+    @Timespan(Timespan.NANOSECONDS)
+    long readTime;
+
+    @Label("Total Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long totalTime;
+
+    @Label("Success")
+    boolean success;
+}
@@ -0,0 +1,116 @@
+package com.miaad.iso8583TCPSocket.jfr;
+
+import com.miaad.iso8583TCPSocket.IsoCodes;
+import com.miaad.iso8583TCPSocket.trace.EngineProbe;
+import com.miaad.iso8583TCPSocket.trace.EngineProbes;
+
+/**
+ * {@link EngineProbe} that emits Java Flight Recorder events
+ * ({@code IsoDnsResolve}, {@code IsoConnect}, {@code IsoTlsHandshake}, {@code IsoTransaction}, {@code IsoRetryWait}).
+ * <p>
+ * Each callback checks whether its event type is enabled in a running recording
+ * before touching any field, so with JFR off the cost is one allocation that the
+ * JIT removes and a flag check. Phase durations are event fields; the events
+ * themselves are committed when the phase ends.
+ *
+ * <pre>
+ * JfrEngineProbe.install(); // all clients without an explicit probe
+ * </pre>
+ */
+public final class JfrEngineProbe implements EngineProbe {
+
+    public static final JfrEngineProbe INSTANCE = new JfrEngineProbe();
+
+    private JfrEngineProbe() {
+    }
+
+    /**
+     * Make this the process-wide default probe
+     */
+    public static void install() {
+        EngineProbes.setDefault(INSTANCE);
+    }
+
+    @Override
+    public void onConnect(long operationId, String host, int port, int attempt,
+                          long startNanos, long endNanos, boolean success) {
+        IsoConnectEvent event = new IsoConnectEvent();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.operationId = operationId;
+        event.host = host;
+        event.port = port;
+        event.attempt = attempt;
+        event.connectTime = endNanos - startNanos;
+        event.success = success;
+        event.commit();
+    }
+
+    @Override
+    public void onDnsResolve(long operationId, String host, long startNanos, long endNanos,
+                             boolean success, boolean cached) {
+        IsoDnsResolveEvent event = new IsoDnsResolveEvent();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.operationId = operationId;
+        event.host = host;
+        event.resolveTime = endNanos - startNanos;
+        event.cached = cached;
+        event.success = success;
+        event.commit();
+    }
+
+    @Override
+    public void onTlsHandshake(long operationId, String host, int port,
+                               long startNanos, long endNanos, boolean success) {
+        IsoTlsHandshakeEvent event = new IsoTlsHandshakeEvent();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.operationId = operationId;
+        event.host = host;
+        event.port = port;
+        event.handshakeTime = endNanos - startNanos;
+        event.success = success;
+        event.commit();
+    }
+
+    @Override
+    public void onRetryWait(long operationId, String host, int port, int attempt,
+                            long startNanos, long endNanos) {
+        IsoRetryWaitEvent event = new IsoRetryWaitEvent();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.operationId = operationId;
+        event.host = host;
+        event.port = port;
+        event.attempt = attempt;
+        event.waitTime = endNanos - startNanos;
+        event.commit();
+    }
+
+    @Override
+    public void onTransaction(long transactionId, String host, int port, int mti, int bytesOut, int bytesIn,
+                              long startNanos, long sentNanos, long firstByteNanos, long endNanos,
+                              boolean success) {
+        IsoTransactionEvent event = new IsoTransactionEvent();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.transactionId = transactionId;
+        event.host = host;
+        event.port = port;
+        event.mti = IsoCodes.formatMti(mti);
+        event.bytesOut = bytesOut;
+        event.bytesIn = bytesIn;
+        event.sendTime = sentNanos != 0 ? sentNanos - startNanos : 0;
+        event.waitTime = firstByteNanos != 0 ? firstByteNanos - sentNanos : 0;
+        event.readTime = firstByteNanos != 0 ? endNanos - firstByteNanos : 0;
+        event.totalTime = endNanos - startNanos;
+        event.success = success;
+        event.commit();
+    }
+}
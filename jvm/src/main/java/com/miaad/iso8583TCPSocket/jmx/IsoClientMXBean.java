@@ -0,0 +1,64 @@
+package com.miaad.iso8583TCPSocket.jmx;
+
+/**
+ * JMX view of one {@link com.miaad.iso8583TCPSocket.IsoClient}: connection status,
+ * latency percentiles, transaction counters and live-tunable settings.
+ */
+public interface IsoClientMXBean {
+
+    // ========== STATUS ==========
+
+    String getState();
+    boolean isConnected();
+    boolean isTransactionInProgress();
+    boolean isRetrying();
+    boolean isHealthy();
+    String getEngineType();
+    String getLocalAddress();
+    String getRemoteAddress();
+    String getLastError();
+    int getReconnectAttempts();
+    long getConnectionDurationMs();
+    String getStatusDescription();
+
+    // ========== LATENCY (successful transactions, since start) ==========
+
+    long getLatencySampleCount();
+    double getLatencyP50Ms();
+    double getLatencyP90Ms();
+    double getLatencyP99Ms();
+    double getLatencyP999Ms();
+    double getLatencyMaxMs();
+
+    // ========== COUNTERS ==========
+
+    long getTransactions();
+    long getTimeouts();
+    long getErrors();
+    long getBytesOut();
+    long getBytesIn();
+    int getInFlight();
+
+    // ========== TUNABLE ==========
+
+    int getReadTimeoutMs();
+    void setReadTimeoutMs(int readTimeoutMs);
+
+    int getMaxInFlight();
+    void setMaxInFlight(int maxInFlight);
+
+    boolean isEnableHotPathLogs();
+    void setEnableHotPathLogs(boolean enable);
+
+    // ========== OPERATIONS ==========
+
+    /**
+     * Cancel any ongoing operation of the client
+     */
+    void cancel();
+
+    /**
+     * Close the client's connection
+     */
+    void close();
+}
@@ -0,0 +1,70 @@
+package com.miaad.iso8583TCPSocket.jmx;
+
+import com.miaad.iso8583TCPSocket.ConnectionStatus;
+import com.miaad.iso8583TCPSocket.IsoClient;
+import com.miaad.iso8583TCPSocket.metrics.LatencyHistogram;
+import com.miaad.iso8583TCPSocket.metrics.TransactionStats;
+
+/**
+ * {@link IsoClientMXBean} backed by a live client. Setters write through to the
+ * client's {@link com.miaad.iso8583TCPSocket.RuntimeSettings}.
+ */
+public class IsoClientManager implements IsoClientMXBean {
+
+    private final IsoClient client;
+
+    public IsoClientManager(IsoClient client) {
+        this.client = client;
+    }
+
+    @Override public String getState() { return client.getCurrentState().name(); }
+    @Override public boolean isConnected() { return client.isConnected(); }
+    @Override public boolean isTransactionInProgress() { return client.isTransactionInProgress(); }
+    @Override public boolean isRetrying() { return client.isRetrying(); }
+    @Override public boolean isHealthy() { return client.isHealthy(); }
+    @Override public String getEngineType() { return client.getEngineType(); }
+    @Override public String getLocalAddress() { return client.getLocalAddress(); }
+    @Override public String getRemoteAddress() { return client.getRemoteAddress(); }
+
+    @Override
+    public String getLastError() {
+        Exception error = client.getLastError();
+        return error != null ? error.getClass().getSimpleName() + ": " + error.getMessage() : null;
+    }
+
+    @Override public int getReconnectAttempts() { return client.getReconnectAttempts(); }
+    @Override public long getConnectionDurationMs() { return client.getConnectionDuration(); }
+    @Override public String getStatusDescription() { return client.getStatusDescription(); }
+
+    @Override public long getLatencySampleCount() { return latency().getCount(); }
+    @Override public double getLatencyP50Ms() { return latency().getPercentileMs(50); }
+    @Override public double getLatencyP90Ms() { return latency().getPercentileMs(90); }
+    @Override public double getLatencyP99Ms() { return latency().getPercentileMs(99); }
+    @Override public double getLatencyP999Ms() { return latency().getPercentileMs(99.9); }
+    @Override public double getLatencyMaxMs() { return latency().getMaxMs(); }
+
+    @Override public long getTransactions() { return total(TransactionStats.TRANSACTIONS); }
+    @Override public long getTimeouts() { return total(TransactionStats.TIMEOUTS); }
+    @Override public long getErrors() { return total(TransactionStats.ERRORS); }
+    @Override public long getBytesOut() { return total(TransactionStats.BYTES_OUT); }
+    @Override public long getBytesIn() { return total(TransactionStats.BYTES_IN); }
+    @Override public int getInFlight() { return client.getRuntimeSettings().getInFlight(); }
+
+    @Override public int getReadTimeoutMs() { return client.getRuntimeSettings().getReadTimeoutMs(); }
+    @Override public void setReadTimeoutMs(int readTimeoutMs) { client.getRuntimeSettings().setReadTimeoutMs(readTimeoutMs); }
+    @Override public int getMaxInFlight() { return client.getRuntimeSettings().getMaxInFlight(); }
+    @Override public void setMaxInFlight(int maxInFlight) { client.getRuntimeSettings().setMaxInFlight(maxInFlight); }
+    @Override public boolean isEnableHotPathLogs() { return client.getRuntimeSettings().isEnableHotPathLogs(); }
+    @Override public void setEnableHotPathLogs(boolean enable) { client.getRuntimeSettings().setEnableHotPathLogs(enable); }
+
+    @Override public void cancel() { client.cancel(); }
+    @Override public void close() { client.close(); }
+
+    private LatencyHistogram.Snapshot latency() {
+        return client.getLatencyHistogram().snapshot();
+    }
+
+    private long total(int metric) {
+        return client.getTransactionStats().snapshot().getTotal(metric);
+    }
+}
@@ -0,0 +1,50 @@
+package com.miaad.iso8583TCPSocket.jmx;
+
+import com.miaad.iso8583TCPSocket.IsoClient;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registers clients with the platform MBean server under
+ * {@code com.miaad.iso8583TCPSocket:type=IsoClient,name=<name>}.
+ */
+public final class IsoJmx {
+
+    public static final String DOMAIN = "com.miaad.iso8583TCPSocket";
+
+    private IsoJmx() {
+    }
+
+    /**
+     * Register a client, replacing any client already registered under the same name
+     * @return Name the MBean was registered under
+     */
+    public static ObjectName register(String name, IsoClient client) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = objectName(name);
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+        server.registerMBean(new IsoClientManager(client), objectName);
+        return objectName;
+    }
+
+    /**
+     * Remove a client registered with {@link #register(String, IsoClient)}; no-op if absent
+     */
+    public static void unregister(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = objectName(name);
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+    }
+
+    public static ObjectName objectName(String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=IsoClient,name=" + ObjectName.quote(name));
+    }
+}